@@ -0,0 +1,65 @@
+package com.gant.payroll.db.impl;
+
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.gant.payroll.classification.TimeCard;
+
+/**
+ * 多线程录入时间卡片的吞吐量，按线程数运行看是否随线程数增长：gradle jmh --args='IngestBenchmark -t 1' （再换 -t 2、-t 4）
+ * 
+ * @author jiangyp
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IngestBenchmark {
+
+	static final int EMPLOYEES = 1000;
+	static final TimeCard CARD = new TimeCard(LocalDate.of(2018, Month.JULY, 20), 8);
+
+	@State(Scope.Benchmark)
+	public static class Shared {
+		ConcurrentPayrollDatabase payrollDatabase;
+		String[] empIds;
+
+		@Setup(Level.Iteration)
+		public void setup() {
+			payrollDatabase = new ConcurrentPayrollDatabase();
+			empIds = new String[EMPLOYEES];
+			for (int i = 0; i < EMPLOYEES; i++) {
+				empIds[i] = String.valueOf(i);
+			}
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Cursor {
+		int next = (int) (Thread.currentThread().getId() * 7919);
+	}
+
+	/**
+	 * 每个线程轮流写不同员工，员工之间的写入互不阻塞
+	 */
+	@Benchmark
+	public void addTimeCard(Shared shared, Cursor cursor) {
+		int i = Math.floorMod(cursor.next++, EMPLOYEES);
+		shared.payrollDatabase.addTimeCard(shared.empIds[i], CARD);
+	}
+}
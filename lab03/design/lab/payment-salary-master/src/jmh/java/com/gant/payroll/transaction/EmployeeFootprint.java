@@ -0,0 +1,64 @@
+package com.gant.payroll.transaction;
+
+import java.lang.management.ManagementFactory;
+
+import com.gant.payroll.classification.HourlyClassification;
+import com.gant.payroll.db.PayrollDatabase;
+import com.gant.payroll.db.impl.ConcurrentPayrollDatabase;
+import com.gant.payroll.domain.Employee;
+import com.gant.payroll.method.HoldMethod;
+import com.gant.payroll.schedule.WeeklySchedule;
+
+/**
+ * 一百万员工的内存占用：每人一份支付计划、支付方式，与共用规范实例对比。
+ * 要整堆 GC 才量得准，不放在单元测试里，运行：gradle footprint
+ * 
+ * @author jiangyp
+ *
+ */
+public class EmployeeFootprint {
+
+	static final int EMPLOYEES = 1_000_000;
+	static final String[] CITIES = { "上海", "北京", "广州", "深圳", "杭州" };
+
+	public static void main(String[] args) {
+		long before = footprint(false);
+		long after = footprint(true);
+		System.out.println(EMPLOYEES + " 名员工，每人占用: 各自一份 " + before / EMPLOYEES + " B, 共用规范实例 " + after / EMPLOYEES + " B");
+	}
+
+	/**
+	 * 录入 EMPLOYEES 名小时工后堆的增量；地址按从文件读入的情况，每人一个新字符串
+	 */
+	private static long footprint(boolean shared) {
+		long base = usedHeap();
+		PayrollDatabase payrollDatabase = new ConcurrentPayrollDatabase();
+		for (int i = 0; i < EMPLOYEES; i++) {
+			String empId = String.valueOf(i);
+			String address = new String(CITIES[i % CITIES.length]);
+			if (shared) {
+				new AddHourlyEmployeeTransaction(empId, "员工" + i, address, 10, payrollDatabase).execute();
+			} else {
+				// 原来的做法：每个员工各自 new 支付计划和支付方式
+				Employee emp = new Employee(empId, "员工" + i, address);
+				emp.setClassification(new HourlyClassification(10));
+				emp.setSchedule(new WeeklySchedule());
+				emp.setPaymentMethod(new HoldMethod());
+				payrollDatabase.addEmployee(empId, emp);
+			}
+		}
+		long used = usedHeap() - base;
+		// 测量结束前数据库必须仍然可达
+		if (payrollDatabase.findEmployee("0") == null) {
+			throw new IllegalStateException();
+		}
+		return used;
+	}
+
+	private static long usedHeap() {
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+	}
+}
@@ -0,0 +1,90 @@
+package com.gant.payroll.transaction;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.gant.payroll.classification.HourlyClassification;
+import com.gant.payroll.classification.SalariedClassification;
+import com.gant.payroll.classification.TimeCard;
+import com.gant.payroll.domain.Employee;
+import com.gant.payroll.domain.Paycheck;
+import com.gant.payroll.domain.PaycheckBatch;
+import com.gant.payroll.method.HoldMethod;
+import com.gant.payroll.schedule.WeeklySchedule;
+
+/**
+ * 发薪时每人一个 Paycheck 与按列写进 PaycheckBatch 的对比，看分配量：gradle jmh --args='PaydayBenchmark -prof gc'
+ * 
+ * @author jiangyp
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PaydayBenchmark {
+
+	static final int EMPLOYEES = 10_000;
+	static final LocalDate PAYDAY = LocalDate.of(2018, 7, 20);
+
+	private List<Employee> emps = new ArrayList<>();
+	private PaycheckBatch batch = new PaycheckBatch(EMPLOYEES);
+
+	@Setup
+	public void setup() {
+		for (int i = 0; i < EMPLOYEES; i++) {
+			Employee emp = new Employee(String.valueOf(i), "员工" + i, "上海");
+			emp.setSchedule(WeeklySchedule.INSTANCE);
+			emp.setPaymentMethod(HoldMethod.INSTANCE);
+			if (i % 2 == 0) {
+				HourlyClassification hc = new HourlyClassification(10 + i % 7);
+				for (int d = 0; d < 5; d++) {
+					hc.addTimeCards(new TimeCard(PAYDAY.minusDays(d + 1), 6 + (i + d) % 5));
+				}
+				emp.setClassification(hc);
+			} else {
+				emp.setClassification(new SalariedClassification(1000));
+			}
+			emps.add(emp);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(EMPLOYEES)
+	public List<Paycheck> perPaycheck() {
+		List<Paycheck> paychecks = new ArrayList<>(EMPLOYEES);
+		for (Employee emp : emps) {
+			Paycheck pc = new Paycheck(emp.getPayPeriodStartDate(PAYDAY), PAYDAY);
+			emp.payDay(pc);
+			paychecks.add(pc);
+		}
+		return paychecks;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(EMPLOYEES)
+	public PaycheckBatch paycheckBatch() {
+		batch.clear();
+		PayPeriods periods = new PayPeriods(PAYDAY);
+		for (Employee emp : emps) {
+			emp.payDay(periods.of(emp), batch);
+		}
+		return batch;
+	}
+}
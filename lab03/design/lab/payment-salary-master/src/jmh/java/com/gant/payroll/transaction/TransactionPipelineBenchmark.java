@@ -0,0 +1,89 @@
+package com.gant.payroll.transaction;
+
+import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.gant.payroll.classification.HourlyClassification;
+import com.gant.payroll.db.PayrollDatabase;
+import com.gant.payroll.db.impl.ConcurrentPayrollDatabase;
+import com.gant.payroll.domain.Employee;
+import com.gant.payroll.method.HoldMethod;
+import com.gant.payroll.schedule.WeeklySchedule;
+
+/**
+ * 异步录入管道的吞吐量，生产者线程数用 -t 指定：gradle jmh --args='TransactionPipelineBenchmark -t 4'
+ * 
+ * @author jiangyp
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransactionPipelineBenchmark {
+
+	static final int EMPLOYEES = 64;
+	static final LocalDate DATE = LocalDate.of(2018, 7, 1);
+
+	@State(Scope.Benchmark)
+	public static class Shared {
+		PayrollDatabase payrollDatabase;
+		TransactionPipeline pipeline;
+		String[] empIds;
+
+		/**
+		 * 每轮重建，时间卡片不会越积越多
+		 */
+		@Setup(Level.Iteration)
+		public void setup() {
+			payrollDatabase = new ConcurrentPayrollDatabase();
+			empIds = new String[EMPLOYEES];
+			for (int i = 0; i < EMPLOYEES; i++) {
+				empIds[i] = String.valueOf(i);
+				Employee emp = new Employee(empIds[i], "员工" + i, "上海");
+				emp.setClassification(new HourlyClassification(10));
+				emp.setSchedule(WeeklySchedule.INSTANCE);
+				emp.setPaymentMethod(HoldMethod.INSTANCE);
+				payrollDatabase.addEmployee(empIds[i], emp);
+			}
+			pipeline = new TransactionPipeline(payrollDatabase, 2, 4096, 256);
+		}
+
+		/**
+		 * 等已提交的事务全部生效，计时包含排空缓冲区
+		 */
+		@TearDown(Level.Iteration)
+		public void tearDown() {
+			pipeline.close();
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Cursor {
+		int next;
+	}
+
+	/**
+	 * 提交一张时间卡片，缓冲区满时等待消费线程
+	 */
+	@Benchmark
+	public CompletableFuture<Transaction> submit(Shared shared, Cursor cursor) {
+		int i = cursor.next++;
+		return shared.pipeline.submit(new TimeCardTransaction(shared.empIds[i % EMPLOYEES], DATE.plusDays(i / 1000 % 365), 8, shared.payrollDatabase));
+	}
+}
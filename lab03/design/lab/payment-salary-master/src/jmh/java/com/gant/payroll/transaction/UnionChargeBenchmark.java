@@ -0,0 +1,67 @@
+package com.gant.payroll.transaction;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.gant.payroll.affiliation.ServiceChange;
+import com.gant.payroll.db.PayrollDatabase;
+import com.gant.payroll.db.impl.ConcurrentPayrollDatabase;
+
+/**
+ * 全工会统一收费：一次给五万个会员编号记同一笔服务费，每个会员的耗时：gradle jmh --args='UnionChargeBenchmark'
+ * 
+ * @author jiangyp
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UnionChargeBenchmark {
+
+	static final int MEMBERS = 50_000;
+	static final LocalDate PAYDAY = LocalDate.of(2018, 7, 20);
+	static final List<ServiceChange> CHARGE = Collections.singletonList(new ServiceChange(PAYDAY.minusDays(1), 12.5));
+
+	private PayrollDatabase payrollDatabase;
+	private List<String> memberIds;
+
+	/**
+	 * 每轮重建，服务费列表不会越积越长
+	 */
+	@Setup(Level.Iteration)
+	public void setup() {
+		payrollDatabase = new ConcurrentPayrollDatabase();
+		memberIds = new ArrayList<>(MEMBERS);
+		for (int i = 0; i < MEMBERS; i++) {
+			String empId = String.valueOf(i);
+			new AddHourlyEmployeeTransaction(empId, "员工" + i, "上海", 10, payrollDatabase).execute();
+			new AffiliationTransaction(empId, "u" + i, 5, payrollDatabase).execute();
+			memberIds.add("u" + i);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(MEMBERS)
+	public int chargeAll() {
+		return payrollDatabase.applyServiceChanges(memberIds, CHARGE);
+	}
+}
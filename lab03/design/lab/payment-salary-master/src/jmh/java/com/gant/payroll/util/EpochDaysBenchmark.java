@@ -0,0 +1,99 @@
+package com.gant.payroll.util;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.gant.payroll.affiliation.ServiceChange;
+import com.gant.payroll.affiliation.UnionAffiliation;
+import com.gant.payroll.domain.Paycheck;
+
+/**
+ * epoch day 运算与 LocalDate 写法的对比，运行：gradle jmh
+ * 
+ * @author jiangyp
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EpochDaysBenchmark {
+
+	private LocalDate start;
+	private LocalDate end;
+	private long startDay;
+	private long endDay;
+	private UnionAffiliation union;
+	private Paycheck paycheck;
+
+	@Setup
+	public void setup() {
+		start = LocalDate.of(2018, 6, 30);
+		end = LocalDate.of(2018, 7, 31);
+		startDay = start.toEpochDay();
+		endDay = end.toEpochDay();
+		union = new UnionAffiliation("7", 10);
+		for (int i = 0; i < 365; i++) {
+			union.addServiceChanges(new ServiceChange(LocalDate.of(2018, 1, 1).plusDays(i), 1));
+		}
+		paycheck = new Paycheck(start, end);
+	}
+
+	/**
+	 * 逐天判断是否周五
+	 */
+	@Benchmark
+	public int fridaysLocalDate() {
+		int fridays = 0;
+		for (LocalDate d = start.plusDays(1); d.isBefore(end); d = d.plusDays(1)) {
+			if (d.getDayOfWeek() == DayOfWeek.FRIDAY) {
+				fridays++;
+			}
+		}
+		return fridays;
+	}
+
+	@Benchmark
+	public int fridaysEpochDays() {
+		return EpochDays.countFridays(startDay, endDay);
+	}
+
+	@Benchmark
+	public boolean lastDayOfMonthLocalDate() {
+		return end.getDayOfMonth() == end.lengthOfMonth() && end.withDayOfMonth(1).isBefore(end);
+	}
+
+	@Benchmark
+	public boolean lastDayOfMonthEpochDays() {
+		return EpochDays.isLastDayOfMonth(endDay) && EpochDays.firstDayOfMonth(endDay) < endDay;
+	}
+
+	@Benchmark
+	public boolean betweenLocalDate() {
+		return DateUtil.between(end.minusDays(3), start, end);
+	}
+
+	@Benchmark
+	public boolean betweenEpochDays() {
+		return EpochDays.between(endDay - 3, startDay, endDay);
+	}
+
+	@Benchmark
+	public long unionDeductions() {
+		return union.calculateDeductions(paycheck);
+	}
+}
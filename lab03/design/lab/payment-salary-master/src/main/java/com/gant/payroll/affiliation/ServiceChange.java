@@ -10,11 +10,14 @@ import java.time.LocalDate;
  */
 public class ServiceChange {
 	private LocalDate date;
+	/** date 对应的 epoch day，算薪时直接比较 */
+	private int epochDay;
 	private double amout;
 
 	public ServiceChange(LocalDate date, double amout) {
 		super();
 		this.date = date;
+		this.epochDay = (int) date.toEpochDay();
 		this.amout = amout;
 	}
 
@@ -24,6 +27,11 @@ public class ServiceChange {
 
 	public void setDate(LocalDate date) {
 		this.date = date;
+		this.epochDay = (int) date.toEpochDay();
+	}
+
+	public int getEpochDay() {
+		return epochDay;
 	}
 
 	public double getAmout() {
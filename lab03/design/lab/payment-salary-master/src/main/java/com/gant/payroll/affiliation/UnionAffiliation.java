@@ -3,25 +3,48 @@ package com.gant.payroll.affiliation;
 import java.util.ArrayList;
 import java.util.List;
 
+import com.gant.payroll.db.HistoryCache;
 import com.gant.payroll.domain.Affiliation;
 import com.gant.payroll.domain.Paycheck;
-import com.gant.payroll.util.DateUtil;
+import com.gant.payroll.util.DateIndex;
+import com.gant.payroll.util.EpochDays;
+import com.gant.payroll.util.Money;
 
 /**
  * 会费计算实现
  * 
+ * 懒加载模式下不持有服务费明细，算会费时经 {@link HistoryCache} 取本期的服务费。
+ * 这时 {@link #addServiceChanges(ServiceChange)} 什么也不做，服务费只能经 {@link com.gant.payroll.db.PayrollDatabase#addServiceChange} 录入。
+ * 
  * @author jiangyp
  *
  */
 public class UnionAffiliation implements Affiliation {
 	private String memberId;
 	private double weeklyBue;
-	private List<ServiceChange> serviceChanges = new ArrayList<>();
+	private long weeklyBueCents;
+	/** 按日期有序，读写都对列表本身加锁 */
+	private List<ServiceChange> serviceChanges;
+	/** 懒加载模式下的明细缓存，否则为 null */
+	private HistoryCache history;
 
 	public UnionAffiliation(String memberId, double weeklyBue) {
 		super();
 		this.memberId = memberId;
 		this.weeklyBue = weeklyBue;
+		this.weeklyBueCents = Money.of(weeklyBue);
+		this.serviceChanges = new ArrayList<>();
+	}
+
+	/**
+	 * 懒加载模式，服务费只存在数据库里
+	 */
+	public UnionAffiliation(String memberId, double weeklyBue, HistoryCache history) {
+		super();
+		this.memberId = memberId;
+		this.weeklyBue = weeklyBue;
+		this.weeklyBueCents = Money.of(weeklyBue);
+		this.history = history;
 	}
 
 	// int fridays = 统计在 paycheck 开始时间和结束时间有多少周五
@@ -29,13 +52,23 @@ public class UnionAffiliation implements Affiliation {
 	// totalChange = 计算 paycheck 开始时间和结束时间之间的 ServiceChange
 	// deduction = totalDue + totalChange
 	@Override
-	public double calculateDeductions(Paycheck paycheck) {
-		int fridays = DateUtil.betweenOnFriday(paycheck.getPayPeriodStart(), paycheck.getPayPeriodEnd());
-		double totalDue = fridays * weeklyBue;
-		double totalChange = 0D;
-		for (ServiceChange sc : serviceChanges) {
-			if (DateUtil.between(sc.getDate(), paycheck.getPayPeriodStart(), paycheck.getPayPeriodEnd())) {
-				totalChange += sc.getAmout();
+	public long calculateDeductions(Paycheck paycheck) {
+		int start = paycheck.getPayPeriodStartDay();
+		int stop = paycheck.getPayPeriodEndDay();
+		int fridays = EpochDays.countFridays(start, stop);
+		long totalDue = fridays * weeklyBueCents;
+		long totalChange = 0;
+		if (history != null) {
+			for (ServiceChange serviceChange : history.findServiceChanges(memberId, start, stop)) {
+				totalChange += Money.of(serviceChange.getAmout());
+			}
+			return totalDue + totalChange;
+		}
+		// 与 DateIndex.insert 用同一把锁，多线程录入服务费时读不到插了一半的列表
+		synchronized (serviceChanges) {
+			int end = DateIndex.lowerBound(serviceChanges, stop, ServiceChange::getEpochDay);
+			for (int i = DateIndex.upperBound(serviceChanges, start, ServiceChange::getEpochDay); i < end; i++) {
+				totalChange += Money.of(serviceChanges.get(i).getAmout());
 			}
 		}
 		return totalDue + totalChange;
@@ -55,15 +88,26 @@ public class UnionAffiliation implements Affiliation {
 
 	public void setWeeklyBue(double weeklyBue) {
 		this.weeklyBue = weeklyBue;
+		this.weeklyBueCents = Money.of(weeklyBue);
 	}
 
+	/**
+	 * 懒加载模式下服务费由数据库保存，这里不做处理
+	 */
 	public void addServiceChanges(ServiceChange serviceChange) {
-		this.serviceChanges.add(serviceChange);
+		if (history != null) {
+			return;
+		}
+		DateIndex.insert(this.serviceChanges, serviceChange, ServiceChange::getDate);
+	}
+
+	public boolean isLazy() {
+		return history != null;
 	}
 
 	@Override
 	public String toString() {
-		return "UnionAffiliation [memberId=" + memberId + ", weeklyBue=" + weeklyBue + ", serviceChanges=" + serviceChanges + "]";
+		return "UnionAffiliation [memberId=" + memberId + ", weeklyBue=" + weeklyBue + ", serviceChanges=" + (history != null ? "lazy" : serviceChanges) + "]";
 	}
 
 }
@@ -1,13 +1,19 @@
 package com.gant.payroll.application;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
 import java.time.LocalDate;
 import java.time.Month;
 import java.util.List;
+import java.util.stream.Stream;
 
 import com.gant.payroll.db.PayrollDatabase;
 import com.gant.payroll.db.impl.PaymentDatabaseImpl;
 import com.gant.payroll.domain.Employee;
 import com.gant.payroll.domain.Paycheck;
+import com.gant.payroll.io.PaycheckWriter;
+import com.gant.payroll.io.StandardPaycheckFormat;
 
 /**
  * 支付程序入口
@@ -22,27 +28,30 @@ public class PayrollApplication {
 	public static void main(String[] args) {
 		LocalDate date = LocalDate.of(2018, Month.JULY, 20);
 		
-		List<Employee> emps = payrollDatabase.findAllEmpByInit();
+		payrollDatabase.findAllEmpByInit();
 		
-		for (Employee emp : emps) {
-			if (emp.isPayDay(date)) {
-				Paycheck pc = new Paycheck(emp.getPayPeriodStartDate(date), date);
-				emp.payDay(pc);
-				payrollDatabase.savePaycheck(pc);
-			}
-		}
+		payrollDatabase.streamEmpByPayDay(date).forEach(emp -> {
+			Paycheck pc = new Paycheck(emp.getPayPeriodStartDate(date), date);
+			emp.payDay(pc);
+			payrollDatabase.savePaycheck(pc);
+		});
 		
-		plintPaycheck(emps);
+		plintPaycheck(payrollDatabase.streamAllEmp());
 	}
 
-	protected static void plintPaycheck(List<Employee> emps) {
-		for (Employee emp : emps) {
-			System.out.println();
-			System.out.println(emp);
-			List<Paycheck> paychecks = payrollDatabase.findPaychecks(emp.getId());
-			if (paychecks != null) {
-				paychecks.forEach(it -> System.out.println(it));
-			}
+	protected static void plintPaycheck(Stream<Employee> emps) {
+		try {
+			PaycheckWriter writer = new PaycheckWriter(Channels.newChannel(System.out), StandardPaycheckFormat.CSV, false);
+			emps.forEach(emp -> {
+				List<Paycheck> paychecks = payrollDatabase.findPaychecks(emp.getId());
+				if (paychecks != null) {
+					paychecks.forEach(writer);
+				}
+			});
+			// 不关闭，System.out 还要用
+			writer.flush();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
 		}
 	}
 }
@@ -1,15 +1,22 @@
 package com.gant.payroll.classification;
 
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
+import com.gant.payroll.db.HistoryCache;
 import com.gant.payroll.domain.Paycheck;
 import com.gant.payroll.domain.PaymentClassification;
-import com.gant.payroll.util.DateUtil;
+import com.gant.payroll.util.DateIndex;
+import com.gant.payroll.util.Money;
 
 /**
  * 销售员工支付策略
  * 
+ * 懒加载模式下只记员工编号，不持有销售凭条，算薪时经 {@link HistoryCache} 取本期的凭条。
+ * 这时 {@link #addSalesReceipt(SalesReceipt)} 什么也不做，凭条只能经 {@link com.gant.payroll.db.PayrollDatabase#addSalesReceipt} 录入。
+ * 
  * @author jiangyp
  *
  */
@@ -17,30 +24,99 @@ public class CommissionedClassification implements PaymentClassification {
 
 	private double rate;
 	private double salary;
-	private List<SalesReceipt> salesReceipt = new ArrayList<>();
+	private long salaryCents;
+	private List<SalesReceipt> salesReceipt;
+	/** salesPrefix[k] 为前 k 张凭条的销售额之和，单位为分；和 salesReceipt 一起由 salesReceipt 上的锁保护 */
+	private long[] salesPrefix;
+	/** 懒加载模式下的员工编号和明细缓存，否则为 null */
+	private String empId;
+	private HistoryCache history;
 
 	public CommissionedClassification(double salary, double rate) {
 		this.salary = salary;
+		this.salaryCents = Money.of(salary);
+		this.rate = rate;
+		this.salesReceipt = new ArrayList<>();
+		this.salesPrefix = new long[1];
+	}
+
+	/**
+	 * 懒加载模式，销售凭条只存在数据库里
+	 */
+	public CommissionedClassification(double salary, double rate, String empId, HistoryCache history) {
+		this.salary = salary;
+		this.salaryCents = Money.of(salary);
 		this.rate = rate;
+		this.empId = empId;
+		this.history = history;
 	}
 
 	@Override
-	public double calculatePay(Paycheck paycheck) {
-		double commission = 0.0;
-		for (SalesReceipt sr : salesReceipt) {
-			if (DateUtil.between(sr.getDate(), paycheck.getPayPeriodStart(), paycheck.getPayPeriodEnd())) {
-				commission += sr.getAmount() * rate;
+	public long calculatePay(Paycheck paycheck) {
+		return calculatePay(paycheck.getPayPeriodStartDay(), paycheck.getPayPeriodEndDay());
+	}
+
+	/**
+	 * 本期到 asOf（含）为止已经挣到的薪资，单位为分
+	 */
+	public long calculatePaySoFar(LocalDate payPeriodStart, LocalDate asOf) {
+		return calculatePay(payPeriodStart.toEpochDay(), asOf.toEpochDay() + 1);
+	}
+
+	/**
+	 * 日期在 (start, end) 之间的凭条提成，销售额由二分和前缀和直接得到
+	 */
+	private long calculatePay(long start, long end) {
+		if (history != null) {
+			long sales = 0;
+			for (SalesReceipt receipt : history.findSalesReceipts(empId, start, end)) {
+				sales += Money.of(receipt.getAmount());
 			}
+			return salaryCents + Money.times(sales, rate);
+		}
+		synchronized (salesReceipt) {
+			int from = DateIndex.upperBound(salesReceipt, start, SalesReceipt::getEpochDay);
+			int to = Math.max(from, DateIndex.lowerBound(salesReceipt, end, SalesReceipt::getEpochDay));
+			long commission = Money.times(salesPrefix[to] - salesPrefix[from], rate);
+			return salaryCents + commission;
 		}
-		return salary + commission;
 	}
 
+	/**
+	 * 懒加载模式下凭条由数据库保存，这里不做处理
+	 */
 	public void addSalesReceipt(SalesReceipt salesReceipt) {
-		this.salesReceipt.add(salesReceipt);
+		if (history != null) {
+			return;
+		}
+		// 插入和重算前缀和要一起完成，算薪的线程不能看到凭条已插入而前缀和还没更新
+		synchronized (this.salesReceipt) {
+			int index = DateIndex.insert(this.salesReceipt, salesReceipt, SalesReceipt::getDate);
+			int size = this.salesReceipt.size();
+			if (salesPrefix.length <= size) {
+				salesPrefix = Arrays.copyOf(salesPrefix, Math.max(8, size + (size >> 1) + 1));
+			}
+			// 顺序录入时只更新最后一项，插到中间时从插入点往后重算
+			for (int k = index; k < size; k++) {
+				salesPrefix[k + 1] = salesPrefix[k] + Money.of(this.salesReceipt.get(k).getAmount());
+			}
+		}
+	}
+
+	public boolean isLazy() {
+		return history != null;
+	}
+
+	public double getRate() {
+		return rate;
+	}
+
+	public double getSalary() {
+		return salary;
 	}
 
 	@Override
 	public String toString() {
-		return "CommissionedClassification [rate=" + rate + ", salary=" + salary + ", salesReceipt=" + salesReceipt + "]";
+		return "CommissionedClassification [rate=" + rate + ", salary=" + salary + ", salesReceipt=" + (history != null ? "lazy" : salesReceipt) + "]";
 	}
 }
@@ -1,54 +1,105 @@
 package com.gant.payroll.classification;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.time.LocalDate;
 
+import com.gant.payroll.db.HistoryCache;
 import com.gant.payroll.domain.Paycheck;
 import com.gant.payroll.domain.PaymentClassification;
-import com.gant.payroll.util.DateUtil;
+import com.gant.payroll.util.Money;
 
 /**
  * 小时工支付策略
  * 
+ * 懒加载模式下只记员工编号，不持有时间卡片，算薪时经 {@link HistoryCache} 取本期的卡片。
+ * 这时 {@link #addTimeCards(TimeCard)} 什么也不做，卡片只能经 {@link com.gant.payroll.db.PayrollDatabase#addTimeCard} 录入。
+ * 
  * @author jiangyp
  *
  */
 public class HourlyClassification implements PaymentClassification {
 
 	private double hourlyRate;
-	private List<TimeCard> timeCards = new ArrayList<>();
+	private long hourlyRateCents;
+	private TimeCardStore timeCards;
+	/** 懒加载模式下的员工编号和明细缓存，否则为 null */
+	private String empId;
+	private HistoryCache history;
 
 	public HourlyClassification(double hourlyRate) {
 		this.hourlyRate = hourlyRate;
+		this.hourlyRateCents = Money.of(hourlyRate);
+		this.timeCards = new TimeCardStore();
+	}
+
+	/**
+	 * 懒加载模式，时间卡片只存在数据库里
+	 */
+	public HourlyClassification(double hourlyRate, String empId, HistoryCache history) {
+		this.hourlyRate = hourlyRate;
+		this.hourlyRateCents = Money.of(hourlyRate);
+		this.empId = empId;
+		this.history = history;
 	}
 
 	@Override
-	public double calculatePay(Paycheck paycheck) {
-		double totalPay = 0;
-		for (TimeCard tc : timeCards) {
-			if (DateUtil.between(tc.getDate(), paycheck.getPayPeriodStart(), paycheck.getPayPeriodEnd())) {
-				totalPay += calculatePayForTimeCard(tc);
+	public long calculatePay(Paycheck paycheck) {
+		return calculatePay(paycheck.getPayPeriodStartDay(), paycheck.getPayPeriodEndDay());
+	}
+
+	/**
+	 * 本期到 asOf（含）为止已经挣到的薪资，单位为分
+	 */
+	public long calculatePaySoFar(LocalDate payPeriodStart, LocalDate asOf) {
+		return calculatePay(payPeriodStart.toEpochDay(), asOf.toEpochDay() + 1);
+	}
+
+	/**
+	 * 日期在 (start, end) 之间的卡片：每张卡片按 8 小时算正常工资，超出部分按 1.5 倍算加班，
+	 * 卡片数和加班工时都由二分和前缀和直接得到；折算成工时后只舍入一次
+	 */
+	private long calculatePay(long start, long end) {
+		if (history != null) {
+			double hours = 0;
+			for (TimeCard timeCard : history.findTimeCards(empId, start, end)) {
+				hours += TimeCardStore.REGULAR_HOURS + Math.max(0, timeCard.getHours() - TimeCardStore.REGULAR_HOURS) * 1.5;
 			}
+			return Money.times(hourlyRateCents, hours);
+		}
+		synchronized (timeCards) {
+			int from = timeCards.upperBound(start);
+			int to = Math.max(from, timeCards.lowerBound(end));
+			double hours = (to - from) * TimeCardStore.REGULAR_HOURS + timeCards.sumOvertime(from, to) * 1.5;
+			return Money.times(hourlyRateCents, hours);
 		}
-		return totalPay;
 	}
 
+	/**
+	 * 懒加载模式下卡片由数据库保存，这里不做处理
+	 */
 	public void addTimeCards(TimeCard timeCard) {
-		this.timeCards.add(timeCard);
+		if (timeCards != null) {
+			this.timeCards.add(timeCard);
+		}
 	}
 
-	private double calculatePayForTimeCard(TimeCard tc) {
-		double hours = tc.getHours();
-		if (hours > 8) {
-			return 8 * hourlyRate + (hours - 8) * hourlyRate * 1.5;
-		} else {
-			return 8 * hourlyRate;
-		}
+	/**
+	 * 懒加载模式下为 null
+	 */
+	public TimeCardStore getTimeCards() {
+		return timeCards;
+	}
+
+	public boolean isLazy() {
+		return history != null;
+	}
+
+	public double getHourlyRate() {
+		return hourlyRate;
 	}
 
 	@Override
 	public String toString() {
-		return "HourlyClassification [hourlyRate=" + hourlyRate + ", timeCards=" + timeCards + "]";
+		return "HourlyClassification [hourlyRate=" + hourlyRate + ", timeCards=" + (history != null ? "lazy" : timeCards) + "]";
 	}
 
 }
@@ -2,6 +2,7 @@ package com.gant.payroll.classification;
 
 import com.gant.payroll.domain.Paycheck;
 import com.gant.payroll.domain.PaymentClassification;
+import com.gant.payroll.util.Money;
 
 /**
  * 固定工资支付策略
@@ -11,13 +12,19 @@ import com.gant.payroll.domain.PaymentClassification;
  */
 public class SalariedClassification implements PaymentClassification {
 	private double salary;
+	private long salaryCents;
 
 	public SalariedClassification(double salary) {
 		this.salary = salary;
+		this.salaryCents = Money.of(salary);
 	}
 
 	@Override
-	public double calculatePay(Paycheck paycheck) {
+	public long calculatePay(Paycheck paycheck) {
+		return salaryCents;
+	}
+
+	public double getSalary() {
 		return salary;
 	}
 
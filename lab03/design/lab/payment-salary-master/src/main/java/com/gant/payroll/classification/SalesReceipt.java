@@ -10,11 +10,14 @@ import java.time.LocalDate;
  */
 public class SalesReceipt {
 	private LocalDate date;
+	/** date 对应的 epoch day，算薪时直接比较 */
+	private int epochDay;
 	private double amount;
 
 	public SalesReceipt(LocalDate date, double amount) {
 		super();
 		this.date = date;
+		this.epochDay = (int) date.toEpochDay();
 		this.amount = amount;
 	}
 
@@ -24,6 +27,11 @@ public class SalesReceipt {
 
 	public void setDate(LocalDate date) {
 		this.date = date;
+		this.epochDay = (int) date.toEpochDay();
+	}
+
+	public int getEpochDay() {
+		return epochDay;
 	}
 
 	public double getAmount() {
@@ -10,11 +10,14 @@ import java.time.LocalDate;
  */
 public class TimeCard {
 	private LocalDate date;
+	/** date 对应的 epoch day，算薪时直接比较 */
+	private int epochDay;
 	private double hours;
 
 	public TimeCard(LocalDate date, double hours) {
 		super();
 		this.date = date;
+		this.epochDay = (int) date.toEpochDay();
 		this.hours = hours;
 	}
 
@@ -24,6 +27,11 @@ public class TimeCard {
 
 	public void setDate(LocalDate date) {
 		this.date = date;
+		this.epochDay = (int) date.toEpochDay();
+	}
+
+	public int getEpochDay() {
+		return epochDay;
 	}
 
 	public double getHours() {
@@ -0,0 +1,209 @@
+package com.gant.payroll.classification;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 按列存储的时间卡片
+ * 
+ * 一个员工的所有卡片放在两个基本类型数组里：日期存 epoch day（int），工时存 double，
+ * 每张卡片只占 12 个字节，不再有 TimeCard、LocalDate 对象和列表槽位的开销。
+ * 数组按块扩容，数据库和 HourlyClassification 共用同一份。
+ * 
+ * 另外维护加班工时的前缀和，任意时间段的加班工时是两次二分加一次减法，
+ * 算薪时不用逐张卡片累加。
+ * 
+ * @author jiangyp
+ *
+ */
+public class TimeCardStore {
+
+	/** 每天的正常工时，超出部分算加班 */
+	public static final double REGULAR_HOURS = 8;
+
+	private static final int FIRST_CHUNK = 8;
+
+	/** 没有卡片的员工共用空数组，第一次录入时才分配 */
+	private static final int[] NO_DAYS = {};
+	private static final double[] NO_HOURS = {};
+
+	private int[] days = NO_DAYS;
+	private double[] hours = NO_HOURS;
+	/** overtime[i] 为第 0..i 张卡片加班工时之和 */
+	private double[] overtime = NO_HOURS;
+	private int size;
+
+	public void add(LocalDate date, double hours) {
+		add((int) date.toEpochDay(), hours);
+	}
+
+	/**
+	 * 按 epoch day 追加，批量导入时不用生成 LocalDate
+	 */
+	public synchronized void add(int day, double hours) {
+		if (size == days.length) {
+			grow(size == 0 ? FIRST_CHUNK : size + (size >> 1));
+		}
+		// 按日期有序存放，正常按时间顺序录入时直接追加
+		int i = size;
+		if (size > 0 && days[size - 1] > day) {
+			i = upperBound(day);
+			System.arraycopy(this.days, i, this.days, i + 1, size - i);
+			System.arraycopy(this.hours, i, this.hours, i + 1, size - i);
+		}
+		this.days[i] = day;
+		this.hours[i] = hours;
+		size++;
+		// 顺序录入时只更新最后一项，插到中间时从插入点往后重算
+		for (int j = i; j < size; j++) {
+			this.overtime[j] = (j == 0 ? 0 : this.overtime[j - 1]) + Math.max(0, this.hours[j] - REGULAR_HOURS);
+		}
+	}
+
+	public void add(TimeCard timeCard) {
+		add(timeCard.getEpochDay(), timeCard.getHours());
+	}
+
+	/**
+	 * 批量追加，只加一次锁、只扩容一次
+	 */
+	public synchronized void addAll(List<TimeCard> timeCards) {
+		if (size + timeCards.size() > days.length) {
+			grow(Math.max(size + timeCards.size(), size + (size >> 1)));
+		}
+		for (TimeCard timeCard : timeCards) {
+			add(timeCard.getEpochDay(), timeCard.getHours());
+		}
+	}
+
+	/**
+	 * 批量追加 days、hours 的前 count 项
+	 */
+	public synchronized void addAll(int[] days, double[] hours, int count) {
+		if (size + count > this.days.length) {
+			grow(Math.max(size + count, size + (size >> 1)));
+		}
+		for (int i = 0; i < count; i++) {
+			add(days[i], hours[i]);
+		}
+	}
+
+	private void grow(int capacity) {
+		this.days = Arrays.copyOf(this.days, capacity);
+		this.hours = Arrays.copyOf(this.hours, capacity);
+		this.overtime = Arrays.copyOf(this.overtime, capacity);
+	}
+
+	/**
+	 * 删掉日期早于 epochDay 的卡片，数组按剩下的卡片数重新分配，返回删掉的张数
+	 */
+	public synchronized int removeBefore(int epochDay) {
+		int n = lowerBound(epochDay);
+		if (n == 0) {
+			return 0;
+		}
+		int remaining = size - n;
+		double removedOvertime = overtime[n - 1];
+		this.days = remaining == 0 ? NO_DAYS : Arrays.copyOfRange(this.days, n, size);
+		this.hours = remaining == 0 ? NO_HOURS : Arrays.copyOfRange(this.hours, n, size);
+		double[] rest = remaining == 0 ? NO_HOURS : Arrays.copyOfRange(this.overtime, n, size);
+		for (int i = 0; i < remaining; i++) {
+			rest[i] -= removedOvertime;
+		}
+		this.overtime = rest;
+		size = remaining;
+		return n;
+	}
+
+	public synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * 第 i 张卡片的日期（epoch day），调用方遍历时需要对本对象加锁
+	 */
+	public int getEpochDay(int i) {
+		return days[i];
+	}
+
+	/**
+	 * 第 i 张卡片的工时，调用方遍历时需要对本对象加锁
+	 */
+	public double getHours(int i) {
+		return hours[i];
+	}
+
+	/**
+	 * 第 from 到 to - 1 张卡片的加班工时之和，调用方需要对本对象加锁
+	 */
+	public double sumOvertime(int from, int to) {
+		if (from >= to) {
+			return 0;
+		}
+		return overtime[to - 1] - (from == 0 ? 0 : overtime[from - 1]);
+	}
+
+	/**
+	 * 第一张日期不早于 epochDay 的卡片位置，调用方需要对本对象加锁
+	 */
+	public int lowerBound(long epochDay) {
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (days[mid] < epochDay) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * 第一张日期晚于 epochDay 的卡片位置，调用方需要对本对象加锁
+	 */
+	public int upperBound(long epochDay) {
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (days[mid] > epochDay) {
+				high = mid;
+			} else {
+				low = mid + 1;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * 按需生成 TimeCard 对象，供查询接口使用
+	 */
+	public synchronized List<TimeCard> toList() {
+		return toList(0, size);
+	}
+
+	/**
+	 * 日期在 [from, to] 之间（包含两端）的卡片
+	 */
+	public synchronized List<TimeCard> toList(LocalDate from, LocalDate to) {
+		int start = lowerBound(from.toEpochDay());
+		return toList(start, Math.max(start, upperBound(to.toEpochDay())));
+	}
+
+	private List<TimeCard> toList(int start, int end) {
+		List<TimeCard> timeCards = new ArrayList<>(end - start);
+		for (int i = start; i < end; i++) {
+			timeCards.add(new TimeCard(LocalDate.ofEpochDay(days[i]), hours[i]));
+		}
+		return timeCards;
+	}
+
+	@Override
+	public String toString() {
+		return toList().toString();
+	}
+}
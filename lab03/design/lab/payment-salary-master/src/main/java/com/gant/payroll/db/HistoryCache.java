@@ -0,0 +1,211 @@
+package com.gant.payroll.db;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.gant.payroll.affiliation.ServiceChange;
+import com.gant.payroll.classification.SalesReceipt;
+import com.gant.payroll.classification.TimeCard;
+
+/**
+ * 懒加载模式下的明细缓存
+ * 
+ * 懒加载的支付策略、会员关系不再持有全部明细，算薪时按账期从 {@link PayrollDatabase} 查询，
+ * 耗时只与本期的明细数有关，与入职多久无关。查询结果按员工（会员）缓存最近用过的几个账期，
+ * 总数有上限，超出时淘汰最久没用过的员工；数据库录入明细时清掉对应员工的缓存。
+ * 
+ * 查询数据库在锁外进行，一个员工加载明细时不挡住其他员工的命中和失效。每个员工的缓存带一个版本号，
+ * 失效时加一；加载完成后版本没变才放进缓存，加载期间录入的明细不会被旧结果盖掉。
+ * 
+ * @author jiangyp
+ *
+ */
+public class HistoryCache {
+
+	public static final int DEFAULT_CAPACITY = 1024;
+	/** 每个员工最多缓存的账期数，通常只有本期和上期 */
+	private static final int RANGES_PER_KEY = 4;
+
+	private final PayrollDatabase payrollDatabase;
+	private final LinkedHashMap<Key, Ranges> entries;
+	private long hits;
+	private long misses;
+
+	public HistoryCache(PayrollDatabase payrollDatabase) {
+		this(payrollDatabase, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * 最多缓存 capacity 个员工（会员）的明细
+	 */
+	public HistoryCache(PayrollDatabase payrollDatabase, int capacity) {
+		this.payrollDatabase = payrollDatabase;
+		this.entries = new LinkedHashMap<Key, Ranges>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, Ranges> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * 日期在 (start, end) 之间的时间卡片，start、end 为 epoch day
+	 */
+	public List<TimeCard> findTimeCards(String empId, long start, long end) {
+		return find(Kind.TIME_CARD, empId, start, end, (from, to) -> payrollDatabase.findTimeCards(empId, from, to));
+	}
+
+	/**
+	 * 日期在 (start, end) 之间的销售凭条，start、end 为 epoch day
+	 */
+	public List<SalesReceipt> findSalesReceipts(String empId, long start, long end) {
+		return find(Kind.SALES_RECEIPT, empId, start, end, (from, to) -> payrollDatabase.findSalesReceipts(empId, from, to));
+	}
+
+	/**
+	 * 日期在 (start, end) 之间的服务费，start、end 为 epoch day
+	 */
+	public List<ServiceChange> findServiceChanges(String memberId, long start, long end) {
+		return find(Kind.SERVICE_CHANGE, memberId, start, end, (from, to) -> payrollDatabase.findServiceChange(memberId, from, to));
+	}
+
+	public void invalidateTimeCards(String empId) {
+		invalidate(new Key(Kind.TIME_CARD, empId));
+	}
+
+	public void invalidateSalesReceipts(String empId) {
+		invalidate(new Key(Kind.SALES_RECEIPT, empId));
+	}
+
+	public void invalidateServiceChanges(String memberId) {
+		invalidate(new Key(Kind.SERVICE_CHANGE, memberId));
+	}
+
+	/**
+	 * 清空缓存；正在进行的加载结果不会再放进来
+	 */
+	public synchronized void clear() {
+		for (Ranges ranges : entries.values()) {
+			ranges.version++;
+		}
+		entries.clear();
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * 员工的缓存被移除时顺便作废，正在锁外加载的线程据此放弃写回
+	 */
+	private synchronized void invalidate(Key key) {
+		Ranges ranges = entries.remove(key);
+		if (ranges != null) {
+			ranges.version++;
+		}
+	}
+
+	/**
+	 * 命中时直接返回；没命中时在锁外加载，写回前确认这个员工的缓存没被移除、没有失效过
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> List<T> find(Kind kind, String id, long start, long end, Loader<T> loader) {
+		Key key = new Key(kind, id);
+		Ranges ranges;
+		long version;
+		synchronized (this) {
+			ranges = entries.get(key);
+			if (ranges == null) {
+				ranges = new Ranges();
+				entries.put(key, ranges);
+			}
+			List<?> cached = ranges.get(start, end);
+			if (cached != null) {
+				hits++;
+				return (List<T>) cached;
+			}
+			misses++;
+			version = ranges.version;
+		}
+		List<T> loaded = end - start <= 1 ? null : loader.load(LocalDate.ofEpochDay(start + 1), LocalDate.ofEpochDay(end - 1));
+		List<T> list = loaded == null ? Collections.emptyList() : Collections.unmodifiableList(loaded);
+		synchronized (this) {
+			// 加载期间被失效或被淘汰过，结果可能是旧的，这次只返回不缓存
+			if (ranges.version == version && entries.get(key) == ranges) {
+				ranges.put(start, end, list);
+			}
+		}
+		return list;
+	}
+
+	private interface Loader<T> {
+		/**
+		 * 查询日期在 [from, to] 之间（包含两端）的明细
+		 */
+		List<T> load(LocalDate from, LocalDate to);
+	}
+
+	private enum Kind {
+		TIME_CARD, SALES_RECEIPT, SERVICE_CHANGE
+	}
+
+	private static final class Key {
+		final Kind kind;
+		final String id;
+
+		Key(Kind kind, String id) {
+			this.kind = kind;
+			this.id = id;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return kind == other.kind && id.equals(other.id);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * kind.hashCode() + id.hashCode();
+		}
+	}
+
+	/**
+	 * 一个员工最近用过的几个账期，按槽位轮换覆盖；version 在失效时加一
+	 */
+	private static final class Ranges {
+		long version;
+		final long[] starts = new long[RANGES_PER_KEY];
+		final long[] ends = new long[RANGES_PER_KEY];
+		final List<?>[] lists = new List<?>[RANGES_PER_KEY];
+		int next;
+
+		List<?> get(long start, long end) {
+			for (int i = 0; i < RANGES_PER_KEY; i++) {
+				if (lists[i] != null && starts[i] == start && ends[i] == end) {
+					return lists[i];
+				}
+			}
+			return null;
+		}
+
+		void put(long start, long end, List<?> list) {
+			starts[next] = start;
+			ends[next] = end;
+			lists[next] = list;
+			next = (next + 1) % RANGES_PER_KEY;
+		}
+	}
+}
@@ -1,13 +1,20 @@
 package com.gant.payroll.db;
 
+import java.time.LocalDate;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 import com.gant.payroll.affiliation.ServiceChange;
+import com.gant.payroll.affiliation.UnionAffiliation;
 import com.gant.payroll.classification.SalesReceipt;
 import com.gant.payroll.classification.TimeCard;
 import com.gant.payroll.domain.Affiliation;
 import com.gant.payroll.domain.Employee;
 import com.gant.payroll.domain.Paycheck;
+import com.gant.payroll.domain.PaycheckBatch;
+import com.gant.payroll.domain.PaymentSchedule;
 
 /**
  * 模拟与数据库交互接口
@@ -19,33 +26,142 @@ public interface PayrollDatabase {
 
 	void addEmployee(String empId, Employee emp);
 
+	/**
+	 * 懒加载模式下的明细缓存，没有开启懒加载时为 null
+	 */
+	HistoryCache getHistoryCache();
+
+	/**
+	 * 是否可以被多个线程同时写入；默认的单例数据库用的是普通的 HashMap、ArrayList，只能单线程写
+	 */
+	boolean isConcurrent();
+
 	Employee findEmployee(String empId);
 
 	List<Employee> findAllEmpByInit();
 
 	List<Employee> findAllEmp();
 
+	/**
+	 * 逐个遍历员工，不复制整个员工列表；支持并行流拆分
+	 */
+	Stream<Employee> streamAllEmp();
+
+	/**
+	 * 查询 date 当天要发薪的员工，只遍历当天到期的支付计划分组
+	 */
+	List<Employee> findEmpByPayDay(LocalDate date);
+
+	/**
+	 * 逐个遍历 date 当天要发薪的员工，不生成中间列表
+	 */
+	Stream<Employee> streamEmpByPayDay(LocalDate date);
+
+	/**
+	 * 修改员工的支付计划，同时更新按支付计划分组的索引
+	 */
+	void changeSchedule(String empId, PaymentSchedule schedule);
+
+	/**
+	 * 一个会员编号对应一个会员，只有一个会费关系；再次登记时替换原来的，原来的会费关系也从会员索引里去掉
+	 */
 	void addAffiliation(String memberId, Affiliation affiliation);
 
 	Affiliation findAffiliation(String memberId);
 
 	void addTimeCard(String empId, TimeCard timeCard);
 
+	/**
+	 * 批量增加同一个员工的时间卡片
+	 */
+	void addTimeCards(String empId, List<TimeCard> timeCards);
+
+	/**
+	 * 批量增加同一个员工的时间卡片，日期为 epoch day，取数组的前 count 项
+	 */
+	void addTimeCards(String empId, int[] epochDays, double[] hours, int count);
+
 	List<TimeCard> findTimeCards(String empId);
 
+	/**
+	 * 查询日期在 [from, to] 之间（包含两端）的时间卡片
+	 */
+	List<TimeCard> findTimeCards(String empId, LocalDate from, LocalDate to);
+
 	void addSalesReceipt(String empId, SalesReceipt salesReceipt);
 
+	/**
+	 * 批量增加同一个员工的销售凭条
+	 */
+	void addSalesReceipts(String empId, List<SalesReceipt> salesReceipts);
+
 	List<SalesReceipt> findSalesReceipts(String empId);
 
+	/**
+	 * 查询日期在 [from, to] 之间（包含两端）的销售凭条
+	 */
+	List<SalesReceipt> findSalesReceipts(String empId, LocalDate from, LocalDate to);
+
 	void addMember(String memberId, Employee emp);
 
 	List<Employee> findMembers(String memberId);
 
+	/**
+	 * 会员 memberId 的工会会费关系，没有时返回 null
+	 */
+	UnionAffiliation findUnionAffiliation(String memberId);
+
+	/**
+	 * 给会员 memberId 记一批服务费：先存进数据库，再记到会员的工会会费关系上；
+	 * 会员没有工会会费关系时只存数据库，返回 false
+	 */
+	boolean applyServiceChanges(String memberId, List<ServiceChange> serviceChanges);
+
+	/**
+	 * 给一批会员记同样的服务费，例如全工会统一收取：逐个会员按 {@link #applyServiceChanges(String, List)} 记账，
+	 * 整批只同步一次日志；返回记到了工会会费关系上的会员数
+	 */
+	int applyServiceChanges(Collection<String> memberIds, List<ServiceChange> serviceChanges);
+
 	void savePaycheck(Paycheck paycheck);
 
+	/**
+	 * 批量保存支付记录，按列表顺序写入
+	 */
+	void savePaychecks(List<Paycheck> paychecks);
+
+	/**
+	 * 按列批量保存支付记录，按行顺序写入，不生成 Paycheck 对象
+	 */
+	void savePaychecks(PaycheckBatch paychecks);
+
+	/**
+	 * 查询时按需生成 Paycheck，返回新列表；没有支付记录时返回 null
+	 */
 	List<Paycheck> findPaychecks(String empId);
 
+	/**
+	 * 发薪日在 [from, to] 之间（包含两端）的支付记录：第 i 位表示 from 之后第 i 天有支付记录。
+	 * 只读这段时间的数据，不生成 Paycheck，归档里发薪日不在范围内的数据块不解压
+	 */
+	BitSet findPaidDays(String empId, LocalDate from, LocalDate to);
+
 	void addServiceChange(String memberId, ServiceChange serviceChange);
 
+	/**
+	 * 批量增加同一个会员的服务费
+	 */
+	void addServiceChanges(String memberId, List<ServiceChange> serviceChanges);
+
 	List<ServiceChange> findServiceChange(String memberId);
+
+	/**
+	 * 查询日期在 [from, to] 之间（包含两端）的服务费
+	 */
+	List<ServiceChange> findServiceChange(String memberId, LocalDate from, LocalDate to);
+
+	/**
+	 * 批量执行 work，期间的修改只在最后提交（落盘）一次
+	 */
+	void batch(Runnable work);
 }
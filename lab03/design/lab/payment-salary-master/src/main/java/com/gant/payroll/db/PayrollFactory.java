@@ -8,5 +8,15 @@ package com.gant.payroll.db;
  */
 public interface PayrollFactory {
 
-	void createEmployee();
+	/**
+	 * 把初始数据写入 payrollDatabase
+	 */
+	void createEmployee(PayrollDatabase payrollDatabase);
+
+	/**
+	 * 预计加载的员工数，用于初始化时预先分配容量
+	 */
+	default int estimatedSize() {
+		return 16;
+	}
 }
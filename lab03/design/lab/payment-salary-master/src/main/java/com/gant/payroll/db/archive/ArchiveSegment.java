@@ -0,0 +1,507 @@
+package com.gant.payroll.db.archive;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import com.gant.payroll.affiliation.ServiceChange;
+import com.gant.payroll.classification.SalesReceipt;
+import com.gant.payroll.classification.TimeCard;
+import com.gant.payroll.domain.Paycheck;
+
+/**
+ * 归档段：一次归档生成的只读文件
+ * 
+ * 文件格式为 [头][数据块...][索引][尾]。每个员工（会员）的一类明细是一个数据块，按日期顺序编码后用 Deflate 压缩：
+ * 日期存与上一条的差值（zigzag varint，通常只占 1 个字节），金额、工时能精确表示成百分之一时存 varint，否则原样存 8 字节的 double。
+ * 索引记录每个数据块的位置和日期范围，打开时读进内存，查询时只读取并解压日期范围有交集的块。
+ * 
+ * 文件先写到临时文件，落盘后改名，改名之后内容不再修改。
+ * 
+ * @author jiangyp
+ *
+ */
+public class ArchiveSegment implements Closeable {
+
+	static final String SUFFIX = ".seg";
+	static final String TMP_SUFFIX = ".seg.tmp";
+
+	private static final int MAGIC = 0x50415941;
+	private static final byte VERSION = 1;
+	private static final int HEADER_SIZE = 17;
+	private static final int FOOTER_SIZE = 16;
+
+	static final byte TIME_CARD = 0;
+	static final byte SALES_RECEIPT = 1;
+	static final byte SERVICE_CHANGE = 2;
+	static final byte PAYCHECK = 3;
+	private static final int KINDS = 4;
+
+	/** 能精确表示成百分之一的数值存 varint，最低位为 0；否则最低位为 1，后面跟 8 字节的 double */
+	private static final int EXACT = 0;
+	private static final int RAW = 1;
+
+	private final long seq;
+	private final int cutoffDay;
+	private final FileChannel channel;
+	/** 按明细类别分开的索引，下标是类别，查询时不用拼接 key */
+	private final List<Map<String, Block>> index = new ArrayList<>(KINDS);
+
+	private ArchiveSegment(long seq, int cutoffDay, FileChannel channel) {
+		this.seq = seq;
+		this.cutoffDay = cutoffDay;
+		this.channel = channel;
+		for (int i = 0; i < KINDS; i++) {
+			index.add(new HashMap<>());
+		}
+	}
+
+	/**
+	 * 打开已经写好的段文件，读入索引
+	 */
+	public static ArchiveSegment open(Path path) throws IOException {
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+		try {
+			ByteBuffer header = read(channel, 0, HEADER_SIZE);
+			if (header.getInt() != MAGIC || header.get() != VERSION) {
+				throw new IOException("不是归档段文件: " + path);
+			}
+			ArchiveSegment segment = new ArchiveSegment(header.getLong(), header.getInt(), channel);
+			ByteBuffer footer = read(channel, channel.size() - FOOTER_SIZE, FOOTER_SIZE);
+			long indexOffset = footer.getLong();
+			int indexLength = footer.getInt();
+			if (footer.getInt() != MAGIC) {
+				throw new IOException("归档段不完整: " + path);
+			}
+			ByteBuffer buf = read(channel, indexOffset, indexLength);
+			int blocks = buf.getInt();
+			for (int i = 0; i < blocks; i++) {
+				byte kind = buf.get();
+				byte[] id = new byte[buf.getShort()];
+				buf.get(id);
+				Block block = new Block(buf.getInt(), buf.getInt(), buf.getInt(), buf.getLong(), buf.getInt(), buf.getInt());
+				segment.index.get(kind).put(new String(id, StandardCharsets.UTF_8), block);
+			}
+			return segment;
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	public long getSeq() {
+		return seq;
+	}
+
+	/**
+	 * 归档时的截止日期（epoch day），段里的明细都早于这一天
+	 */
+	public int getCutoffDay() {
+		return cutoffDay;
+	}
+
+	/**
+	 * 段里有时间卡片的员工编号；从内存里删数据时只删这些员工的，不按当时的支付策略重新判断
+	 */
+	public Set<String> getTimeCardIds() {
+		return Collections.unmodifiableSet(index.get(TIME_CARD).keySet());
+	}
+
+	public Set<String> getSalesReceiptIds() {
+		return Collections.unmodifiableSet(index.get(SALES_RECEIPT).keySet());
+	}
+
+	public Set<String> getServiceChangeIds() {
+		return Collections.unmodifiableSet(index.get(SERVICE_CHANGE).keySet());
+	}
+
+	public Set<String> getPaycheckIds() {
+		return Collections.unmodifiableSet(index.get(PAYCHECK).keySet());
+	}
+
+	/**
+	 * 日期在 [from, to] 之间的时间卡片，追加到 out 末尾
+	 */
+	void findTimeCards(String empId, long from, long to, List<TimeCard> out) {
+		BlockReader reader = reader(TIME_CARD, empId, from, to);
+		int day = 0;
+		for (int i = 0; reader != null && i < reader.count; i++) {
+			day += (int) reader.zigzag();
+			double hours = reader.value();
+			if (day >= from && day <= to) {
+				out.add(new TimeCard(LocalDate.ofEpochDay(day), hours));
+			}
+		}
+	}
+
+	void findSalesReceipts(String empId, long from, long to, List<SalesReceipt> out) {
+		BlockReader reader = reader(SALES_RECEIPT, empId, from, to);
+		int day = 0;
+		for (int i = 0; reader != null && i < reader.count; i++) {
+			day += (int) reader.zigzag();
+			double amount = reader.value();
+			if (day >= from && day <= to) {
+				out.add(new SalesReceipt(LocalDate.ofEpochDay(day), amount));
+			}
+		}
+	}
+
+	void findServiceChanges(String memberId, long from, long to, List<ServiceChange> out) {
+		BlockReader reader = reader(SERVICE_CHANGE, memberId, from, to);
+		int day = 0;
+		for (int i = 0; reader != null && i < reader.count; i++) {
+			day += (int) reader.zigzag();
+			double amount = reader.value();
+			if (day >= from && day <= to) {
+				out.add(new ServiceChange(LocalDate.ofEpochDay(day), amount));
+			}
+		}
+	}
+
+	/**
+	 * 按归档时的顺序追加全部支付记录
+	 */
+	void findPaychecks(String empId, List<Paycheck> out) {
+		BlockReader reader = reader(PAYCHECK, empId, Long.MIN_VALUE, Long.MAX_VALUE);
+		int start = 0;
+		for (int i = 0; reader != null && i < reader.count; i++) {
+			start += (int) reader.zigzag();
+			int end = start + (int) reader.varint();
+			Paycheck pc = new Paycheck(LocalDate.ofEpochDay(start), LocalDate.ofEpochDay(end));
+			pc.setGrossPayCents(reader.zigzag());
+			pc.setDeductionsCents(reader.zigzag());
+			pc.setNetPayCents(reader.zigzag());
+			pc.setEmpId(empId);
+			out.add(pc);
+		}
+	}
+
+	/**
+	 * 发薪日在 [from, to] 之间的支付记录，在 out 的第（发薪日 - from）位置位；发薪日范围不相交的数据块不解压
+	 */
+	void markPaycheckEndDays(String empId, int from, int to, BitSet out) {
+		BlockReader reader = reader(PAYCHECK, empId, from, to);
+		int start = 0;
+		for (int i = 0; reader != null && i < reader.count; i++) {
+			start += (int) reader.zigzag();
+			int end = start + (int) reader.varint();
+			reader.zigzag();
+			reader.zigzag();
+			reader.zigzag();
+			if (end >= from && end <= to) {
+				out.set(end - from);
+			}
+		}
+	}
+
+	/**
+	 * 日期范围有交集时读出并解压数据块，否则返回 null
+	 */
+	private BlockReader reader(byte kind, String id, long from, long to) {
+		Block block = index.get(kind).get(id);
+		if (block == null || block.maxDay < from || block.minDay > to) {
+			return null;
+		}
+		Inflater inflater = new Inflater();
+		try {
+			ByteBuffer compressed = read(channel, block.offset, block.length);
+			inflater.setInput(compressed.array(), 0, block.length);
+			byte[] raw = new byte[block.rawLength];
+			int n = 0;
+			while (n < raw.length && !inflater.finished()) {
+				n += inflater.inflate(raw, n, raw.length - n);
+			}
+			return new BlockReader(raw, block.count);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} catch (DataFormatException e) {
+			throw new IllegalStateException("归档段数据损坏: 第 " + seq + " 段", e);
+		} finally {
+			inflater.end();
+		}
+	}
+
+	@Override
+	public void close() {
+		try {
+			channel.close();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+		ByteBuffer buf = ByteBuffer.allocate(length);
+		while (buf.hasRemaining()) {
+			if (channel.read(buf, position + buf.position()) < 0) {
+				throw new IOException("归档段长度不足");
+			}
+		}
+		buf.flip();
+		return buf;
+	}
+
+	private static final class Block {
+		final int minDay;
+		final int maxDay;
+		final int count;
+		final long offset;
+		final int length;
+		final int rawLength;
+
+		Block(int minDay, int maxDay, int count, long offset, int length, int rawLength) {
+			this.minDay = minDay;
+			this.maxDay = maxDay;
+			this.count = count;
+			this.offset = offset;
+			this.length = length;
+			this.rawLength = rawLength;
+		}
+	}
+
+	/**
+	 * 逐块写段文件，每个数据块写完就压缩落到临时文件，内存里只留索引
+	 */
+	public static class Writer {
+
+		private final Path tmp;
+		private final Path target;
+		private final FileChannel channel;
+		private final Deflater deflater = new Deflater();
+		private final BlockBuffer block = new BlockBuffer();
+		private final BlockBuffer indexBuffer = new BlockBuffer();
+		private byte[] compressed = new byte[4096];
+		private int blocks;
+		private long position;
+
+		Writer(Path dir, long seq, int cutoffDay) throws IOException {
+			this.tmp = dir.resolve(String.format("%020d%s", seq, TMP_SUFFIX));
+			this.target = dir.resolve(String.format("%020d%s", seq, SUFFIX));
+			this.channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(MAGIC).put(VERSION).putLong(seq).putInt(cutoffDay).flip();
+			write(header);
+		}
+
+		/**
+		 * 同一个员工的时间卡片，按日期顺序
+		 */
+		public void addTimeCards(String empId, List<TimeCard> timeCards) throws IOException {
+			int day = 0;
+			for (TimeCard timeCard : timeCards) {
+				block.putZigzag(timeCard.getEpochDay() - day);
+				block.putValue(timeCard.getHours());
+				day = timeCard.getEpochDay();
+			}
+			finishBlock(TIME_CARD, empId, timeCards.size(), timeCards.get(0).getEpochDay(), day);
+		}
+
+		public void addSalesReceipts(String empId, List<SalesReceipt> salesReceipts) throws IOException {
+			int day = 0;
+			for (SalesReceipt salesReceipt : salesReceipts) {
+				block.putZigzag(salesReceipt.getEpochDay() - day);
+				block.putValue(salesReceipt.getAmount());
+				day = salesReceipt.getEpochDay();
+			}
+			finishBlock(SALES_RECEIPT, empId, salesReceipts.size(), salesReceipts.get(0).getEpochDay(), day);
+		}
+
+		public void addServiceChanges(String memberId, List<ServiceChange> serviceChanges) throws IOException {
+			int day = 0;
+			for (ServiceChange serviceChange : serviceChanges) {
+				block.putZigzag(serviceChange.getEpochDay() - day);
+				block.putValue(serviceChange.getAmout());
+				day = serviceChange.getEpochDay();
+			}
+			finishBlock(SERVICE_CHANGE, memberId, serviceChanges.size(), serviceChanges.get(0).getEpochDay(), day);
+		}
+
+		/**
+		 * 同一个员工的支付记录，保持原来的顺序；索引里的日期范围按发薪日计
+		 */
+		public void addPaychecks(String empId, List<Paycheck> paychecks) throws IOException {
+			int start = 0;
+			int minDay = Integer.MAX_VALUE;
+			int maxDay = Integer.MIN_VALUE;
+			for (Paycheck pc : paychecks) {
+				block.putZigzag(pc.getPayPeriodStartDay() - start);
+				block.putVarint(pc.getPayPeriodEndDay() - pc.getPayPeriodStartDay());
+				block.putZigzag(pc.getGrossPayCents());
+				block.putZigzag(pc.getDeductionsCents());
+				block.putZigzag(pc.getNetPayCents());
+				start = pc.getPayPeriodStartDay();
+				minDay = Math.min(minDay, pc.getPayPeriodEndDay());
+				maxDay = Math.max(maxDay, pc.getPayPeriodEndDay());
+			}
+			finishBlock(PAYCHECK, empId, paychecks.size(), minDay, maxDay);
+		}
+
+		public boolean isEmpty() {
+			return blocks == 0;
+		}
+
+		/**
+		 * 写索引和文件尾，落盘后改成正式文件名并打开
+		 */
+		public ArchiveSegment finish() throws IOException {
+			BlockBuffer out = new BlockBuffer();
+			out.ensure(4 + indexBuffer.size);
+			ByteBuffer buf = ByteBuffer.wrap(out.bytes, 0, 4 + indexBuffer.size);
+			buf.putInt(blocks).put(indexBuffer.bytes, 0, indexBuffer.size).flip();
+			long indexOffset = position;
+			int indexLength = buf.remaining();
+			write(buf);
+			ByteBuffer footer = ByteBuffer.allocate(FOOTER_SIZE);
+			footer.putLong(indexOffset).putInt(indexLength).putInt(MAGIC).flip();
+			write(footer);
+			channel.force(true);
+			channel.close();
+			deflater.end();
+			Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+			return open(target);
+		}
+
+		/**
+		 * 放弃写入，删除临时文件
+		 */
+		public void abort() {
+			deflater.end();
+			try {
+				channel.close();
+				Files.deleteIfExists(tmp);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		private void finishBlock(byte kind, String id, int count, int minDay, int maxDay) throws IOException {
+			deflater.reset();
+			deflater.setInput(block.bytes, 0, block.size);
+			deflater.finish();
+			int length = 0;
+			while (!deflater.finished()) {
+				if (length == compressed.length) {
+					compressed = Arrays.copyOf(compressed, compressed.length * 2);
+				}
+				length += deflater.deflate(compressed, length, compressed.length - length);
+			}
+			long offset = position;
+			write(ByteBuffer.wrap(compressed, 0, length));
+
+			byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+			indexBuffer.ensure(indexBuffer.size + 1 + 2 + idBytes.length + 4 * 3 + 8 + 4 * 2);
+			ByteBuffer entry = ByteBuffer.wrap(indexBuffer.bytes, indexBuffer.size, indexBuffer.bytes.length - indexBuffer.size);
+			entry.put(kind).putShort((short) idBytes.length).put(idBytes);
+			entry.putInt(minDay).putInt(maxDay).putInt(count).putLong(offset).putInt(length).putInt(block.size);
+			indexBuffer.size = entry.position();
+			block.size = 0;
+			blocks++;
+		}
+
+		private void write(ByteBuffer buf) throws IOException {
+			while (buf.hasRemaining()) {
+				position += channel.write(buf);
+			}
+		}
+	}
+
+	/**
+	 * 可增长的字节数组，写 varint 用
+	 */
+	private static final class BlockBuffer {
+		byte[] bytes = new byte[256];
+		int size;
+
+		void ensure(int capacity) {
+			if (capacity > bytes.length) {
+				bytes = Arrays.copyOf(bytes, Math.max(capacity, bytes.length * 2));
+			}
+		}
+
+		void putVarint(long value) {
+			ensure(size + 10);
+			while ((value & ~0x7FL) != 0) {
+				bytes[size++] = (byte) (value & 0x7F | 0x80);
+				value >>>= 7;
+			}
+			bytes[size++] = (byte) value;
+		}
+
+		void putZigzag(long value) {
+			putVarint(value << 1 ^ value >> 63);
+		}
+
+		void putValue(double value) {
+			long hundredths = Math.round(value * 100);
+			if (hundredths / 100.0 == value && Math.abs(hundredths) < 1L << 60) {
+				putVarint((hundredths << 1 ^ hundredths >> 63) << 1 | EXACT);
+			} else {
+				putVarint(RAW);
+				long bits = Double.doubleToRawLongBits(value);
+				ensure(size + 8);
+				for (int i = 0; i < 8; i++) {
+					bytes[size++] = (byte) (bits >>> 8 * i);
+				}
+			}
+		}
+	}
+
+	private static final class BlockReader {
+		final byte[] bytes;
+		final int count;
+		int position;
+
+		BlockReader(byte[] bytes, int count) {
+			this.bytes = bytes;
+			this.count = count;
+		}
+
+		long varint() {
+			long value = 0;
+			for (int shift = 0;; shift += 7) {
+				byte b = bytes[position++];
+				value |= (long) (b & 0x7F) << shift;
+				if (b >= 0) {
+					return value;
+				}
+			}
+		}
+
+		long zigzag() {
+			long value = varint();
+			return value >>> 1 ^ -(value & 1);
+		}
+
+		double value() {
+			long tagged = varint();
+			if ((tagged & 1) == EXACT) {
+				long zigzag = tagged >>> 1;
+				return (zigzag >>> 1 ^ -(zigzag & 1)) / 100.0;
+			}
+			long bits = 0;
+			for (int i = 0; i < 8; i++) {
+				bits |= (bytes[position++] & 0xFFL) << 8 * i;
+			}
+			return Double.longBitsToDouble(bits);
+		}
+	}
+}
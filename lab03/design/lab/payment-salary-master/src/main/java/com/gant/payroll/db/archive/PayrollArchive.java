@@ -0,0 +1,177 @@
+package com.gant.payroll.db.archive;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.gant.payroll.affiliation.ServiceChange;
+import com.gant.payroll.classification.SalesReceipt;
+import com.gant.payroll.classification.TimeCard;
+import com.gant.payroll.domain.Paycheck;
+
+/**
+ * 归档层：已经结账的明细和支付记录
+ * 
+ * 由目录下若干 {@link ArchiveSegment} 组成，每次归档追加一段，段文件名是归档序号。
+ * 数据库把早于截止日期的数据写成新段后从内存里删掉，查询时把各段里的结果和内存里的合在一起，
+ * 懒加载模式下堆上只剩还没结账的数据和每段的索引；非懒加载的员工自己持有的明细不受归档影响，所以归档要求开启懒加载。
+ * 
+ * 新段加入和内存删除要在写锁内一起完成，查询在读锁内同时读内存和段，不会看到重复或缺失的数据。
+ * 录入明细和保存支付记录持有录入锁的读锁；归档从取数据到删内存全程持有它的写锁，
+ * 归档期间的写入要等归档结束，删掉的正好是写进段里的数据。
+ * 
+ * @author jiangyp
+ *
+ */
+public class PayrollArchive implements Closeable {
+
+	private final Path dir;
+	private final List<ArchiveSegment> segments = new CopyOnWriteArrayList<>();
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private final ReadWriteLock ingestLock = new ReentrantReadWriteLock();
+	private long nextSeq;
+
+	public PayrollArchive(Path dir) throws IOException {
+		this.dir = dir;
+		Files.createDirectories(dir);
+		List<Path> files = new ArrayList<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*" + ArchiveSegment.SUFFIX + "*")) {
+			for (Path file : stream) {
+				files.add(file);
+			}
+		}
+		files.sort(null);
+		for (Path file : files) {
+			if (file.getFileName().toString().endsWith(ArchiveSegment.TMP_SUFFIX)) {
+				// 崩溃时没写完的段，内容还在内存（日志）里
+				Files.delete(file);
+				continue;
+			}
+			ArchiveSegment segment = ArchiveSegment.open(file);
+			segments.add(segment);
+			nextSeq = Math.max(nextSeq, segment.getSeq() + 1);
+		}
+	}
+
+	/**
+	 * 查询锁：查询持有读锁，新段加入和内存删除持有写锁
+	 */
+	public ReadWriteLock getLock() {
+		return lock;
+	}
+
+	/**
+	 * 录入锁：写入明细、支付记录持有读锁，归档全程持有写锁
+	 */
+	public ReadWriteLock getIngestLock() {
+		return ingestLock;
+	}
+
+	/**
+	 * 分配下一个归档序号
+	 */
+	public synchronized long nextSeq() {
+		return nextSeq++;
+	}
+
+	/**
+	 * 回放日志时登记已经用过的序号，之后不会再分配
+	 */
+	public synchronized void reserve(long seq) {
+		nextSeq = Math.max(nextSeq, seq + 1);
+	}
+
+	public boolean contains(long seq) {
+		return getSegment(seq) != null;
+	}
+
+	/**
+	 * 序号为 seq 的段，不存在时返回 null
+	 */
+	public ArchiveSegment getSegment(long seq) {
+		for (ArchiveSegment segment : segments) {
+			if (segment.getSeq() == seq) {
+				return segment;
+			}
+		}
+		return null;
+	}
+
+	public int getSegmentCount() {
+		return segments.size();
+	}
+
+	/**
+	 * 开始写序号为 seq 的新段，写完调用 {@link ArchiveSegment.Writer#finish()} 后再 {@link #add(ArchiveSegment)}
+	 */
+	public ArchiveSegment.Writer newWriter(long seq, int cutoffDay) throws IOException {
+		return new ArchiveSegment.Writer(dir, seq, cutoffDay);
+	}
+
+	/**
+	 * 新段加入查询，调用方需要持有写锁
+	 */
+	public void add(ArchiveSegment segment) {
+		segments.add(segment);
+	}
+
+	/**
+	 * 日期在 [from, to] 之间（包含两端，epoch day）的时间卡片，按归档顺序，没有时返回空列表
+	 */
+	public List<TimeCard> findTimeCards(String empId, long from, long to) {
+		List<TimeCard> out = new ArrayList<>();
+		for (ArchiveSegment segment : segments) {
+			segment.findTimeCards(empId, from, to, out);
+		}
+		return out;
+	}
+
+	public List<SalesReceipt> findSalesReceipts(String empId, long from, long to) {
+		List<SalesReceipt> out = new ArrayList<>();
+		for (ArchiveSegment segment : segments) {
+			segment.findSalesReceipts(empId, from, to, out);
+		}
+		return out;
+	}
+
+	public List<ServiceChange> findServiceChanges(String memberId, long from, long to) {
+		List<ServiceChange> out = new ArrayList<>();
+		for (ArchiveSegment segment : segments) {
+			segment.findServiceChanges(memberId, from, to, out);
+		}
+		return out;
+	}
+
+	public List<Paycheck> findPaychecks(String empId) {
+		List<Paycheck> out = new ArrayList<>();
+		for (ArchiveSegment segment : segments) {
+			segment.findPaychecks(empId, out);
+		}
+		return out;
+	}
+
+	/**
+	 * 发薪日在 [from, to] 之间（包含两端，epoch day）的支付记录，在 out 的第（发薪日 - from）位置位
+	 */
+	public void markPaycheckEndDays(String empId, int from, int to, BitSet out) {
+		for (ArchiveSegment segment : segments) {
+			segment.markPaycheckEndDays(empId, from, to, out);
+		}
+	}
+
+	@Override
+	public void close() {
+		for (ArchiveSegment segment : segments) {
+			segment.close();
+		}
+		segments.clear();
+	}
+}
@@ -0,0 +1,50 @@
+package com.gant.payroll.db.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.gant.payroll.affiliation.ServiceChange;
+import com.gant.payroll.classification.SalesReceipt;
+import com.gant.payroll.domain.Employee;
+
+/**
+ * 线程安全的数据库实现
+ * 
+ * 底层是 ConcurrentHashMap（按桶加锁），明细列表用 computeIfAbsent 原子创建，
+ * 每个员工（会员）的列表各自加锁，所以多线程录入不同员工的数据时基本不会互相阻塞。
+ * 查询返回的是列表快照，遍历时不会与写入线程冲突；支付记录本来就是查询时新生成的列表。
+ * 
+ * @author jiangyp
+ *
+ */
+public class ConcurrentPayrollDatabase extends PaymentDatabaseImpl {
+
+	public ConcurrentPayrollDatabase() {
+		super(Db.newConcurrentInstance());
+	}
+
+	@Override
+	public List<Employee> findMembers(String memberId) {
+		return snapshot(super.findMembers(memberId));
+	}
+
+	@Override
+	public List<SalesReceipt> findSalesReceipts(String empId) {
+		return snapshot(super.findSalesReceipts(empId));
+	}
+
+	@Override
+	public List<ServiceChange> findServiceChange(String memberId) {
+		return snapshot(super.findServiceChange(memberId));
+	}
+
+	private static <T> List<T> snapshot(List<T> list) {
+		if (list == null) {
+			return null;
+		}
+		// Collections.synchronizedList 的锁就是列表自身
+		synchronized (list) {
+			return new ArrayList<>(list);
+		}
+	}
+}
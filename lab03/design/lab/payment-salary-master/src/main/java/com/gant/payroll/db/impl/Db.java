@@ -1,15 +1,21 @@
 package com.gant.payroll.db.impl;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.gant.payroll.affiliation.ServiceChange;
+import com.gant.payroll.affiliation.UnionAffiliation;
 import com.gant.payroll.classification.SalesReceipt;
-import com.gant.payroll.classification.TimeCard;
+import com.gant.payroll.classification.TimeCardStore;
+import com.gant.payroll.db.HistoryCache;
+import com.gant.payroll.db.archive.PayrollArchive;
 import com.gant.payroll.domain.Affiliation;
 import com.gant.payroll.domain.Employee;
-import com.gant.payroll.domain.Paycheck;
+import com.gant.payroll.domain.PaymentSchedule;
 
 /**
  * 模式数据库
@@ -19,20 +25,101 @@ import com.gant.payroll.domain.Paycheck;
  */
 public class Db {
 
-	public Map<String, Employee> id2Emp = new HashMap<>();
-	public Map<String, Affiliation> memberId2Affiliation = new HashMap<>();
-	public Map<String, List<Employee>> memberId2Emps = new HashMap<>();
-	public Map<String, List<TimeCard>> empId2TimeCards = new HashMap<>();
-	public Map<String, List<SalesReceipt>> empId2SalesReceipts = new HashMap<>();
-	public Map<String, List<Paycheck>> empId2Paycheck = new HashMap<>();
-	public Map<String, List<ServiceChange>> memberId2Sc = new HashMap<>();
+	public Map<String, Employee> id2Emp;
+	public Map<String, Affiliation> memberId2Affiliation;
+	public Map<String, List<Employee>> memberId2Emps;
+	/** 会员的工会会费关系，一个会员编号只有一个，记服务费时直接按会员找到，不用遍历员工 */
+	public Map<String, UnionAffiliation> memberId2Unions;
+	public Map<String, TimeCardStore> empId2TimeCards;
+	public Map<String, List<SalesReceipt>> empId2SalesReceipts;
+	public Map<String, PaycheckStore> empId2Paycheck;
+	public Map<String, List<ServiceChange>> memberId2Sc;
+	/** 按支付计划分组的员工，发薪时只取当天要发薪的组 */
+	public Map<PaymentSchedule, Map<String, Employee>> schedule2Emps;
 
-	private static Db db = new Db();
+	/** 持久化模式下的变更日志，为 null 表示纯内存 */
+	public PayrollJournal journal;
+	/** 懒加载模式下的明细缓存，为 null 表示支付策略各自持有全部明细 */
+	public HistoryCache historyCache;
+	/** 已结账数据的归档层，为 null 表示全部数据都在内存里 */
+	public PayrollArchive archive;
 
-	private Db() {
+	private final boolean concurrent;
+	private volatile boolean initialized;
+
+	private static Db db = new Db(false);
+
+	Db(boolean concurrent) {
+		this.concurrent = concurrent;
+		this.id2Emp = newMap();
+		this.memberId2Affiliation = newMap();
+		this.memberId2Emps = newMap();
+		this.memberId2Unions = newMap();
+		this.empId2TimeCards = newMap();
+		this.empId2SalesReceipts = newMap();
+		this.empId2Paycheck = newMap();
+		this.memberId2Sc = newMap();
+		this.schedule2Emps = newMap();
 	}
 
 	public static Db newInstance() {
 		return db;
 	}
+
+	/**
+	 * 新建一个线程安全的数据库实例，不与单例共享数据
+	 */
+	public static Db newConcurrentInstance() {
+		return new Db(true);
+	}
+
+	/**
+	 * 还没初始化时执行 seed，seed 正常结束后才标记为已初始化；
+	 * 并发调用的线程等第一个线程写完再返回，seed 抛异常时下次调用会重新执行
+	 */
+	public void initialize(Runnable seed) {
+		if (initialized) {
+			return;
+		}
+		synchronized (this) {
+			if (!initialized) {
+				seed.run();
+				initialized = true;
+			}
+		}
+	}
+
+	/**
+	 * 按预计员工数重新分配空表的容量，只在单线程模式下、几张表都还是空的时候替换，否则不做处理：
+	 * 先于员工录入的明细和支付记录不会丢；并发模式下写入方不持有这把锁，替换时同时写入的数据会丢，所以不替换
+	 */
+	public synchronized void presize(int employees) {
+		if (concurrent || !id2Emp.isEmpty() || !empId2TimeCards.isEmpty() || !empId2SalesReceipts.isEmpty() || !empId2Paycheck.isEmpty()) {
+			return;
+		}
+		this.id2Emp = newMap(employees);
+		this.empId2TimeCards = newMap(employees);
+		this.empId2SalesReceipts = newMap(employees);
+		this.empId2Paycheck = newMap(employees);
+	}
+
+	public boolean isConcurrent() {
+		return concurrent;
+	}
+
+	/**
+	 * 每个员工（会员）一条明细列表，并发模式下按 key 各自加锁，不同员工之间互不阻塞
+	 */
+	public <T> List<T> newList() {
+		return concurrent ? Collections.synchronizedList(new ArrayList<>()) : new ArrayList<>();
+	}
+
+	public <K, V> Map<K, V> newMap() {
+		return concurrent ? new ConcurrentHashMap<>() : new HashMap<>();
+	}
+
+	private <K, V> Map<K, V> newMap(int expectedSize) {
+		int capacity = (int) (expectedSize / 0.75f) + 1;
+		return concurrent ? new ConcurrentHashMap<>(capacity) : new HashMap<>(capacity);
+	}
 }
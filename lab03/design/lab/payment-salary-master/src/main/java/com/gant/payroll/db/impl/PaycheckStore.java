@@ -0,0 +1,135 @@
+package com.gant.payroll.db.impl;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import com.gant.payroll.domain.Paycheck;
+import com.gant.payroll.domain.PaycheckBatch;
+
+/**
+ * 按列存储的支付记录
+ * 
+ * 一个员工的支付记录放在几个基本类型数组里：账期起止存 epoch day，金额以分为单位，
+ * 每条只占 32 个字节。发薪时直接从 {@link PaycheckBatch} 逐列追加，查询时才生成 Paycheck 对象。
+ * 
+ * @author jiangyp
+ *
+ */
+public class PaycheckStore {
+
+	private static final int FIRST_CHUNK = 4;
+
+	private static final int[] NO_DAYS = {};
+	private static final long[] NO_CENTS = {};
+
+	private int[] starts = NO_DAYS;
+	private int[] ends = NO_DAYS;
+	private long[] grossPays = NO_CENTS;
+	private long[] deductions = NO_CENTS;
+	private long[] netPays = NO_CENTS;
+	private int size;
+
+	public synchronized void add(Paycheck paycheck) {
+		add(paycheck.getPayPeriodStartDay(), paycheck.getPayPeriodEndDay(), paycheck.getGrossPayCents(), paycheck.getDeductionsCents(),
+				paycheck.getNetPayCents());
+	}
+
+	/**
+	 * 追加 batch 的第 i 行
+	 */
+	public synchronized void add(PaycheckBatch batch, int i) {
+		add(batch.getPayPeriodStartDay(i), batch.getPayPeriodEndDay(i), batch.getGrossPayCents(i), batch.getDeductionsCents(i),
+				batch.getNetPayCents(i));
+	}
+
+	private void add(int start, int end, long grossPay, long deductions, long netPay) {
+		if (size == starts.length) {
+			grow(size == 0 ? FIRST_CHUNK : size + (size >> 1));
+		}
+		this.starts[size] = start;
+		this.ends[size] = end;
+		this.grossPays[size] = grossPay;
+		this.deductions[size] = deductions;
+		this.netPays[size] = netPay;
+		size++;
+	}
+
+	private void grow(int capacity) {
+		this.starts = Arrays.copyOf(this.starts, capacity);
+		this.ends = Arrays.copyOf(this.ends, capacity);
+		this.grossPays = Arrays.copyOf(this.grossPays, capacity);
+		this.deductions = Arrays.copyOf(this.deductions, capacity);
+		this.netPays = Arrays.copyOf(this.netPays, capacity);
+	}
+
+	public synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * 按保存顺序生成 Paycheck 对象，返回的是新列表，调用方可以随意遍历
+	 */
+	public synchronized List<Paycheck> toList(String empId) {
+		return toList(empId, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * 发薪日早于 epochDay 的支付记录，按保存顺序
+	 */
+	public synchronized List<Paycheck> toList(String empId, int epochDay) {
+		List<Paycheck> paychecks = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			if (ends[i] >= epochDay) {
+				continue;
+			}
+			Paycheck pc = new Paycheck(LocalDate.ofEpochDay(starts[i]), LocalDate.ofEpochDay(ends[i]));
+			pc.setGrossPayCents(grossPays[i]);
+			pc.setDeductionsCents(deductions[i]);
+			pc.setNetPayCents(netPays[i]);
+			pc.setEmpId(empId);
+			paychecks.add(pc);
+		}
+		return paychecks;
+	}
+
+	/**
+	 * 发薪日在 [from, to] 之间的支付记录，在 out 的第（发薪日 - from）位置位，不生成 Paycheck
+	 */
+	public synchronized void markEndDays(int from, int to, BitSet out) {
+		for (int i = 0; i < size; i++) {
+			if (ends[i] >= from && ends[i] <= to) {
+				out.set(ends[i] - from);
+			}
+		}
+	}
+
+	/**
+	 * 删掉发薪日早于 epochDay 的支付记录，剩下的保持原来的顺序，数组按剩下的条数重新分配；返回删掉的条数
+	 */
+	public synchronized int removeBefore(int epochDay) {
+		int kept = 0;
+		for (int i = 0; i < size; i++) {
+			if (ends[i] >= epochDay) {
+				starts[kept] = starts[i];
+				ends[kept] = ends[i];
+				grossPays[kept] = grossPays[i];
+				deductions[kept] = deductions[i];
+				netPays[kept] = netPays[i];
+				kept++;
+			}
+		}
+		int removed = size - kept;
+		if (removed > 0) {
+			size = kept;
+			this.starts = kept == 0 ? NO_DAYS : Arrays.copyOf(this.starts, kept);
+			this.ends = kept == 0 ? NO_DAYS : Arrays.copyOf(this.ends, kept);
+			this.grossPays = kept == 0 ? NO_CENTS : Arrays.copyOf(this.grossPays, kept);
+			this.deductions = kept == 0 ? NO_CENTS : Arrays.copyOf(this.deductions, kept);
+			this.netPays = kept == 0 ? NO_CENTS : Arrays.copyOf(this.netPays, kept);
+		}
+		return removed;
+	}
+}
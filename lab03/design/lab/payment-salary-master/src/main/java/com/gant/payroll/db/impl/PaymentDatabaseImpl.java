@@ -1,25 +1,322 @@
 package com.gant.payroll.db.impl;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.stream.Stream;
 
 import com.gant.payroll.affiliation.ServiceChange;
+import com.gant.payroll.affiliation.UnionAffiliation;
+import com.gant.payroll.classification.HourlyClassification;
 import com.gant.payroll.classification.SalesReceipt;
 import com.gant.payroll.classification.TimeCard;
+import com.gant.payroll.classification.TimeCardStore;
+import com.gant.payroll.db.HistoryCache;
 import com.gant.payroll.db.PayrollDatabase;
 import com.gant.payroll.db.PayrollFactory;
+import com.gant.payroll.db.archive.ArchiveSegment;
+import com.gant.payroll.db.archive.PayrollArchive;
 import com.gant.payroll.domain.Affiliation;
 import com.gant.payroll.domain.Employee;
 import com.gant.payroll.domain.Paycheck;
+import com.gant.payroll.domain.PaycheckBatch;
+import com.gant.payroll.domain.PaymentSchedule;
+import com.gant.payroll.util.DateIndex;
 
 public class PaymentDatabaseImpl implements PayrollDatabase {
 
 	protected PayrollFactory payrollFactory = new PayrollFactoryImpl();
-	protected Db db = Db.newInstance();
+	protected Db db;
+
+	public PaymentDatabaseImpl() {
+		this(Db.newInstance());
+	}
+
+	protected PaymentDatabaseImpl(Db db) {
+		this.db = db;
+	}
+
+	/**
+	 * 开启持久化模式：先回放 dir 下已有的日志重建数据，之后的每次修改都先写日志
+	 */
+	public void openJournal(Path dir, boolean syncOnWrite) throws IOException {
+		if (db.journal != null) {
+			throw new IllegalStateException("日志已经打开");
+		}
+		PayrollJournal journal = new PayrollJournal(dir, syncOnWrite);
+		journal.replay(this);
+		db.journal = journal;
+	}
+
+	@Override
+	public void batch(Runnable work) {
+		PayrollJournal journal = db.journal;
+		if (journal == null) {
+			work.run();
+			return;
+		}
+		journal.beginBatch();
+		try {
+			work.run();
+		} finally {
+			journal.endBatch();
+		}
+	}
+
+	/**
+	 * 开启懒加载模式：之后新增的员工不再持有明细，算薪时按账期从数据库查询，前面放一个最多 capacity 个员工的缓存
+	 */
+	public HistoryCache enableLazyLoading(int capacity) {
+		if (db.historyCache == null) {
+			db.historyCache = new HistoryCache(this, capacity);
+		}
+		return db.historyCache;
+	}
+
+	@Override
+	public boolean isConcurrent() {
+		return db.isConcurrent();
+	}
+
+	@Override
+	public HistoryCache getHistoryCache() {
+		return db.historyCache;
+	}
+
+	public void closeJournal() {
+		if (db.journal != null) {
+			db.journal.close();
+			db.journal = null;
+		}
+	}
+
+	/**
+	 * 打开归档目录，已有的归档段立即可查；同时使用日志时要在 {@link #openJournal(Path, boolean)} 之前打开
+	 */
+	public void openArchive(Path dir) throws IOException {
+		if (db.archive != null) {
+			throw new IllegalStateException("归档已经打开");
+		}
+		db.archive = new PayrollArchive(dir);
+	}
+
+	public void closeArchive() {
+		if (db.archive != null) {
+			db.archive.close();
+			db.archive = null;
+		}
+	}
+
+	/**
+	 * 把日期早于 cutoff 的时间卡片、销售凭条、服务费，以及发薪日早于 cutoff 的支付记录移到一个新的归档段，返回归档序号。
+	 * 之后照常能从 find* 方法查到这些数据，只是要读盘解压。
+	 * 
+	 * 只能在懒加载模式下归档，没有 {@link #enableLazyLoading(int)} 时抛出异常。归档只删数据库里的一份，
+	 * 堆上只剩未结账数据仅对懒加载的员工成立：开启懒加载之前加入的员工，支付策略和会费关系里各自还留着全部凭条、服务费，
+	 * 小时工的卡片与支付策略共用一份，不归档也不删。重新打开回放日志前也要先开启懒加载。
+	 * 归档期间其他线程录入明细、保存支付记录会等到归档结束；不要在录入明细的同一个线程里归档
+	 */
+	public long archiveBefore(LocalDate cutoff) throws IOException {
+		PayrollArchive archive = db.archive;
+		if (archive == null) {
+			throw new IllegalStateException("没有打开归档目录");
+		}
+		if (db.historyCache == null) {
+			throw new IllegalStateException("归档需要先开启懒加载");
+		}
+		Lock ingest = archive.getIngestLock().writeLock();
+		ingest.lock();
+		try {
+			return archiveBefore(archive, (int) cutoff.toEpochDay());
+		} finally {
+			ingest.unlock();
+		}
+	}
+
+	/**
+	 * 调用方持有录入锁的写锁，内存里的数据在写段和删除之间不会变化
+	 */
+	private long archiveBefore(PayrollArchive archive, int day) throws IOException {
+		LocalDate cutoff = LocalDate.ofEpochDay(day);
+		LocalDate last = cutoff.minusDays(1);
+		long seq = archive.nextSeq();
+		if (db.journal != null) {
+			// 先记日志再写段：段没写完就崩溃时，回放发现段不存在，数据仍然留在内存里
+			db.journal.archive(seq, day);
+		}
+		ArchiveSegment segment;
+		ArchiveSegment.Writer writer = archive.newWriter(seq, day);
+		try {
+			for (Map.Entry<String, TimeCardStore> entry : db.empId2TimeCards.entrySet()) {
+				if (!isSharedTimeCards(entry.getKey(), entry.getValue())) {
+					List<TimeCard> timeCards = entry.getValue().toList(LocalDate.MIN, last);
+					if (!timeCards.isEmpty()) {
+						writer.addTimeCards(entry.getKey(), timeCards);
+					}
+				}
+			}
+			for (Map.Entry<String, List<SalesReceipt>> entry : db.empId2SalesReceipts.entrySet()) {
+				List<SalesReceipt> salesReceipts = DateIndex.range(entry.getValue(), LocalDate.MIN, last, SalesReceipt::getDate);
+				if (!salesReceipts.isEmpty()) {
+					writer.addSalesReceipts(entry.getKey(), salesReceipts);
+				}
+			}
+			for (Map.Entry<String, List<ServiceChange>> entry : db.memberId2Sc.entrySet()) {
+				List<ServiceChange> serviceChanges = DateIndex.range(entry.getValue(), LocalDate.MIN, last, ServiceChange::getDate);
+				if (!serviceChanges.isEmpty()) {
+					writer.addServiceChanges(entry.getKey(), serviceChanges);
+				}
+			}
+			for (Map.Entry<String, PaycheckStore> entry : db.empId2Paycheck.entrySet()) {
+				List<Paycheck> paychecks = entry.getValue().toList(entry.getKey(), day);
+				if (!paychecks.isEmpty()) {
+					writer.addPaychecks(entry.getKey(), paychecks);
+				}
+			}
+			segment = writer.finish();
+		} catch (IOException | RuntimeException e) {
+			writer.abort();
+			throw e;
+		}
+		Lock lock = archive.getLock().writeLock();
+		lock.lock();
+		try {
+			archive.add(segment);
+			removeBefore(segment, day);
+		} finally {
+			lock.unlock();
+		}
+		return seq;
+	}
+
+	/**
+	 * 回放日志里的归档记录：归档段已经写好时从内存里删掉段里有的数据，段不存在说明当时没有归档成功
+	 */
+	void replayArchive(long seq, int cutoffDay) {
+		if (db.archive == null) {
+			throw new IllegalStateException("日志里有归档记录，需要先打开归档目录");
+		}
+		db.archive.reserve(seq);
+		ArchiveSegment segment = db.archive.getSegment(seq);
+		if (segment != null) {
+			removeBefore(segment, cutoffDay);
+		}
+	}
+
+	/**
+	 * 从内存里删掉已经写进归档段的数据：只删段里有的员工（会员），不按回放时的支付策略重新判断
+	 */
+	private void removeBefore(ArchiveSegment segment, int day) {
+		for (String empId : segment.getTimeCardIds()) {
+			TimeCardStore store = db.empId2TimeCards.get(empId);
+			if (store != null) {
+				store.removeBefore(day);
+			}
+		}
+		for (String empId : segment.getSalesReceiptIds()) {
+			removeBefore(db.empId2SalesReceipts.get(empId), day, SalesReceipt::getEpochDay);
+		}
+		for (String memberId : segment.getServiceChangeIds()) {
+			removeBefore(db.memberId2Sc.get(memberId), day, ServiceChange::getEpochDay);
+		}
+		for (String empId : segment.getPaycheckIds()) {
+			PaycheckStore store = db.empId2Paycheck.get(empId);
+			if (store != null) {
+				store.removeBefore(day);
+			}
+		}
+	}
+
+	private static <T> void removeBefore(List<T> list, int day, ToIntFunction<? super T> dayOf) {
+		if (list == null) {
+			return;
+		}
+		synchronized (list) {
+			list.subList(0, DateIndex.lowerBound(list, day, dayOf)).clear();
+		}
+	}
+
+	/**
+	 * 打开归档时取录入锁的读锁，归档进行中会等它结束；没有打开归档时返回 null
+	 */
+	private Lock lockIngest() {
+		PayrollArchive archive = db.archive;
+		if (archive == null) {
+			return null;
+		}
+		Lock lock = archive.getIngestLock().readLock();
+		lock.lock();
+		return lock;
+	}
+
+	private static void unlock(Lock lock) {
+		if (lock != null) {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * 非懒加载的小时工，数据库里的卡片就是支付策略里的那一份
+	 */
+	private boolean isSharedTimeCards(String empId, TimeCardStore timeCards) {
+		Employee emp = db.id2Emp.get(empId);
+		return emp != null && emp.getClassification() instanceof HourlyClassification
+				&& ((HourlyClassification) emp.getClassification()).getTimeCards() == timeCards;
+	}
+
+	/**
+	 * 没有打开归档时直接返回内存里的结果；否则归档段里的结果在前，再按日期稳定排序（补录的旧明细可能还在内存里）。
+	 * 在读锁内同时读内存和归档段，归档进行中也不会看到重复或缺失的数据
+	 */
+	private <T> List<T> withArchive(Supplier<List<T>> live, Function<PayrollArchive, List<T>> archived, ToIntFunction<? super T> dayOf) {
+		PayrollArchive archive = db.archive;
+		if (archive == null) {
+			return live.get();
+		}
+		Lock lock = archive.getLock().readLock();
+		lock.lock();
+		try {
+			List<T> list = archived.apply(archive);
+			if (list.isEmpty()) {
+				return live.get();
+			}
+			List<T> current = live.get();
+			if (current != null) {
+				list.addAll(current);
+			}
+			if (dayOf != null) {
+				list.sort(Comparator.comparingInt(dayOf));
+			}
+			return list;
+		} finally {
+			lock.unlock();
+		}
+	}
 
 	@Override
 	public void addEmployee(String empId, Employee emp) {
-		db.id2Emp.put(empId, emp);
+		if (db.journal != null) {
+			db.journal.addEmployee(empId, emp);
+		}
+		Employee old = db.id2Emp.put(empId, emp);
+		if (old != null) {
+			unindexSchedule(empId, old.getSchedule());
+		}
+		indexSchedule(empId, emp);
+		if (emp.getClassification() instanceof HourlyClassification && !((HourlyClassification) emp.getClassification()).isLazy()) {
+			// 时间卡片只存一份，数据库和员工的支付策略共用
+			db.empId2TimeCards.put(empId, ((HourlyClassification) emp.getClassification()).getTimeCards());
+		}
 	}
 
 	@Override
@@ -28,14 +325,24 @@ public class PaymentDatabaseImpl implements PayrollDatabase {
 	}
 
 	/**
-	 * 模拟从数据库查询员工数据，然后构建成内存对象
+	 * 模拟从数据库查询员工数据，然后构建成内存对象；只在第一次调用时加载，之后直接返回内存中的员工
 	 */
 	@Override
 	public List<Employee> findAllEmpByInit() {
-		payrollFactory.createEmployee();
+		db.initialize(() -> {
+			db.presize(payrollFactory.estimatedSize());
+			payrollFactory.createEmployee(this);
+		});
 		return findAllEmp();
 	}
 
+	/**
+	 * 更换初始化数据来源，需要在第一次调用 {@link #findAllEmpByInit()} 之前设置
+	 */
+	public void setPayrollFactory(PayrollFactory payrollFactory) {
+		this.payrollFactory = payrollFactory;
+	}
+
 	/**
 	 * 直接查询内存中的员工对象
 	 */
@@ -44,9 +351,97 @@ public class PaymentDatabaseImpl implements PayrollDatabase {
 		return new ArrayList<>(db.id2Emp.values());
 	}
 
+	/**
+	 * 直接在内存中的员工表上遍历，遍历期间不要增删员工
+	 */
+	@Override
+	public Stream<Employee> streamAllEmp() {
+		return db.id2Emp.values().stream();
+	}
+
+	@Override
+	public Stream<Employee> streamEmpByPayDay(LocalDate date) {
+		Stream<Employee> emps = Stream.empty();
+		for (Map.Entry<PaymentSchedule, Map<String, Employee>> entry : db.schedule2Emps.entrySet()) {
+			if (entry.getKey().isPayDate(date)) {
+				// 用 concat 拼接而不是 flatMap，并行时每个分组都能继续拆分
+				emps = Stream.concat(emps, entry.getValue().values().stream());
+			}
+		}
+		return emps;
+	}
+
+	@Override
+	public List<Employee> findEmpByPayDay(LocalDate date) {
+		List<Employee> emps = new ArrayList<>();
+		for (Map.Entry<PaymentSchedule, Map<String, Employee>> entry : db.schedule2Emps.entrySet()) {
+			// 同一分组的支付计划相同，判断一次即可
+			if (entry.getKey().isPayDate(date)) {
+				emps.addAll(entry.getValue().values());
+			}
+		}
+		return emps;
+	}
+
+	@Override
+	public void changeSchedule(String empId, PaymentSchedule schedule) {
+		Employee emp = db.id2Emp.get(empId);
+		if (emp == null) {
+			throw new RuntimeException("没有员工");
+		}
+		if (db.journal != null) {
+			db.journal.changeSchedule(empId, schedule);
+		}
+		unindexSchedule(empId, emp.getSchedule());
+		emp.setSchedule(schedule);
+		indexSchedule(empId, emp);
+	}
+
+	/**
+	 * 录入明细后清掉懒加载缓存；先写入再失效，并发加载的线程不会把旧数据放回缓存
+	 */
+	private void invalidateTimeCards(String empId) {
+		if (db.historyCache != null) {
+			db.historyCache.invalidateTimeCards(empId);
+		}
+	}
+
+	private void invalidateSalesReceipts(String empId) {
+		if (db.historyCache != null) {
+			db.historyCache.invalidateSalesReceipts(empId);
+		}
+	}
+
+	private void invalidateServiceChanges(String memberId) {
+		if (db.historyCache != null) {
+			db.historyCache.invalidateServiceChanges(memberId);
+		}
+	}
+
+	private void indexSchedule(String empId, Employee emp) {
+		if (emp.getSchedule() != null) {
+			db.schedule2Emps.computeIfAbsent(emp.getSchedule(), k -> db.newMap()).put(empId, emp);
+		}
+	}
+
+	private void unindexSchedule(String empId, PaymentSchedule schedule) {
+		Map<String, Employee> emps = schedule == null ? null : db.schedule2Emps.get(schedule);
+		if (emps != null) {
+			emps.remove(empId);
+		}
+	}
+
 	@Override
 	public void addAffiliation(String memberId, Affiliation affiliation) {
-		db.memberId2Affiliation.put(memberId, affiliation);
+		if (db.journal != null) {
+			db.journal.addAffiliation(memberId, affiliation);
+		}
+		Affiliation old = db.memberId2Affiliation.put(memberId, affiliation);
+		if (affiliation instanceof UnionAffiliation) {
+			db.memberId2Unions.put(memberId, (UnionAffiliation) affiliation);
+		} else if (old instanceof UnionAffiliation) {
+			db.memberId2Unions.remove(memberId, old);
+		}
 	}
 
 	@Override
@@ -56,10 +451,19 @@ public class PaymentDatabaseImpl implements PayrollDatabase {
 
 	@Override
 	public void addMember(String memberId, Employee emp) {
-		if (!db.memberId2Emps.containsKey(memberId)) {
-			db.memberId2Emps.put(memberId, new ArrayList<>());
+		if (db.journal != null) {
+			db.journal.addMember(memberId, emp);
+		}
+		db.memberId2Emps.computeIfAbsent(memberId, k -> db.newList()).add(emp);
+		// 没有经 addAffiliation 登记过会费关系的会员编号，才从员工身上补进索引，不会把替换掉的旧关系加回来
+		if (db.memberId2Affiliation.get(memberId) != null) {
+			return;
+		}
+		for (Affiliation affiliation : emp.getAffiliations()) {
+			if (affiliation instanceof UnionAffiliation && memberId.equals(((UnionAffiliation) affiliation).getMemberId())) {
+				db.memberId2Unions.put(memberId, (UnionAffiliation) affiliation);
+			}
 		}
-		db.memberId2Emps.get(memberId).add(emp);
 	}
 
 	@Override
@@ -67,55 +471,275 @@ public class PaymentDatabaseImpl implements PayrollDatabase {
 		return db.memberId2Emps.get(memberId);
 	}
 
+	@Override
+	public UnionAffiliation findUnionAffiliation(String memberId) {
+		return db.memberId2Unions.get(memberId);
+	}
+
 	@Override
 	public void addTimeCard(String empId, TimeCard timeCard) {
-		if (!db.empId2TimeCards.containsKey(empId)) {
-			db.empId2TimeCards.put(empId, new ArrayList<>());
+		Lock ingest = lockIngest();
+		try {
+			if (db.journal != null) {
+				db.journal.addTimeCard(empId, timeCard);
+			}
+			db.empId2TimeCards.computeIfAbsent(empId, k -> new TimeCardStore()).add(timeCard);
+			invalidateTimeCards(empId);
+		} finally {
+			unlock(ingest);
+		}
+	}
+
+	@Override
+	public void addTimeCards(String empId, List<TimeCard> timeCards) {
+		Lock ingest = lockIngest();
+		try {
+			if (db.journal != null) {
+				for (TimeCard timeCard : timeCards) {
+					db.journal.addTimeCard(empId, timeCard);
+				}
+			}
+			db.empId2TimeCards.computeIfAbsent(empId, k -> new TimeCardStore()).addAll(timeCards);
+			invalidateTimeCards(empId);
+		} finally {
+			unlock(ingest);
+		}
+	}
+
+	@Override
+	public void addTimeCards(String empId, int[] epochDays, double[] hours, int count) {
+		Lock ingest = lockIngest();
+		try {
+			if (db.journal != null) {
+				for (int i = 0; i < count; i++) {
+					db.journal.addTimeCard(empId, epochDays[i], hours[i]);
+				}
+			}
+			db.empId2TimeCards.computeIfAbsent(empId, k -> new TimeCardStore()).addAll(epochDays, hours, count);
+			invalidateTimeCards(empId);
+		} finally {
+			unlock(ingest);
 		}
-		db.empId2TimeCards.get(empId).add(timeCard);
 	}
 
 	@Override
 	public List<TimeCard> findTimeCards(String empId) {
-		return db.empId2TimeCards.get(empId);
+		return withArchive(() -> {
+			TimeCardStore timeCards = db.empId2TimeCards.get(empId);
+			return timeCards == null ? null : timeCards.toList();
+		}, archive -> archive.findTimeCards(empId, Long.MIN_VALUE, Long.MAX_VALUE), TimeCard::getEpochDay);
+	}
+
+	@Override
+	public List<TimeCard> findTimeCards(String empId, LocalDate from, LocalDate to) {
+		return withArchive(() -> {
+			TimeCardStore timeCards = db.empId2TimeCards.get(empId);
+			return timeCards == null ? null : timeCards.toList(from, to);
+		}, archive -> archive.findTimeCards(empId, from.toEpochDay(), to.toEpochDay()), TimeCard::getEpochDay);
 	}
 
 	@Override
 	public void addSalesReceipt(String empId, SalesReceipt salesReceipt) {
-		if (!db.empId2SalesReceipts.containsKey(empId)) {
-			db.empId2SalesReceipts.put(empId, new ArrayList<>());
+		Lock ingest = lockIngest();
+		try {
+			if (db.journal != null) {
+				db.journal.addSalesReceipt(empId, salesReceipt);
+			}
+			DateIndex.insert(db.empId2SalesReceipts.computeIfAbsent(empId, k -> db.newList()), salesReceipt, SalesReceipt::getDate);
+			invalidateSalesReceipts(empId);
+		} finally {
+			unlock(ingest);
+		}
+	}
+
+	@Override
+	public void addSalesReceipts(String empId, List<SalesReceipt> salesReceipts) {
+		Lock ingest = lockIngest();
+		try {
+			if (db.journal != null) {
+				for (SalesReceipt salesReceipt : salesReceipts) {
+					db.journal.addSalesReceipt(empId, salesReceipt);
+				}
+			}
+			List<SalesReceipt> list = db.empId2SalesReceipts.computeIfAbsent(empId, k -> db.newList());
+			synchronized (list) {
+				for (SalesReceipt salesReceipt : salesReceipts) {
+					DateIndex.insert(list, salesReceipt, SalesReceipt::getDate);
+				}
+			}
+			invalidateSalesReceipts(empId);
+		} finally {
+			unlock(ingest);
 		}
-		db.empId2SalesReceipts.get(empId).add(salesReceipt);
 	}
 
 	@Override
 	public List<SalesReceipt> findSalesReceipts(String empId) {
-		return db.empId2SalesReceipts.get(empId);
+		return withArchive(() -> db.empId2SalesReceipts.get(empId), archive -> archive.findSalesReceipts(empId, Long.MIN_VALUE, Long.MAX_VALUE),
+				SalesReceipt::getEpochDay);
+	}
+
+	@Override
+	public List<SalesReceipt> findSalesReceipts(String empId, LocalDate from, LocalDate to) {
+		return withArchive(() -> DateIndex.range(db.empId2SalesReceipts.get(empId), from, to, SalesReceipt::getDate),
+				archive -> archive.findSalesReceipts(empId, from.toEpochDay(), to.toEpochDay()), SalesReceipt::getEpochDay);
 	}
 
 	@Override
 	public void savePaycheck(Paycheck paycheck) {
-		if (!db.empId2Paycheck.containsKey(paycheck.getEmpId())) {
-			db.empId2Paycheck.put(paycheck.getEmpId(), new ArrayList<>());
+		Lock ingest = lockIngest();
+		try {
+			if (db.journal != null) {
+				db.journal.savePaycheck(paycheck);
+			}
+			db.empId2Paycheck.computeIfAbsent(paycheck.getEmpId(), k -> new PaycheckStore()).add(paycheck);
+		} finally {
+			unlock(ingest);
+		}
+	}
+
+	@Override
+	public void savePaychecks(List<Paycheck> paychecks) {
+		Lock ingest = lockIngest();
+		try {
+			batch(() -> {
+				for (Paycheck paycheck : paychecks) {
+					savePaycheck(paycheck);
+				}
+			});
+		} finally {
+			unlock(ingest);
+		}
+	}
+
+	@Override
+	public void savePaychecks(PaycheckBatch paychecks) {
+		Lock ingest = lockIngest();
+		try {
+			batch(() -> {
+				PaycheckStore store = null;
+				for (int i = 0; i < paychecks.size(); i++) {
+					if (db.journal != null) {
+						db.journal.savePaycheck(paychecks, i);
+					}
+					// 同一员工的连续几行共用一次查找
+					String empId = paychecks.getEmpId(i);
+					if (store == null || !empId.equals(paychecks.getEmpId(i - 1))) {
+						store = db.empId2Paycheck.computeIfAbsent(empId, k -> new PaycheckStore());
+					}
+					store.add(paychecks, i);
+				}
+			});
+		} finally {
+			unlock(ingest);
 		}
-		db.empId2Paycheck.get(paycheck.getEmpId()).add(paycheck);
 	}
 
 	@Override
 	public List<Paycheck> findPaychecks(String empId) {
-		return db.empId2Paycheck.get(empId);
+		// 支付记录保持保存顺序，归档的在前
+		return withArchive(() -> {
+			PaycheckStore store = db.empId2Paycheck.get(empId);
+			return store == null ? null : store.toList(empId);
+		}, archive -> archive.findPaychecks(empId), null);
+	}
+
+	@Override
+	public BitSet findPaidDays(String empId, LocalDate from, LocalDate to) {
+		int first = (int) from.toEpochDay();
+		int last = (int) to.toEpochDay();
+		BitSet paid = new BitSet(last - first + 1);
+		PayrollArchive archive = db.archive;
+		Lock lock = archive == null ? null : archive.getLock().readLock();
+		if (lock != null) {
+			lock.lock();
+		}
+		try {
+			if (archive != null) {
+				archive.markPaycheckEndDays(empId, first, last, paid);
+			}
+			PaycheckStore store = db.empId2Paycheck.get(empId);
+			if (store != null) {
+				store.markEndDays(first, last, paid);
+			}
+		} finally {
+			if (lock != null) {
+				lock.unlock();
+			}
+		}
+		return paid;
 	}
 
 	@Override
 	public void addServiceChange(String memberId, ServiceChange serviceChange) {
-		if (!db.memberId2Sc.containsKey(memberId)) {
-			db.memberId2Sc.put(memberId, new ArrayList<>());
+		Lock ingest = lockIngest();
+		try {
+			if (db.journal != null) {
+				db.journal.addServiceChange(memberId, serviceChange);
+			}
+			DateIndex.insert(db.memberId2Sc.computeIfAbsent(memberId, k -> db.newList()), serviceChange, ServiceChange::getDate);
+			invalidateServiceChanges(memberId);
+		} finally {
+			unlock(ingest);
+		}
+	}
+
+	@Override
+	public void addServiceChanges(String memberId, List<ServiceChange> serviceChanges) {
+		Lock ingest = lockIngest();
+		try {
+			if (db.journal != null) {
+				for (ServiceChange serviceChange : serviceChanges) {
+					db.journal.addServiceChange(memberId, serviceChange);
+				}
+			}
+			List<ServiceChange> list = db.memberId2Sc.computeIfAbsent(memberId, k -> db.newList());
+			synchronized (list) {
+				for (ServiceChange serviceChange : serviceChanges) {
+					DateIndex.insert(list, serviceChange, ServiceChange::getDate);
+				}
+			}
+			invalidateServiceChanges(memberId);
+		} finally {
+			unlock(ingest);
 		}
-		db.memberId2Sc.get(memberId).add(serviceChange);
+	}
+
+	@Override
+	public boolean applyServiceChanges(String memberId, List<ServiceChange> serviceChanges) {
+		addServiceChanges(memberId, serviceChanges);
+		UnionAffiliation union = db.memberId2Unions.get(memberId);
+		if (union == null) {
+			return false;
+		}
+		for (ServiceChange serviceChange : serviceChanges) {
+			union.addServiceChanges(serviceChange);
+		}
+		return true;
+	}
+
+	@Override
+	public int applyServiceChanges(Collection<String> memberIds, List<ServiceChange> serviceChanges) {
+		int[] count = new int[1];
+		batch(() -> {
+			for (String memberId : memberIds) {
+				if (applyServiceChanges(memberId, serviceChanges)) {
+					count[0]++;
+				}
+			}
+		});
+		return count[0];
 	}
 
 	@Override
 	public List<ServiceChange> findServiceChange(String memberId) {
-		return db.memberId2Sc.get(memberId);
+		return withArchive(() -> db.memberId2Sc.get(memberId), archive -> archive.findServiceChanges(memberId, Long.MIN_VALUE, Long.MAX_VALUE),
+				ServiceChange::getEpochDay);
+	}
+
+	@Override
+	public List<ServiceChange> findServiceChange(String memberId, LocalDate from, LocalDate to) {
+		return withArchive(() -> DateIndex.range(db.memberId2Sc.get(memberId), from, to, ServiceChange::getDate),
+				archive -> archive.findServiceChanges(memberId, from.toEpochDay(), to.toEpochDay()), ServiceChange::getEpochDay);
 	}
 }
@@ -16,44 +16,47 @@ import com.gant.payroll.transaction.TimeCardTransaction;
 
 public class PayrollFactoryImpl implements PayrollFactory {
 
-	protected PayrollDatabase payrollDatabase;
-
 	@Override
-	public void createEmployee() {
+	public void createEmployee(PayrollDatabase payrollDatabase) {
 		// 增加小时工
 		String empId1 = "1";
-		AddEmployeeTransaction addEmp = new AddHourlyEmployeeTransaction(empId1, "张三", "上海", 10);
+		AddEmployeeTransaction addEmp = new AddHourlyEmployeeTransaction(empId1, "张三", "上海", 10, payrollDatabase);
 		addEmp.execute();
 
 		// 给小时工增加工时卡
-		TimeCardTransaction timeCardTransaction = new TimeCardTransaction(empId1, LocalDate.of(2018, Month.JULY, 18), 100);
+		TimeCardTransaction timeCardTransaction = new TimeCardTransaction(empId1, LocalDate.of(2018, Month.JULY, 18), 100, payrollDatabase);
 		timeCardTransaction.execute();
 
 		// 给小时工增加会费
 		String memberId1 = "1";
-		AffiliationTransaction affiliationTransaction = new AffiliationTransaction(empId1, memberId1, 10);
+		AffiliationTransaction affiliationTransaction = new AffiliationTransaction(empId1, memberId1, 10, payrollDatabase);
 		affiliationTransaction.execute();
 
-		ServiceChangeTransaction serviceChangeTransaction = new ServiceChangeTransaction(memberId1, LocalDate.of(2018, Month.JULY, 18), 20);
+		ServiceChangeTransaction serviceChangeTransaction = new ServiceChangeTransaction(memberId1, LocalDate.of(2018, Month.JULY, 18), 20, payrollDatabase);
 		serviceChangeTransaction.execute();
 
 		// 增加销售
 		String empId2 = "2";
-		addEmp = new AddCommissionedEmployeeTransaction(empId2, "李四", "上海", 1000, 0.5);
+		addEmp = new AddCommissionedEmployeeTransaction(empId2, "李四", "上海", 1000, 0.5, payrollDatabase);
 		addEmp.execute();
 
 		// 增加销售凭条
-		SalesReceiptTransaction salesReceiptTransaction = new SalesReceiptTransaction(empId2, LocalDate.of(2018, Month.JULY, 18), 100);
+		SalesReceiptTransaction salesReceiptTransaction = new SalesReceiptTransaction(empId2, LocalDate.of(2018, Month.JULY, 18), 100, payrollDatabase);
 		salesReceiptTransaction.execute();
 
 		// 增加销售凭条
-		salesReceiptTransaction = new SalesReceiptTransaction(empId2, LocalDate.of(2018, Month.JULY, 19), 50);
+		salesReceiptTransaction = new SalesReceiptTransaction(empId2, LocalDate.of(2018, Month.JULY, 19), 50, payrollDatabase);
 		salesReceiptTransaction.execute();
 
 		String empId3 = "3";
 		// 增加固定工资员工
-		addEmp = new AddSalariedEmployeeTransaction(empId3, "王五", "上海", 1000);
+		addEmp = new AddSalariedEmployeeTransaction(empId3, "王五", "上海", 1000, payrollDatabase);
 		addEmp.execute();
 	}
 
+	@Override
+	public int estimatedSize() {
+		return 3;
+	}
+
 }
@@ -0,0 +1,467 @@
+package com.gant.payroll.db.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Collections;
+
+import com.gant.payroll.affiliation.ServiceChange;
+import com.gant.payroll.affiliation.UnionAffiliation;
+import com.gant.payroll.classification.CommissionedClassification;
+import com.gant.payroll.classification.HourlyClassification;
+import com.gant.payroll.classification.SalariedClassification;
+import com.gant.payroll.classification.SalesReceipt;
+import com.gant.payroll.classification.TimeCard;
+import com.gant.payroll.db.HistoryCache;
+import com.gant.payroll.db.wal.WriteAheadLog;
+import com.gant.payroll.domain.Affiliation;
+import com.gant.payroll.domain.Employee;
+import com.gant.payroll.domain.Paycheck;
+import com.gant.payroll.domain.PaycheckBatch;
+import com.gant.payroll.domain.PaymentClassification;
+import com.gant.payroll.domain.PaymentMethod;
+import com.gant.payroll.domain.PaymentSchedule;
+import com.gant.payroll.method.BankMethod;
+import com.gant.payroll.method.HoldMethod;
+import com.gant.payroll.method.MailMethod;
+import com.gant.payroll.schedule.BiweeklySchedule;
+import com.gant.payroll.schedule.MothlySchedule;
+import com.gant.payroll.schedule.WeeklySchedule;
+
+/**
+ * 数据库变更日志，把每次修改编码成紧凑的二进制记录写入 {@link WriteAheadLog}，启动时回放重建内存数据
+ * 
+ * syncOnWrite 为 true 时每次修改都等到落盘才返回（组提交，多个线程共用一次 fsync）；
+ * 为 false 时由调用方在一批修改之后调用 {@link #sync()}，一次 fsync 覆盖整批。
+ * 无论哪种模式，{@link #beginBatch()} 和 {@link #endBatch()} 之间的修改都在最外层 endBatch 时落盘。
+ * 
+ * @author jiangyp
+ *
+ */
+public class PayrollJournal implements Closeable {
+
+	static final byte ADD_EMPLOYEE = 1;
+	static final byte ADD_AFFILIATION = 2;
+	static final byte ADD_MEMBER = 3;
+	static final byte ADD_TIME_CARD = 4;
+	static final byte ADD_SALES_RECEIPT = 5;
+	static final byte ADD_SERVICE_CHANGE = 7;
+	static final byte CHANGE_SCHEDULE = 8;
+	/** 支付记录，金额以分为单位 */
+	static final byte SAVE_PAYCHECK_CENTS = 9;
+	/** 早于截止日期的数据移到了归档段 */
+	static final byte ARCHIVE = 10;
+
+	private static final byte HOURLY = 1;
+	private static final byte SALARIED = 2;
+	private static final byte COMMISSIONED = 3;
+	private static final byte WEEKLY = 1;
+	private static final byte MONTHLY = 2;
+	private static final byte BIWEEKLY = 3;
+	private static final byte HOLD = 1;
+	private static final byte MAIL = 2;
+	private static final byte BANK = 3;
+	private static final byte UNION = 1;
+
+	/** 字符串长度写成 short；更长的字符串先写这个标记，再写 int 长度 */
+	private static final short LONG_STRING = -2;
+	/** 除字符串外一条记录里定长字段的上限，写完每个字符串后至少留出这么多空间 */
+	private static final int FIXED_RESERVE = 256;
+
+	private static final int BUFFER_SIZE = 4096;
+	/** 为超长记录扩大过的缓冲区超过这个大小就不再留给线程复用 */
+	private static final int MAX_CACHED_BUFFER = 64 * 1024;
+
+	private static final ThreadLocal<ByteBuffer> BUFFERS = ThreadLocal.withInitial(() -> ByteBuffer.allocate(BUFFER_SIZE));
+	/** 当前线程批量写入的嵌套层数，大于 0 时不逐条落盘 */
+	private static final ThreadLocal<int[]> BATCH_DEPTH = ThreadLocal.withInitial(() -> new int[1]);
+
+	private final WriteAheadLog log;
+	private final boolean syncOnWrite;
+
+	public PayrollJournal(Path dir, boolean syncOnWrite) throws IOException {
+		this.log = new WriteAheadLog(dir);
+		this.syncOnWrite = syncOnWrite;
+	}
+
+	public void addEmployee(String empId, Employee emp) {
+		ByteBuffer buf = begin(ADD_EMPLOYEE);
+		buf = putString(buf, empId);
+		buf = putString(buf, emp.getName());
+		buf = putString(buf, emp.getAddress());
+		putClassification(buf, emp.getClassification());
+		putSchedule(buf, emp.getSchedule());
+		buf = putMethod(buf, emp.getPaymentMethod());
+		write(buf);
+	}
+
+	public void addAffiliation(String memberId, Affiliation affiliation) {
+		if (!(affiliation instanceof UnionAffiliation)) {
+			throw new IllegalArgumentException("不支持持久化的会费类型: " + affiliation);
+		}
+		UnionAffiliation union = (UnionAffiliation) affiliation;
+		ByteBuffer buf = begin(ADD_AFFILIATION);
+		buf = putString(buf, memberId);
+		buf.put(UNION);
+		buf = putString(buf, union.getMemberId());
+		buf.putDouble(union.getWeeklyBue());
+		write(buf);
+	}
+
+	public void addMember(String memberId, Employee emp) {
+		ByteBuffer buf = begin(ADD_MEMBER);
+		buf = putString(buf, memberId);
+		buf = putString(buf, emp.getId());
+		write(buf);
+	}
+
+	public void addTimeCard(String empId, TimeCard timeCard) {
+		addTimeCard(empId, (int) timeCard.getDate().toEpochDay(), timeCard.getHours());
+	}
+
+	public void addTimeCard(String empId, int epochDay, double hours) {
+		ByteBuffer buf = begin(ADD_TIME_CARD);
+		buf = putString(buf, empId);
+		buf.putInt(epochDay);
+		buf.putDouble(hours);
+		write(buf);
+	}
+
+	public void addSalesReceipt(String empId, SalesReceipt salesReceipt) {
+		ByteBuffer buf = begin(ADD_SALES_RECEIPT);
+		buf = putString(buf, empId);
+		buf.putInt((int) salesReceipt.getDate().toEpochDay());
+		buf.putDouble(salesReceipt.getAmount());
+		write(buf);
+	}
+
+	public void savePaycheck(Paycheck paycheck) {
+		savePaycheck(paycheck.getEmpId(), paycheck.getPayPeriodStartDay(), paycheck.getPayPeriodEndDay(), paycheck.getGrossPayCents(),
+				paycheck.getDeductionsCents(), paycheck.getNetPayCents());
+	}
+
+	/**
+	 * 按列写入 batch 的第 i 行，不用生成 Paycheck
+	 */
+	public void savePaycheck(PaycheckBatch batch, int i) {
+		savePaycheck(batch.getEmpId(i), batch.getPayPeriodStartDay(i), batch.getPayPeriodEndDay(i), batch.getGrossPayCents(i),
+				batch.getDeductionsCents(i), batch.getNetPayCents(i));
+	}
+
+	private void savePaycheck(String empId, int start, int end, long grossPay, long deductions, long netPay) {
+		ByteBuffer buf = begin(SAVE_PAYCHECK_CENTS);
+		buf = putString(buf, empId);
+		buf.putInt(start);
+		buf.putInt(end);
+		buf.putLong(grossPay);
+		buf.putLong(deductions);
+		buf.putLong(netPay);
+		write(buf);
+	}
+
+	public void addServiceChange(String memberId, ServiceChange serviceChange) {
+		ByteBuffer buf = begin(ADD_SERVICE_CHANGE);
+		buf = putString(buf, memberId);
+		buf.putInt((int) serviceChange.getDate().toEpochDay());
+		buf.putDouble(serviceChange.getAmout());
+		write(buf);
+	}
+
+	public void changeSchedule(String empId, PaymentSchedule schedule) {
+		ByteBuffer buf = begin(CHANGE_SCHEDULE);
+		buf = putString(buf, empId);
+		putSchedule(buf, schedule);
+		write(buf);
+	}
+
+	/**
+	 * 记录一次归档，落盘后才返回；回放到这里时如果归档段已经写好，就从内存里删掉对应的数据
+	 */
+	public void archive(long seq, int cutoffDay) {
+		ByteBuffer buf = begin(ARCHIVE);
+		buf.putLong(seq);
+		buf.putInt(cutoffDay);
+		write(buf);
+		log.sync();
+	}
+
+	/**
+	 * 开始批量写入：当前线程之后的修改先不落盘，等 endBatch 时一起落盘
+	 */
+	public void beginBatch() {
+		BATCH_DEPTH.get()[0]++;
+	}
+
+	/**
+	 * 结束批量写入，最外层结束时落盘一次，批量返回时整批都已落盘
+	 */
+	public void endBatch() {
+		int[] depth = BATCH_DEPTH.get();
+		if (--depth[0] == 0) {
+			log.sync();
+		}
+	}
+
+	/**
+	 * 把之前所有的修改落盘
+	 */
+	public void sync() {
+		log.sync();
+	}
+
+	/**
+	 * 到目前为止实际 fsync 的次数
+	 */
+	long getSyncCount() {
+		return log.getSyncCount();
+	}
+
+	@Override
+	public void close() {
+		log.close();
+	}
+
+	/**
+	 * 按日志顺序把修改重新应用到 database 上，同时恢复员工、工资策略、会费之间的对象关联。
+	 * 回放期间 database 不能挂着日志，否则会重复记录
+	 */
+	void replay(PaymentDatabaseImpl database) throws IOException {
+		log.replay(buf -> apply(database, buf));
+	}
+
+	private void apply(PaymentDatabaseImpl database, ByteBuffer buf) {
+		byte type = buf.get();
+		switch (type) {
+		case ADD_EMPLOYEE: {
+			String empId = getString(buf);
+			String name = getString(buf);
+			Employee emp = new Employee(empId, name, getString(buf));
+			emp.setClassification(getClassification(buf, empId, database.getHistoryCache()));
+			emp.setSchedule(getSchedule(buf));
+			emp.setPaymentMethod(getMethod(buf));
+			database.addEmployee(empId, emp);
+			break;
+		}
+		case ADD_AFFILIATION: {
+			String memberId = getString(buf);
+			buf.get();
+			HistoryCache history = database.getHistoryCache();
+			String id = getString(buf);
+			double weeklyBue = buf.getDouble();
+			database.addAffiliation(memberId, history == null ? new UnionAffiliation(id, weeklyBue) : new UnionAffiliation(id, weeklyBue, history));
+			break;
+		}
+		case ADD_MEMBER: {
+			String memberId = getString(buf);
+			Employee emp = database.findEmployee(getString(buf));
+			database.addMember(memberId, emp);
+			Affiliation affiliation = database.findAffiliation(memberId);
+			if (affiliation != null && !emp.getAffiliations().contains(affiliation)) {
+				emp.addAffiliations(affiliation);
+			}
+			break;
+		}
+		case ADD_TIME_CARD: {
+			String empId = getString(buf);
+			// 时间卡片和员工的支付策略共用一份存储，只需写入数据库
+			database.addTimeCard(empId, new TimeCard(LocalDate.ofEpochDay(buf.getInt()), buf.getDouble()));
+			break;
+		}
+		case ADD_SALES_RECEIPT: {
+			String empId = getString(buf);
+			SalesReceipt sr = new SalesReceipt(LocalDate.ofEpochDay(buf.getInt()), buf.getDouble());
+			Employee emp = database.findEmployee(empId);
+			PaymentClassification pc = emp == null ? null : emp.getClassification();
+			if (pc instanceof CommissionedClassification) {
+				((CommissionedClassification) pc).addSalesReceipt(sr);
+			}
+			database.addSalesReceipt(empId, sr);
+			break;
+		}
+		case SAVE_PAYCHECK_CENTS: {
+			String empId = getString(buf);
+			Paycheck pc = new Paycheck(LocalDate.ofEpochDay(buf.getInt()), LocalDate.ofEpochDay(buf.getInt()));
+			pc.setGrossPayCents(buf.getLong());
+			pc.setDeductionsCents(buf.getLong());
+			pc.setNetPayCents(buf.getLong());
+			pc.setEmpId(empId);
+			database.savePaycheck(pc);
+			break;
+		}
+		case ADD_SERVICE_CHANGE: {
+			String memberId = getString(buf);
+			ServiceChange sc = new ServiceChange(LocalDate.ofEpochDay(buf.getInt()), buf.getDouble());
+			// 和录入时一样，记到会员的会费关系上
+			database.applyServiceChanges(memberId, Collections.singletonList(sc));
+			break;
+		}
+		case CHANGE_SCHEDULE: {
+			String empId = getString(buf);
+			database.changeSchedule(empId, getSchedule(buf));
+			break;
+		}
+		case ARCHIVE: {
+			long seq = buf.getLong();
+			database.replayArchive(seq, buf.getInt());
+			break;
+		}
+		default:
+			throw new IllegalStateException("未知的日志记录类型: " + type);
+		}
+	}
+
+	private ByteBuffer begin(byte type) {
+		ByteBuffer buf = BUFFERS.get();
+		if (buf.capacity() > MAX_CACHED_BUFFER) {
+			buf = ByteBuffer.allocate(BUFFER_SIZE);
+			BUFFERS.set(buf);
+		}
+		buf.clear();
+		buf.put(type);
+		return buf;
+	}
+
+	private void write(ByteBuffer buf) {
+		buf.flip();
+		long lsn = log.append(buf);
+		if (syncOnWrite && BATCH_DEPTH.get()[0] == 0) {
+			log.sync(lsn);
+		}
+	}
+
+	/**
+	 * 写入字符串，返回写入后的缓冲区：放不下时换成更大的缓冲区（内容一并拷过去），调用方要接着用返回值
+	 */
+	private static ByteBuffer putString(ByteBuffer buf, String s) {
+		if (s == null) {
+			buf.putShort((short) -1);
+			return buf;
+		}
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		buf = ensureRemaining(buf, 6 + bytes.length + FIXED_RESERVE);
+		if (bytes.length <= Short.MAX_VALUE) {
+			buf.putShort((short) bytes.length);
+		} else {
+			buf.putShort(LONG_STRING);
+			buf.putInt(bytes.length);
+		}
+		buf.put(bytes);
+		return buf;
+	}
+
+	private static ByteBuffer ensureRemaining(ByteBuffer buf, int n) {
+		if (buf.remaining() >= n) {
+			return buf;
+		}
+		ByteBuffer bigger = ByteBuffer.allocate(Math.max(buf.capacity() * 2, buf.position() + n));
+		buf.flip();
+		bigger.put(buf);
+		BUFFERS.set(bigger);
+		return bigger;
+	}
+
+	private static String getString(ByteBuffer buf) {
+		int length = buf.getShort();
+		if (length == LONG_STRING) {
+			length = buf.getInt();
+		} else if (length < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		buf.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static void putClassification(ByteBuffer buf, PaymentClassification pc) {
+		if (pc instanceof HourlyClassification) {
+			buf.put(HOURLY).putDouble(((HourlyClassification) pc).getHourlyRate());
+		} else if (pc instanceof SalariedClassification) {
+			buf.put(SALARIED).putDouble(((SalariedClassification) pc).getSalary());
+		} else if (pc instanceof CommissionedClassification) {
+			CommissionedClassification cc = (CommissionedClassification) pc;
+			buf.put(COMMISSIONED).putDouble(cc.getSalary()).putDouble(cc.getRate());
+		} else {
+			throw new IllegalArgumentException("不支持持久化的支付策略: " + pc);
+		}
+	}
+
+	/**
+	 * history 不为 null 时按懒加载模式重建
+	 */
+	private static PaymentClassification getClassification(ByteBuffer buf, String empId, HistoryCache history) {
+		byte tag = buf.get();
+		switch (tag) {
+		case HOURLY:
+			double hourlyRate = buf.getDouble();
+			return history == null ? new HourlyClassification(hourlyRate) : new HourlyClassification(hourlyRate, empId, history);
+		case SALARIED:
+			return new SalariedClassification(buf.getDouble());
+		case COMMISSIONED:
+			double salary = buf.getDouble();
+			double rate = buf.getDouble();
+			return history == null ? new CommissionedClassification(salary, rate) : new CommissionedClassification(salary, rate, empId, history);
+		default:
+			throw new IllegalStateException("未知的支付策略: " + tag);
+		}
+	}
+
+	private static void putSchedule(ByteBuffer buf, PaymentSchedule schedule) {
+		if (schedule instanceof WeeklySchedule) {
+			buf.put(WEEKLY);
+		} else if (schedule instanceof MothlySchedule) {
+			buf.put(MONTHLY);
+		} else if (schedule instanceof BiweeklySchedule) {
+			buf.put(BIWEEKLY);
+		} else {
+			throw new IllegalArgumentException("不支持持久化的支付计划: " + schedule);
+		}
+	}
+
+	private static PaymentSchedule getSchedule(ByteBuffer buf) {
+		byte tag = buf.get();
+		switch (tag) {
+		case WEEKLY:
+			return WeeklySchedule.INSTANCE;
+		case MONTHLY:
+			return MothlySchedule.INSTANCE;
+		case BIWEEKLY:
+			return BiweeklySchedule.INSTANCE;
+		default:
+			throw new IllegalStateException("未知的支付计划: " + tag);
+		}
+	}
+
+	private static ByteBuffer putMethod(ByteBuffer buf, PaymentMethod method) {
+		if (method instanceof HoldMethod) {
+			buf.put(HOLD);
+		} else if (method instanceof MailMethod) {
+			buf.put(MAIL);
+			buf = putString(buf, ((MailMethod) method).getAddress());
+		} else if (method instanceof BankMethod) {
+			BankMethod bank = (BankMethod) method;
+			buf.put(BANK);
+			buf = putString(buf, bank.getBank());
+			buf.putDouble(bank.getAccount());
+		} else {
+			throw new IllegalArgumentException("不支持持久化的支付方式: " + method);
+		}
+		return buf;
+	}
+
+	private static PaymentMethod getMethod(ByteBuffer buf) {
+		byte tag = buf.get();
+		switch (tag) {
+		case HOLD:
+			return HoldMethod.INSTANCE;
+		case MAIL:
+			return new MailMethod(getString(buf));
+		case BANK:
+			return new BankMethod(getString(buf), buf.getDouble());
+		default:
+			throw new IllegalStateException("未知的支付方式: " + tag);
+		}
+	}
+}
@@ -0,0 +1,292 @@
+package com.gant.payroll.db.wal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * 追加写日志（WAL）
+ * 
+ * 日志由若干固定大小、内存映射的段文件组成，文件名是该段起始的全局偏移（LSN）。
+ * 每条记录格式为 [int 长度][int CRC32][内容]，长度为 0 表示段内数据到此为止，
+ * CRC 不匹配的记录视为崩溃时写了一半，恢复时从这里截断。
+ * 
+ * 组提交时可能已经换了段还没落盘就崩溃，前一段末尾缺了记录而后一段是完整的。
+ * 所以截断按全局顺序进行：遇到第一条不完整的记录后，它所在段的后半部分和之后的所有段都丢掉，
+ * 回放的永远是一段连续的前缀，不会跳过中间缺失的记录。
+ * 
+ * 刷盘采用组提交：{@link #sync(long)} 的调用者排队，第一个拿到锁的线程一次 force
+ * 把当前已写入的所有记录落盘，后面排队的线程发现自己的记录已经落盘就直接返回。
+ * 
+ * @author jiangyp
+ *
+ */
+public class WriteAheadLog implements Closeable {
+
+	public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+	private static final int HEADER_SIZE = 8;
+	private static final String SUFFIX = ".wal";
+
+	private final Path dir;
+	private final int segmentSize;
+	private final Object syncLock = new Object();
+
+	/** 当前追加的段 */
+	private Segment active;
+	/** 已写满但还没有刷盘的段 */
+	private List<Segment> unsynced = new ArrayList<>();
+	/** 已写入（未必落盘）的位置 */
+	private long writtenLsn;
+	/** 已落盘的位置 */
+	private volatile long durableLsn;
+	/** force 的次数 */
+	private volatile long syncCount;
+
+	public WriteAheadLog(Path dir) throws IOException {
+		this(dir, DEFAULT_SEGMENT_SIZE);
+	}
+
+	public WriteAheadLog(Path dir, int segmentSize) throws IOException {
+		this.dir = dir;
+		this.segmentSize = segmentSize;
+		Files.createDirectories(dir);
+		List<Long> bases = segmentBases();
+		if (bases.isEmpty()) {
+			active = Segment.open(segmentPath(0), 0, segmentSize);
+		} else {
+			long base = bases.get(recover(bases));
+			active = Segment.open(segmentPath(base), base, segmentSize);
+			// 定位到最后一条完整记录之后，抹掉崩溃时残留的半条记录
+			int end = scan(active.buffer.duplicate(), null);
+			active.buffer.position(end);
+			while (active.buffer.hasRemaining()) {
+				active.buffer.put((byte) 0);
+			}
+			active.buffer.position(end);
+			active.buffer.force();
+		}
+		writtenLsn = active.base + active.buffer.position();
+		durableLsn = writtenLsn;
+	}
+
+	/**
+	 * 追加一条记录，返回这条记录结束位置的 LSN；此时记录还未必落盘
+	 */
+	public synchronized long append(ByteBuffer payload) {
+		int length = payload.remaining();
+		if (length == 0 || HEADER_SIZE + length > segmentSize) {
+			throw new IllegalArgumentException("记录长度非法: " + length);
+		}
+		if (active.buffer.remaining() < HEADER_SIZE + length) {
+			roll();
+		}
+		CRC32 crc = new CRC32();
+		crc.update(payload.duplicate());
+		MappedByteBuffer buffer = active.buffer;
+		int start = buffer.position();
+		// 先写内容和校验，最后写长度，长度非 0 即表示记录完整
+		buffer.position(start + HEADER_SIZE);
+		buffer.put(payload);
+		buffer.putInt(start + 4, (int) crc.getValue());
+		buffer.putInt(start, length);
+		writtenLsn = active.base + buffer.position();
+		return writtenLsn;
+	}
+
+	/**
+	 * 等待 lsn 之前的记录落盘，一次 force 覆盖所有已写入的记录
+	 */
+	public void sync(long lsn) {
+		if (durableLsn >= lsn) {
+			return;
+		}
+		synchronized (syncLock) {
+			if (durableLsn >= lsn) {
+				return;
+			}
+			long target;
+			Segment current;
+			List<Segment> segments;
+			synchronized (this) {
+				target = writtenLsn;
+				current = active;
+				segments = unsynced;
+				segments.add(current);
+				unsynced = new ArrayList<>();
+			}
+			for (Segment segment : segments) {
+				segment.buffer.force();
+				if (segment != current) {
+					segment.close();
+				}
+			}
+			durableLsn = target;
+			syncCount++;
+		}
+	}
+
+	/**
+	 * 把所有已写入的记录落盘
+	 */
+	public void sync() {
+		long lsn;
+		synchronized (this) {
+			lsn = writtenLsn;
+		}
+		sync(lsn);
+	}
+
+	/**
+	 * 到目前为止落盘（一次 force 算一次）的次数，组提交时远小于 sync 的调用次数
+	 */
+	public long getSyncCount() {
+		return syncCount;
+	}
+
+	/**
+	 * 按写入顺序回放所有完整记录，传给 consumer 的 ByteBuffer 只在回调期间有效；
+	 * 构造时已经丢掉了第一条不完整记录之后的段，这里回放的是连续的前缀
+	 */
+	public void replay(Consumer<ByteBuffer> consumer) throws IOException {
+		for (long base : segmentBases()) {
+			try (FileChannel channel = FileChannel.open(segmentPath(base), StandardOpenOption.READ)) {
+				scan(channel.map(MapMode.READ_ONLY, 0, channel.size()), consumer);
+			}
+		}
+	}
+
+	@Override
+	public void close() {
+		sync();
+		synchronized (this) {
+			active.close();
+		}
+	}
+
+	private void roll() {
+		unsynced.add(active);
+		long base = active.base + segmentSize;
+		try {
+			active = Segment.open(segmentPath(base), base, segmentSize);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * 从第一段开始找第一条不完整的记录，删掉它所在段之后的所有段，返回它所在段的下标。
+	 * 一段只有在剩下的空间放不下下一段的第一条记录时才是写满后换段的，否则说明中间缺了记录
+	 */
+	private int recover(List<Long> bases) throws IOException {
+		for (int i = 0; i < bases.size() - 1; i++) {
+			long base = bases.get(i);
+			long nextBase = bases.get(i + 1);
+			int end;
+			try (FileChannel channel = FileChannel.open(segmentPath(base), StandardOpenOption.READ)) {
+				end = scan(channel.map(MapMode.READ_ONLY, 0, channel.size()), null);
+			}
+			int first;
+			try (FileChannel channel = FileChannel.open(segmentPath(nextBase), StandardOpenOption.READ)) {
+				first = recordLength(channel.map(MapMode.READ_ONLY, 0, channel.size()), 0, new CRC32());
+			}
+			if (nextBase != base + segmentSize || first < 0 || segmentSize - end >= HEADER_SIZE + first) {
+				// 从后往前删，删到一半崩溃时剩下的仍是连续的前缀
+				for (int k = bases.size() - 1; k > i; k--) {
+					Files.delete(segmentPath(bases.get(k)));
+				}
+				return i;
+			}
+		}
+		return bases.size() - 1;
+	}
+
+	/**
+	 * 逐条校验记录，返回最后一条完整记录之后的位置
+	 */
+	private static int scan(ByteBuffer buffer, Consumer<ByteBuffer> consumer) {
+		CRC32 crc = new CRC32();
+		int position = 0;
+		int length;
+		while ((length = recordLength(buffer, position, crc)) >= 0) {
+			if (consumer != null) {
+				ByteBuffer payload = buffer.duplicate();
+				payload.position(position + HEADER_SIZE).limit(position + HEADER_SIZE + length);
+				consumer.accept(payload.slice());
+			}
+			position += HEADER_SIZE + length;
+		}
+		return position;
+	}
+
+	/**
+	 * position 处完整记录的内容长度，没有记录或记录不完整时返回 -1
+	 */
+	private static int recordLength(ByteBuffer buffer, int position, CRC32 crc) {
+		if (buffer.limit() - position < HEADER_SIZE) {
+			return -1;
+		}
+		int length = buffer.getInt(position);
+		if (length <= 0 || length > buffer.limit() - position - HEADER_SIZE) {
+			return -1;
+		}
+		ByteBuffer payload = buffer.duplicate();
+		payload.position(position + HEADER_SIZE).limit(position + HEADER_SIZE + length);
+		crc.reset();
+		crc.update(payload);
+		return (int) crc.getValue() == buffer.getInt(position + 4) ? length : -1;
+	}
+
+	private List<Long> segmentBases() throws IOException {
+		List<Long> bases = new ArrayList<>();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + SUFFIX)) {
+			for (Path file : files) {
+				String name = file.getFileName().toString();
+				bases.add(Long.parseLong(name.substring(0, name.length() - SUFFIX.length())));
+			}
+		}
+		bases.sort(null);
+		return bases;
+	}
+
+	private Path segmentPath(long base) {
+		return dir.resolve(String.format("%020d%s", base, SUFFIX));
+	}
+
+	private static class Segment {
+		final long base;
+		final FileChannel channel;
+		final MappedByteBuffer buffer;
+
+		Segment(long base, FileChannel channel, MappedByteBuffer buffer) {
+			this.base = base;
+			this.channel = channel;
+			this.buffer = buffer;
+		}
+
+		static Segment open(Path path, long base, int size) throws IOException {
+			FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			return new Segment(base, channel, channel.map(MapMode.READ_WRITE, 0, size));
+		}
+
+		void close() {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+}
@@ -8,5 +8,8 @@ package com.gant.payroll.domain;
  */
 public interface Affiliation {
 
-	double calculateDeductions(Paycheck paycheck);
+	/**
+	 * 扣除金额，单位为分
+	 */
+	long calculateDeductions(Paycheck paycheck);
 }
@@ -2,6 +2,7 @@ package com.gant.payroll.domain;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -15,7 +16,8 @@ public class Employee {
 	private String id;
 	private String name;
 	private String address;
-	private List<Affiliation> affiliations = new ArrayList<>();
+	/** 大多数员工没有从属关系，第一次加入时才分配列表 */
+	private List<Affiliation> affiliations = Collections.emptyList();
 
 	private PaymentClassification classification;
 	private PaymentSchedule schedule;
@@ -35,19 +37,47 @@ public class Employee {
 		return this.schedule.getPayPeriodStartDate(d);
 	}
 
+	public int getPayPeriodStartDay(LocalDate d) {
+		return this.schedule.getPayPeriodStartDay(d);
+	}
+
 	public void payDay(Paycheck pc) {
-		double grossPay = classification.calculatePay(pc);
-		double deductions = calculateDeductions(pc);
-		double netPay = grossPay - deductions;
-		pc.setGrossPay(grossPay);
-		pc.setDeductions(deductions);
-		pc.setNetPay(netPay);
-		pc.setEmpId(id);
+		calculatePaycheck(pc);
 		paymentMethod.pay(pc);
 	}
 
-	protected double calculateDeductions(Paycheck pc) {
-		double deductions = 0.0;
+	/**
+	 * 只计算薪资，不支付；支付交给 PaymentDispatcher 异步进行
+	 */
+	public void calculatePaycheck(Paycheck pc) {
+		long grossPay = classification.calculatePay(pc);
+		long deductions = calculateDeductions(pc);
+		pc.setGrossPayCents(grossPay);
+		pc.setDeductionsCents(deductions);
+		pc.setNetPayCents(grossPay - deductions);
+		pc.setEmpId(id);
+	}
+
+	/**
+	 * 按 period 的账期计算薪资，结果追加到 batch，返回所在行；period 只提供起止日期，可以被同一账期的员工共用
+	 */
+	public int calculatePaycheck(Paycheck period, PaycheckBatch batch) {
+		long grossPay = classification.calculatePay(period);
+		long deductions = calculateDeductions(period);
+		return batch.add(id, period.getPayPeriodStartDay(), period.getPayPeriodEndDay(), grossPay, deductions, grossPay - deductions);
+	}
+
+	/**
+	 * 计算并支付，支付记录追加到 batch
+	 */
+	public int payDay(Paycheck period, PaycheckBatch batch) {
+		int i = calculatePaycheck(period, batch);
+		paymentMethod.pay(batch, i);
+		return i;
+	}
+
+	protected long calculateDeductions(Paycheck pc) {
+		long deductions = 0;
 		for (Affiliation affiliation : affiliations) {
 			deductions += affiliation.calculateDeductions(pc);
 		}
@@ -66,6 +96,11 @@ public class Employee {
 		return schedule;
 	}
 
+	/**
+	 * 只在员工加入数据库之前设置支付计划。数据库按支付计划给员工建了索引，已经入库的员工
+	 * 要通过 {@link com.gant.payroll.db.PayrollDatabase#changeSchedule(String, PaymentSchedule)} 修改，
+	 * 直接调用这里会让发薪日查询漏掉或多算这个员工
+	 */
 	public void setSchedule(PaymentSchedule schedule) {
 		this.schedule = schedule;
 	}
@@ -83,6 +118,9 @@ public class Employee {
 	}
 
 	public void addAffiliations(Affiliation affiliations) {
+		if (this.affiliations.isEmpty()) {
+			this.affiliations = new ArrayList<>(1);
+		}
 		this.affiliations.add(affiliations);
 	}
 
@@ -2,6 +2,8 @@ package com.gant.payroll.domain;
 
 import java.time.LocalDate;
 
+import com.gant.payroll.util.Money;
+
 /**
  * 支付记录
  * 
@@ -11,15 +13,21 @@ import java.time.LocalDate;
 public class Paycheck {
 	private LocalDate payPeriodStart;
 	private LocalDate payPeriodEnd;
-	private double grossPay;
-	private double deductions;
-	private double netPay;
+	/** 账期起止日期对应的 epoch day，算薪时直接比较 */
+	private int payPeriodStartDay;
+	private int payPeriodEndDay;
+	/** 金额以分为单位 */
+	private long grossPay;
+	private long deductions;
+	private long netPay;
 	private String empId;
 
 	public Paycheck(LocalDate payPeriodStart, LocalDate payPeriodEnd) {
 		super();
 		this.payPeriodStart = payPeriodStart;
 		this.payPeriodEnd = payPeriodEnd;
+		this.payPeriodStartDay = (int) payPeriodStart.toEpochDay();
+		this.payPeriodEndDay = (int) payPeriodEnd.toEpochDay();
 	}
 
 	public LocalDate getPayPeriodStart() {
@@ -28,6 +36,11 @@ public class Paycheck {
 
 	public void setPayPeriodStart(LocalDate payPeriodStart) {
 		this.payPeriodStart = payPeriodStart;
+		this.payPeriodStartDay = (int) payPeriodStart.toEpochDay();
+	}
+
+	public int getPayPeriodStartDay() {
+		return payPeriodStartDay;
 	}
 
 	public LocalDate getPayPeriodEnd() {
@@ -36,29 +49,67 @@ public class Paycheck {
 
 	public void setPayPeriodEnd(LocalDate payPeriodEnd) {
 		this.payPeriodEnd = payPeriodEnd;
+		this.payPeriodEndDay = (int) payPeriodEnd.toEpochDay();
+	}
+
+	public int getPayPeriodEndDay() {
+		return payPeriodEndDay;
 	}
 
 	public double getGrossPay() {
-		return grossPay;
+		return Money.toDouble(grossPay);
 	}
 
+	/**
+	 * 按元设置，四舍五入到分
+	 */
 	public void setGrossPay(double grossPay) {
+		this.grossPay = Money.of(grossPay);
+	}
+
+	public long getGrossPayCents() {
+		return grossPay;
+	}
+
+	public void setGrossPayCents(long grossPay) {
 		this.grossPay = grossPay;
 	}
 
 	public double getDeductions() {
-		return deductions;
+		return Money.toDouble(deductions);
 	}
 
+	/**
+	 * 按元设置，四舍五入到分
+	 */
 	public void setDeductions(double deductions) {
+		this.deductions = Money.of(deductions);
+	}
+
+	public long getDeductionsCents() {
+		return deductions;
+	}
+
+	public void setDeductionsCents(long deductions) {
 		this.deductions = deductions;
 	}
 
 	public double getNetPay() {
-		return netPay;
+		return Money.toDouble(netPay);
 	}
 
+	/**
+	 * 按元设置，四舍五入到分
+	 */
 	public void setNetPay(double netPay) {
+		this.netPay = Money.of(netPay);
+	}
+
+	public long getNetPayCents() {
+		return netPay;
+	}
+
+	public void setNetPayCents(long netPay) {
 		this.netPay = netPay;
 	}
 
@@ -70,10 +121,17 @@ public class Paycheck {
 		this.empId = empId;
 	}
 
+	/**
+	 * 支付的幂等键：同一员工同一发薪日只打一次款，重试时网关按它去重
+	 */
+	public String getPaymentKey() {
+		return empId + "@" + getPayPeriodEnd();
+	}
+
 	@Override
 	public String toString() {
-		return "Paycheck [payPeriodStart=" + payPeriodStart + ", payPeriodEnd=" + payPeriodEnd + ", grossPay=" + grossPay + ", deductions=" + deductions
-				+ ", netPay=" + netPay + ", empId=" + empId + "]";
+		return "Paycheck [payPeriodStart=" + payPeriodStart + ", payPeriodEnd=" + payPeriodEnd + ", grossPay=" + Money.format(grossPay) + ", deductions="
+				+ Money.format(deductions) + ", netPay=" + Money.format(netPay) + ", empId=" + empId + "]";
 	}
 
 }
@@ -0,0 +1,160 @@
+package com.gant.payroll.domain;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 按列存储的一批支付记录
+ * 
+ * 发薪时每个员工只在几个并行的基本类型数组里占一行：员工编号（直接引用员工对象上的字符串）、
+ * 账期起止的 epoch day、以分为单位的应发、扣除、实发，不再为每个员工生成 Paycheck 和两个 LocalDate。
+ * 数据库和导出都直接读这些数组，只有调用方需要对象时才用 {@link #toPaycheck(int)} 生成。
+ * 不是线程安全的，并行计算时每个线程各用一批，最后 {@link #addAll(PaycheckBatch)} 合并。
+ * 
+ * @author jiangyp
+ *
+ */
+public class PaycheckBatch {
+
+	private static final int FIRST_CHUNK = 16;
+
+	private String[] empIds;
+	private int[] starts;
+	private int[] ends;
+	private long[] grossPays;
+	private long[] deductions;
+	private long[] netPays;
+	private int size;
+
+	public PaycheckBatch() {
+		this(FIRST_CHUNK);
+	}
+
+	/**
+	 * 按预计的记录数一次分配好数组
+	 */
+	public PaycheckBatch(int capacity) {
+		capacity = Math.max(capacity, 1);
+		this.empIds = new String[capacity];
+		this.starts = new int[capacity];
+		this.ends = new int[capacity];
+		this.grossPays = new long[capacity];
+		this.deductions = new long[capacity];
+		this.netPays = new long[capacity];
+	}
+
+	/**
+	 * 追加一行，返回行号
+	 */
+	public int add(String empId, int payPeriodStartDay, int payPeriodEndDay, long grossPay, long deductions, long netPay) {
+		if (size == empIds.length) {
+			grow(size + (size >> 1) + 1);
+		}
+		int i = size++;
+		this.empIds[i] = empId;
+		this.starts[i] = payPeriodStartDay;
+		this.ends[i] = payPeriodEndDay;
+		this.grossPays[i] = grossPay;
+		this.deductions[i] = deductions;
+		this.netPays[i] = netPay;
+		return i;
+	}
+
+	public int add(Paycheck paycheck) {
+		return add(paycheck.getEmpId(), paycheck.getPayPeriodStartDay(), paycheck.getPayPeriodEndDay(), paycheck.getGrossPayCents(),
+				paycheck.getDeductionsCents(), paycheck.getNetPayCents());
+	}
+
+	/**
+	 * 把另一批整体追加到末尾，按列整块复制
+	 */
+	public void addAll(PaycheckBatch other) {
+		int n = other.size;
+		if (size + n > empIds.length) {
+			grow(Math.max(size + n, size + (size >> 1)));
+		}
+		System.arraycopy(other.empIds, 0, empIds, size, n);
+		System.arraycopy(other.starts, 0, starts, size, n);
+		System.arraycopy(other.ends, 0, ends, size, n);
+		System.arraycopy(other.grossPays, 0, grossPays, size, n);
+		System.arraycopy(other.deductions, 0, deductions, size, n);
+		System.arraycopy(other.netPays, 0, netPays, size, n);
+		size += n;
+	}
+
+	private void grow(int capacity) {
+		this.empIds = Arrays.copyOf(this.empIds, capacity);
+		this.starts = Arrays.copyOf(this.starts, capacity);
+		this.ends = Arrays.copyOf(this.ends, capacity);
+		this.grossPays = Arrays.copyOf(this.grossPays, capacity);
+		this.deductions = Arrays.copyOf(this.deductions, capacity);
+		this.netPays = Arrays.copyOf(this.netPays, capacity);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * 清空后复用已分配的数组
+	 */
+	public void clear() {
+		Arrays.fill(empIds, 0, size, null);
+		size = 0;
+	}
+
+	public String getEmpId(int i) {
+		return empIds[i];
+	}
+
+	public int getPayPeriodStartDay(int i) {
+		return starts[i];
+	}
+
+	public int getPayPeriodEndDay(int i) {
+		return ends[i];
+	}
+
+	public long getGrossPayCents(int i) {
+		return grossPays[i];
+	}
+
+	public long getDeductionsCents(int i) {
+		return deductions[i];
+	}
+
+	public long getNetPayCents(int i) {
+		return netPays[i];
+	}
+
+	/**
+	 * 按需生成第 i 行的 Paycheck，与原来逐个计算得到的对象内容相同
+	 */
+	public Paycheck toPaycheck(int i) {
+		Paycheck pc = new Paycheck(LocalDate.ofEpochDay(starts[i]), LocalDate.ofEpochDay(ends[i]));
+		pc.setGrossPayCents(grossPays[i]);
+		pc.setDeductionsCents(deductions[i]);
+		pc.setNetPayCents(netPays[i]);
+		pc.setEmpId(empIds[i]);
+		return pc;
+	}
+
+	public List<Paycheck> toList() {
+		List<Paycheck> paychecks = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			paychecks.add(toPaycheck(i));
+		}
+		return paychecks;
+	}
+
+	@Override
+	public String toString() {
+		return toList().toString();
+	}
+}
@@ -8,5 +8,8 @@ package com.gant.payroll.domain;
  */
 public interface PaymentClassification {
 
-	double calculatePay(Paycheck paycheck);
+	/**
+	 * 应发薪资，单位为分
+	 */
+	long calculatePay(Paycheck paycheck);
 }
@@ -9,4 +9,11 @@ package com.gant.payroll.domain;
 public interface PaymentMethod {
 
 	void pay(Paycheck paycheck);
+
+	/**
+	 * 支付 batch 的第 i 行；默认生成 Paycheck 再支付，用不到支付记录内容的方式可以覆盖掉
+	 */
+	default void pay(PaycheckBatch batch, int i) {
+		pay(batch.toPaycheck(i));
+	}
 }
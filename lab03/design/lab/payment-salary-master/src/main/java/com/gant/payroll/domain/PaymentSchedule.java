@@ -13,4 +13,11 @@ public interface PaymentSchedule {
 	boolean isPayDate(LocalDate date);
 
 	LocalDate getPayPeriodStartDate(LocalDate date);
+
+	/**
+	 * 账期起点的 epoch day，实现类可以覆盖掉生成 LocalDate 的开销
+	 */
+	default int getPayPeriodStartDay(LocalDate date) {
+		return (int) getPayPeriodStartDate(date).toEpochDay();
+	}
 }
@@ -0,0 +1,352 @@
+package com.gant.payroll.io;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.gant.payroll.classification.CommissionedClassification;
+import com.gant.payroll.classification.HourlyClassification;
+import com.gant.payroll.classification.SalesReceipt;
+import com.gant.payroll.db.PayrollDatabase;
+import com.gant.payroll.domain.Employee;
+import com.gant.payroll.util.DateParser;
+
+/**
+ * 时间卡片、销售凭条文件的批量导入
+ * 
+ * 每行一条记录：员工编号、日期（yyyy-MM-dd）、工时或金额，支持逗号分隔和定宽两种格式，
+ * 第一行解析不了时当作表头跳过。文件通过内存映射读取，日期和数字直接从字节解析，不生成中间字符串；
+ * 同一个员工连续的记录攒成一段，只查一次员工，时间卡片以基本类型数组整段写入。
+ * 按员工排序的文件最省，乱序文件每换一次员工要多查一次。
+ * 每个映射块的修改提交一次。同一个实例不能被多个线程同时使用。
+ * 
+ * @author jiangyp
+ *
+ */
+public class BulkImporter {
+
+	/** 每次映射的字节数 */
+	private static final long CHUNK = 1L << 30;
+	/** 一段记录最多攒的条数 */
+	private static final int RUN = 4096;
+	private static final byte COMMA = ',';
+	private static final int BAD_DATE = Integer.MIN_VALUE;
+	private static final double[] POW10 = { 1, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15 };
+
+	private final PayrollDatabase payrollDatabase;
+	/** 定宽格式下员工编号、日期、数值三列的宽度，逗号分隔时为 null */
+	private final int[] widths;
+
+	private boolean receipts;
+	private ImportResult result;
+	private long line;
+
+	// 当前这一段记录所属的员工
+	private byte[] runId = new byte[32];
+	private int runIdLength = -1;
+	private String runEmpId;
+	private Employee runEmp;
+	private final int[] days = new int[RUN];
+	private final double[] values = new double[RUN];
+	private int count;
+
+	private BulkImporter(PayrollDatabase payrollDatabase, int[] widths) {
+		this.payrollDatabase = payrollDatabase;
+		this.widths = widths;
+	}
+
+	/**
+	 * 逗号分隔：empId,yyyy-MM-dd,数值
+	 */
+	public static BulkImporter csv(PayrollDatabase payrollDatabase) {
+		return new BulkImporter(payrollDatabase, null);
+	}
+
+	/**
+	 * 定宽：三列依次占 idWidth、dateWidth、valueWidth 个字节，两侧空格会被忽略；最后一列之后还有内容的行拒绝导入
+	 */
+	public static BulkImporter fixedWidth(PayrollDatabase payrollDatabase, int idWidth, int dateWidth, int valueWidth) {
+		return new BulkImporter(payrollDatabase, new int[] { idWidth, dateWidth, valueWidth });
+	}
+
+	/**
+	 * 导入时间卡片，非小时工的记录忽略
+	 */
+	public ImportResult importTimeCards(Path file) throws IOException {
+		return importFile(file, false);
+	}
+
+	/**
+	 * 导入销售凭条，非销售员工的记录忽略
+	 */
+	public ImportResult importSalesReceipts(Path file) throws IOException {
+		return importFile(file, true);
+	}
+
+	private ImportResult importFile(Path file, boolean receipts) throws IOException {
+		this.receipts = receipts;
+		this.result = new ImportResult();
+		this.line = 0;
+		this.runIdLength = -1;
+		this.runEmpId = null;
+		this.runEmp = null;
+		this.count = 0;
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			long pos = 0;
+			while (pos < size) {
+				long length = Math.min(CHUNK, size - pos);
+				MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, pos, length);
+				int limit = (int) length;
+				if (pos + length < size) {
+					// 只处理到块内最后一个换行，剩下的半行留给下一块
+					limit = lastNewline(buf, limit) + 1;
+					if (limit == 0) {
+						throw new IOException("行太长: " + file);
+					}
+				}
+				int end = limit;
+				payrollDatabase.batch(() -> {
+					parse(buf, end);
+					flush();
+				});
+				pos += limit;
+			}
+		}
+		return result;
+	}
+
+	private void parse(MappedByteBuffer buf, int limit) {
+		int start = 0;
+		while (start < limit) {
+			int eol = start;
+			while (eol < limit && buf.get(eol) != '\n') {
+				eol++;
+			}
+			int end = eol;
+			if (end > start && buf.get(end - 1) == '\r') {
+				end--;
+			}
+			line++;
+			if (end > start) {
+				record(buf, start, end);
+			}
+			start = eol + 1;
+		}
+	}
+
+	private void record(MappedByteBuffer buf, int start, int end) {
+		int idStart, idEnd, dateStart, dateEnd, valueStart, valueEnd;
+		if (widths == null) {
+			int c1 = indexOf(buf, COMMA, start, end);
+			int c2 = c1 < 0 ? -1 : indexOf(buf, COMMA, c1 + 1, end);
+			if (c2 < 0) {
+				reject("列数不对");
+				return;
+			}
+			idStart = start;
+			idEnd = c1;
+			dateStart = c1 + 1;
+			dateEnd = c2;
+			valueStart = c2 + 1;
+			valueEnd = end;
+		} else {
+			if (end - start < widths[0] + widths[1] + 1) {
+				reject("行太短");
+				return;
+			}
+			idStart = start;
+			idEnd = dateStart = start + widths[0];
+			dateEnd = valueStart = dateStart + widths[1];
+			valueEnd = valueStart + widths[2];
+			if (!blank(buf, valueEnd, end)) {
+				// 最后一列之后还有内容，多半是数值超出了列宽，不能截断后导入
+				if (line > 1) {
+					reject("行太长");
+				}
+				return;
+			}
+			valueEnd = Math.min(end, valueEnd);
+		}
+		while (idStart < idEnd && buf.get(idStart) == ' ') {
+			idStart++;
+		}
+		while (idEnd > idStart && buf.get(idEnd - 1) == ' ') {
+			idEnd--;
+		}
+		int day = parseDate(buf, dateStart, dateEnd);
+		double value = parseDecimal(buf, valueStart, valueEnd);
+		if (day == BAD_DATE || Double.isNaN(value) || idStart == idEnd) {
+			if (line > 1) {
+				reject("格式错误");
+			}
+			return;
+		}
+
+		if (!isRun(buf, idStart, idEnd)) {
+			flush();
+			startRun(buf, idStart, idEnd);
+		}
+		if (runEmp == null) {
+			reject("没有员工 " + runEmpId);
+			return;
+		}
+		if (receipts ? !(runEmp.getClassification() instanceof CommissionedClassification)
+				: !(runEmp.getClassification() instanceof HourlyClassification)) {
+			result.skipped();
+			return;
+		}
+		days[count] = day;
+		values[count] = value;
+		if (++count == RUN) {
+			flush();
+		}
+	}
+
+	/**
+	 * [start, end) 之间只有空格，start 不小于 end 时也算
+	 */
+	private static boolean blank(MappedByteBuffer buf, int start, int end) {
+		for (int i = start; i < end; i++) {
+			if (buf.get(i) != ' ') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean isRun(MappedByteBuffer buf, int start, int end) {
+		if (end - start != runIdLength) {
+			return false;
+		}
+		for (int i = 0; i < runIdLength; i++) {
+			if (runId[i] != buf.get(start + i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void startRun(MappedByteBuffer buf, int start, int end) {
+		runIdLength = end - start;
+		if (runId.length < runIdLength) {
+			runId = Arrays.copyOf(runId, runIdLength);
+		}
+		for (int i = 0; i < runIdLength; i++) {
+			runId[i] = buf.get(start + i);
+		}
+		runEmpId = new String(runId, 0, runIdLength, StandardCharsets.UTF_8);
+		runEmp = payrollDatabase.findEmployee(runEmpId);
+	}
+
+	private void flush() {
+		if (count == 0) {
+			return;
+		}
+		if (receipts) {
+			CommissionedClassification cc = (CommissionedClassification) runEmp.getClassification();
+			List<SalesReceipt> salesReceipts = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				SalesReceipt sr = new SalesReceipt(LocalDate.ofEpochDay(days[i]), values[i]);
+				cc.addSalesReceipt(sr);
+				salesReceipts.add(sr);
+			}
+			payrollDatabase.addSalesReceipts(runEmpId, salesReceipts);
+		} else {
+			payrollDatabase.addTimeCards(runEmpId, days, values, count);
+		}
+		result.imported(count);
+		count = 0;
+	}
+
+	private void reject(String reason) {
+		result.reject(line, reason);
+	}
+
+	private static int lastNewline(MappedByteBuffer buf, int limit) {
+		for (int i = limit - 1; i >= 0; i--) {
+			if (buf.get(i) == '\n') {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static int indexOf(MappedByteBuffer buf, byte b, int start, int end) {
+		for (int i = start; i < end; i++) {
+			if (buf.get(i) == b) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * 解析 yyyy-MM-dd，返回 epoch day，格式不对时返回 BAD_DATE
+	 */
+	private static int parseDate(MappedByteBuffer buf, int start, int end) {
+		while (start < end && buf.get(start) == ' ') {
+			start++;
+		}
+		while (end > start && buf.get(end - 1) == ' ') {
+			end--;
+		}
+		long day = DateParser.ISO.parse(buf, start, end - start);
+		return DateParser.isError(day) ? BAD_DATE : (int) day;
+	}
+
+	/**
+	 * 解析十进制小数，有效数字不超过 15 位时结果与 Double.parseDouble 相同；格式不对时返回 NaN
+	 */
+	private static double parseDecimal(MappedByteBuffer buf, int start, int end) {
+		while (start < end && buf.get(start) == ' ') {
+			start++;
+		}
+		while (end > start && buf.get(end - 1) == ' ') {
+			end--;
+		}
+		boolean negative = start < end && buf.get(start) == '-';
+		if (negative) {
+			start++;
+		}
+		long mantissa = 0;
+		int digits = 0;
+		int scale = -1;
+		for (int i = start; i < end; i++) {
+			byte b = buf.get(i);
+			if (b == '.' && scale < 0) {
+				scale = 0;
+			} else if (b >= '0' && b <= '9') {
+				mantissa = mantissa * 10 + (b - '0');
+				if (++digits > 15) {
+					return Double.parseDouble(ascii(buf, negative ? start - 1 : start, end));
+				}
+				if (scale >= 0) {
+					scale++;
+				}
+			} else {
+				return Double.NaN;
+			}
+		}
+		if (digits == 0) {
+			return Double.NaN;
+		}
+		double value = scale > 0 ? mantissa / POW10[scale] : mantissa;
+		return negative ? -value : value;
+	}
+
+	private static String ascii(MappedByteBuffer buf, int start, int end) {
+		byte[] bytes = new byte[end - start];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = buf.get(start + i);
+		}
+		return new String(bytes, StandardCharsets.US_ASCII);
+	}
+}
@@ -0,0 +1,166 @@
+package com.gant.payroll.io;
+
+import java.nio.ByteBuffer;
+
+import com.gant.payroll.util.EpochDays;
+
+/**
+ * 把字符串、日期、金额直接编码进 ByteBuffer 的工具
+ * 
+ * @author jiangyp
+ *
+ */
+final class Encoding {
+
+	private Encoding() {
+	}
+
+	static void putAscii(ByteBuffer buf, String s) {
+		for (int i = 0; i < s.length(); i++) {
+			buf.put((byte) s.charAt(i));
+		}
+	}
+
+	/**
+	 * UTF-8 编码，返回写入的字节数；编码后超过 maxBytes 个字节时抛出异常，不写入也不截断
+	 */
+	static int putUtf8(ByteBuffer buf, String s, int maxBytes) {
+		int length = 0;
+		for (int i = 0; i < s.length(); i++) {
+			int c = s.codePointAt(i);
+			length += utf8Length(c);
+			if (c >= 0x10000) {
+				i++;
+			}
+		}
+		if (length > maxBytes) {
+			throw new IllegalArgumentException("超出 " + maxBytes + " 字节: " + s);
+		}
+		for (int i = 0; i < s.length(); i++) {
+			int c = s.codePointAt(i);
+			int n = utf8Length(c);
+			if (n == 1) {
+				buf.put((byte) c);
+			} else if (n == 2) {
+				buf.put((byte) (0xC0 | c >> 6));
+				buf.put((byte) (0x80 | c & 0x3F));
+			} else if (n == 3) {
+				buf.put((byte) (0xE0 | c >> 12));
+				buf.put((byte) (0x80 | c >> 6 & 0x3F));
+				buf.put((byte) (0x80 | c & 0x3F));
+			} else {
+				buf.put((byte) (0xF0 | c >> 18));
+				buf.put((byte) (0x80 | c >> 12 & 0x3F));
+				buf.put((byte) (0x80 | c >> 6 & 0x3F));
+				buf.put((byte) (0x80 | c & 0x3F));
+				i++;
+			}
+		}
+		return length;
+	}
+
+	private static int utf8Length(int c) {
+		return c < 0x80 ? 1 : c < 0x800 ? 2 : c < 0x10000 ? 3 : 4;
+	}
+
+	static void pad(ByteBuffer buf, byte b, int n) {
+		for (int i = 0; i < n; i++) {
+			buf.put(b);
+		}
+	}
+
+	/**
+	 * 写 n 位十进制数，不足 n 位时前面补 0
+	 */
+	static void putDigits(ByteBuffer buf, long value, int n) {
+		int pos = buf.position();
+		for (int i = n - 1; i >= 0; i--) {
+			buf.put(pos + i, (byte) ('0' + value % 10));
+			value /= 10;
+		}
+		buf.position(pos + n);
+	}
+
+	static int digitCount(long value) {
+		int n = 1;
+		while (value >= 10) {
+			value /= 10;
+			n++;
+		}
+		return n;
+	}
+
+	/**
+	 * 日期按 epoch day 给出，写成 yyyy-MM-dd，separator 为 0 时写 yyyyMMdd
+	 */
+	static void putDate(ByteBuffer buf, int epochDay, byte separator) {
+		putDigits(buf, EpochDays.year(epochDay), 4);
+		if (separator != 0) {
+			buf.put(separator);
+		}
+		putDigits(buf, EpochDays.month(epochDay), 2);
+		if (separator != 0) {
+			buf.put(separator);
+		}
+		putDigits(buf, EpochDays.dayOfMonth(epochDay), 2);
+	}
+
+	/**
+	 * 金额（分）写成保留两位小数的元
+	 */
+	static void putAmount(ByteBuffer buf, long cents) {
+		if (cents < 0) {
+			buf.put((byte) '-');
+			cents = -cents;
+		}
+		long yuan = cents / 100;
+		putDigits(buf, yuan, digitCount(yuan));
+		buf.put((byte) '.');
+		putDigits(buf, cents % 100, 2);
+	}
+
+	/**
+	 * 金额以分为单位，右对齐、左补 0 写满 width 位，负数首位为 '-'；位数放不下时抛出异常，不截断
+	 */
+	static void putCents(ByteBuffer buf, long cents, int width) {
+		int digits = cents == Long.MIN_VALUE ? 20 : cents < 0 ? digitCount(-cents) + 1 : digitCount(cents);
+		if (digits > width) {
+			throw new IllegalArgumentException("金额超出 " + width + " 位: " + cents);
+		}
+		if (cents < 0) {
+			buf.put((byte) '-');
+			putDigits(buf, -cents, width - 1);
+		} else {
+			putDigits(buf, cents, width);
+		}
+	}
+
+	/**
+	 * JSON 字符串，包括两侧引号；转义后超过 maxBytes 个字节时抛出异常
+	 */
+	static void putJsonString(ByteBuffer buf, String s, int maxBytes) {
+		buf.put((byte) '"');
+		boolean plain = true;
+		for (int i = 0; i < s.length() && plain; i++) {
+			char c = s.charAt(i);
+			plain = c >= 0x20 && c != '"' && c != '\\';
+		}
+		if (plain) {
+			putUtf8(buf, s, maxBytes);
+		} else {
+			StringBuilder sb = new StringBuilder(s.length() + 8);
+			for (int i = 0; i < s.length(); i++) {
+				char c = s.charAt(i);
+				if (c == '"' || c == '\\') {
+					sb.append('\\').append(c);
+				} else if (c < 0x20) {
+					sb.append(String.format("\\u%04x", (int) c));
+				} else {
+					sb.append(c);
+				}
+			}
+			putUtf8(buf, sb.toString(), maxBytes);
+		}
+		buf.put((byte) '"');
+	}
+}
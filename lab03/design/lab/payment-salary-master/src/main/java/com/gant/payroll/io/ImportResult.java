@@ -0,0 +1,67 @@
+package com.gant.payroll.io;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 批量导入的结果，格式错误或找不到员工的行不影响其它行
+ * 
+ * @author jiangyp
+ *
+ */
+public class ImportResult {
+
+	/** 最多记录的错误条数，避免坏文件把错误信息堆满内存 */
+	private static final int MAX_ERRORS = 100;
+
+	private long imported;
+	private long skipped;
+	private long rejected;
+	private List<String> errors = new ArrayList<>();
+
+	void imported(int count) {
+		imported += count;
+	}
+
+	void skipped() {
+		skipped++;
+	}
+
+	void reject(long line, String reason) {
+		rejected++;
+		if (errors.size() < MAX_ERRORS) {
+			errors.add("第 " + line + " 行: " + reason);
+		}
+	}
+
+	/**
+	 * 写入数据库的记录数
+	 */
+	public long getImported() {
+		return imported;
+	}
+
+	/**
+	 * 员工的支付策略不需要这类记录而忽略的行数（比如月薪员工的时间卡片）
+	 */
+	public long getSkipped() {
+		return skipped;
+	}
+
+	/**
+	 * 格式错误或找不到员工的行数
+	 */
+	public long getRejected() {
+		return rejected;
+	}
+
+	public List<String> getErrors() {
+		return Collections.unmodifiableList(errors);
+	}
+
+	@Override
+	public String toString() {
+		return "ImportResult [imported=" + imported + ", skipped=" + skipped + ", rejected=" + rejected + "]";
+	}
+}
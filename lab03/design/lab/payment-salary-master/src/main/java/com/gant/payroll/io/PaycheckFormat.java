@@ -0,0 +1,35 @@
+package com.gant.payroll.io;
+
+import java.nio.ByteBuffer;
+
+import com.gant.payroll.domain.Paycheck;
+import com.gant.payroll.domain.PaycheckBatch;
+
+/**
+ * 支付记录导出格式
+ * 
+ * 直接把支付记录编码成字节写进缓冲区，不生成中间字符串。
+ * 
+ * @author jiangyp
+ *
+ */
+public interface PaycheckFormat {
+
+	/** 单条记录编码后的最大字节数，写入前缓冲区至少留出这么多空间 */
+	int MAX_RECORD_SIZE = 1024;
+
+	/**
+	 * 文件开头的表头，没有表头的格式不用实现
+	 */
+	default void header(ByteBuffer buf) {
+	}
+
+	void encode(Paycheck paycheck, ByteBuffer buf);
+
+	/**
+	 * 编码 batch 的第 i 行；默认生成 Paycheck 再编码，实现类可以直接读列
+	 */
+	default void encode(PaycheckBatch batch, int i, ByteBuffer buf) {
+		encode(batch.toPaycheck(i), buf);
+	}
+}
@@ -0,0 +1,145 @@
+package com.gant.payroll.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.GZIPOutputStream;
+
+import com.gant.payroll.domain.Paycheck;
+import com.gant.payroll.domain.PaycheckBatch;
+
+/**
+ * 支付记录导出
+ * 
+ * 支付记录按 {@link PaycheckFormat} 直接编码进一块复用的缓冲区，写满后整块写入通道，
+ * 不管导出多少条，占用的内存都是固定的。不压缩时用直接缓冲区写 FileChannel；
+ * 压缩时经过 gzip。本身是一个 Consumer，可以直接挂在发薪事务上边算边导出。
+ * 某条记录编码失败（比如金额超出定宽格式的位数）时抛出异常，这条记录不会写出半行。
+ * 不是线程安全的。
+ * 
+ * @author jiangyp
+ *
+ */
+public class PaycheckWriter implements Consumer<Paycheck>, Closeable {
+
+	private static final int BUFFER_SIZE = 256 * 1024;
+
+	private final PaycheckFormat format;
+	private final WritableByteChannel channel;
+	private final GZIPOutputStream gzip;
+	private final ByteBuffer buf;
+	private long count;
+
+	/**
+	 * 写到 file（覆盖已有内容），gzip 为 true 时压缩
+	 */
+	public PaycheckWriter(Path file, PaycheckFormat format, boolean gzip) throws IOException {
+		this(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING), format, gzip);
+	}
+
+	public PaycheckWriter(WritableByteChannel channel, PaycheckFormat format, boolean gzip) throws IOException {
+		this.format = format;
+		this.channel = channel;
+		this.gzip = gzip ? new GZIPOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE) : null;
+		// gzip 要从 byte[] 读数据，只有不压缩时直接缓冲区才省一次复制
+		this.buf = gzip ? ByteBuffer.allocate(BUFFER_SIZE) : ByteBuffer.allocateDirect(BUFFER_SIZE);
+		format.header(buf);
+	}
+
+	public void write(Paycheck paycheck) throws IOException {
+		if (buf.remaining() < PaycheckFormat.MAX_RECORD_SIZE) {
+			flush();
+		}
+		int mark = buf.position();
+		try {
+			format.encode(paycheck, buf);
+		} catch (RuntimeException e) {
+			buf.position(mark);
+			throw e;
+		}
+		count++;
+	}
+
+	/**
+	 * 按列写出整批支付记录，不生成 Paycheck
+	 */
+	public void write(PaycheckBatch batch) throws IOException {
+		for (int i = 0; i < batch.size(); i++) {
+			if (buf.remaining() < PaycheckFormat.MAX_RECORD_SIZE) {
+				flush();
+			}
+			int mark = buf.position();
+			try {
+				format.encode(batch, i, buf);
+			} catch (RuntimeException e) {
+				buf.position(mark);
+				throw e;
+			}
+			count++;
+		}
+	}
+
+	@Override
+	public void accept(Paycheck paycheck) {
+		try {
+			write(paycheck);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * 可以直接挂在发薪事务的 setBatchSink 上
+	 */
+	public void accept(PaycheckBatch batch) {
+		try {
+			write(batch);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * 已写入的记录数
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	public void flush() throws IOException {
+		buf.flip();
+		if (gzip != null) {
+			gzip.write(buf.array(), buf.arrayOffset() + buf.position(), buf.remaining());
+		} else {
+			while (buf.hasRemaining()) {
+				channel.write(buf);
+			}
+		}
+		buf.clear();
+	}
+
+	/**
+	 * 写出剩余数据并关闭；压缩时关闭 gzip，释放它占用的本地内存
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			try {
+				if (gzip != null) {
+					gzip.close();
+				}
+			} finally {
+				channel.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,120 @@
+package com.gant.payroll.io;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import com.gant.payroll.domain.Paycheck;
+import com.gant.payroll.domain.PaycheckBatch;
+
+/**
+ * 内置的导出格式
+ * 
+ * @author jiangyp
+ *
+ */
+public enum StandardPaycheckFormat implements PaycheckFormat {
+
+	/**
+	 * 逗号分隔，第一行是表头，金额保留两位小数；员工编号含逗号、引号或换行时加引号，转义后超过 MAX_EMP_ID 字节时抛出异常
+	 */
+	CSV {
+		private final byte[] header = "empId,payPeriodStart,payPeriodEnd,grossPay,deductions,netPay\n".getBytes(StandardCharsets.US_ASCII);
+
+		@Override
+		public void header(ByteBuffer buf) {
+			buf.put(header);
+		}
+
+		@Override
+		void encode(String empId, int start, int end, long grossPay, long deductions, long netPay, ByteBuffer buf) {
+			if (needsQuote(empId)) {
+				buf.put((byte) '"');
+				Encoding.putUtf8(buf, empId.replace("\"", "\"\""), MAX_EMP_ID);
+				buf.put((byte) '"');
+			} else {
+				Encoding.putUtf8(buf, empId, MAX_EMP_ID);
+			}
+			buf.put((byte) ',');
+			Encoding.putDate(buf, start, (byte) '-');
+			buf.put((byte) ',');
+			Encoding.putDate(buf, end, (byte) '-');
+			buf.put((byte) ',');
+			Encoding.putAmount(buf, grossPay);
+			buf.put((byte) ',');
+			Encoding.putAmount(buf, deductions);
+			buf.put((byte) ',');
+			Encoding.putAmount(buf, netPay);
+			buf.put((byte) '\n');
+		}
+	},
+
+	/**
+	 * 银行定宽格式，每行 63 字节：员工编号 10 位左对齐补空格，起止日期各 8 位 yyyyMMdd，
+	 * 应发、扣除、实发各 12 位，以分为单位左补 0；员工编号超过 10 字节或金额超过 12 位时抛出异常，不截断
+	 */
+	FIXED_WIDTH {
+		@Override
+		void encode(String empId, int start, int end, long grossPay, long deductions, long netPay, ByteBuffer buf) {
+			int n = Encoding.putUtf8(buf, empId, 10);
+			Encoding.pad(buf, (byte) ' ', 10 - n);
+			Encoding.putDate(buf, start, (byte) 0);
+			Encoding.putDate(buf, end, (byte) 0);
+			Encoding.putCents(buf, grossPay, 12);
+			Encoding.putCents(buf, deductions, 12);
+			Encoding.putCents(buf, netPay, 12);
+			buf.put((byte) '\n');
+		}
+	},
+
+	/**
+	 * 每行一个 JSON 对象
+	 */
+	JSON_LINES {
+		@Override
+		void encode(String empId, int start, int end, long grossPay, long deductions, long netPay, ByteBuffer buf) {
+			Encoding.putAscii(buf, "{\"empId\":");
+			Encoding.putJsonString(buf, empId, MAX_EMP_ID);
+			Encoding.putAscii(buf, ",\"payPeriodStart\":\"");
+			Encoding.putDate(buf, start, (byte) '-');
+			Encoding.putAscii(buf, "\",\"payPeriodEnd\":\"");
+			Encoding.putDate(buf, end, (byte) '-');
+			Encoding.putAscii(buf, "\",\"grossPay\":");
+			Encoding.putAmount(buf, grossPay);
+			Encoding.putAscii(buf, ",\"deductions\":");
+			Encoding.putAmount(buf, deductions);
+			Encoding.putAscii(buf, ",\"netPay\":");
+			Encoding.putAmount(buf, netPay);
+			Encoding.putAscii(buf, "}\n");
+		}
+	};
+
+	/** 员工编号最多的字节数，超出时抛出异常，保证单条记录不超过 MAX_RECORD_SIZE */
+	static final int MAX_EMP_ID = 512;
+
+	@Override
+	public void encode(Paycheck pc, ByteBuffer buf) {
+		encode(pc.getEmpId(), pc.getPayPeriodStartDay(), pc.getPayPeriodEndDay(), pc.getGrossPayCents(), pc.getDeductionsCents(), pc.getNetPayCents(),
+				buf);
+	}
+
+	@Override
+	public void encode(PaycheckBatch batch, int i, ByteBuffer buf) {
+		encode(batch.getEmpId(i), batch.getPayPeriodStartDay(i), batch.getPayPeriodEndDay(i), batch.getGrossPayCents(i), batch.getDeductionsCents(i),
+				batch.getNetPayCents(i), buf);
+	}
+
+	private static boolean needsQuote(String s) {
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 直接按列编码，日期是 epoch day，金额以分为单位
+	 */
+	abstract void encode(String empId, int start, int end, long grossPay, long deductions, long netPay, ByteBuffer buf);
+}
@@ -0,0 +1,17 @@
+package com.gant.payroll.method;
+
+import com.gant.payroll.domain.Paycheck;
+
+/**
+ * 银行网关，负责把薪资打到银行卡
+ * 
+ * @author jiangyp
+ *
+ */
+public interface BankGateway {
+
+	/**
+	 * paymentKey 相同的转账只执行一次：超时重试时会用同一个 key 再调用，之前的调用可能已经到账
+	 */
+	void transfer(String paymentKey, String bank, double account, Paycheck paycheck);
+}
@@ -2,6 +2,7 @@ package com.gant.payroll.method;
 
 import com.gant.payroll.domain.Paycheck;
 import com.gant.payroll.domain.PaymentMethod;
+import com.gant.payroll.util.StringPool;
 
 /**
  * 直接打到银行卡得支付方式
@@ -12,16 +13,34 @@ import com.gant.payroll.domain.PaymentMethod;
 public class BankMethod implements PaymentMethod {
 	private String bank;
 	private double account;
+	private BankGateway gateway;
 
 	public BankMethod(String bank, double account) {
 		super();
-		this.bank = bank;
+		// 银行只有有限几家，驻留后同一家银行的员工共用一个名字
+		this.bank = StringPool.getDefault().intern(bank);
 		this.account = account;
 	}
 
+	public BankMethod(String bank, double account, BankGateway gateway) {
+		this(bank, account);
+		this.gateway = gateway;
+	}
+
 	@Override
 	public void pay(Paycheck paycheck) {
 		// "向银行卡 " + bank + " 支付" + account + "元"
+		if (gateway != null) {
+			gateway.transfer(paycheck.getPaymentKey(), bank, account, paycheck);
+		}
+	}
+
+	public String getBank() {
+		return bank;
+	}
+
+	public double getAccount() {
+		return account;
 	}
 
 	@Override
@@ -1,6 +1,7 @@
 package com.gant.payroll.method;
 
 import com.gant.payroll.domain.Paycheck;
+import com.gant.payroll.domain.PaycheckBatch;
 import com.gant.payroll.domain.PaymentMethod;
 
 /**
@@ -11,11 +12,19 @@ import com.gant.payroll.domain.PaymentMethod;
  */
 public class HoldMethod implements PaymentMethod {
 
+	/** 到财务自取不需要账号信息，录入和日志回放都直接用它 */
+	public static final HoldMethod INSTANCE = new HoldMethod();
+
 	@Override
 	public void pay(Paycheck paycheck) {
 		// 到财务自取
 	}
 
+	@Override
+	public void pay(PaycheckBatch batch, int i) {
+		// 到财务自取，不需要生成支付记录
+	}
+
 	@Override
 	public String toString() {
 		return "HoldMethod [到财务自取]";
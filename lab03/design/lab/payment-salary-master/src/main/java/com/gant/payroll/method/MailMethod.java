@@ -1,6 +1,7 @@
 package com.gant.payroll.method;
 
 import com.gant.payroll.domain.Paycheck;
+import com.gant.payroll.domain.PaycheckBatch;
 import com.gant.payroll.domain.PaymentMethod;
 
 /**
@@ -23,6 +24,15 @@ public class MailMethod implements PaymentMethod {
 		// "向" + address + " 发送支票"
 	}
 
+	@Override
+	public void pay(PaycheckBatch batch, int i) {
+		// "向" + address + " 发送支票"，不需要生成支付记录
+	}
+
+	public String getAddress() {
+		return address;
+	}
+
 	@Override
 	public String toString() {
 		return "MailMethod [address=" + address + "]";
@@ -0,0 +1,217 @@
+package com.gant.payroll.method;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.gant.payroll.domain.Paycheck;
+import com.gant.payroll.domain.PaymentMethod;
+
+/**
+ * 支付分发器，把薪资计算和实际支付分开
+ * 
+ * 每笔支付在单独的虚拟线程里调用 {@link PaymentMethod#pay(Paycheck)}，发薪流程不再被网络往返阻塞。
+ * 同一家银行（或同一种支付方式）的并发数受信号量限制：分发前先拿到许可，拿不到时分发方等待，
+ * 在途的支付和占用的线程都不会超过许可数。运行在 Java 21 以下时退化为固定大小的线程池。
+ * 
+ * 单次支付有超时，超时后中断这次调用，等它真正返回后才按指数退避重试，同一笔支付任何时刻只有一次调用在途；
+ * 重试沿用同一个 {@link Paycheck#getPaymentKey()}，网关据此去重，不会重复打款。
+ * 
+ * @author jiangyp
+ *
+ */
+public class PaymentDispatcher implements AutoCloseable {
+
+	/** 没有虚拟线程时平台线程池的默认大小 */
+	public static final int DEFAULT_MAX_THREADS = 64;
+
+	/** 跑支付：调用、超时后的等待、重试都在同一个线程里 */
+	private final ExecutorService executor;
+	/** 到时间中断超时的调用 */
+	private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(daemon("payment-watchdog"));
+	private final Map<String, Semaphore> limits = new ConcurrentHashMap<>();
+	private final int defaultLimit;
+	private final long timeoutMillis;
+	private final int maxRetries;
+	private final long backoffMillis;
+
+	/**
+	 * @param defaultLimit  每家银行（支付方式）默认的最大并发数
+	 * @param timeoutMillis 单次支付超时
+	 * @param maxRetries    失败后最多重试次数
+	 * @param backoffMillis 第一次重试前的等待时间，之后每次翻倍
+	 */
+	public PaymentDispatcher(int defaultLimit, long timeoutMillis, int maxRetries, long backoffMillis) {
+		this(defaultLimit, DEFAULT_MAX_THREADS, timeoutMillis, maxRetries, backoffMillis);
+	}
+
+	/**
+	 * @param maxThreads 没有虚拟线程时平台线程池的大小，超出的支付拿着许可排队，排队时不计超时
+	 */
+	public PaymentDispatcher(int defaultLimit, int maxThreads, long timeoutMillis, int maxRetries, long backoffMillis) {
+		this.executor = newExecutor(maxThreads);
+		this.defaultLimit = defaultLimit;
+		this.timeoutMillis = timeoutMillis;
+		this.maxRetries = maxRetries;
+		this.backoffMillis = backoffMillis;
+	}
+
+	/**
+	 * 单独设置某家银行的最大并发数，需要在分发之前设置
+	 */
+	public void setLimit(String channel, int limit) {
+		limits.put(channel, new Semaphore(limit));
+	}
+
+	/**
+	 * 异步支付，支付成功后 future 返回这张支付记录，重试用完仍失败则异常结束。
+	 * 这家银行的并发已满时先等到有空位再返回
+	 */
+	public CompletableFuture<Paycheck> dispatch(PaymentMethod method, Paycheck paycheck) {
+		CompletableFuture<Paycheck> future = new CompletableFuture<>();
+		Semaphore limit = limits.computeIfAbsent(channelOf(method), k -> new Semaphore(defaultLimit));
+		try {
+			limit.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			future.completeExceptionally(e);
+			return future;
+		}
+		try {
+			executor.execute(() -> {
+				try {
+					payWithRetry(method, paycheck);
+					future.complete(paycheck);
+				} catch (Throwable e) {
+					future.completeExceptionally(e);
+				} finally {
+					limit.release();
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			limit.release();
+			future.completeExceptionally(e);
+		}
+		return future;
+	}
+
+	/**
+	 * 等待已提交的支付全部结束并释放线程；等待时被中断则保留中断状态直接返回
+	 */
+	@Override
+	public void close() {
+		executor.shutdown();
+		try {
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			watchdog.shutdownNow();
+		}
+	}
+
+	private void payWithRetry(PaymentMethod method, Paycheck paycheck) throws Exception {
+		long backoff = backoffMillis;
+		for (int attempt = 0;; attempt++) {
+			try {
+				payOnce(method, paycheck);
+				return;
+			} catch (Exception e) {
+				if (attempt >= maxRetries) {
+					throw e;
+				}
+			}
+			Thread.sleep(backoff);
+			backoff *= 2;
+		}
+	}
+
+	/**
+	 * 在当前线程调用一次支付，超时由看门狗中断；返回时这次调用一定已经结束
+	 */
+	private void payOnce(PaymentMethod method, Paycheck paycheck) throws Exception {
+		Call call = new Call(Thread.currentThread());
+		ScheduledFuture<?> alarm = watchdog.schedule(call::timeout, timeoutMillis, TimeUnit.MILLISECONDS);
+		RuntimeException failure = null;
+		try {
+			method.pay(paycheck);
+		} catch (RuntimeException e) {
+			failure = e;
+		} finally {
+			alarm.cancel(false);
+			call.finish();
+		}
+		if (call.timedOut) {
+			TimeoutException e = new TimeoutException("支付超时: " + paycheck.getPaymentKey());
+			e.initCause(failure);
+			throw e;
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	/**
+	 * 一次在途的调用；只在调用还没返回时中断它，不会误伤线程之后跑的其他支付
+	 */
+	private static class Call {
+		final Thread runner;
+		boolean running = true;
+		boolean timedOut;
+
+		Call(Thread runner) {
+			this.runner = runner;
+		}
+
+		synchronized void timeout() {
+			if (running) {
+				timedOut = true;
+				runner.interrupt();
+			}
+		}
+
+		synchronized void finish() {
+			running = false;
+			if (timedOut) {
+				// 清掉看门狗留下的中断，重试前的等待不受影响
+				Thread.interrupted();
+			}
+		}
+	}
+
+	/**
+	 * 限流的维度：银行卡支付按银行，其他按支付方式
+	 */
+	private static String channelOf(PaymentMethod method) {
+		if (method instanceof BankMethod) {
+			return ((BankMethod) method).getBank();
+		}
+		return method.getClass().getSimpleName();
+	}
+
+	private static ExecutorService newExecutor(int maxThreads) {
+		try {
+			// Java 21 起才有虚拟线程，这里反射调用以兼容更低版本
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return Executors.newFixedThreadPool(maxThreads, daemon("payment-dispatcher"));
+		}
+	}
+
+	private static ThreadFactory daemon(String name) {
+		return r -> {
+			Thread t = new Thread(r, name);
+			t.setDaemon(true);
+			return t;
+		};
+	}
+}
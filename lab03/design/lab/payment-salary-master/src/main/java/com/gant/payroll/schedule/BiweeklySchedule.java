@@ -2,8 +2,8 @@ package com.gant.payroll.schedule;
 
 import java.time.LocalDate;
 
-import com.gant.payroll.domain.PaymentSchedule;
 import com.gant.payroll.util.DateUtil;
+import com.gant.payroll.util.EpochDays;
 
 /**
  * 
@@ -12,20 +12,35 @@ import com.gant.payroll.util.DateUtil;
  * @author jiangyp
  *
  */
-public class BiweeklySchedule implements PaymentSchedule {
+public class BiweeklySchedule extends CalendarSchedule {
 
-	LocalDate firstPayableFriday = LocalDate.of(2017, 7, 6);
+	/** 起算日是下面的常量而不是字段，所以隔周员工都可以引用这一个 */
+	public static final BiweeklySchedule INSTANCE = new BiweeklySchedule();
+
+	/** 第一个发薪的周五，所有隔周支付的员工同一天发薪 */
+	static final long FIRST_PAYABLE_FRIDAY = EpochDays.of(2017, 7, 7);
+
+	@Override
+	boolean isNominalPayDate(LocalDate date) {
+		return EpochDays.biweeklyOffset(date.toEpochDay(), FIRST_PAYABLE_FRIDAY) == 0;
+	}
 
 	@Override
-	public boolean isPayDate(LocalDate date) {
-		long interval = DateUtil.getDaysBetween(firstPayableFriday, date);
-		return interval % 14 == 0;
+	LocalDate nominalPeriodStart(LocalDate payDate) {
+		return DateUtil.add(payDate, -13);
 	}
 
+	/**
+	 * 支付计划没有状态，同类即相等
+	 */
 	@Override
-	public LocalDate getPayPeriodStartDate(LocalDate payPeriodEndDate) {
-		return DateUtil.add(payPeriodEndDate, -13);
+	public boolean equals(Object obj) {
+		return obj instanceof BiweeklySchedule;
+	}
 
+	@Override
+	public int hashCode() {
+		return BiweeklySchedule.class.hashCode();
 	}
 
 	@Override
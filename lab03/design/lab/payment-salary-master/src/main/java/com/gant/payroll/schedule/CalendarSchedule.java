@@ -0,0 +1,60 @@
+package com.gant.payroll.schedule;
+
+import java.time.LocalDate;
+
+import com.gant.payroll.domain.PaymentSchedule;
+
+/**
+ * 查发薪日历的支付计划
+ * 
+ * 子类只描述名义上的发薪规则，{@link PayCalendar} 据此生成全年的表并处理节假日调整；
+ * 最近用过的一年的表缓存在本对象里，查询时不用再查哈希表。
+ * 
+ * @author jiangyp
+ *
+ */
+abstract class CalendarSchedule implements PaymentSchedule {
+
+	private volatile PayCalendar.Year year;
+
+	/**
+	 * 不考虑节假日时 date 是否发薪
+	 */
+	abstract boolean isNominalPayDate(LocalDate date);
+
+	/**
+	 * 名义发薪日 payDate 对应的账期起点
+	 */
+	abstract LocalDate nominalPeriodStart(LocalDate payDate);
+
+	@Override
+	public boolean isPayDate(LocalDate date) {
+		long day = date.toEpochDay();
+		return year(date, day).isPayDate(day);
+	}
+
+	@Override
+	public LocalDate getPayPeriodStartDate(LocalDate payPeriodEndDate) {
+		long day = payPeriodEndDate.toEpochDay();
+		int start = year(payPeriodEndDate, day).periodStart(day);
+		// 不是发薪日时按名义规则推算
+		return start == Integer.MIN_VALUE ? nominalPeriodStart(payPeriodEndDate) : LocalDate.ofEpochDay(start);
+	}
+
+	@Override
+	public int getPayPeriodStartDay(LocalDate payPeriodEndDate) {
+		long day = payPeriodEndDate.toEpochDay();
+		int start = year(payPeriodEndDate, day).periodStart(day);
+		return start == Integer.MIN_VALUE ? (int) nominalPeriodStart(payPeriodEndDate).toEpochDay() : start;
+	}
+
+	private PayCalendar.Year year(LocalDate date, long day) {
+		PayCalendar calendar = PayCalendar.getDefault();
+		PayCalendar.Year year = this.year;
+		if (year == null || !year.contains(day) || year.version != calendar.getVersion()) {
+			year = calendar.year(this, date.getYear());
+			this.year = year;
+		}
+		return year;
+	}
+}
@@ -2,25 +2,43 @@ package com.gant.payroll.schedule;
 
 import java.time.LocalDate;
 
-import com.gant.payroll.domain.PaymentSchedule;
 import com.gant.payroll.util.DateUtil;
 
 /**
- * 没有最后一个工作日支付
+ * 每月最后一个工作日支付
  * 
  * @author jiangyp
  *
  */
-public class MothlySchedule implements PaymentSchedule {
+public class MothlySchedule extends CalendarSchedule {
 
+	/** 月薪员工录入时分到的计划，月底是哪天由发薪日历决定，实例里不用记 */
+	public static final MothlySchedule INSTANCE = new MothlySchedule();
+
+	/**
+	 * 名义上月底发薪，月底不是工作日时由发薪日历提前
+	 */
 	@Override
-	public boolean isPayDate(LocalDate date) {
+	boolean isNominalPayDate(LocalDate date) {
 		return DateUtil.isLastDayOfMonth(date);
 	}
 
 	@Override
-	public LocalDate getPayPeriodStartDate(LocalDate payPeriodEndDate) {
-		return DateUtil.getFirstDay(payPeriodEndDate);
+	LocalDate nominalPeriodStart(LocalDate payDate) {
+		return DateUtil.getFirstDay(payDate);
+	}
+
+	/**
+	 * 月底发薪不带参数，从日志回放出来的实例和录入时的实例必须相等，否则恢复后员工会分到新的分组
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		return obj instanceof MothlySchedule;
+	}
+
+	@Override
+	public int hashCode() {
+		return MothlySchedule.class.hashCode();
 	}
 
 	@Override
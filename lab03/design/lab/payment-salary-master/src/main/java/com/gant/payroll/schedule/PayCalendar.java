@@ -0,0 +1,163 @@
+package com.gant.payroll.schedule;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 发薪日历
+ * 
+ * 每种支付计划每年生成一张表：一个按 epoch day 下标的发薪日位图，加上每个发薪日对应的账期起点。
+ * 判断发薪日是一次位运算，查账期起点是一次数组读取，不再每次做日期运算。
+ * 名义发薪日碰上周末或节假日时提前到前一个工作日，这一期的起点不变，下一期从提前后的发薪日之后开始，
+ * 两期之间不会漏掉日期；调整在生成表时一次完成，与员工数无关。修改节假日后所有表重新生成。
+ * 
+ * @author jiangyp
+ *
+ */
+public final class PayCalendar {
+
+	/** 发薪日最多提前的天数，生成一年的表时要多看这么多天 */
+	private static final int MAX_SHIFT = 31;
+	/** 最长的账期天数，生成一年的表时从这么多天前开始看，找到上一年最后一个发薪日 */
+	private static final int MAX_PERIOD = 31;
+	private static final int NO_START = Integer.MIN_VALUE;
+
+	private static final PayCalendar DEFAULT = new PayCalendar();
+
+	private final Map<Key, Year> years = new ConcurrentHashMap<>();
+	private volatile Set<LocalDate> holidays = Collections.emptySet();
+	private volatile int version;
+
+	private PayCalendar() {
+	}
+
+	public static PayCalendar getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * 设置节假日，已生成的表全部作废
+	 */
+	public synchronized void setHolidays(Collection<LocalDate> holidays) {
+		this.holidays = Collections.unmodifiableSet(new HashSet<>(holidays));
+		this.version++;
+		this.years.clear();
+	}
+
+	public Set<LocalDate> getHolidays() {
+		return holidays;
+	}
+
+	public boolean isBusinessDay(LocalDate date) {
+		DayOfWeek dayOfWeek = date.getDayOfWeek();
+		return dayOfWeek != DayOfWeek.SATURDAY && dayOfWeek != DayOfWeek.SUNDAY && !holidays.contains(date);
+	}
+
+	int getVersion() {
+		return version;
+	}
+
+	Year year(CalendarSchedule schedule, int year) {
+		int version = this.version;
+		return years.computeIfAbsent(new Key(schedule, year, version), k -> build(schedule, year, version));
+	}
+
+	private Year build(CalendarSchedule schedule, int year, int version) {
+		LocalDate first = LocalDate.ofYearDay(year, 1);
+		int length = first.lengthOfYear();
+		Year table = new Year(first.toEpochDay(), length, version);
+		LocalDate end = first.plusDays(length + MAX_SHIFT);
+		// 上一个实际发薪日，没有找到时为 null
+		LocalDate previous = null;
+		for (LocalDate d = first.minusDays(MAX_PERIOD); d.isBefore(end); d = d.plusDays(1)) {
+			if (!schedule.isNominalPayDate(d)) {
+				continue;
+			}
+			LocalDate payDate = d;
+			while (!isBusinessDay(payDate)) {
+				payDate = payDate.minusDays(1);
+			}
+			if (previous != null && !payDate.isAfter(previous)) {
+				// 两个名义发薪日提前到同一天时，账期从前一个的起点算
+				continue;
+			}
+			int i = (int) (payDate.toEpochDay() - table.firstDay);
+			if (i >= 0 && i < length) {
+				table.bits[i >>> 6] |= 1L << i;
+				// 没有调整时上一期的发薪日加一天就是名义起点；上一期提前发了，这一期从提前的那天之后算起
+				table.starts[i] = (int) (previous == null ? schedule.nominalPeriodStart(d) : previous.plusDays(1)).toEpochDay();
+			}
+			previous = payDate;
+		}
+		return table;
+	}
+
+	/**
+	 * 一种支付计划一年的发薪日表
+	 */
+	static final class Year {
+
+		final long firstDay;
+		final int version;
+		final long[] bits;
+		final int[] starts;
+
+		Year(long firstDay, int length, int version) {
+			this.firstDay = firstDay;
+			this.version = version;
+			this.bits = new long[(length + 63) >>> 6];
+			this.starts = new int[length];
+			Arrays.fill(starts, NO_START);
+		}
+
+		boolean contains(long epochDay) {
+			return epochDay >= firstDay && epochDay - firstDay < starts.length;
+		}
+
+		boolean isPayDate(long epochDay) {
+			int i = (int) (epochDay - firstDay);
+			return (bits[i >>> 6] & 1L << i) != 0;
+		}
+
+		/**
+		 * 发薪日的账期起点，不是发薪日时返回 Integer.MIN_VALUE
+		 */
+		int periodStart(long epochDay) {
+			return starts[(int) (epochDay - firstDay)];
+		}
+	}
+
+	private static final class Key {
+
+		private final CalendarSchedule schedule;
+		private final int year;
+		private final int version;
+
+		Key(CalendarSchedule schedule, int year, int version) {
+			this.schedule = schedule;
+			this.year = year;
+			this.version = version;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return year == other.year && version == other.version && schedule.equals(other.schedule);
+		}
+
+		@Override
+		public int hashCode() {
+			return (schedule.hashCode() * 31 + year) * 31 + version;
+		}
+	}
+}
@@ -2,7 +2,6 @@ package com.gant.payroll.schedule;
 
 import java.time.LocalDate;
 
-import com.gant.payroll.domain.PaymentSchedule;
 import com.gant.payroll.util.DateUtil;
 
 /**
@@ -11,16 +10,32 @@ import com.gant.payroll.util.DateUtil;
  * @author jiangyp
  *
  */
-public class WeeklySchedule implements PaymentSchedule {
+public class WeeklySchedule extends CalendarSchedule {
+
+	/** 周薪员工共用的实例，发薪日历按它缓存的那一年的表也只有一份 */
+	public static final WeeklySchedule INSTANCE = new WeeklySchedule();
 
 	@Override
-	public boolean isPayDate(LocalDate date) {
+	boolean isNominalPayDate(LocalDate date) {
 		return DateUtil.isFriday(date);
 	}
 
 	@Override
-	public LocalDate getPayPeriodStartDate(LocalDate payPeriodEndDate) {
-		return DateUtil.add(payPeriodEndDate, -6);
+	LocalDate nominalPeriodStart(LocalDate payDate) {
+		return DateUtil.add(payDate, -6);
+	}
+
+	/**
+	 * 每周五发薪的规则只有一种，new 出来的实例和 INSTANCE 落在数据库支付计划索引的同一个分组里
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		return obj instanceof WeeklySchedule;
+	}
+
+	@Override
+	public int hashCode() {
+		return WeeklySchedule.class.hashCode();
 	}
 
 	@Override
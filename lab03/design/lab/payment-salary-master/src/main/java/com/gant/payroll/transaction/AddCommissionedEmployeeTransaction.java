@@ -1,6 +1,8 @@
 package com.gant.payroll.transaction;
 
 import com.gant.payroll.classification.CommissionedClassification;
+import com.gant.payroll.db.HistoryCache;
+import com.gant.payroll.db.PayrollDatabase;
 import com.gant.payroll.domain.PaymentClassification;
 import com.gant.payroll.domain.PaymentMethod;
 import com.gant.payroll.domain.PaymentSchedule;
@@ -23,18 +25,25 @@ public class AddCommissionedEmployeeTransaction extends AddEmployeeTransaction {
 		this.rate = rate;
 	}
 
+	public AddCommissionedEmployeeTransaction(String empId, String name, String address, double salary, double rate, PayrollDatabase payrollDatabase) {
+		super(empId, name, address, payrollDatabase);
+		this.salary = salary;
+		this.rate = rate;
+	}
+
 	@Override
 	public PaymentClassification getClassification() {
-		return new CommissionedClassification(salary, rate);
+		HistoryCache history = payrollDatabase.getHistoryCache();
+		return history == null ? new CommissionedClassification(salary, rate) : new CommissionedClassification(salary, rate, getEmpId(), history);
 	}
 
 	@Override
 	public PaymentSchedule getSchedule() {
-		return new BiweeklySchedule();
+		return BiweeklySchedule.INSTANCE;
 	}
 
 	@Override
 	public PaymentMethod getMethod() {
-		return new HoldMethod();
+		return HoldMethod.INSTANCE;
 	}
 }
@@ -13,7 +13,7 @@ import com.gant.payroll.domain.PaymentSchedule;
  * @author jiangyp
  *
  */
-public abstract class AddEmployeeTransaction {
+public abstract class AddEmployeeTransaction implements Transaction {
 
 	protected PayrollDatabase payrollDatabase = new PaymentDatabaseImpl();
 
@@ -27,12 +27,18 @@ public abstract class AddEmployeeTransaction {
 		this.address = address;
 	}
 
+	public AddEmployeeTransaction(String empId, String name, String address, PayrollDatabase payrollDatabase) {
+		this(empId, name, address);
+		this.payrollDatabase = payrollDatabase;
+	}
+
 	public abstract PaymentClassification getClassification();
 
 	public abstract PaymentSchedule getSchedule();
 
 	public abstract PaymentMethod getMethod();
 
+	@Override
 	public void execute() {
 		Employee e = new Employee(empId, name, address);
 		e.setClassification(getClassification());
@@ -40,4 +46,8 @@ public abstract class AddEmployeeTransaction {
 		e.setPaymentMethod(getMethod());
 		payrollDatabase.addEmployee(empId, e);
 	}
-}
\ No newline at end of file
+
+	public String getEmpId() {
+		return empId;
+	}
+}
@@ -1,6 +1,8 @@
 package com.gant.payroll.transaction;
 
 import com.gant.payroll.classification.HourlyClassification;
+import com.gant.payroll.db.HistoryCache;
+import com.gant.payroll.db.PayrollDatabase;
 import com.gant.payroll.domain.PaymentClassification;
 import com.gant.payroll.domain.PaymentMethod;
 import com.gant.payroll.domain.PaymentSchedule;
@@ -21,18 +23,24 @@ public class AddHourlyEmployeeTransaction extends AddEmployeeTransaction {
 		this.rate = rate;
 	}
 
+	public AddHourlyEmployeeTransaction(String empId, String name, String address, double rate, PayrollDatabase payrollDatabase) {
+		super(empId, name, address, payrollDatabase);
+		this.rate = rate;
+	}
+
 	@Override
 	public PaymentClassification getClassification() {
-		return new HourlyClassification(rate);
+		HistoryCache history = payrollDatabase.getHistoryCache();
+		return history == null ? new HourlyClassification(rate) : new HourlyClassification(rate, getEmpId(), history);
 	}
 
 	@Override
 	public PaymentSchedule getSchedule() {
-		return new WeeklySchedule();
+		return WeeklySchedule.INSTANCE;
 	}
 
 	@Override
 	public PaymentMethod getMethod() {
-		return new HoldMethod();
+		return HoldMethod.INSTANCE;
 	}
 }
@@ -1,6 +1,7 @@
 package com.gant.payroll.transaction;
 
 import com.gant.payroll.classification.SalariedClassification;
+import com.gant.payroll.db.PayrollDatabase;
 import com.gant.payroll.domain.PaymentClassification;
 import com.gant.payroll.domain.PaymentMethod;
 import com.gant.payroll.domain.PaymentSchedule;
@@ -21,6 +22,11 @@ public class AddSalariedEmployeeTransaction extends AddEmployeeTransaction {
 		this.salary = salary;
 	}
 
+	public AddSalariedEmployeeTransaction(String empId, String name, String address, double salary, PayrollDatabase payrollDatabase) {
+		super(empId, name, address, payrollDatabase);
+		this.salary = salary;
+	}
+
 	@Override
 	public PaymentClassification getClassification() {
 		return new SalariedClassification(salary);
@@ -28,12 +34,12 @@ public class AddSalariedEmployeeTransaction extends AddEmployeeTransaction {
 
 	@Override
 	public PaymentSchedule getSchedule() {
-		return new MothlySchedule();
+		return MothlySchedule.INSTANCE;
 	}
 
 	@Override
 	public PaymentMethod getMethod() {
-		return new HoldMethod();
+		return HoldMethod.INSTANCE;
 	}
 
 }
@@ -1,6 +1,7 @@
 package com.gant.payroll.transaction;
 
 import com.gant.payroll.affiliation.UnionAffiliation;
+import com.gant.payroll.db.HistoryCache;
 import com.gant.payroll.db.PayrollDatabase;
 import com.gant.payroll.db.impl.PaymentDatabaseImpl;
 import com.gant.payroll.domain.Affiliation;
@@ -12,7 +13,7 @@ import com.gant.payroll.domain.Employee;
  * @author jiangyp
  *
  */
-public class AffiliationTransaction {
+public class AffiliationTransaction implements Transaction {
 
 	protected PayrollDatabase payrollDatabase = new PaymentDatabaseImpl();
 
@@ -26,11 +27,26 @@ public class AffiliationTransaction {
 		this.weeklyBue = weeklyBue;
 	}
 
+	public AffiliationTransaction(String empId, String memberId, double weeklyBue, PayrollDatabase payrollDatabase) {
+		this(empId, memberId, weeklyBue);
+		this.payrollDatabase = payrollDatabase;
+	}
+
+	@Override
 	public void execute() {
 		Employee emp = payrollDatabase.findEmployee(empId);
-		Affiliation af = new UnionAffiliation(memberId, weeklyBue);
+		HistoryCache history = payrollDatabase.getHistoryCache();
+		Affiliation af = history == null ? new UnionAffiliation(memberId, weeklyBue) : new UnionAffiliation(memberId, weeklyBue, history);
 		emp.addAffiliations(af);
 		payrollDatabase.addAffiliation(memberId, af);
 		payrollDatabase.addMember(memberId, emp);
 	}
+
+	public String getEmpId() {
+		return empId;
+	}
+
+	public String getMemberId() {
+		return memberId;
+	}
 }
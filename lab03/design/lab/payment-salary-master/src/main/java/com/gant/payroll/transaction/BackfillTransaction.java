@@ -0,0 +1,90 @@
+package com.gant.payroll.transaction;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.gant.payroll.db.PayrollDatabase;
+import com.gant.payroll.db.impl.PaymentDatabaseImpl;
+import com.gant.payroll.domain.Paycheck;
+import com.gant.payroll.domain.PaycheckBatch;
+import com.gant.payroll.domain.PaymentSchedule;
+
+/**
+ * 补算一段时间内的薪资，用于年终对账、审计
+ * 
+ * 每种支付计划只推算一次区间内的发薪日和账期，然后每个员工依次算出自己所有发薪日的支付记录，
+ * 明细按日期有序、带前缀和，每张支付记录只需二分查找，结果按列写进 {@link PaycheckBatch}，最后一次性批量保存。
+ * 只计算不支付。已经有支付记录的发薪日（按账期结束日判断）跳过，重复执行不会多出记录；
+ * 已有的支付记录只按补算区间查一个位图，开销与历史长短无关。
+ * 
+ * @author jiangyp
+ *
+ */
+public class BackfillTransaction implements Transaction {
+
+	protected PayrollDatabase payrollDatabase = new PaymentDatabaseImpl();
+	private LocalDate from;
+	private LocalDate to;
+	private PaycheckBatch paychecks;
+
+	/**
+	 * 补算 [from, to] 之间（包含两端）的所有发薪日
+	 */
+	public BackfillTransaction(LocalDate from, LocalDate to) {
+		this.from = from;
+		this.to = to;
+	}
+
+	public BackfillTransaction(LocalDate from, LocalDate to, PayrollDatabase payrollDatabase) {
+		this(from, to);
+		this.payrollDatabase = payrollDatabase;
+	}
+
+	@Override
+	public void execute() {
+		Map<PaymentSchedule, List<Paycheck>> periods = new HashMap<>();
+		PaycheckBatch paychecks = new PaycheckBatch();
+		int first = (int) from.toEpochDay();
+		payrollDatabase.streamAllEmp().forEach(emp -> {
+			BitSet paid = payrollDatabase.findPaidDays(emp.getId(), from, to);
+			for (Paycheck period : periods.computeIfAbsent(emp.getSchedule(), this::periods)) {
+				if (!paid.get(period.getPayPeriodEndDay() - first)) {
+					emp.calculatePaycheck(period, paychecks);
+				}
+			}
+		});
+		payrollDatabase.savePaychecks(paychecks);
+		this.paychecks = paychecks;
+	}
+
+	/**
+	 * 本次补算生成的支付记录，按员工、发薪日排列，调用时才生成 Paycheck
+	 */
+	public List<Paycheck> getPaychecks() {
+		return paychecks.toList();
+	}
+
+	/**
+	 * 本次补算生成的支付记录，按列存放
+	 */
+	public PaycheckBatch getPaycheckBatch() {
+		return paychecks;
+	}
+
+	/**
+	 * 区间内每个发薪日的账期，只带起止日期，同一支付计划的员工共用
+	 */
+	private List<Paycheck> periods(PaymentSchedule schedule) {
+		List<Paycheck> periods = new ArrayList<>();
+		for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+			if (schedule.isPayDate(date)) {
+				periods.add(new Paycheck(schedule.getPayPeriodStartDate(date), date));
+			}
+		}
+		return periods;
+	}
+}
@@ -0,0 +1,69 @@
+package com.gant.payroll.transaction;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 批量事务的执行结果，单条失败不影响其它记录
+ * 
+ * @author jiangyp
+ *
+ */
+public class BatchResult {
+
+	private int succeeded;
+	private List<Failure> failures = new ArrayList<>();
+
+	void succeed(int count) {
+		succeeded += count;
+	}
+
+	void fail(Transaction transaction, Exception cause) {
+		failures.add(new Failure(transaction, cause));
+	}
+
+	public int getSucceeded() {
+		return succeeded;
+	}
+
+	public List<Failure> getFailures() {
+		return Collections.unmodifiableList(failures);
+	}
+
+	public boolean isAllSucceeded() {
+		return failures.isEmpty();
+	}
+
+	@Override
+	public String toString() {
+		return "BatchResult [succeeded=" + succeeded + ", failures=" + failures.size() + "]";
+	}
+
+	/**
+	 * 一条失败的事务及原因
+	 */
+	public static class Failure {
+
+		private Transaction transaction;
+		private Exception cause;
+
+		public Failure(Transaction transaction, Exception cause) {
+			this.transaction = transaction;
+			this.cause = cause;
+		}
+
+		public Transaction getTransaction() {
+			return transaction;
+		}
+
+		public Exception getCause() {
+			return cause;
+		}
+
+		@Override
+		public String toString() {
+			return "Failure [transaction=" + transaction + ", cause=" + cause + "]";
+		}
+	}
+}
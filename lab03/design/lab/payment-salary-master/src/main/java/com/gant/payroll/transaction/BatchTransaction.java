@@ -0,0 +1,167 @@
+package com.gant.payroll.transaction;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.gant.payroll.affiliation.ServiceChange;
+import com.gant.payroll.classification.CommissionedClassification;
+import com.gant.payroll.classification.HourlyClassification;
+import com.gant.payroll.classification.SalesReceipt;
+import com.gant.payroll.classification.TimeCard;
+import com.gant.payroll.db.PayrollDatabase;
+import com.gant.payroll.db.impl.PaymentDatabaseImpl;
+import com.gant.payroll.domain.Employee;
+import com.gant.payroll.domain.PaymentClassification;
+
+/**
+ * 批量事务，用于导入考勤机、销售系统的大批量数据
+ * 
+ * 时间卡片、销售凭条按员工分组，服务费按会员分组，每组只查一次员工、判断一次支付策略，
+ * 然后整组追加；整批修改在最后提交一次。其它事务（新增员工、加入工会等）按提交顺序逐个执行，
+ * 执行前先把排在它前面、已经攒下的明细整组生效，所以新增员工之后的明细能找到员工，之前的明细也不会被它影响。
+ * 单条或整组失败记到 BatchResult 里，不中断整批。
+ * 
+ * @author jiangyp
+ *
+ */
+public class BatchTransaction implements Transaction {
+
+	protected PayrollDatabase payrollDatabase = new PaymentDatabaseImpl();
+
+	private List<Transaction> transactions = new ArrayList<>();
+	private BatchResult result;
+
+	public BatchTransaction() {
+	}
+
+	public BatchTransaction(PayrollDatabase payrollDatabase) {
+		this.payrollDatabase = payrollDatabase;
+	}
+
+	public BatchTransaction add(Transaction transaction) {
+		transactions.add(transaction);
+		return this;
+	}
+
+	@Override
+	public void execute() {
+		BatchResult result = new BatchResult();
+		Map<String, List<TimeCardTransaction>> timeCards = new LinkedHashMap<>();
+		Map<String, List<SalesReceiptTransaction>> salesReceipts = new LinkedHashMap<>();
+		Map<String, List<ServiceChangeTransaction>> serviceChanges = new LinkedHashMap<>();
+		payrollDatabase.batch(() -> {
+			for (Transaction t : transactions) {
+				if (t instanceof TimeCardTransaction) {
+					TimeCardTransaction tc = (TimeCardTransaction) t;
+					timeCards.computeIfAbsent(tc.getEmpId(), k -> new ArrayList<>()).add(tc);
+				} else if (t instanceof SalesReceiptTransaction) {
+					SalesReceiptTransaction sr = (SalesReceiptTransaction) t;
+					salesReceipts.computeIfAbsent(sr.getEmpId(), k -> new ArrayList<>()).add(sr);
+				} else if (t instanceof ServiceChangeTransaction) {
+					ServiceChangeTransaction sc = (ServiceChangeTransaction) t;
+					serviceChanges.computeIfAbsent(sc.getMemberId(), k -> new ArrayList<>()).add(sc);
+				} else {
+					flush(timeCards, salesReceipts, serviceChanges, result);
+					try {
+						t.execute();
+						result.succeed(1);
+					} catch (RuntimeException e) {
+						result.fail(t, e);
+					}
+				}
+			}
+			flush(timeCards, salesReceipts, serviceChanges, result);
+		});
+		this.result = result;
+	}
+
+	/**
+	 * 最近一次执行的结果
+	 */
+	public BatchResult getResult() {
+		return result;
+	}
+
+	private void addTimeCards(String empId, List<TimeCardTransaction> group, BatchResult result) {
+		Employee emp = payrollDatabase.findEmployee(empId);
+		if (emp == null) {
+			failAll(group, new RuntimeException("没有员工"), result);
+			return;
+		}
+		if (emp.getClassification() instanceof HourlyClassification) {
+			List<TimeCard> cards = new ArrayList<>(group.size());
+			for (TimeCardTransaction t : group) {
+				cards.add(new TimeCard(t.getDate(), t.getHours()));
+			}
+			payrollDatabase.addTimeCards(empId, cards);
+		}
+		result.succeed(group.size());
+	}
+
+	private void addSalesReceipts(String empId, List<SalesReceiptTransaction> group, BatchResult result) {
+		Employee emp = payrollDatabase.findEmployee(empId);
+		if (emp == null) {
+			failAll(group, new RuntimeException("没有员工"), result);
+			return;
+		}
+		PaymentClassification pc = emp.getClassification();
+		if (pc instanceof CommissionedClassification) {
+			CommissionedClassification cc = (CommissionedClassification) pc;
+			List<SalesReceipt> receipts = new ArrayList<>(group.size());
+			for (SalesReceiptTransaction t : group) {
+				receipts.add(new SalesReceipt(t.getDate(), t.getAmount()));
+			}
+			// 先写日志和数据库，写入失败时支付策略里也没有这些凭条
+			payrollDatabase.addSalesReceipts(empId, receipts);
+			for (SalesReceipt sr : receipts) {
+				cc.addSalesReceipt(sr);
+			}
+		}
+		result.succeed(group.size());
+	}
+
+	private void addServiceChanges(String memberId, List<ServiceChangeTransaction> group, BatchResult result) {
+		if (payrollDatabase.findUnionAffiliation(memberId) == null) {
+			failAll(group, new RuntimeException("没有会员"), result);
+			return;
+		}
+		List<ServiceChange> changes = new ArrayList<>(group.size());
+		for (ServiceChangeTransaction t : group) {
+			changes.add(new ServiceChange(t.getDate(), t.getAmout()));
+		}
+		payrollDatabase.applyServiceChanges(memberId, changes);
+		result.succeed(group.size());
+	}
+
+	/**
+	 * 把攒下的明细按组生效并清空
+	 */
+	private void flush(Map<String, List<TimeCardTransaction>> timeCards, Map<String, List<SalesReceiptTransaction>> salesReceipts,
+			Map<String, List<ServiceChangeTransaction>> serviceChanges, BatchResult result) {
+		timeCards.forEach((empId, group) -> apply(group, () -> addTimeCards(empId, group, result), result));
+		salesReceipts.forEach((empId, group) -> apply(group, () -> addSalesReceipts(empId, group, result), result));
+		serviceChanges.forEach((memberId, group) -> apply(group, () -> addServiceChanges(memberId, group, result), result));
+		timeCards.clear();
+		salesReceipts.clear();
+		serviceChanges.clear();
+	}
+
+	/**
+	 * 执行一组追加，抛出异常时整组记为失败，继续执行下一组
+	 */
+	private static void apply(List<? extends Transaction> group, Runnable work, BatchResult result) {
+		try {
+			work.run();
+		} catch (RuntimeException e) {
+			failAll(group, e, result);
+		}
+	}
+
+	private static void failAll(List<? extends Transaction> group, RuntimeException cause, BatchResult result) {
+		for (Transaction t : group) {
+			result.fail(t, cause);
+		}
+	}
+}
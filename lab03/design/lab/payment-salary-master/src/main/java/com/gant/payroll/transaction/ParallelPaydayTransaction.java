@@ -0,0 +1,121 @@
+package com.gant.payroll.transaction;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+import com.gant.payroll.db.PayrollDatabase;
+import com.gant.payroll.db.impl.PaymentDatabaseImpl;
+import com.gant.payroll.domain.Employee;
+import com.gant.payroll.domain.Paycheck;
+import com.gant.payroll.domain.PaycheckBatch;
+
+/**
+ * 并行支付薪资
+ * 
+ * 用 fork/join 把当天到期的员工拆成小段并行计算，每段把支付记录按列写进自己的 {@link PaycheckBatch}，
+ * 全部算完后按员工顺序合并、一次性批量保存，结果与 {@link PaydayTransaction} 逐个计算完全一致。
+ * 
+ * @author jiangyp
+ *
+ */
+public class ParallelPaydayTransaction implements Transaction {
+
+	/** 每段最多处理的员工数 */
+	static final int BATCH_SIZE = 512;
+
+	protected PayrollDatabase payrollDatabase = new PaymentDatabaseImpl();
+	private LocalDate date;
+	private ForkJoinPool pool;
+	private Consumer<Paycheck> paycheckSink;
+	private Consumer<PaycheckBatch> batchSink;
+
+	public ParallelPaydayTransaction(LocalDate date) {
+		this(date, ForkJoinPool.commonPool());
+	}
+
+	public ParallelPaydayTransaction(LocalDate date, ForkJoinPool pool) {
+		this.date = date;
+		this.pool = pool;
+	}
+
+	public ParallelPaydayTransaction(LocalDate date, ForkJoinPool pool, PayrollDatabase payrollDatabase) {
+		this(date, pool);
+		this.payrollDatabase = payrollDatabase;
+	}
+
+	@Override
+	public void execute() {
+		List<Employee> emps = payrollDatabase.findEmpByPayDay(date);
+		if (emps.isEmpty()) {
+			return;
+		}
+		PaycheckBatch[] buffers = new PaycheckBatch[(emps.size() + BATCH_SIZE - 1) / BATCH_SIZE];
+		pool.invoke(new PayTask(emps, buffers, 0, buffers.length));
+
+		PaycheckBatch paychecks = new PaycheckBatch(emps.size());
+		for (PaycheckBatch buffer : buffers) {
+			paychecks.addAll(buffer);
+		}
+		payrollDatabase.savePaychecks(paychecks);
+		if (batchSink != null) {
+			batchSink.accept(paychecks);
+		}
+		if (paycheckSink != null) {
+			for (int i = 0; i < paychecks.size(); i++) {
+				paycheckSink.accept(paychecks.toPaycheck(i));
+			}
+		}
+	}
+
+	/**
+	 * 保存后按员工顺序把支付记录交给 sink，sink 只在调用线程里执行
+	 */
+	public void setPaycheckSink(Consumer<Paycheck> paycheckSink) {
+		this.paycheckSink = paycheckSink;
+	}
+
+	/**
+	 * 保存后把整批支付记录交给 sink，不生成 Paycheck，sink 只在调用线程里执行
+	 */
+	public void setBatchSink(Consumer<PaycheckBatch> batchSink) {
+		this.batchSink = batchSink;
+	}
+
+	private class PayTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final List<Employee> emps;
+		private final PaycheckBatch[] buffers;
+		private final int from;
+		private final int to;
+
+		PayTask(List<Employee> emps, PaycheckBatch[] buffers, int from, int to) {
+			this.emps = emps;
+			this.buffers = buffers;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > 1) {
+				int mid = (from + to) >>> 1;
+				invokeAll(new PayTask(emps, buffers, from, mid), new PayTask(emps, buffers, mid, to));
+				return;
+			}
+			int start = from * BATCH_SIZE;
+			int end = Math.min(start + BATCH_SIZE, emps.size());
+			PaycheckBatch buffer = new PaycheckBatch(end - start);
+			PayPeriods periods = new PayPeriods(date);
+			for (int i = start; i < end; i++) {
+				Employee emp = emps.get(i);
+				emp.payDay(periods.of(emp), buffer);
+			}
+			buffers[from] = buffer;
+		}
+	}
+}
@@ -0,0 +1,36 @@
+package com.gant.payroll.transaction;
+
+import java.time.LocalDate;
+
+import com.gant.payroll.domain.Employee;
+import com.gant.payroll.domain.Paycheck;
+
+/**
+ * 同一发薪日的账期
+ * 
+ * 同一支付计划的员工账期相同，连续的员工共用同一个只带起止日期的 Paycheck，
+ * 算薪结果写进 PaycheckBatch，整批发薪只生成几个账期对象。不是线程安全的。
+ * 
+ * @author jiangyp
+ *
+ */
+class PayPeriods {
+
+	private final LocalDate payDate;
+	private Paycheck last;
+
+	PayPeriods(LocalDate payDate) {
+		this.payDate = payDate;
+	}
+
+	/**
+	 * emp 在本发薪日的账期
+	 */
+	Paycheck of(Employee emp) {
+		int start = emp.getPayPeriodStartDay(payDate);
+		if (last == null || last.getPayPeriodStartDay() != start) {
+			last = new Paycheck(LocalDate.ofEpochDay(start), payDate);
+		}
+		return last;
+	}
+}
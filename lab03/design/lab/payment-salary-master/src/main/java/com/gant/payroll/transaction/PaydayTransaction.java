@@ -1,12 +1,16 @@
 package com.gant.payroll.transaction;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 import com.gant.payroll.db.PayrollDatabase;
 import com.gant.payroll.db.impl.PaymentDatabaseImpl;
-import com.gant.payroll.domain.Employee;
 import com.gant.payroll.domain.Paycheck;
+import com.gant.payroll.domain.PaycheckBatch;
+import com.gant.payroll.method.PaymentDispatcher;
 
 /**
  * 支付薪资
@@ -14,23 +18,69 @@ import com.gant.payroll.domain.Paycheck;
  * @author jiangyp
  *
  */
-public class PaydayTransaction {
+public class PaydayTransaction implements Transaction {
 
 	protected PayrollDatabase payrollDatabase = new PaymentDatabaseImpl();
 	private LocalDate date;
+	private PaymentDispatcher paymentDispatcher;
+	private Consumer<Paycheck> paycheckSink;
+	private Consumer<PaycheckBatch> batchSink;
 
 	public PaydayTransaction(LocalDate date) {
 		this.date = date;
 	}
 
+	public PaydayTransaction(LocalDate date, PayrollDatabase payrollDatabase) {
+		this.date = date;
+		this.payrollDatabase = payrollDatabase;
+	}
+
+	@Override
 	public void execute() {
-		List<Employee> emps = payrollDatabase.findAllEmpByInit();
-		for (Employee emp : emps) {
-			if (emp.isPayDay(date)) {
-				Paycheck pc = new Paycheck(emp.getPayPeriodStartDate(date), date);
-				emp.payDay(pc);
-				payrollDatabase.savePaycheck(pc);
+		PayPeriods periods = new PayPeriods(date);
+		PaycheckBatch paychecks = new PaycheckBatch();
+		List<CompletableFuture<Paycheck>> payments = new ArrayList<>();
+		// 只取当天到期的员工，不再逐个判断所有员工；结果按列写进 paychecks，不再每人一个 Paycheck
+		payrollDatabase.streamEmpByPayDay(date).forEach(emp -> {
+			if (paymentDispatcher == null) {
+				emp.payDay(periods.of(emp), paychecks);
+			} else {
+				// 异步支付要持有支付记录，只有这里才生成对象
+				int i = emp.calculatePaycheck(periods.of(emp), paychecks);
+				payments.add(paymentDispatcher.dispatch(emp.getPaymentMethod(), paychecks.toPaycheck(i)));
 			}
+		});
+		payrollDatabase.savePaychecks(paychecks);
+		// 等所有支付结束，有支付最终失败时在这里抛出
+		CompletableFuture.allOf(payments.toArray(new CompletableFuture<?>[0])).join();
+		if (batchSink != null) {
+			batchSink.accept(paychecks);
 		}
+		if (paycheckSink != null) {
+			for (int i = 0; i < paychecks.size(); i++) {
+				paycheckSink.accept(paychecks.toPaycheck(i));
+			}
+		}
+	}
+
+	/**
+	 * 设置后只在本线程计算薪资，支付交给分发器并发完成，execute 等全部支付结束才返回
+	 */
+	public void setPaymentDispatcher(PaymentDispatcher paymentDispatcher) {
+		this.paymentDispatcher = paymentDispatcher;
+	}
+
+	/**
+	 * 保存后按员工顺序把支付记录逐条交给 sink，每条都要生成 Paycheck
+	 */
+	public void setPaycheckSink(Consumer<Paycheck> paycheckSink) {
+		this.paycheckSink = paycheckSink;
+	}
+
+	/**
+	 * 保存后把整批支付记录交给 sink，比如直接按列导出
+	 */
+	public void setBatchSink(Consumer<PaycheckBatch> batchSink) {
+		this.batchSink = batchSink;
 	}
 }
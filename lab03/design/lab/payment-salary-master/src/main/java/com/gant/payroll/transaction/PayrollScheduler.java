@@ -0,0 +1,330 @@
+package com.gant.payroll.transaction;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.gant.payroll.db.PayrollDatabase;
+import com.gant.payroll.db.impl.PaymentDatabaseImpl;
+import com.gant.payroll.domain.Employee;
+import com.gant.payroll.domain.PaycheckBatch;
+import com.gant.payroll.domain.PaymentSchedule;
+
+/**
+ * 按下一个发薪日排队的发薪调度器
+ * 
+ * 每个员工按支付计划算出下一个发薪日放进有序队列，只在最早的发薪日到了才醒来，
+ * 只处理这一天到期的一批员工，发完后按支付计划排到再下一个发薪日。
+ * 修改支付计划时直接调整队列里的位置。当前日期取自注入的 Clock，
+ * 测试时可以拨动时钟后调用 {@link #runDue()}，几毫秒内模拟好几年的发薪。
+ * 
+ * 一批支付记录先保存、再出队、最后支付：保存失败时这批员工留在队列里，下次重新计算，不会丢也不会重复支付。
+ * 后台线程遇到异常不退出，记下异常（见 {@link #getLastFailure()}）后隔一会儿重试。
+ * 
+ * @author jiangyp
+ *
+ */
+public class PayrollScheduler implements AutoCloseable {
+
+	/** 后台线程最长睡眠时间，时钟被调整后最迟这么久能发现 */
+	private static final long MAX_SLEEP_MILLIS = TimeUnit.MINUTES.toMillis(1);
+	/** 找下一个发薪日时最多往后看的天数 */
+	private static final int MAX_LOOKAHEAD = 366;
+	/** 后台线程处理失败后，隔这么久再重试 */
+	private static final long RETRY_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+	protected PayrollDatabase payrollDatabase = new PaymentDatabaseImpl();
+	private final Clock clock;
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition changed = lock.newCondition();
+	/** 按（发薪日，员工编号）排序 */
+	private final TreeSet<Entry> queue = new TreeSet<>();
+	private final Map<String, Entry> entries = new HashMap<>();
+	/** 同一时刻只有一个线程在发薪，后台线程和手动调用的 runDue 不会把同一批算两遍 */
+	private final Object payLock = new Object();
+	private Thread thread;
+	private volatile boolean running;
+	private volatile RuntimeException lastFailure;
+
+	public PayrollScheduler(Clock clock) {
+		this.clock = clock;
+		load();
+	}
+
+	public PayrollScheduler(Clock clock, PayrollDatabase payrollDatabase) {
+		this.clock = clock;
+		this.payrollDatabase = payrollDatabase;
+		load();
+	}
+
+	/**
+	 * 处理所有发薪日不晚于今天的员工，一个发薪日一批；返回生成的支付记录数。
+	 * 保存失败时抛出异常，这一批员工仍在队列里
+	 */
+	public int runDue() {
+		LocalDate today = LocalDate.now(clock);
+		int count = 0;
+		synchronized (payLock) {
+			while (true) {
+				PaycheckBatch paychecks = new PaycheckBatch();
+				List<Entry> due = new ArrayList<>();
+				List<Employee> employees = new ArrayList<>();
+				LocalDate date;
+				lock.lock();
+				try {
+					if (queue.isEmpty() || queue.first().payDay > today.toEpochDay()) {
+						return count;
+					}
+					long payDay = queue.first().payDay;
+					date = LocalDate.ofEpochDay(payDay);
+					PayPeriods periods = new PayPeriods(date);
+					for (Entry entry : new ArrayList<>(queue.headSet(new Entry(payDay + 1, "", null)))) {
+						Employee emp = payrollDatabase.findEmployee(entry.empId);
+						if (emp == null) {
+							queue.remove(entry);
+							entries.remove(entry.empId);
+						} else if (emp.getSchedule().equals(entry.schedule)) {
+							// 只计算，保存成功之前不出队、不支付
+							emp.calculatePaycheck(periods.of(emp), paychecks);
+							due.add(entry);
+							employees.add(emp);
+						} else {
+							// 支付计划被绕过调度器改掉了，按新计划重新排
+							queue.remove(entry);
+							enqueue(entry.empId, emp.getSchedule(), date);
+						}
+					}
+				} finally {
+					lock.unlock();
+				}
+				payrollDatabase.savePaychecks(paychecks);
+				advance(due, date);
+				pay(employees, paychecks);
+				count += paychecks.size();
+			}
+		}
+	}
+
+	/**
+	 * 后台线程最近一次处理失败的异常，没有失败过时为 null
+	 */
+	public RuntimeException getLastFailure() {
+		return lastFailure;
+	}
+
+	/**
+	 * 新员工加入调度，或者员工信息变了之后重新排队
+	 */
+	public void refresh(String empId) {
+		Employee emp = payrollDatabase.findEmployee(empId);
+		lock.lock();
+		try {
+			Entry old = entries.remove(empId);
+			if (old != null) {
+				queue.remove(old);
+			}
+			if (emp != null && emp.getSchedule() != null) {
+				// 还没发的那一期不跳过：从原来排到的日子（或今天）开始找
+				LocalDate from = old == null ? LocalDate.now(clock) : LocalDate.ofEpochDay(Math.min(old.payDay, LocalDate.now(clock).toEpochDay()));
+				enqueue(empId, emp.getSchedule(), from);
+			}
+			changed.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * 修改员工的支付计划并调整队列
+	 */
+	public void changeSchedule(String empId, PaymentSchedule schedule) {
+		payrollDatabase.changeSchedule(empId, schedule);
+		refresh(empId);
+	}
+
+	/**
+	 * 员工下一个排到的发薪日，不在队列里时返回 null
+	 */
+	public LocalDate getNextPayDate(String empId) {
+		lock.lock();
+		try {
+			Entry entry = entries.get(empId);
+			return entry == null ? null : LocalDate.ofEpochDay(entry.payDay);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * 启动后台线程，到了最早的发薪日才醒来处理
+	 */
+	public synchronized void start() {
+		if (thread != null) {
+			return;
+		}
+		running = true;
+		thread = new Thread(this::loop, "payroll-scheduler");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * 时钟被调整后调用，让后台线程立刻重新检查
+	 */
+	public void wakeUp() {
+		lock.lock();
+		try {
+			changed.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * 停止后台线程并等它退出；等待时被中断则保留中断状态直接返回
+	 */
+	@Override
+	public synchronized void close() {
+		if (thread == null) {
+			return;
+		}
+		running = false;
+		wakeUp();
+		try {
+			thread.join();
+			thread = null;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void loop() {
+		while (running) {
+			boolean failed = false;
+			try {
+				runDue();
+			} catch (RuntimeException e) {
+				lastFailure = e;
+				failed = true;
+			}
+			lock.lock();
+			try {
+				if (!running) {
+					return;
+				}
+				long sleep = MAX_SLEEP_MILLIS;
+				if (failed) {
+					sleep = RETRY_MILLIS;
+				} else if (!queue.isEmpty()) {
+					long wakeAt = LocalDate.ofEpochDay(queue.first().payDay).atStartOfDay(clock.getZone()).toInstant().toEpochMilli();
+					sleep = Math.min(sleep, wakeAt - clock.millis());
+				}
+				if (sleep > 0) {
+					changed.await(sleep, TimeUnit.MILLISECONDS);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	private void load() {
+		LocalDate today = LocalDate.now(clock);
+		lock.lock();
+		try {
+			payrollDatabase.streamAllEmp().forEach(emp -> {
+				if (emp.getSchedule() != null) {
+					enqueue(emp.getId(), emp.getSchedule(), today);
+				}
+			});
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * 已经保存的一批员工排到下一个发薪日。保存期间被 refresh 重新排过的员工，
+	 * 新位置不晚于这次发薪日时也要往后排，避免同一天发两次
+	 */
+	private void advance(List<Entry> due, LocalDate date) {
+		lock.lock();
+		try {
+			for (Entry entry : due) {
+				Entry current = entries.get(entry.empId);
+				if (current == null || current.payDay > entry.payDay) {
+					continue;
+				}
+				queue.remove(current);
+				enqueue(entry.empId, current.schedule, date.plusDays(1));
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * 保存之后再支付；某个员工支付失败不影响其他人，全部支付完再抛出第一个异常
+	 */
+	private static void pay(List<Employee> employees, PaycheckBatch paychecks) {
+		RuntimeException failure = null;
+		for (int i = 0; i < employees.size(); i++) {
+			try {
+				employees.get(i).getPaymentMethod().pay(paychecks, i);
+			} catch (RuntimeException e) {
+				if (failure == null) {
+					failure = e;
+				} else {
+					failure.addSuppressed(e);
+				}
+			}
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	/**
+	 * 从 from（含）开始找下一个发薪日入队，调用方持有锁
+	 */
+	private void enqueue(String empId, PaymentSchedule schedule, LocalDate from) {
+		LocalDate date = from;
+		for (int i = 0; i < MAX_LOOKAHEAD && !schedule.isPayDate(date); i++) {
+			date = date.plusDays(1);
+		}
+		if (!schedule.isPayDate(date)) {
+			throw new IllegalStateException("一年内没有发薪日: " + schedule);
+		}
+		Entry entry = new Entry(date.toEpochDay(), empId, schedule);
+		entries.put(empId, entry);
+		queue.add(entry);
+	}
+
+	private static final class Entry implements Comparable<Entry> {
+
+		final long payDay;
+		final String empId;
+		final PaymentSchedule schedule;
+
+		Entry(long payDay, String empId, PaymentSchedule schedule) {
+			this.payDay = payDay;
+			this.empId = empId;
+			this.schedule = schedule;
+		}
+
+		@Override
+		public int compareTo(Entry o) {
+			int c = Long.compare(payDay, o.payDay);
+			return c != 0 ? c : empId.compareTo(o.empId);
+		}
+	}
+}
@@ -15,7 +15,7 @@ import com.gant.payroll.domain.PaymentClassification;
  * @author jiangyp
  *
  */
-public class SalesReceiptTransaction {
+public class SalesReceiptTransaction implements Transaction {
 
 	protected PayrollDatabase payrollDatabase = new PaymentDatabaseImpl();
 
@@ -29,6 +29,12 @@ public class SalesReceiptTransaction {
 		this.amount = amount;
 	}
 
+	public SalesReceiptTransaction(String empId, LocalDate date, double amount, PayrollDatabase payrollDatabase) {
+		this(empId, date, amount);
+		this.payrollDatabase = payrollDatabase;
+	}
+
+	@Override
 	public void execute() {
 		Employee emp = payrollDatabase.findEmployee(empId);
 		if (emp == null) {
@@ -38,8 +44,20 @@ public class SalesReceiptTransaction {
 		if (pc instanceof CommissionedClassification) {
 			CommissionedClassification cc = (CommissionedClassification) pc;
 			SalesReceipt sr = new SalesReceipt(date, amount);
-			cc.addSalesReceipt(sr);
 			payrollDatabase.addSalesReceipt(empId, sr);
+			cc.addSalesReceipt(sr);
 		}
 	}
-}
\ No newline at end of file
+
+	public String getEmpId() {
+		return empId;
+	}
+
+	public LocalDate getDate() {
+		return date;
+	}
+
+	public double getAmount() {
+		return amount;
+	}
+}
@@ -1,14 +1,11 @@
 package com.gant.payroll.transaction;
 
 import java.time.LocalDate;
-import java.util.List;
+import java.util.Collections;
 
 import com.gant.payroll.affiliation.ServiceChange;
-import com.gant.payroll.affiliation.UnionAffiliation;
 import com.gant.payroll.db.PayrollDatabase;
 import com.gant.payroll.db.impl.PaymentDatabaseImpl;
-import com.gant.payroll.domain.Affiliation;
-import com.gant.payroll.domain.Employee;
 
 /**
  * 增加扣费，会费记录
@@ -16,7 +13,7 @@ import com.gant.payroll.domain.Employee;
  * @author jiangyp
  *
  */
-public class ServiceChangeTransaction {
+public class ServiceChangeTransaction implements Transaction {
 
 	protected PayrollDatabase payrollDatabase = new PaymentDatabaseImpl();
 
@@ -30,18 +27,29 @@ public class ServiceChangeTransaction {
 		this.amout = amout;
 	}
 
+	public ServiceChangeTransaction(String memberId, LocalDate date, double amout, PayrollDatabase payrollDatabase) {
+		this(memberId, date, amout);
+		this.payrollDatabase = payrollDatabase;
+	}
+
+	@Override
 	public void execute() {
-		List<Employee> emps = payrollDatabase.findMembers(memberId);
-		for (Employee emp : emps) {
-			List<Affiliation> affs = emp.getAffiliations();
-			for (Affiliation aff : affs) {
-				if (aff instanceof UnionAffiliation) {
-					UnionAffiliation uaff = (UnionAffiliation) aff;
-					ServiceChange sc = new ServiceChange(date, amout);
-					uaff.addServiceChanges(sc);
-					payrollDatabase.addServiceChange(memberId, sc);
-				}
-			}
+		if (payrollDatabase.findUnionAffiliation(memberId) == null) {
+			throw new RuntimeException("没有会员");
 		}
+		// 按会员索引直接找到会费关系，服务费只存一条
+		payrollDatabase.applyServiceChanges(memberId, Collections.singletonList(new ServiceChange(date, amout)));
+	}
+
+	public String getMemberId() {
+		return memberId;
+	}
+
+	public LocalDate getDate() {
+		return date;
+	}
+
+	public double getAmout() {
+		return amout;
 	}
 }
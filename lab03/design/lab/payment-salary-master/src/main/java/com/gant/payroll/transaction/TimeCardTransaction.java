@@ -15,13 +15,13 @@ import com.gant.payroll.domain.PaymentClassification;
  * @author jiangyp
  *
  */
-public class TimeCardTransaction {
+public class TimeCardTransaction implements Transaction {
 
 	protected PayrollDatabase payrollDatabase = new PaymentDatabaseImpl();
 
 	private String empId;
 	private LocalDate date;
-	private double hours;;
+	private double hours;
 
 	public TimeCardTransaction(String empId, LocalDate date, double hours) {
 		this.empId = empId;
@@ -29,6 +29,12 @@ public class TimeCardTransaction {
 		this.hours = hours;
 	}
 
+	public TimeCardTransaction(String empId, LocalDate date, double hours, PayrollDatabase payrollDatabase) {
+		this(empId, date, hours);
+		this.payrollDatabase = payrollDatabase;
+	}
+
+	@Override
 	public void execute() {
 		Employee emp = payrollDatabase.findEmployee(empId);
 		if (emp == null) {
@@ -36,10 +42,20 @@ public class TimeCardTransaction {
 		}
 		PaymentClassification pc = emp.getClassification();
 		if (pc instanceof HourlyClassification) {
-			HourlyClassification hc = (HourlyClassification) pc;
-			TimeCard tc = new TimeCard(date, hours);
-			hc.addTimeCards(tc);
-			payrollDatabase.addTimeCard(empId, tc);
+			// 数据库里的时间卡片就是小时工支付策略里的那一份，不用再单独加
+			payrollDatabase.addTimeCard(empId, new TimeCard(date, hours));
 		}
 	}
-}
\ No newline at end of file
+
+	public String getEmpId() {
+		return empId;
+	}
+
+	public LocalDate getDate() {
+		return date;
+	}
+
+	public double getHours() {
+		return hours;
+	}
+}
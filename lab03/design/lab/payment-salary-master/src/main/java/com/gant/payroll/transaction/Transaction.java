@@ -0,0 +1,12 @@
+package com.gant.payroll.transaction;
+
+/**
+ * 事务
+ * 
+ * @author jiangyp
+ *
+ */
+public interface Transaction {
+
+	void execute();
+}
@@ -0,0 +1,326 @@
+package com.gant.payroll.transaction;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import com.gant.payroll.db.PayrollDatabase;
+import com.gant.payroll.domain.Employee;
+
+/**
+ * 异步录入管道
+ * 
+ * 按员工编号把事务分到若干分片，每个分片是一个预先分配好的环形缓冲区：
+ * 生产者用 CAS 抢占序号、写入槽位后发布，热路径上没有锁；每个分片只有一个消费线程，
+ * 把连续发布的一段事务交给 {@link BatchTransaction} 批量生效，然后完成各自的 future。
+ * 缓冲区满时 submit 会等待消费线程腾出槽位（背压），不会无限堆积。
+ * 
+ * 同一个员工的事务进入同一个分片，按提交顺序生效。服务费只带会员编号，按提交过的
+ * {@link AffiliationTransaction} 找到会员所属的员工，没有提交过时查数据库，所以加入工会和之后的服务费也按顺序生效。
+ * 同一个会员编号重新登记时以最后提交的为准；加入工会失败时去掉这条记录，不会把服务费留在失败的员工分片上。
+ * 其它类型的事务找不到员工，不能提交。
+ * 
+ * 多个分片的消费线程会同时写数据库，数据库必须是 {@link PayrollDatabase#isConcurrent() 线程安全}的，
+ * 例如 {@link com.gant.payroll.db.impl.ConcurrentPayrollDatabase}；默认的单例数据库只能用一个分片。
+ * 
+ * 关闭时等所有已经开始提交的事务生效；消费线程因 Error 退出时，它分片上还没生效和之后提交的事务都异常完成，不会一直等待。
+ * 
+ * @author jiangyp
+ *
+ */
+public class TransactionPipeline implements AutoCloseable {
+
+	private static final int SPIN_TRIES = 100;
+	private static final long PARK_NANOS = 50_000;
+
+	private final PayrollDatabase payrollDatabase;
+	private final Shard[] shards;
+	private final int maxBatch;
+	/** 提交过的会员所属的员工，服务费按它分片 */
+	private final Map<String, String> memberId2EmpId = new ConcurrentHashMap<>();
+	/** 正在 submit 里的生产者数，消费线程等它们都发布完才退出 */
+	private final AtomicInteger submitting = new AtomicInteger();
+	private volatile boolean running = true;
+
+	/**
+	 * @param shardCount 分片数，也就是消费线程数；大于 1 时数据库必须是线程安全的
+	 * @param bufferSize 每个分片的槽位数，必须是 2 的幂
+	 * @param maxBatch   消费线程每批最多处理的事务数
+	 */
+	public TransactionPipeline(PayrollDatabase payrollDatabase, int shardCount, int bufferSize, int maxBatch) {
+		if (Integer.bitCount(bufferSize) != 1) {
+			throw new IllegalArgumentException("缓冲区大小必须是 2 的幂: " + bufferSize);
+		}
+		if (shardCount > 1 && !payrollDatabase.isConcurrent()) {
+			throw new IllegalArgumentException("多个分片需要线程安全的数据库: " + shardCount);
+		}
+		this.payrollDatabase = payrollDatabase;
+		this.maxBatch = maxBatch;
+		this.shards = new Shard[shardCount];
+		for (int i = 0; i < shardCount; i++) {
+			shards[i] = new Shard(bufferSize);
+			Thread thread = new Thread(shards[i], "payroll-ingest-" + i);
+			thread.setDaemon(true);
+			shards[i].thread = thread;
+			thread.start();
+		}
+	}
+
+	/**
+	 * 提交一个事务，生效后 future 完成；执行失败时 future 异常完成。缓冲区满时阻塞等待
+	 */
+	public CompletableFuture<Transaction> submit(Transaction transaction) {
+		String empId = empIdOf(transaction);
+		Shard shard = shards[Math.floorMod(empId.hashCode(), shards.length)];
+		CompletableFuture<Transaction> future = new CompletableFuture<>();
+		// 先登记再检查 running，close 之后的消费线程一定能看到这次提交
+		submitting.incrementAndGet();
+		try {
+			if (!running) {
+				throw new IllegalStateException("录入管道已关闭");
+			}
+			shard.publish(transaction, future);
+		} finally {
+			submitting.decrementAndGet();
+		}
+		return future;
+	}
+
+	/**
+	 * 停止接收新事务，等已提交的事务全部生效后返回；等待时被中断则保留中断状态直接返回
+	 */
+	@Override
+	public void close() {
+		running = false;
+		try {
+			for (Shard shard : shards) {
+				LockSupport.unpark(shard.thread);
+				shard.thread.join();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * 事务所属的员工编号
+	 */
+	private String empIdOf(Transaction t) {
+		if (t instanceof TimeCardTransaction) {
+			return ((TimeCardTransaction) t).getEmpId();
+		} else if (t instanceof SalesReceiptTransaction) {
+			return ((SalesReceiptTransaction) t).getEmpId();
+		} else if (t instanceof AddEmployeeTransaction) {
+			return ((AddEmployeeTransaction) t).getEmpId();
+		} else if (t instanceof AffiliationTransaction) {
+			AffiliationTransaction af = (AffiliationTransaction) t;
+			// 重新登记的会员编号替换原来的会员，之后的服务费跟着新员工分片
+			memberId2EmpId.put(af.getMemberId(), af.getEmpId());
+			return af.getEmpId();
+		} else if (t instanceof ServiceChangeTransaction) {
+			String memberId = ((ServiceChangeTransaction) t).getMemberId();
+			String empId = memberId2EmpId.get(memberId);
+			if (empId == null) {
+				List<Employee> members = payrollDatabase.findMembers(memberId);
+				// 不是会员的服务费随便放一个分片，生效时报错；重新登记过的会员编号以最后登记的员工为准
+				empId = members == null || members.isEmpty() ? memberId : members.get(members.size() - 1).getId();
+			}
+			return empId;
+		}
+		throw new IllegalArgumentException("找不到所属员工的事务不能进入录入管道: " + t);
+	}
+
+	/**
+	 * 没有生效的加入工会事务不再决定服务费的分片，之后按数据库里的会员查找
+	 */
+	private void forget(Transaction t) {
+		if (t instanceof AffiliationTransaction) {
+			AffiliationTransaction af = (AffiliationTransaction) t;
+			memberId2EmpId.remove(af.getMemberId(), af.getEmpId());
+		}
+	}
+
+	/**
+	 * 一个分片：多生产者、单消费者的环形缓冲区
+	 */
+	private final class Shard implements Runnable {
+
+		private final int mask;
+		private final Transaction[] transactions;
+		private final CompletableFuture<?>[] futures;
+		/** published[i] 为槽位 i 上已发布的序号，消费者据此判断槽位是否写好 */
+		private final AtomicLongArray published;
+		/** 最后一个被生产者抢占的序号 */
+		private final AtomicLong claimed = new AtomicLong(-1);
+		/** 最后一个已处理的序号，只由消费线程写 */
+		private volatile long consumed = -1;
+		/** 消费线程异常退出的原因，之后提交到这个分片的事务直接失败 */
+		private volatile Throwable dead;
+		private Thread thread;
+
+		Shard(int bufferSize) {
+			this.mask = bufferSize - 1;
+			this.transactions = new Transaction[bufferSize];
+			this.futures = new CompletableFuture<?>[bufferSize];
+			this.published = new AtomicLongArray(bufferSize);
+			for (int i = 0; i < bufferSize; i++) {
+				published.set(i, -1);
+			}
+		}
+
+		void publish(Transaction transaction, CompletableFuture<Transaction> future) {
+			long seq = claim();
+			if (seq < 0) {
+				future.completeExceptionally(new IllegalStateException("录入分片已停止", dead));
+				return;
+			}
+			int i = (int) seq & mask;
+			transactions[i] = transaction;
+			futures[i] = future;
+			// 有序写：槽位内容对消费线程可见后才发布序号
+			published.lazySet(i, seq);
+		}
+
+		/**
+		 * 抢占下一个序号，消费线程已经退出时返回 -1
+		 */
+		private long claim() {
+			int tries = 0;
+			while (true) {
+				if (dead != null) {
+					return -1;
+				}
+				long current = claimed.get();
+				long next = current + 1;
+				if (next - transactions.length > consumed) {
+					// 缓冲区满，等消费线程腾出槽位
+					LockSupport.unpark(thread);
+					tries = idle(tries);
+					continue;
+				}
+				if (claimed.compareAndSet(current, next)) {
+					return next;
+				}
+			}
+		}
+
+		@Override
+		public void run() {
+			int tries = 0;
+			while (true) {
+				long next = consumed + 1;
+				int n = 0;
+				while (n < maxBatch && published.get((int) (next + n) & mask) == next + n) {
+					n++;
+				}
+				if (n == 0) {
+					if (drained(next)) {
+						return;
+					}
+					tries = idle(tries);
+					continue;
+				}
+				tries = 0;
+				try {
+					apply(next, n);
+				} catch (Error e) {
+					dead = e;
+					fail(next, n, e);
+					consumed = next + n - 1;
+					failRemaining(e);
+					throw e;
+				}
+				consumed = next + n - 1;
+			}
+		}
+
+		/**
+		 * 关闭或退出后，正在提交的生产者都已发布、序号 next 之前的都已处理
+		 */
+		private boolean drained(long next) {
+			return (!running || dead != null) && submitting.get() == 0 && claimed.get() < next;
+		}
+
+		/**
+		 * 消费线程退出前把已经抢占了序号的事务都异常完成，生产者不会一直等待
+		 */
+		private void failRemaining(Throwable cause) {
+			int tries = 0;
+			while (true) {
+				long next = consumed + 1;
+				if (published.get((int) next & mask) == next) {
+					fail(next, 1, cause);
+					consumed = next;
+					tries = 0;
+				} else if (drained(next)) {
+					return;
+				} else {
+					tries = idle(tries);
+				}
+			}
+		}
+
+		private void fail(long first, int n, Throwable cause) {
+			for (int k = 0; k < n; k++) {
+				int i = (int) (first + k) & mask;
+				CompletableFuture<?> future = futures[i];
+				forget(transactions[i]);
+				transactions[i] = null;
+				futures[i] = null;
+				if (future != null) {
+					future.completeExceptionally(cause);
+				}
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		private void apply(long first, int n) {
+			BatchTransaction batch = new BatchTransaction(payrollDatabase);
+			for (int k = 0; k < n; k++) {
+				batch.add(transactions[(int) (first + k) & mask]);
+			}
+			Map<Transaction, Exception> failures = new IdentityHashMap<>();
+			RuntimeException error = null;
+			try {
+				batch.execute();
+				for (BatchResult.Failure failure : batch.getResult().getFailures()) {
+					failures.put(failure.getTransaction(), failure.getCause());
+				}
+			} catch (RuntimeException e) {
+				error = e;
+			}
+			for (int k = 0; k < n; k++) {
+				int i = (int) (first + k) & mask;
+				Transaction t = transactions[i];
+				CompletableFuture<Transaction> future = (CompletableFuture<Transaction>) futures[i];
+				transactions[i] = null;
+				futures[i] = null;
+				Exception cause = error != null ? error : failures.get(t);
+				if (cause == null) {
+					future.complete(t);
+				} else {
+					forget(t);
+					future.completeExceptionally(cause);
+				}
+			}
+		}
+	}
+
+	/**
+	 * 先让出 CPU 重试几次，再短暂休眠
+	 */
+	private static int idle(int tries) {
+		if (tries < SPIN_TRIES) {
+			Thread.yield();
+		} else {
+			LockSupport.parkNanos(PARK_NANOS);
+		}
+		return tries + 1;
+	}
+}
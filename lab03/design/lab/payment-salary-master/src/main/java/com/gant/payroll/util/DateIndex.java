@@ -0,0 +1,121 @@
+package com.gant.payroll.util;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * 按日期有序的列表工具
+ * 
+ * 明细（销售凭条、服务费等）按日期有序插入，按时间段查询时先二分定位，
+ * 只扫描落在时间段内的记录，查询开销与时间段长度有关，与历史记录总数无关。
+ * 
+ * @author jiangyp
+ *
+ */
+public class DateIndex {
+
+	private DateIndex() {
+	}
+
+	/**
+	 * 按日期插入，同一天的记录保持插入顺序，返回插入的位置
+	 */
+	public static <T> int insert(List<T> list, T item, Function<? super T, LocalDate> dateOf) {
+		synchronized (list) {
+			int size = list.size();
+			LocalDate date = dateOf.apply(item);
+			if (size == 0 || !dateOf.apply(list.get(size - 1)).isAfter(date)) {
+				list.add(item);
+				return size;
+			}
+			int index = upperBound(list, date, dateOf);
+			list.add(index, item);
+			return index;
+		}
+	}
+
+	/**
+	 * 第一个日期不早于 date 的位置
+	 */
+	public static <T> int lowerBound(List<T> list, LocalDate date, Function<? super T, LocalDate> dateOf) {
+		int low = 0;
+		int high = list.size();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (dateOf.apply(list.get(mid)).isBefore(date)) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * 第一个日期晚于 date 的位置
+	 */
+	public static <T> int upperBound(List<T> list, LocalDate date, Function<? super T, LocalDate> dateOf) {
+		int low = 0;
+		int high = list.size();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (dateOf.apply(list.get(mid)).isAfter(date)) {
+				high = mid;
+			} else {
+				low = mid + 1;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * 第一个日期不早于 epochDay 的位置，按 epoch day 比较，查找过程不生成对象
+	 */
+	public static <T> int lowerBound(List<T> list, long epochDay, ToIntFunction<? super T> dayOf) {
+		int low = 0;
+		int high = list.size();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (dayOf.applyAsInt(list.get(mid)) < epochDay) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * 第一个日期晚于 epochDay 的位置，按 epoch day 比较
+	 */
+	public static <T> int upperBound(List<T> list, long epochDay, ToIntFunction<? super T> dayOf) {
+		int low = 0;
+		int high = list.size();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (dayOf.applyAsInt(list.get(mid)) > epochDay) {
+				high = mid;
+			} else {
+				low = mid + 1;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * 日期在 [from, to] 之间（包含两端）的记录
+	 */
+	public static <T> List<T> range(List<T> list, LocalDate from, LocalDate to, Function<? super T, LocalDate> dateOf) {
+		if (list == null) {
+			return null;
+		}
+		synchronized (list) {
+			int start = lowerBound(list, from, dateOf);
+			int end = Math.max(start, upperBound(list, to, dateOf));
+			return new ArrayList<>(list.subList(start, end));
+		}
+	}
+}
@@ -0,0 +1,158 @@
+package com.gant.payroll.util;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+
+/**
+ * 日期解析
+ * 
+ * 支持 yyyy-MM-dd 以及若干配置好的格式（y、M、d 表示数字，其它字符原样匹配），
+ * 直接从 CharSequence、byte[] 或 ByteBuffer 的一段里解析出 epoch day，不生成中间对象。
+ * 解析失败时返回错误码（用 {@link #isError(long)} 判断），不抛异常。
+ * 创建后不可变，可以被任意多个线程同时使用。
+ * 
+ * @author jiangyp
+ *
+ */
+public final class DateParser {
+
+	/** 没有匹配的格式 */
+	public static final long INVALID_FORMAT = Long.MIN_VALUE;
+	/** 格式匹配，但日期不存在，比如 2018-02-30 */
+	public static final long INVALID_DATE = Long.MIN_VALUE + 1;
+
+	public static final DateParser ISO = of("yyyy-MM-dd");
+
+	private final Layout[] layouts;
+
+	private DateParser(Layout[] layouts) {
+		this.layouts = layouts;
+	}
+
+	/**
+	 * 按给定的格式依次尝试，年份必须是 4 位，月、日必须是 2 位
+	 */
+	public static DateParser of(String... patterns) {
+		Layout[] layouts = new Layout[patterns.length];
+		for (int i = 0; i < patterns.length; i++) {
+			layouts[i] = new Layout(patterns[i]);
+		}
+		return new DateParser(layouts);
+	}
+
+	public static boolean isError(long result) {
+		return result == INVALID_FORMAT || result == INVALID_DATE;
+	}
+
+	public long parse(CharSequence s) {
+		return parse(s, 0, s.length());
+	}
+
+	public long parse(CharSequence s, int offset, int length) {
+		return parseAny(s, offset, length);
+	}
+
+	public long parse(byte[] bytes, int offset, int length) {
+		return parseAny(bytes, offset, length);
+	}
+
+	/**
+	 * 按绝对位置读取，不改变 buf 的 position
+	 */
+	public long parse(ByteBuffer buf, int offset, int length) {
+		return parseAny(buf, offset, length);
+	}
+
+	/**
+	 * 解析失败时返回 null
+	 */
+	public LocalDate parseLocalDate(CharSequence s) {
+		long day = parse(s);
+		return isError(day) ? null : LocalDate.ofEpochDay(day);
+	}
+
+	private long parseAny(Object src, int offset, int length) {
+		long result = INVALID_FORMAT;
+		for (Layout layout : layouts) {
+			if (layout.length == length) {
+				long day = layout.parse(src, offset);
+				if (!isError(day)) {
+					return day;
+				}
+				if (day == INVALID_DATE) {
+					result = INVALID_DATE;
+				}
+			}
+		}
+		return result;
+	}
+
+	private static int at(Object src, int i) {
+		if (src instanceof byte[]) {
+			return ((byte[]) src)[i];
+		}
+		if (src instanceof ByteBuffer) {
+			return ((ByteBuffer) src).get(i);
+		}
+		return ((CharSequence) src).charAt(i);
+	}
+
+	/**
+	 * 一种格式，编译成每个位置上的字符：y、M、d 表示该位置是对应字段的一位数字
+	 */
+	private static final class Layout {
+
+		private final char[] pattern;
+		private final int length;
+
+		Layout(String pattern) {
+			int y = count(pattern, 'y');
+			int m = count(pattern, 'M');
+			int d = count(pattern, 'd');
+			if (y != 4 || m != 2 || d != 2) {
+				throw new IllegalArgumentException("不支持的日期格式: " + pattern);
+			}
+			this.pattern = pattern.toCharArray();
+			this.length = pattern.length();
+		}
+
+		long parse(Object src, int offset) {
+			int year = 0;
+			int month = 0;
+			int day = 0;
+			for (int i = 0; i < length; i++) {
+				int c = at(src, offset + i);
+				char p = pattern[i];
+				if (p == 'y' || p == 'M' || p == 'd') {
+					int digit = c - '0';
+					if (digit < 0 || digit > 9) {
+						return INVALID_FORMAT;
+					}
+					if (p == 'y') {
+						year = year * 10 + digit;
+					} else if (p == 'M') {
+						month = month * 10 + digit;
+					} else {
+						day = day * 10 + digit;
+					}
+				} else if (c != p) {
+					return INVALID_FORMAT;
+				}
+			}
+			if (month < 1 || month > 12 || day < 1 || day > EpochDays.lengthOfMonth(year, month)) {
+				return INVALID_DATE;
+			}
+			return EpochDays.of(year, month, day);
+		}
+
+		private static int count(String pattern, char c) {
+			int n = 0;
+			for (int i = 0; i < pattern.length(); i++) {
+				if (pattern.charAt(i) == c) {
+					n++;
+				}
+			}
+			return n;
+		}
+	}
+}
@@ -1,26 +1,29 @@
 package com.gant.payroll.util;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.time.DayOfWeek;
 import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.Date;
 
 public class DateUtil {
 
 	public static long getDaysBetween(LocalDate d1, LocalDate d2) {
-
-		return 14;
+		return d2.toEpochDay() - d1.toEpochDay();
 	}
 
+	/**
+	 * 严格解析 yyyy-MM-dd，格式不对或日期不存在时返回 null。
+	 * 和原来的 SimpleDateFormat 不同：2018-02-30 不再顺延成 3 月 2 日，月、日必须补零，末尾不能有多余字符
+	 * 
+	 * @deprecated 用 {@link DateParser}，直接得到 epoch day 或 LocalDate
+	 */
+	@Deprecated
 	public static Date parseDate(String txtDate) {
-		SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd");
-		try {
-			return sdf.parse(txtDate);
-		} catch (ParseException e) {
-			e.printStackTrace();
+		long day = DateParser.ISO.parse(txtDate);
+		if (DateParser.isError(day)) {
 			return null;
 		}
+		return Date.from(LocalDate.ofEpochDay(day).atStartOfDay(ZoneId.systemDefault()).toInstant());
 	}
 
 	public static boolean isFriday(LocalDate localDate) {
@@ -32,32 +35,25 @@ public class DateUtil {
 	}
 
 	public static boolean isLastDayOfMonth(LocalDate d) {
-		return true;
-		// TemporalAdjusters.lastDayOfMonth();
-		//
-		//
-		// d.get lastDayOfMonth
-		//
-		// Calendar calendar = Calendar.getInstance();
-		// calendar.setTime(d);
-		// return calendar.get(Calendar.DATE) ==
-		// calendar.getActualMaximum(Calendar.DAY_OF_MONTH);
+		return d.getDayOfMonth() == d.lengthOfMonth();
 	}
 
 	public static LocalDate getFirstDay(LocalDate d) {
-		// Calendar calendar = Calendar.getInstance();
-		// calendar.setTime(d);
-		// int day = calendar.get(Calendar.DATE);
-		// calendar.add(Calendar.DATE, -(day - 1));
-		// return calendar.getTime();
-		return d;
+		return d.withDayOfMonth(1);
 	}
 
 	public static boolean between(LocalDate d, LocalDate date1, LocalDate date2) {
 		return d.isAfter(date1) && d.isBefore(date2);
 	}
 
+	public static boolean between(long epochDay, long epochDay1, long epochDay2) {
+		return EpochDays.between(epochDay, epochDay1, epochDay2);
+	}
+
+	/**
+	 * date1 和 date2 之间（不含两端）有几个周五
+	 */
 	public static int betweenOnFriday(LocalDate date1, LocalDate date2) {
-		return 0;
+		return EpochDays.countFridays(date1.toEpochDay(), date2.toEpochDay());
 	}
 }
@@ -0,0 +1,143 @@
+package com.gant.payroll.util;
+
+import java.time.LocalDate;
+
+/**
+ * 以 epoch day（1970-01-01 为 0 的天数）表示日期的运算
+ * 
+ * 算薪热路径上只用 int/long，不生成 LocalDate；星期、月底、隔周等都用闭式公式 O(1) 算出。
+ * 年月日与天数的互换用的是 Howard Hinnant 的 days_from_civil / civil_from_days 算法。
+ * 
+ * @author jiangyp
+ *
+ */
+public final class EpochDays {
+
+	public static final int MONDAY = 1;
+	public static final int FRIDAY = 5;
+	public static final int SUNDAY = 7;
+
+	private EpochDays() {
+	}
+
+	public static int of(LocalDate date) {
+		return (int) date.toEpochDay();
+	}
+
+	public static LocalDate toLocalDate(long epochDay) {
+		return LocalDate.ofEpochDay(epochDay);
+	}
+
+	/**
+	 * 年月日对应的天数，不校验日期是否存在
+	 */
+	public static int of(int year, int month, int day) {
+		int y = month <= 2 ? year - 1 : year;
+		int era = Math.floorDiv(y, 400);
+		int yoe = y - era * 400;
+		int doy = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+		int doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+		return era * 146097 + doe - 719468;
+	}
+
+	/**
+	 * 星期几，周一为 1，周日为 7，与 DayOfWeek.getValue() 一致
+	 */
+	public static int dayOfWeek(long epochDay) {
+		// 1970-01-01 是周四
+		return (int) Math.floorMod(epochDay + 3, 7L) + 1;
+	}
+
+	public static boolean isFriday(long epochDay) {
+		return dayOfWeek(epochDay) == FRIDAY;
+	}
+
+	/**
+	 * 开区间 (from, to) 内是否包含 epochDay，与 DateUtil.between 语义相同
+	 */
+	public static boolean between(long epochDay, long from, long to) {
+		return epochDay > from && epochDay < to;
+	}
+
+	/**
+	 * 开区间 (from, to) 内星期几为 dayOfWeek 的天数
+	 */
+	public static int countDayOfWeek(long from, long to, int dayOfWeek) {
+		long first = from + 1;
+		long last = to - 1;
+		if (first > last) {
+			return 0;
+		}
+		// 区间内第一个符合的日子，之后每 7 天一个
+		long hit = first + Math.floorMod(dayOfWeek - dayOfWeek(first), 7);
+		return hit > last ? 0 : (int) ((last - hit) / 7 + 1);
+	}
+
+	/**
+	 * 开区间 (from, to) 内的周五数
+	 */
+	public static int countFridays(long from, long to) {
+		return countDayOfWeek(from, to, FRIDAY);
+	}
+
+	public static int year(long epochDay) {
+		int ymd = civil(epochDay);
+		return ymd >> 9;
+	}
+
+	public static int month(long epochDay) {
+		return civil(epochDay) >> 5 & 0xF;
+	}
+
+	public static int dayOfMonth(long epochDay) {
+		return civil(epochDay) & 0x1F;
+	}
+
+	public static boolean isLeapYear(int year) {
+		return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+	}
+
+	public static int lengthOfMonth(int year, int month) {
+		if (month == 2) {
+			return isLeapYear(year) ? 29 : 28;
+		}
+		return month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+	}
+
+	public static boolean isLastDayOfMonth(long epochDay) {
+		int ymd = civil(epochDay);
+		return (ymd & 0x1F) == lengthOfMonth(ymd >> 9, ymd >> 5 & 0xF);
+	}
+
+	public static long firstDayOfMonth(long epochDay) {
+		return epochDay - dayOfMonth(epochDay) + 1;
+	}
+
+	public static long lastDayOfMonth(long epochDay) {
+		int ymd = civil(epochDay);
+		return epochDay - (ymd & 0x1F) + lengthOfMonth(ymd >> 9, ymd >> 5 & 0xF);
+	}
+
+	/**
+	 * 距最近一个（不晚于 epochDay 的）隔周发薪日的天数，0 表示当天就是
+	 */
+	public static int biweeklyOffset(long epochDay, long anchor) {
+		return (int) Math.floorMod(epochDay - anchor, 14L);
+	}
+
+	/**
+	 * 年、月、日打包成一个 int：year << 9 | month << 5 | day
+	 */
+	private static int civil(long epochDay) {
+		long z = epochDay + 719468;
+		long era = Math.floorDiv(z, 146097);
+		long doe = z - era * 146097;
+		long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+		long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+		long mp = (5 * doy + 2) / 153;
+		int day = (int) (doy - (153 * mp + 2) / 5 + 1);
+		int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+		int year = (int) (yoe + era * 400 + (month <= 2 ? 1 : 0));
+		return year << 9 | month << 5 | day;
+	}
+}
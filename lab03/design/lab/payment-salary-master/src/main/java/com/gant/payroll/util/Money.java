@@ -0,0 +1,143 @@
+package com.gant.payroll.util;
+
+import java.math.RoundingMode;
+
+/**
+ * 定点金额，以分为单位存在 long 里
+ * 
+ * 加减直接用 long 运算，结果精确、与顺序无关；只有乘以费率、工时这类小数时才舍入，
+ * 舍入方式显式给出，默认四舍五入（HALF_UP）。全部是静态方法，不装箱、不分配对象。
+ * 
+ * @author jiangyp
+ *
+ */
+public final class Money {
+
+	public static final RoundingMode DEFAULT_ROUNDING = RoundingMode.HALF_UP;
+
+	private static final long CENTS_PER_YUAN = 100;
+	/** 判断 double 是否“就是”某个整数或 .5 时的相对误差，吸收十进制小数转二进制带来的误差 */
+	private static final double EPSILON = 1e-9;
+
+	private Money() {
+	}
+
+	/**
+	 * 元转分，四舍五入
+	 */
+	public static long of(double yuan) {
+		return of(yuan, DEFAULT_ROUNDING);
+	}
+
+	public static long of(double yuan, RoundingMode mode) {
+		return round(yuan * CENTS_PER_YUAN, mode);
+	}
+
+	/**
+	 * 分转元，仅用于展示和兼容旧接口
+	 */
+	public static double toDouble(long cents) {
+		return cents / (double) CENTS_PER_YUAN;
+	}
+
+	/**
+	 * 金额乘以一个小数（费率、工时等），四舍五入到分
+	 */
+	public static long times(long cents, double factor) {
+		return times(cents, factor, DEFAULT_ROUNDING);
+	}
+
+	public static long times(long cents, double factor, RoundingMode mode) {
+		return round(cents * factor, mode);
+	}
+
+	/**
+	 * 金额除以整数（平摊），按 mode 舍入
+	 */
+	public static long divide(long cents, long divisor, RoundingMode mode) {
+		long q = cents / divisor;
+		long r = cents % divisor;
+		if (r == 0) {
+			return q;
+		}
+		int sign = (cents < 0) == (divisor < 0) ? 1 : -1;
+		long twice = Math.abs(r) * 2;
+		long abs = Math.abs(divisor);
+		boolean up;
+		switch (mode) {
+		case UP:
+			up = true;
+			break;
+		case DOWN:
+			up = false;
+			break;
+		case CEILING:
+			up = sign > 0;
+			break;
+		case FLOOR:
+			up = sign < 0;
+			break;
+		case HALF_UP:
+			up = twice >= abs;
+			break;
+		case HALF_DOWN:
+			up = twice > abs;
+			break;
+		case HALF_EVEN:
+			up = twice > abs || twice == abs && (q & 1) != 0;
+			break;
+		default:
+			throw new ArithmeticException("需要舍入: " + cents + " / " + divisor);
+		}
+		return up ? q + sign : q;
+	}
+
+	/**
+	 * 把以分为单位的 double 舍入成整数分
+	 */
+	public static long round(double cents, RoundingMode mode) {
+		double tolerance = EPSILON * Math.max(1, Math.abs(cents));
+		double nearest = Math.rint(cents);
+		if (Math.abs(cents - nearest) <= tolerance) {
+			return (long) nearest;
+		}
+		double floor = Math.floor(cents);
+		boolean tie = Math.abs(cents - floor - 0.5) <= tolerance;
+		boolean negative = cents < 0;
+		switch (mode) {
+		case UP:
+			return (long) (negative ? floor : floor + 1);
+		case DOWN:
+			return (long) (negative ? floor + 1 : floor);
+		case CEILING:
+			return (long) (floor + 1);
+		case FLOOR:
+			return (long) floor;
+		case HALF_UP:
+			return tie ? (long) (negative ? floor : floor + 1) : (long) nearest;
+		case HALF_DOWN:
+			return tie ? (long) (negative ? floor + 1 : floor) : (long) nearest;
+		case HALF_EVEN:
+			return tie ? (long) ((((long) floor) & 1) == 0 ? floor : floor + 1) : (long) nearest;
+		default:
+			throw new ArithmeticException("需要舍入: " + cents);
+		}
+	}
+
+	/**
+	 * 格式化成 "123.45"
+	 */
+	public static String format(long cents) {
+		StringBuilder sb = new StringBuilder(24);
+		if (cents < 0) {
+			sb.append('-');
+		}
+		long abs = Math.abs(cents);
+		sb.append(abs / CENTS_PER_YUAN).append('.');
+		long fen = abs % CENTS_PER_YUAN;
+		if (fen < 10) {
+			sb.append('0');
+		}
+		return sb.append(fen).toString();
+	}
+}
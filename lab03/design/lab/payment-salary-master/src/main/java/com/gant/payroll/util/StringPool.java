@@ -0,0 +1,59 @@
+package com.gant.payroll.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 字符串驻留池
+ * 
+ * 银行名这类取值只有几种的字符串，录入时各自是一份新对象；经过池子后相同内容只保留一份，
+ * 员工对象都引用同一个实例。池子不淘汰，只能放取值有限的字段；地址、员工编号、姓名这类几乎不重复的字段不要放进来。
+ * 容量有上限，满了以后不再收新字符串，原样返回参数，误用时内存也不会无限增长。
+ * 
+ * @author jiangyp
+ *
+ */
+public final class StringPool {
+
+	/** 默认池子的容量 */
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	private static final StringPool DEFAULT = new StringPool(DEFAULT_CAPACITY);
+
+	private final ConcurrentHashMap<String, String> pool = new ConcurrentHashMap<>();
+	private final int capacity;
+
+	public StringPool(int capacity) {
+		this.capacity = capacity;
+	}
+
+	public static StringPool getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * 返回与 s 内容相同的规范实例，s 为 null 时返回 null；池子已满且 s 不在池中时返回 s 本身
+	 */
+	public String intern(String s) {
+		if (s == null) {
+			return null;
+		}
+		String canonical = pool.get(s);
+		if (canonical != null) {
+			return canonical;
+		}
+		// 并发时可能略超容量，只用来防止无限增长，不需要精确
+		if (pool.size() >= capacity) {
+			return s;
+		}
+		canonical = pool.putIfAbsent(s, s);
+		return canonical == null ? s : canonical;
+	}
+
+	public int size() {
+		return pool.size();
+	}
+
+	public void clear() {
+		pool.clear();
+	}
+}
@@ -0,0 +1,143 @@
+package com.gant.payroll.db.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.IntConsumer;
+
+import org.junit.Test;
+
+import com.gant.payroll.affiliation.ServiceChange;
+import com.gant.payroll.affiliation.UnionAffiliation;
+import com.gant.payroll.classification.SalesReceipt;
+import com.gant.payroll.classification.TimeCard;
+import com.gant.payroll.db.PayrollDatabase;
+import com.gant.payroll.domain.Employee;
+import com.gant.payroll.domain.Paycheck;
+
+/**
+ * 多线程同时录入时的正确性：条数不丢、明细按日期有序。吞吐量见 jmh 下的 IngestBenchmark
+ */
+public class ConcurrentPayrollDatabaseTest {
+
+	static final int EMPLOYEES = 1000;
+	static final int THREADS = 8;
+	static final int PER_THREAD = 10_000;
+	static final LocalDate DATE = LocalDate.of(2018, Month.JULY, 20);
+
+	@Test
+	public void testConcurrentAddTimeCard() throws Exception {
+		PayrollDatabase payrollDatabase = new ConcurrentPayrollDatabase();
+		run(THREADS, i -> {
+			String empId = String.valueOf(i % EMPLOYEES);
+			payrollDatabase.addTimeCard(empId, new TimeCard(DATE.minusDays(i % 31), 8));
+		});
+
+		int total = 0;
+		for (int i = 0; i < EMPLOYEES; i++) {
+			List<TimeCard> timeCards = payrollDatabase.findTimeCards(String.valueOf(i));
+			total += timeCards == null ? 0 : timeCards.size();
+			assertSorted(timeCards);
+		}
+		assertEquals(THREADS * PER_THREAD, total);
+	}
+
+	/**
+	 * 少数几个员工、会员被所有线程同时写，乱序日期的插入也不能丢条或打乱顺序
+	 */
+	@Test
+	public void testContendedDetailLists() throws Exception {
+		PayrollDatabase payrollDatabase = new ConcurrentPayrollDatabase();
+		Employee emp = new Employee("1", "张三", "上海");
+		run(THREADS, i -> {
+			String id = String.valueOf(i % 4);
+			LocalDate date = DATE.minusDays(i * 7 % 31);
+			payrollDatabase.addSalesReceipt(id, new SalesReceipt(date, 1));
+			payrollDatabase.addServiceChange(id, new ServiceChange(date, 1));
+			if (i % 100 < 4) {
+				payrollDatabase.addMember(id, emp);
+			}
+		});
+
+		int receipts = 0;
+		int serviceChanges = 0;
+		int members = 0;
+		for (int i = 0; i < 4; i++) {
+			String id = String.valueOf(i);
+			List<SalesReceipt> salesReceipts = payrollDatabase.findSalesReceipts(id);
+			List<ServiceChange> changes = payrollDatabase.findServiceChange(id);
+			receipts += salesReceipts.size();
+			serviceChanges += changes.size();
+			members += payrollDatabase.findMembers(id).size();
+			for (int k = 1; k < salesReceipts.size(); k++) {
+				assertTrue(salesReceipts.get(k - 1).getEpochDay() <= salesReceipts.get(k).getEpochDay());
+				assertTrue(changes.get(k - 1).getEpochDay() <= changes.get(k).getEpochDay());
+			}
+		}
+		assertEquals(THREADS * PER_THREAD, receipts);
+		assertEquals(THREADS * PER_THREAD, serviceChanges);
+		assertEquals(THREADS * PER_THREAD / 100 * 4, members);
+	}
+
+	/**
+	 * 会费关系自己的服务费列表：多线程录入的同时算会费，最后的会费等于全部服务费之和
+	 */
+	@Test
+	public void testContendedUnionAffiliation() throws Exception {
+		UnionAffiliation union = new UnionAffiliation("7", 0);
+		Paycheck paycheck = new Paycheck(DATE.minusDays(40), DATE);
+		Thread reader = new Thread(() -> {
+			for (int i = 0; i < 1000; i++) {
+				union.calculateDeductions(paycheck);
+			}
+		});
+		reader.start();
+		run(THREADS, i -> union.addServiceChanges(new ServiceChange(DATE.minusDays(1 + i % 31), 1)));
+		reader.join();
+		assertEquals(THREADS * PER_THREAD * 100L, union.calculateDeductions(paycheck));
+	}
+
+	/**
+	 * THREADS 个线程同时开始，每个线程执行 PER_THREAD 次 work，参数在所有线程间不重复
+	 */
+	private static void run(int threads, IntConsumer work) throws InterruptedException {
+		CountDownLatch start = new CountDownLatch(1);
+		List<Thread> workers = new ArrayList<>();
+		List<Throwable> errors = new ArrayList<>();
+		for (int t = 0; t < threads; t++) {
+			int offset = t;
+			Thread worker = new Thread(() -> {
+				try {
+					start.await();
+					for (int i = 0; i < PER_THREAD; i++) {
+						work.accept(i * threads + offset);
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} catch (RuntimeException | Error e) {
+					synchronized (errors) {
+						errors.add(e);
+					}
+				}
+			});
+			worker.start();
+			workers.add(worker);
+		}
+		start.countDown();
+		for (Thread worker : workers) {
+			worker.join();
+		}
+		assertEquals(new ArrayList<Throwable>(), errors);
+	}
+
+	private static void assertSorted(List<TimeCard> timeCards) {
+		for (int k = 1; timeCards != null && k < timeCards.size(); k++) {
+			assertTrue(timeCards.get(k - 1).getEpochDay() <= timeCards.get(k).getEpochDay());
+		}
+	}
+}
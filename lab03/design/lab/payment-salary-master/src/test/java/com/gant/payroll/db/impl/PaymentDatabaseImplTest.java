@@ -0,0 +1,95 @@
+package com.gant.payroll.db.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.gant.payroll.classification.HourlyClassification;
+import com.gant.payroll.classification.SalariedClassification;
+import com.gant.payroll.db.PayrollDatabase;
+import com.gant.payroll.domain.Employee;
+import com.gant.payroll.domain.Paycheck;
+import com.gant.payroll.method.HoldMethod;
+import com.gant.payroll.schedule.MothlySchedule;
+import com.gant.payroll.schedule.WeeklySchedule;
+
+public class PaymentDatabaseImplTest {
+
+	PayrollDatabase payrollDatabase = new ConcurrentPayrollDatabase();
+
+	@Test
+	public void testFindEmpByPayDay() {
+		Employee hourly = new Employee("1", "张三", "上海");
+		hourly.setClassification(new HourlyClassification(10));
+		hourly.setSchedule(new WeeklySchedule());
+		hourly.setPaymentMethod(new HoldMethod());
+		payrollDatabase.addEmployee("1", hourly);
+
+		Employee salaried = new Employee("2", "王五", "上海");
+		salaried.setClassification(new SalariedClassification(1000));
+		salaried.setSchedule(new MothlySchedule());
+		salaried.setPaymentMethod(new HoldMethod());
+		payrollDatabase.addEmployee("2", salaried);
+
+		assertTrue(payrollDatabase.findEmpByPayDay(LocalDate.of(2018, Month.JULY, 20)).contains(hourly));
+		List<Employee> emps = payrollDatabase.findEmpByPayDay(LocalDate.of(2018, Month.JULY, 31));
+		assertEquals(1, emps.size());
+		assertEquals(salaried, emps.get(0));
+
+		payrollDatabase.changeSchedule("1", new MothlySchedule());
+		assertEquals(2, payrollDatabase.findEmpByPayDay(LocalDate.of(2018, Month.JULY, 31)).size());
+	}
+
+	@Test
+	public void testStreamAllEmp() {
+		for (int i = 0; i < 10_000; i++) {
+			Employee emp = new Employee(String.valueOf(i), "员工" + i, "上海");
+			emp.setSchedule(i % 2 == 0 ? new WeeklySchedule() : new MothlySchedule());
+			payrollDatabase.addEmployee(emp.getId(), emp);
+		}
+		assertEquals(10_000, payrollDatabase.streamAllEmp().parallel().count());
+		assertEquals(5_000, payrollDatabase.streamEmpByPayDay(LocalDate.of(2018, Month.JULY, 31)).parallel().count());
+	}
+
+	/**
+	 * 初始数据写进调用的这个数据库；第一次初始化失败后还能重试，成功后不再重复写入
+	 */
+	@Test
+	public void testInitRetriesAfterFailure() {
+		ConcurrentPayrollDatabase payrollDatabase = new ConcurrentPayrollDatabase();
+		payrollDatabase.setPayrollFactory(target -> {
+			throw new IllegalStateException("数据源不可用");
+		});
+		try {
+			payrollDatabase.findAllEmpByInit();
+			fail();
+		} catch (IllegalStateException expected) {
+		}
+		payrollDatabase.setPayrollFactory(new PayrollFactoryImpl());
+		assertEquals(3, payrollDatabase.findAllEmpByInit().size());
+		assertEquals(3, payrollDatabase.findAllEmpByInit().size());
+		assertEquals(1, payrollDatabase.findTimeCards("1").size());
+		assertEquals(2, payrollDatabase.findSalesReceipts("2").size());
+	}
+
+	/**
+	 * 初始化前已经存了支付记录：按员工数预分配容量时不能把它丢掉
+	 */
+	@Test
+	public void testPresizeKeepsEarlierData() {
+		for (PaymentDatabaseImpl payrollDatabase : new PaymentDatabaseImpl[] { new PaymentDatabaseImpl(new Db(false)), new ConcurrentPayrollDatabase() }) {
+			Paycheck pc = new Paycheck(LocalDate.of(2018, Month.JULY, 14), LocalDate.of(2018, Month.JULY, 20));
+			pc.setEmpId("9");
+			payrollDatabase.savePaycheck(pc);
+			payrollDatabase.setPayrollFactory(new PayrollFactoryImpl());
+			assertEquals(3, payrollDatabase.findAllEmpByInit().size());
+			assertEquals(1, payrollDatabase.findPaychecks("9").size());
+		}
+	}
+}
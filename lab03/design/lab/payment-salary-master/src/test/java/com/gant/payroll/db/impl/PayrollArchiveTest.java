@@ -0,0 +1,274 @@
+package com.gant.payroll.db.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.BitSet;
+import java.util.stream.Stream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.gant.payroll.affiliation.ServiceChange;
+import com.gant.payroll.affiliation.UnionAffiliation;
+import com.gant.payroll.classification.CommissionedClassification;
+import com.gant.payroll.classification.HourlyClassification;
+import com.gant.payroll.classification.SalesReceipt;
+import com.gant.payroll.classification.TimeCard;
+import com.gant.payroll.db.HistoryCache;
+import com.gant.payroll.domain.Employee;
+import com.gant.payroll.domain.Paycheck;
+import com.gant.payroll.method.HoldMethod;
+import com.gant.payroll.schedule.WeeklySchedule;
+
+public class PayrollArchiveTest {
+
+	static final int EMPLOYEES = 50;
+	static final LocalDate FIRST = LocalDate.of(2016, Month.JULY, 1);
+	static final LocalDate CUTOFF = LocalDate.of(2018, Month.JULY, 1);
+	static final LocalDate LAST = LocalDate.of(2018, Month.JULY, 31);
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testQueryAfterArchive() throws Exception {
+		PaymentDatabaseImpl payrollDatabase = newDatabase();
+		payrollDatabase.openArchive(folder.getRoot().toPath());
+		fill(payrollDatabase);
+		String before = dump(payrollDatabase);
+		int heapBefore = heapRecords(payrollDatabase);
+
+		payrollDatabase.archiveBefore(CUTOFF);
+		assertEquals(before, dump(payrollDatabase));
+		int heapAfter = heapRecords(payrollDatabase);
+		System.out.println("内存中的明细和支付记录: 归档前 " + heapBefore + " 条, 归档后 " + heapAfter + " 条, 归档段 " + archiveBytes() + " 字节");
+		assertTrue(heapAfter * 10 < heapBefore);
+
+		// 补录一张截止日期之前的卡片，查询结果仍然按日期排好
+		LocalDate late = CUTOFF.minusDays(100);
+		payrollDatabase.addTimeCard("0", new TimeCard(late, 3));
+		assertEquals(late, payrollDatabase.findTimeCards("0", late, late).get(0).getDate());
+		assertEquals(2, payrollDatabase.findTimeCards("0", late, late).size());
+		payrollDatabase.closeArchive();
+	}
+
+	@Test
+	public void testPayAfterArchive() throws Exception {
+		PaymentDatabaseImpl payrollDatabase = newDatabase();
+		payrollDatabase.openArchive(folder.getRoot().toPath());
+		fill(payrollDatabase);
+		LocalDate payday = LocalDate.of(2018, Month.JULY, 27);
+		Paycheck expected = new Paycheck(payday.minusDays(7), payday);
+		payrollDatabase.findEmployee("0").calculatePaycheck(expected);
+
+		payrollDatabase.archiveBefore(CUTOFF);
+		payrollDatabase.getHistoryCache().clear();
+		Paycheck current = new Paycheck(payday.minusDays(7), payday);
+		payrollDatabase.findEmployee("0").calculatePaycheck(current);
+		assertEquals(expected.toString(), current.toString());
+
+		// 已经归档的账期照样能重算
+		LocalDate old = LocalDate.of(2017, Month.JULY, 28);
+		Paycheck archived = new Paycheck(old.minusDays(7), old);
+		payrollDatabase.findEmployee("0").calculatePaycheck(archived);
+		assertTrue(archived.getGrossPayCents() > 0);
+		payrollDatabase.closeArchive();
+	}
+
+	@Test
+	public void testRecoverWithJournal() throws Exception {
+		Path archiveDir = folder.newFolder("archive").toPath();
+		Path journalDir = folder.newFolder("journal").toPath();
+		PaymentDatabaseImpl payrollDatabase = newDatabase();
+		payrollDatabase.openArchive(archiveDir);
+		payrollDatabase.openJournal(journalDir, false);
+		fill(payrollDatabase);
+		payrollDatabase.archiveBefore(CUTOFF);
+		payrollDatabase.addSalesReceipt("1", new SalesReceipt(CUTOFF.minusDays(3), 42));
+		String expected = dump(payrollDatabase);
+		int heap = heapRecords(payrollDatabase);
+		payrollDatabase.closeJournal();
+		payrollDatabase.closeArchive();
+
+		PaymentDatabaseImpl recovered = newDatabase();
+		recovered.openArchive(archiveDir);
+		recovered.openJournal(journalDir, false);
+		assertEquals(expected, dump(recovered));
+		assertEquals(heap, heapRecords(recovered));
+		// 回放过的归档序号不会再分配
+		assertEquals(1, recovered.archiveBefore(LAST));
+		recovered.closeJournal();
+		recovered.closeArchive();
+	}
+
+	/**
+	 * 归档进行中补录的旧明细和支付记录等归档结束再写入，既不会被删掉也不会重复
+	 */
+	@Test
+	public void testWritesDuringArchive() throws Exception {
+		PaymentDatabaseImpl payrollDatabase = newDatabase();
+		payrollDatabase.openArchive(folder.getRoot().toPath());
+		fill(payrollDatabase);
+		int timeCards = payrollDatabase.findTimeCards("0").size();
+		int paychecks = payrollDatabase.findPaychecks("0").size();
+		int writes = 2000;
+		Thread writer = new Thread(() -> {
+			for (int i = 0; i < writes; i++) {
+				LocalDate date = CUTOFF.minusDays(1 + i % 300);
+				payrollDatabase.addTimeCard("0", new TimeCard(date, 1));
+				Paycheck pc = new Paycheck(date.minusDays(6), date);
+				pc.setEmpId("0");
+				payrollDatabase.savePaycheck(pc);
+			}
+		});
+		writer.start();
+		payrollDatabase.archiveBefore(CUTOFF);
+		writer.join();
+		assertEquals(timeCards + writes, payrollDatabase.findTimeCards("0").size());
+		assertEquals(paychecks + writes, payrollDatabase.findPaychecks("0").size());
+		payrollDatabase.closeArchive();
+	}
+
+	/**
+	 * 归档时是懒加载的，重新打开时没有开启懒加载：回放只删段里有的数据，查询结果不会重复
+	 */
+	@Test
+	public void testRecoverWithoutLazyLoading() throws Exception {
+		Path archiveDir = folder.newFolder("archive").toPath();
+		Path journalDir = folder.newFolder("journal").toPath();
+		PaymentDatabaseImpl payrollDatabase = newDatabase();
+		payrollDatabase.openArchive(archiveDir);
+		payrollDatabase.openJournal(journalDir, false);
+		fill(payrollDatabase);
+		payrollDatabase.archiveBefore(CUTOFF);
+		String expected = dump(payrollDatabase);
+		payrollDatabase.closeJournal();
+		payrollDatabase.closeArchive();
+
+		PaymentDatabaseImpl recovered = new ConcurrentPayrollDatabase();
+		recovered.openArchive(archiveDir);
+		recovered.openJournal(journalDir, false);
+		assertEquals(expected, dump(recovered));
+		recovered.closeJournal();
+		recovered.closeArchive();
+	}
+
+	/**
+	 * 非懒加载的员工各自持有明细，归档删不掉，所以没有开启懒加载时不能归档
+	 */
+	@Test(expected = IllegalStateException.class)
+	public void testRequiresLazyLoading() throws Exception {
+		PaymentDatabaseImpl payrollDatabase = new ConcurrentPayrollDatabase();
+		payrollDatabase.openArchive(folder.getRoot().toPath());
+		try {
+			payrollDatabase.archiveBefore(CUTOFF);
+		} finally {
+			payrollDatabase.closeArchive();
+		}
+	}
+
+	/**
+	 * 按区间查已发薪的日子：归档段和内存里的都算上，与逐条查支付记录的结果一致，区间外的不算
+	 */
+	@Test
+	public void testPaidDaysAcrossArchive() throws Exception {
+		PaymentDatabaseImpl payrollDatabase = newDatabase();
+		payrollDatabase.openArchive(folder.getRoot().toPath());
+		fill(payrollDatabase);
+		payrollDatabase.archiveBefore(CUTOFF);
+		LocalDate from = CUTOFF.minusDays(60);
+		int first = (int) from.toEpochDay();
+		BitSet expected = new BitSet();
+		for (Paycheck pc : payrollDatabase.findPaychecks("0")) {
+			int end = pc.getPayPeriodEndDay();
+			if (end >= first && end <= LAST.toEpochDay()) {
+				expected.set(end - first);
+			}
+		}
+		assertTrue(expected.cardinality() > 4);
+		assertEquals(expected, payrollDatabase.findPaidDays("0", from, LAST));
+		assertTrue(payrollDatabase.findPaidDays("0", LAST.plusDays(1), LAST.plusDays(30)).isEmpty());
+		payrollDatabase.closeArchive();
+	}
+
+	private static PaymentDatabaseImpl newDatabase() {
+		PaymentDatabaseImpl payrollDatabase = new ConcurrentPayrollDatabase();
+		payrollDatabase.enableLazyLoading(HistoryCache.DEFAULT_CAPACITY);
+		return payrollDatabase;
+	}
+
+	/**
+	 * 偶数号是小时工，奇数号是提成员工，每人都是工会会员；工时和金额里有不能精确表示成分的数
+	 */
+	private static void fill(PaymentDatabaseImpl payrollDatabase) {
+		HistoryCache history = payrollDatabase.getHistoryCache();
+		for (int i = 0; i < EMPLOYEES; i++) {
+			String empId = String.valueOf(i);
+			String memberId = "m" + i;
+			Employee emp = new Employee(empId, "员工" + i, "上海");
+			emp.setSchedule(WeeklySchedule.INSTANCE);
+			emp.setPaymentMethod(HoldMethod.INSTANCE);
+			emp.setClassification(i % 2 == 0 ? new HourlyClassification(10, empId, history) : new CommissionedClassification(1000, 0.1, empId, history));
+			payrollDatabase.addEmployee(empId, emp);
+			UnionAffiliation af = new UnionAffiliation(memberId, 5, history);
+			emp.addAffiliations(af);
+			payrollDatabase.addAffiliation(memberId, af);
+			payrollDatabase.addMember(memberId, emp);
+			int d = 0;
+			for (LocalDate date = FIRST; !date.isAfter(LAST); date = date.plusDays(1), d++) {
+				if (i % 2 == 0) {
+					payrollDatabase.addTimeCard(empId, new TimeCard(date, d % 7 == 0 ? 8 + 1.0 / 3 : 6 + (i + d) % 5));
+				} else if (d % 3 == 0) {
+					payrollDatabase.addSalesReceipt(empId, new SalesReceipt(date, 100 + (i + d) % 13 + 0.25));
+				}
+				if (d % 10 == 0) {
+					payrollDatabase.addServiceChange(memberId, new ServiceChange(date, 3.5));
+				}
+				if (date.getDayOfWeek() == LAST.getDayOfWeek()) {
+					Paycheck pc = new Paycheck(date.minusDays(7), date);
+					emp.payDay(pc);
+					payrollDatabase.savePaycheck(pc);
+				}
+			}
+		}
+	}
+
+	private static String dump(PaymentDatabaseImpl payrollDatabase) {
+		StringBuilder sb = new StringBuilder();
+		LocalDate from = CUTOFF.minusDays(20);
+		LocalDate to = CUTOFF.plusDays(20);
+		for (int i = 0; i < EMPLOYEES; i++) {
+			String empId = String.valueOf(i);
+			sb.append(payrollDatabase.findTimeCards(empId)).append(payrollDatabase.findTimeCards(empId, from, to));
+			sb.append(payrollDatabase.findSalesReceipts(empId)).append(payrollDatabase.findSalesReceipts(empId, from, to));
+			sb.append(payrollDatabase.findServiceChange("m" + i)).append(payrollDatabase.findServiceChange("m" + i, from, to));
+			sb.append(payrollDatabase.findPaychecks(empId)).append('\n');
+		}
+		return sb.toString();
+	}
+
+	private static int heapRecords(PaymentDatabaseImpl payrollDatabase) {
+		Db db = payrollDatabase.db;
+		int n = 0;
+		for (int i = 0; i < EMPLOYEES; i++) {
+			String empId = String.valueOf(i);
+			n += db.empId2TimeCards.containsKey(empId) ? db.empId2TimeCards.get(empId).size() : 0;
+			n += db.empId2SalesReceipts.containsKey(empId) ? db.empId2SalesReceipts.get(empId).size() : 0;
+			n += db.memberId2Sc.get("m" + i).size();
+			n += db.empId2Paycheck.get(empId).size();
+		}
+		return n;
+	}
+
+	private long archiveBytes() throws Exception {
+		try (Stream<Path> files = Files.list(folder.getRoot().toPath())) {
+			return files.mapToLong(f -> f.toFile().length()).sum();
+		}
+	}
+}
@@ -0,0 +1,247 @@
+package com.gant.payroll.db.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.gant.payroll.affiliation.ServiceChange;
+import com.gant.payroll.affiliation.UnionAffiliation;
+import com.gant.payroll.classification.HourlyClassification;
+import com.gant.payroll.classification.TimeCard;
+import com.gant.payroll.db.wal.WriteAheadLog;
+import com.gant.payroll.domain.Employee;
+import com.gant.payroll.domain.Paycheck;
+import com.gant.payroll.method.HoldMethod;
+import com.gant.payroll.method.MailMethod;
+import com.gant.payroll.schedule.WeeklySchedule;
+
+public class PayrollJournalTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testRecover() throws Exception {
+		Path dir = folder.getRoot().toPath();
+		LocalDate date = LocalDate.of(2018, Month.JULY, 18);
+
+		PaymentDatabaseImpl payrollDatabase = new ConcurrentPayrollDatabase();
+		payrollDatabase.openJournal(dir, true);
+		Employee emp = hourly("1");
+		payrollDatabase.addEmployee("1", emp);
+		payrollDatabase.addTimeCard("1", new TimeCard(date, 10));
+		UnionAffiliation af = new UnionAffiliation("7", 10);
+		emp.addAffiliations(af);
+		payrollDatabase.addAffiliation("7", af);
+		payrollDatabase.addMember("7", emp);
+		ServiceChange sc = new ServiceChange(date, 20);
+		af.addServiceChanges(sc);
+		payrollDatabase.addServiceChange("7", sc);
+		Paycheck pc = new Paycheck(date.minusDays(6), date);
+		emp.payDay(pc);
+		payrollDatabase.savePaycheck(pc);
+		payrollDatabase.closeJournal();
+
+		PaymentDatabaseImpl recovered = new ConcurrentPayrollDatabase();
+		recovered.openJournal(dir, true);
+		Employee emp2 = recovered.findEmployee("1");
+		System.out.println(emp2);
+		assertEquals(emp.toString(), emp2.toString());
+		assertEquals(1, recovered.findTimeCards("1").size());
+		assertEquals(1, recovered.findServiceChange("7").size());
+		assertEquals(pc.toString(), recovered.findPaychecks("1").get(0).toString());
+		recovered.closeJournal();
+	}
+
+	/**
+	 * 模拟崩溃时写了半条记录：恢复时丢弃这半条，之后还能继续追加
+	 */
+	@Test
+	public void testTornWrite() throws Exception {
+		Path dir = folder.getRoot().toPath();
+		PaymentDatabaseImpl payrollDatabase = new ConcurrentPayrollDatabase();
+		payrollDatabase.openJournal(dir, true);
+		payrollDatabase.addEmployee("1", hourly("1"));
+		payrollDatabase.closeJournal();
+
+		File segment = dir.toFile().listFiles()[0];
+		try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+			long end = 0;
+			for (long i = 0; i < 4096; i++) {
+				file.seek(i);
+				if (file.read() != 0) {
+					end = i + 1;
+				}
+			}
+			file.seek(end);
+			file.writeInt(64);
+			file.writeInt(12345);
+			file.write(new byte[] { 1, 2, 3 });
+		}
+
+		PaymentDatabaseImpl recovered = new ConcurrentPayrollDatabase();
+		recovered.openJournal(dir, true);
+		assertEquals(1, recovered.findAllEmp().size());
+		recovered.addEmployee("2", hourly("2"));
+		recovered.closeJournal();
+
+		PaymentDatabaseImpl again = new ConcurrentPayrollDatabase();
+		again.openJournal(dir, true);
+		assertEquals(2, again.findAllEmp().size());
+		again.closeJournal();
+	}
+
+	/**
+	 * 换段后前一段末尾的记录没有落盘：恢复时从缺失处截断，后面完整的段也丢掉，不回放中间缺了记录的日志
+	 */
+	@Test
+	public void testLostRecordInEarlierSegment() throws Exception {
+		Path dir = folder.getRoot().toPath();
+		// 每段 64 字节，每条记录连头 28 字节，一段放两条
+		try (WriteAheadLog log = new WriteAheadLog(dir, 64)) {
+			for (int i = 0; i < 6; i++) {
+				log.append(record(i));
+			}
+		}
+		File[] segments = dir.toFile().listFiles();
+		Arrays.sort(segments);
+		assertEquals(3, segments.length);
+		try (RandomAccessFile file = new RandomAccessFile(segments[0], "rw")) {
+			file.seek(28);
+			file.writeInt(0);
+		}
+
+		try (WriteAheadLog log = new WriteAheadLog(dir, 64)) {
+			assertEquals(Arrays.asList(0), replay(log));
+			assertEquals(1, dir.toFile().listFiles().length);
+			log.append(record(9));
+		}
+		try (WriteAheadLog log = new WriteAheadLog(dir, 64)) {
+			assertEquals(Arrays.asList(0, 9), replay(log));
+		}
+	}
+
+	private static ByteBuffer record(int value) {
+		ByteBuffer payload = ByteBuffer.allocate(20);
+		payload.putInt(0, value);
+		return payload;
+	}
+
+	private static List<Integer> replay(WriteAheadLog log) throws Exception {
+		List<Integer> values = new ArrayList<>();
+		log.replay(payload -> values.add(payload.getInt(0)));
+		return values;
+	}
+
+	/**
+	 * 多个线程同时逐条落盘地写入：排队的线程共用一次 fsync，落盘次数少于写入条数，恢复后一条不少
+	 */
+	@Test
+	public void testGroupCommit() throws Exception {
+		int threads = 8;
+		int perThread = 250;
+		Path dir = folder.getRoot().toPath();
+		PaymentDatabaseImpl payrollDatabase = new ConcurrentPayrollDatabase();
+		payrollDatabase.openJournal(dir, true);
+		payrollDatabase.addEmployee("1", hourly("1"));
+		LocalDate date = LocalDate.of(2018, Month.JULY, 18);
+		long syncsBefore = payrollDatabase.db.journal.getSyncCount();
+		CountDownLatch start = new CountDownLatch(1);
+		List<Thread> workers = new ArrayList<>();
+		for (int t = 0; t < threads; t++) {
+			Thread worker = new Thread(() -> {
+				try {
+					start.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+				for (int i = 0; i < perThread; i++) {
+					payrollDatabase.addTimeCard("1", new TimeCard(date, 8));
+				}
+			});
+			worker.start();
+			workers.add(worker);
+		}
+		start.countDown();
+		for (Thread worker : workers) {
+			worker.join();
+		}
+		long syncs = payrollDatabase.db.journal.getSyncCount() - syncsBefore;
+		System.out.println("写入 " + threads * perThread + " 条, fsync " + syncs + " 次");
+		assertTrue(syncs < threads * perThread);
+		payrollDatabase.closeJournal();
+
+		PaymentDatabaseImpl recovered = new ConcurrentPayrollDatabase();
+		recovered.openJournal(dir, true);
+		assertEquals(threads * perThread, recovered.findTimeCards("1").size());
+		recovered.closeJournal();
+	}
+
+	/**
+	 * 不逐条落盘的日志，批量结束时也会落盘；嵌套的批量只在最外层落盘
+	 */
+	@Test
+	public void testBatchSyncsWithoutSyncOnWrite() throws Exception {
+		PaymentDatabaseImpl payrollDatabase = new ConcurrentPayrollDatabase();
+		payrollDatabase.openJournal(folder.getRoot().toPath(), false);
+		LocalDate date = LocalDate.of(2018, Month.JULY, 18);
+		payrollDatabase.addEmployee("1", hourly("1"));
+		assertEquals(0, payrollDatabase.db.journal.getSyncCount());
+		payrollDatabase.batch(() -> {
+			payrollDatabase.addTimeCard("1", new TimeCard(date, 8));
+			payrollDatabase.batch(() -> payrollDatabase.addTimeCard("1", new TimeCard(date, 9)));
+			assertEquals(0, payrollDatabase.db.journal.getSyncCount());
+		});
+		assertEquals(1, payrollDatabase.db.journal.getSyncCount());
+		payrollDatabase.closeJournal();
+	}
+
+	/**
+	 * 超过线程缓冲区和 short 长度的字符串照样能写入和恢复
+	 */
+	@Test
+	public void testLongString() throws Exception {
+		Path dir = folder.getRoot().toPath();
+		char[] chars = new char[20_000];
+		Arrays.fill(chars, '长');
+		String address = new String(chars);
+		PaymentDatabaseImpl payrollDatabase = new ConcurrentPayrollDatabase();
+		payrollDatabase.openJournal(dir, true);
+		Employee emp = hourly("1");
+		emp.setAddress(address);
+		emp.setPaymentMethod(new MailMethod(address));
+		payrollDatabase.addEmployee("1", emp);
+		payrollDatabase.addEmployee("2", hourly("2"));
+		payrollDatabase.closeJournal();
+
+		PaymentDatabaseImpl recovered = new ConcurrentPayrollDatabase();
+		recovered.openJournal(dir, true);
+		assertEquals(address, recovered.findEmployee("1").getAddress());
+		assertEquals(address, ((MailMethod) recovered.findEmployee("1").getPaymentMethod()).getAddress());
+		assertEquals("张三", recovered.findEmployee("2").getName());
+		recovered.closeJournal();
+	}
+
+	private static Employee hourly(String empId) {
+		Employee emp = new Employee(empId, "张三", "上海");
+		emp.setClassification(new HourlyClassification(10));
+		emp.setSchedule(new WeeklySchedule());
+		emp.setPaymentMethod(new HoldMethod());
+		return emp;
+	}
+}
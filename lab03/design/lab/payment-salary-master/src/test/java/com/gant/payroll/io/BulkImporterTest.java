@@ -0,0 +1,134 @@
+package com.gant.payroll.io;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.BufferedWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.Month;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.gant.payroll.classification.CommissionedClassification;
+import com.gant.payroll.classification.HourlyClassification;
+import com.gant.payroll.classification.SalariedClassification;
+import com.gant.payroll.db.PayrollDatabase;
+import com.gant.payroll.db.impl.ConcurrentPayrollDatabase;
+import com.gant.payroll.domain.Employee;
+import com.gant.payroll.domain.Paycheck;
+import com.gant.payroll.method.HoldMethod;
+import com.gant.payroll.schedule.BiweeklySchedule;
+import com.gant.payroll.schedule.MothlySchedule;
+import com.gant.payroll.schedule.WeeklySchedule;
+
+public class BulkImporterTest {
+
+	static final LocalDate DATE = LocalDate.of(2018, Month.JANUARY, 1);
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testImportTimeCardsCsv() throws Exception {
+		int employees = 100;
+		int days = 365;
+		PayrollDatabase payrollDatabase = newDatabase(employees);
+		Path file = folder.newFile("punches.csv").toPath();
+		try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			out.write("empId,date,hours\r\n");
+			for (int e = 0; e < employees; e++) {
+				for (int d = 0; d < days; d++) {
+					out.write("H" + e + "," + DATE.plusDays(d) + "," + (6 + d % 5) + ".25\r\n");
+				}
+			}
+			out.write("H0,2018-02-30,8\n");
+			out.write("H404,2018-07-01,8\n");
+			out.write("S0,2018-07-01,8\n");
+			out.write("\n");
+			out.write("H0,2018-07-01\n");
+		}
+
+		long begin = System.nanoTime();
+		ImportResult result = BulkImporter.csv(payrollDatabase).importTimeCards(file);
+		System.out.println("导入 " + Files.size(file) / 1024 + " KB 耗时 " + (System.nanoTime() - begin) / 1_000_000 + " ms, " + result);
+		result.getErrors().forEach(System.out::println);
+
+		assertEquals(employees * days, result.getImported());
+		assertEquals(1, result.getSkipped());
+		assertEquals(3, result.getRejected());
+		assertEquals(days, payrollDatabase.findTimeCards("H7").size());
+		assertEquals(DATE.plusDays(3) + "", payrollDatabase.findTimeCards("H7").get(3).getDate() + "");
+		assertEquals(9.25, payrollDatabase.findTimeCards("H7").get(3).getHours(), 0);
+	}
+
+	@Test
+	public void testImportSalesReceiptsFixedWidth() throws Exception {
+		PayrollDatabase payrollDatabase = newDatabase(1);
+		Path file = folder.newFile("receipts.txt").toPath();
+		try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			for (int d = 0; d < 31; d++) {
+				out.write(String.format("%-8s%-10s%10s%n", "C0", DATE.plusDays(d), "100.50"));
+			}
+		}
+
+		ImportResult result = BulkImporter.fixedWidth(payrollDatabase, 8, 10, 10).importSalesReceipts(file);
+		System.out.println(result);
+		assertEquals(31, result.getImported());
+		assertEquals(0, result.getRejected());
+		assertEquals(31, payrollDatabase.findSalesReceipts("C0").size());
+
+		// 导入的凭条同时进了销售员工的支付策略
+		Paycheck pc = new Paycheck(DATE.minusDays(1), DATE.plusDays(14));
+		payrollDatabase.findEmployee("C0").calculatePaycheck(pc);
+		assertEquals(1000 + 14 * 100.5 * 0.1, pc.getGrossPay(), 1e-9);
+	}
+
+	/**
+	 * 数值超出列宽的行拒绝导入，不截断成前几位；行尾多余的空格不算
+	 */
+	@Test
+	public void testFixedWidthOverlong() throws Exception {
+		PayrollDatabase payrollDatabase = newDatabase(1);
+		Path file = folder.newFile("overlong.txt").toPath();
+		try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			out.write(String.format("%-4s%-10s%-4s%n", "H0", DATE, "8"));
+			out.write(String.format("%-4s%-10s%-4s%n", "H0", DATE.plusDays(1), "123456"));
+			out.write(String.format("%-4s%-10s%-4s   %n", "H0", DATE.plusDays(2), "9.5"));
+		}
+
+		ImportResult result = BulkImporter.fixedWidth(payrollDatabase, 4, 10, 4).importTimeCards(file);
+		assertEquals(2, result.getImported());
+		assertEquals(1, result.getRejected());
+		assertEquals("第 2 行: 行太长", result.getErrors().get(0));
+		assertEquals(8, payrollDatabase.findTimeCards("H0").get(0).getHours(), 0);
+		assertEquals(9.5, payrollDatabase.findTimeCards("H0").get(1).getHours(), 0);
+	}
+
+	private static PayrollDatabase newDatabase(int employees) {
+		PayrollDatabase payrollDatabase = new ConcurrentPayrollDatabase();
+		for (int i = 0; i < employees; i++) {
+			Employee hourly = new Employee("H" + i, "员工" + i, "上海");
+			hourly.setClassification(new HourlyClassification(10));
+			hourly.setSchedule(new WeeklySchedule());
+			hourly.setPaymentMethod(new HoldMethod());
+			payrollDatabase.addEmployee(hourly.getId(), hourly);
+
+			Employee commissioned = new Employee("C" + i, "员工" + i, "上海");
+			commissioned.setClassification(new CommissionedClassification(1000, 0.1));
+			commissioned.setSchedule(new BiweeklySchedule());
+			commissioned.setPaymentMethod(new HoldMethod());
+			payrollDatabase.addEmployee(commissioned.getId(), commissioned);
+
+			Employee salaried = new Employee("S" + i, "员工" + i, "上海");
+			salaried.setClassification(new SalariedClassification(3000));
+			salaried.setSchedule(new MothlySchedule());
+			salaried.setPaymentMethod(new HoldMethod());
+			payrollDatabase.addEmployee(salaried.getId(), salaried);
+		}
+		return payrollDatabase;
+	}
+}
@@ -0,0 +1,179 @@
+package com.gant.payroll.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.gant.payroll.domain.Paycheck;
+import com.gant.payroll.domain.PaycheckBatch;
+
+public class PaycheckWriterTest {
+
+	static final LocalDate DATE = LocalDate.of(2018, Month.JULY, 20);
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testFormats() throws Exception {
+		Paycheck pc = paycheck("张,三", 1234.565, 20.1);
+
+		assertEquals("empId,payPeriodStart,payPeriodEnd,grossPay,deductions,netPay\n\"张,三\",2018-07-14,2018-07-20,1234.57,20.10,1214.47\n",
+				export(StandardPaycheckFormat.CSV, pc));
+		assertEquals("张,三   2018071420180720000000123457000000002010000000121447\n", export(StandardPaycheckFormat.FIXED_WIDTH, pc));
+		assertEquals("{\"empId\":\"张,三\",\"payPeriodStart\":\"2018-07-14\",\"payPeriodEnd\":\"2018-07-20\",\"grossPay\":1234.57,\"deductions\":20.10,\"netPay\":1214.47}\n",
+				export(StandardPaycheckFormat.JSON_LINES, pc));
+		assertEquals("{\"empId\":\"a\\\"b\",\"payPeriodStart\":\"2018-07-14\",\"payPeriodEnd\":\"2018-07-20\",\"grossPay\":0.00,\"deductions\":0.00,\"netPay\":0.00}\n",
+				export(StandardPaycheckFormat.JSON_LINES, paycheck("a\"b", 0, 0)));
+	}
+
+	@Test
+	public void testCsvQuotesLineBreaks() throws Exception {
+		assertEquals("empId,payPeriodStart,payPeriodEnd,grossPay,deductions,netPay\n\"a\nb\",2018-07-14,2018-07-20,1.00,0.00,1.00\n",
+				new String(exportBytes(StandardPaycheckFormat.CSV, paycheck("a\nb", 1, 0)), StandardCharsets.UTF_8));
+		assertEquals("\"a\rb\"", new String(exportBytes(StandardPaycheckFormat.CSV, paycheck("a\rb", 1, 0)), StandardCharsets.UTF_8).split("\n")[1].split(",")[0]);
+	}
+
+	/**
+	 * 定宽格式放不下的金额报错，不截断；出错的记录不写出，前后的记录不受影响
+	 */
+	@Test
+	public void testFixedWidthOverflow() throws Exception {
+		Path file = folder.newFile().toPath();
+		try (PaycheckWriter writer = new PaycheckWriter(file, StandardPaycheckFormat.FIXED_WIDTH, false)) {
+			writer.write(paycheck("1", 9_999_999_999.99, 0));
+			Paycheck tooLarge = paycheck("2", 10_000_000_000.0, 0);
+			try {
+				writer.write(tooLarge);
+				fail();
+			} catch (IllegalArgumentException expected) {
+			}
+			Paycheck negative = paycheck("3", 0, 0);
+			negative.setNetPayCents(-100_000_000_000L);
+			try {
+				writer.write(negative);
+				fail();
+			} catch (IllegalArgumentException expected) {
+			}
+			writer.write(paycheck("4", 1, 0));
+			assertEquals(2, writer.getCount());
+		}
+		List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+		assertEquals(2, lines.size());
+		assertEquals("1         2018071420180720999999999999000000000000999999999999", lines.get(0));
+		assertTrue(lines.get(1).startsWith("4 "));
+	}
+
+	/**
+	 * 员工编号放不下时报错，不截断：定宽格式超过 10 字节，CSV 加引号转义后超过 MAX_EMP_ID 字节
+	 */
+	@Test
+	public void testEmpIdOverflow() throws Exception {
+		assertEquals("张三a ", export(StandardPaycheckFormat.FIXED_WIDTH, paycheck("张三a", 0, 0)).substring(0, 4));
+		assertOverflow(StandardPaycheckFormat.FIXED_WIDTH, "12345678901");
+		assertOverflow(StandardPaycheckFormat.FIXED_WIDTH, "张三李四");
+		StringBuilder quotes = new StringBuilder();
+		for (int i = 0; i <= StandardPaycheckFormat.MAX_EMP_ID / 2; i++) {
+			quotes.append('"');
+		}
+		assertOverflow(StandardPaycheckFormat.CSV, quotes.toString());
+		assertOverflow(StandardPaycheckFormat.JSON_LINES, quotes.toString());
+	}
+
+	private void assertOverflow(PaycheckFormat format, String empId) throws Exception {
+		Path file = folder.newFile().toPath();
+		try (PaycheckWriter writer = new PaycheckWriter(file, format, false)) {
+			try {
+				writer.write(paycheck(empId, 1, 0));
+				fail(format + ": " + empId);
+			} catch (IllegalArgumentException expected) {
+			}
+			assertEquals(0, writer.getCount());
+		}
+	}
+
+	@Test
+	public void testBatchSameAsPaychecks() throws Exception {
+		PaycheckBatch batch = new PaycheckBatch(1);
+		batch.add(paycheck("张,三", 1234.565, 20.1));
+		batch.add(paycheck("a\"b", 0, 0));
+		batch.add(paycheck("7", 1.05, 3.5));
+		batch.add("8", (int) LocalDate.of(1999, 12, 31).toEpochDay(), (int) LocalDate.of(2000, 2, 29).toEpochDay(), 100000, 1, 99999);
+		for (StandardPaycheckFormat format : StandardPaycheckFormat.values()) {
+			Path one = folder.newFile().toPath();
+			try (PaycheckWriter writer = new PaycheckWriter(one, format, false)) {
+				for (int i = 0; i < batch.size(); i++) {
+					writer.write(batch.toPaycheck(i));
+				}
+			}
+			Path all = folder.newFile().toPath();
+			try (PaycheckWriter writer = new PaycheckWriter(all, format, false)) {
+				writer.write(batch);
+				assertEquals(batch.size(), writer.getCount());
+			}
+			assertEquals(format.name(), new String(Files.readAllBytes(one), StandardCharsets.UTF_8), new String(Files.readAllBytes(all), StandardCharsets.UTF_8));
+		}
+	}
+
+	@Test
+	public void testMillionPaychecksGzip() throws Exception {
+		int n = 1_000_000;
+		Path file = folder.newFile("paychecks.csv.gz").toPath();
+		Paycheck pc = paycheck("0", 0, 0);
+		long begin = System.nanoTime();
+		try (PaycheckWriter writer = new PaycheckWriter(file, StandardPaycheckFormat.CSV, true)) {
+			for (int i = 0; i < n; i++) {
+				pc.setEmpId(String.valueOf(i));
+				pc.setGrossPay(1000 + i % 1000);
+				pc.setNetPay(1000 + i % 1000);
+				writer.write(pc);
+			}
+			assertEquals(n, writer.getCount());
+		}
+		System.out.println("导出 " + n + " 条支付记录耗时 " + (System.nanoTime() - begin) / 1_000_000 + " ms, 压缩后 " + Files.size(file) / 1024 + " KB");
+
+		try (BufferedReader in = new BufferedReader(new InputStreamReader(new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+			assertEquals(n + 1, in.lines().count());
+		}
+	}
+
+	private byte[] exportBytes(PaycheckFormat format, Paycheck pc) throws Exception {
+		Path file = folder.newFile().toPath();
+		try (PaycheckWriter writer = new PaycheckWriter(file, format, false)) {
+			writer.write(pc);
+		}
+		return Files.readAllBytes(file);
+	}
+
+	private String export(PaycheckFormat format, Paycheck pc) throws Exception {
+		Path file = folder.newFile().toPath();
+		try (PaycheckWriter writer = new PaycheckWriter(file, format, false)) {
+			writer.write(pc);
+		}
+		List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+		return String.join("\n", lines) + "\n";
+	}
+
+	private static Paycheck paycheck(String empId, double grossPay, double deductions) {
+		Paycheck pc = new Paycheck(DATE.minusDays(6), DATE);
+		pc.setEmpId(empId);
+		pc.setGrossPay(grossPay);
+		pc.setDeductions(deductions);
+		pc.setNetPay(grossPay - deductions);
+		return pc;
+	}
+}
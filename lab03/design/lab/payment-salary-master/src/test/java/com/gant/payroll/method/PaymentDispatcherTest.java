@@ -0,0 +1,171 @@
+package com.gant.payroll.method;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.junit.Test;
+
+import com.gant.payroll.classification.SalariedClassification;
+import com.gant.payroll.db.impl.ConcurrentPayrollDatabase;
+import com.gant.payroll.db.impl.PaymentDatabaseImpl;
+import com.gant.payroll.domain.Employee;
+import com.gant.payroll.domain.Paycheck;
+import com.gant.payroll.schedule.MothlySchedule;
+import com.gant.payroll.transaction.PaydayTransaction;
+
+public class PaymentDispatcherTest {
+
+	static final LocalDate PAYDAY = LocalDate.of(2018, Month.JULY, 20);
+
+	/**
+	 * 本地模拟的银行网关，每次转账固定延迟，并记录同一时刻的最大并发数；按 paymentKey 去重，同一个 key 只到账一次
+	 */
+	static class StubGateway implements BankGateway {
+		final long latencyMillis;
+		final AtomicInteger inFlight = new AtomicInteger();
+		final AtomicInteger maxInFlight = new AtomicInteger();
+		final AtomicInteger calls = new AtomicInteger();
+		final Map<String, Integer> credited = new ConcurrentHashMap<>();
+		volatile int failFirst;
+		/** 前几次调用不响应中断，卡满 stuckMillis 才返回，模拟已经发出去的请求 */
+		volatile int stuckFirst;
+		volatile long stuckMillis;
+
+		StubGateway(long latencyMillis) {
+			this.latencyMillis = latencyMillis;
+		}
+
+		@Override
+		public void transfer(String paymentKey, String bank, double account, Paycheck paycheck) {
+			int n = inFlight.incrementAndGet();
+			maxInFlight.accumulateAndGet(n, Math::max);
+			try {
+				int call = calls.incrementAndGet();
+				if (call <= failFirst) {
+					throw new IllegalStateException("网关繁忙");
+				}
+				if (call <= stuckFirst) {
+					sleepUninterruptibly(stuckMillis);
+				} else {
+					Thread.sleep(latencyMillis);
+				}
+				credited.putIfAbsent(paymentKey, call);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("转账被中断", e);
+			} finally {
+				inFlight.decrementAndGet();
+			}
+		}
+
+		private static void sleepUninterruptibly(long millis) {
+			long deadline = System.nanoTime() + millis * 1_000_000;
+			for (long left; (left = deadline - System.nanoTime()) > 0;) {
+				LockSupport.parkNanos(left);
+			}
+		}
+	}
+
+	@Test
+	public void testDispatchBoundedByGatewayThroughput() throws Exception {
+		StubGateway gateway = new StubGateway(50);
+		int paychecks = 200;
+		long begin = System.nanoTime();
+		List<CompletableFuture<Paycheck>> futures = new ArrayList<>();
+		try (PaymentDispatcher dispatcher = new PaymentDispatcher(20, 1000, 0, 10)) {
+			for (int i = 0; i < paychecks; i++) {
+				futures.add(dispatcher.dispatch(new BankMethod("工商银行", i, gateway), new Paycheck(PAYDAY.minusDays(6), PAYDAY)));
+			}
+			CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+		}
+		long elapsedMillis = (System.nanoTime() - begin) / 1_000_000;
+		System.out.println("200 笔 × 50ms，并发上限 20，耗时 " + elapsedMillis + " ms，最大并发 " + gateway.maxInFlight.get());
+		assertTrue(gateway.maxInFlight.get() <= 20);
+		assertTrue(elapsedMillis < paychecks * 50 / 4);
+	}
+
+	@Test
+	public void testRetry() throws Exception {
+		StubGateway gateway = new StubGateway(1);
+		gateway.failFirst = 2;
+		try (PaymentDispatcher dispatcher = new PaymentDispatcher(1, 1000, 2, 1)) {
+			dispatcher.dispatch(new BankMethod("招商银行", 1, gateway), new Paycheck(PAYDAY.minusDays(6), PAYDAY)).get();
+		}
+		assertEquals(3, gateway.calls.get());
+	}
+
+	@Test(expected = ExecutionException.class)
+	public void testTimeout() throws Exception {
+		StubGateway gateway = new StubGateway(500);
+		try (PaymentDispatcher dispatcher = new PaymentDispatcher(1, 20, 1, 1)) {
+			dispatcher.dispatch(new BankMethod("招商银行", 1, gateway), new Paycheck(PAYDAY.minusDays(6), PAYDAY)).get();
+		}
+	}
+
+	/**
+	 * 超时的调用还没返回时不占用新的并发，重试带同一个 key，每张支付记录只到账一次
+	 */
+	@Test
+	public void testTimeoutRetryCreditsOnce() throws Exception {
+		StubGateway gateway = new StubGateway(1);
+		gateway.stuckFirst = 1;
+		gateway.stuckMillis = 200;
+		List<CompletableFuture<Paycheck>> futures = new ArrayList<>();
+		try (PaymentDispatcher dispatcher = new PaymentDispatcher(1, 50, 2, 1)) {
+			for (int i = 0; i < 3; i++) {
+				Paycheck paycheck = new Paycheck(PAYDAY.minusDays(6), PAYDAY);
+				paycheck.setEmpId(String.valueOf(i));
+				futures.add(dispatcher.dispatch(new BankMethod("招商银行", i, gateway), paycheck));
+			}
+			CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+		}
+		assertEquals(1, gateway.maxInFlight.get());
+		assertEquals(3, gateway.credited.size());
+		assertTrue(gateway.calls.get() > 3);
+	}
+
+	/**
+	 * 发薪日交易等所有支付结束才返回，支付最终失败时交易抛出异常
+	 */
+	@Test
+	public void testPaydayJoinsPayments() {
+		PaymentDatabaseImpl payrollDatabase = new ConcurrentPayrollDatabase();
+		StubGateway gateway = new StubGateway(20);
+		for (int i = 0; i < 5; i++) {
+			Employee emp = new Employee(String.valueOf(i), "张三", "上海");
+			emp.setClassification(new SalariedClassification(1000));
+			emp.setSchedule(MothlySchedule.INSTANCE);
+			emp.setPaymentMethod(new BankMethod("工商银行", i, gateway));
+			payrollDatabase.addEmployee(emp.getId(), emp);
+		}
+		LocalDate payday = LocalDate.of(2018, Month.JULY, 31);
+		try (PaymentDispatcher dispatcher = new PaymentDispatcher(2, 1000, 0, 1)) {
+			PaydayTransaction pt = new PaydayTransaction(payday, payrollDatabase);
+			pt.setPaymentDispatcher(dispatcher);
+			pt.execute();
+			assertEquals(5, gateway.credited.size());
+
+			gateway.failFirst = Integer.MAX_VALUE;
+			PaydayTransaction failing = new PaydayTransaction(payday.plusMonths(1), payrollDatabase);
+			failing.setPaymentDispatcher(dispatcher);
+			try {
+				failing.execute();
+				fail();
+			} catch (CompletionException expected) {
+			}
+		}
+	}
+}
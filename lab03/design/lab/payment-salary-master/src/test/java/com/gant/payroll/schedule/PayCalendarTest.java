@@ -0,0 +1,133 @@
+package com.gant.payroll.schedule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.gant.payroll.classification.HourlyClassification;
+import com.gant.payroll.classification.TimeCard;
+import com.gant.payroll.domain.Paycheck;
+
+public class PayCalendarTest {
+
+	@After
+	public void resetHolidays() {
+		PayCalendar.getDefault().setHolidays(Collections.emptySet());
+	}
+
+	@Test
+	public void testWeekly() {
+		WeeklySchedule weekly = new WeeklySchedule();
+		for (LocalDate d = LocalDate.of(2016, 12, 1); d.isBefore(LocalDate.of(2020, 2, 1)); d = d.plusDays(1)) {
+			assertEquals(d.toString(), d.getDayOfWeek() == DayOfWeek.FRIDAY, weekly.isPayDate(d));
+		}
+		LocalDate friday = LocalDate.of(2018, Month.JULY, 20);
+		assertEquals(LocalDate.of(2018, Month.JULY, 14), weekly.getPayPeriodStartDate(friday));
+	}
+
+	@Test
+	public void testMonthlyLastBusinessDay() {
+		MothlySchedule monthly = new MothlySchedule();
+		// 2018-03-31 是周六，提前到周五
+		assertFalse(monthly.isPayDate(LocalDate.of(2018, Month.MARCH, 31)));
+		assertTrue(monthly.isPayDate(LocalDate.of(2018, Month.MARCH, 30)));
+		assertEquals(LocalDate.of(2018, Month.MARCH, 1), monthly.getPayPeriodStartDate(LocalDate.of(2018, Month.MARCH, 30)));
+		assertTrue(monthly.isPayDate(LocalDate.of(2018, Month.JULY, 31)));
+		assertFalse(monthly.isPayDate(LocalDate.of(2018, Month.JULY, 30)));
+
+		int payDays = 0;
+		for (LocalDate d = LocalDate.of(2018, 1, 1); d.getYear() == 2018; d = d.plusDays(1)) {
+			payDays += monthly.isPayDate(d) ? 1 : 0;
+		}
+		assertEquals(12, payDays);
+	}
+
+	@Test
+	public void testBiweekly() {
+		BiweeklySchedule biweekly = new BiweeklySchedule();
+		assertTrue(biweekly.isPayDate(LocalDate.of(2017, Month.JULY, 7)));
+		assertTrue(biweekly.isPayDate(LocalDate.of(2018, Month.JULY, 20)));
+		assertFalse(biweekly.isPayDate(LocalDate.of(2018, Month.JULY, 27)));
+		assertTrue(biweekly.isPayDate(LocalDate.of(2018, Month.AUGUST, 3)));
+		assertEquals(LocalDate.of(2018, Month.JULY, 7), biweekly.getPayPeriodStartDate(LocalDate.of(2018, Month.JULY, 20)));
+	}
+
+	@Test
+	public void testHolidayShift() {
+		WeeklySchedule weekly = new WeeklySchedule();
+		LocalDate friday = LocalDate.of(2018, Month.JULY, 20);
+		assertTrue(weekly.isPayDate(friday));
+
+		// 周五、周四放假，提前到周三发薪，账期起点不变
+		PayCalendar.getDefault().setHolidays(Arrays.asList(friday, friday.minusDays(1)));
+		assertFalse(weekly.isPayDate(friday));
+		assertTrue(weekly.isPayDate(friday.minusDays(2)));
+		assertEquals(LocalDate.of(2018, Month.JULY, 14), weekly.getPayPeriodStartDate(friday.minusDays(2)));
+
+		// 元旦是周一，跨年的 12 月 31 日不受影响；2021-01-01 是周五，提前到 2020-12-31
+		PayCalendar.getDefault().setHolidays(Collections.singleton(LocalDate.of(2021, 1, 1)));
+		assertTrue(weekly.isPayDate(LocalDate.of(2020, 12, 31)));
+		assertFalse(weekly.isPayDate(LocalDate.of(2021, 1, 1)));
+	}
+
+	/**
+	 * 发薪日提前后，前后两期加起来的工时和不调整时一样，提前发薪和原发薪日之间的卡片不会漏算
+	 */
+	@Test
+	public void testHolidayShiftKeepsHours() {
+		WeeklySchedule weekly = new WeeklySchedule();
+		HourlyClassification hourly = new HourlyClassification(10);
+		for (LocalDate d = LocalDate.of(2018, Month.JULY, 1); d.getMonthValue() < 9; d = d.plusDays(1)) {
+			hourly.addTimeCards(new TimeCard(d, 9));
+		}
+		long unshifted = totalPay(weekly, hourly);
+
+		LocalDate friday = LocalDate.of(2018, Month.JULY, 20);
+		PayCalendar.getDefault().setHolidays(Arrays.asList(friday, friday.minusDays(1)));
+		assertEquals(friday.minusDays(1), weekly.getPayPeriodStartDate(friday.plusDays(7)));
+		assertEquals(unshifted, totalPay(weekly, hourly));
+
+		// 跨年：2021-01-01 提前到 2020-12-31，2021 年第一期从 2021-01-01 开始
+		PayCalendar.getDefault().setHolidays(Collections.singleton(LocalDate.of(2021, 1, 1)));
+		assertEquals(LocalDate.of(2021, 1, 1), weekly.getPayPeriodStartDate(LocalDate.of(2021, 1, 8)));
+	}
+
+	@Test
+	public void testLookupSpeed() {
+		WeeklySchedule weekly = new WeeklySchedule();
+		LocalDate[] dates = new LocalDate[366];
+		for (int i = 0; i < dates.length; i++) {
+			dates[i] = LocalDate.of(2020, 1, 1).plusDays(i);
+		}
+		int n = 10_000_000;
+		int payDays = 0;
+		long begin = System.nanoTime();
+		for (int i = 0; i < n; i++) {
+			payDays += weekly.isPayDate(dates[i % dates.length]) ? 1 : 0;
+		}
+		System.out.println(n + " 次发薪日判断耗时 " + (System.nanoTime() - begin) / 1_000_000 + " ms");
+		assertTrue(payDays > 0);
+	}
+
+	/**
+	 * 2018 年 7、8 月每个发薪日应发薪资之和
+	 */
+	private static long totalPay(WeeklySchedule schedule, HourlyClassification hourly) {
+		long total = 0;
+		for (LocalDate d = LocalDate.of(2018, Month.JULY, 1); d.getMonthValue() < 9; d = d.plusDays(1)) {
+			if (schedule.isPayDate(d)) {
+				total += hourly.calculatePay(new Paycheck(schedule.getPayPeriodStartDate(d), d));
+			}
+		}
+		return total;
+	}
+}
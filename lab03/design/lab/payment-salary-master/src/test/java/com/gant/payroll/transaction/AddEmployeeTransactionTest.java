@@ -1,10 +1,14 @@
 package com.gant.payroll.transaction;
 
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
 import org.junit.Test;
 
 import com.gant.payroll.db.PayrollDatabase;
 import com.gant.payroll.db.impl.PaymentDatabaseImpl;
 import com.gant.payroll.domain.Employee;
+import com.gant.payroll.method.BankMethod;
 
 public class AddEmployeeTransactionTest {
 
@@ -39,4 +43,20 @@ public class AddEmployeeTransactionTest {
 		Employee emp = payrollDatabase.findEmployee(empId);
 		System.out.println(emp);
 	}
+
+	/**
+	 * 支付计划、支付方式和银行名共用一份；地址几乎不重复，原样保存，不进驻留池
+	 */
+	@Test
+	public void testSharedInstances() {
+		for (int i = 0; i < 2; i++) {
+			new AddHourlyEmployeeTransaction("s" + i, "员工" + i, new String("上海"), 10, payrollDatabase).execute();
+		}
+		Employee e0 = payrollDatabase.findEmployee("s0");
+		Employee e1 = payrollDatabase.findEmployee("s1");
+		assertSame(e0.getSchedule(), e1.getSchedule());
+		assertSame(e0.getPaymentMethod(), e1.getPaymentMethod());
+		assertNotSame(e0.getAddress(), e1.getAddress());
+		assertSame(new BankMethod(new String("工商银行"), 1).getBank(), new BankMethod(new String("工商银行"), 2).getBank());
+	}
 }
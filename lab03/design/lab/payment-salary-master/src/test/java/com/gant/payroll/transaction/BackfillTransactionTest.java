@@ -0,0 +1,94 @@
+package com.gant.payroll.transaction;
+
+import static org.junit.Assert.assertEquals;
+
+import java.time.LocalDate;
+import java.time.Month;
+
+import org.junit.Test;
+
+import com.gant.payroll.affiliation.ServiceChange;
+import com.gant.payroll.affiliation.UnionAffiliation;
+import com.gant.payroll.classification.CommissionedClassification;
+import com.gant.payroll.classification.HourlyClassification;
+import com.gant.payroll.classification.SalesReceipt;
+import com.gant.payroll.classification.TimeCard;
+import com.gant.payroll.db.PayrollDatabase;
+import com.gant.payroll.db.impl.ConcurrentPayrollDatabase;
+import com.gant.payroll.domain.Employee;
+import com.gant.payroll.method.HoldMethod;
+import com.gant.payroll.schedule.BiweeklySchedule;
+import com.gant.payroll.schedule.WeeklySchedule;
+
+public class BackfillTransactionTest {
+
+	static final LocalDate FROM = LocalDate.of(2018, Month.JANUARY, 1);
+	static final LocalDate TO = LocalDate.of(2018, Month.MARCH, 31);
+
+	@Test
+	public void testSameAsDailyPayday() {
+		PayrollDatabase daily = newDatabase();
+		for (LocalDate date = FROM; !date.isAfter(TO); date = date.plusDays(1)) {
+			new PaydayTransaction(date, daily).execute();
+		}
+
+		PayrollDatabase backfill = newDatabase();
+		BackfillTransaction backfillTransaction = new BackfillTransaction(FROM, TO, backfill);
+		backfillTransaction.execute();
+		System.out.println("补算支付记录 " + backfillTransaction.getPaychecks().size() + " 张");
+
+		for (int i = 0; i < 100; i++) {
+			String empId = String.valueOf(i);
+			assertEquals(daily.findPaychecks(empId).toString(), backfill.findPaychecks(empId).toString());
+		}
+	}
+
+	/**
+	 * 补算两次，或者补算覆盖了已经发过薪的日子，每个发薪日都只有一张支付记录
+	 */
+	@Test
+	public void testRunTwice() {
+		PayrollDatabase payrollDatabase = newDatabase();
+		LocalDate paid = LocalDate.of(2018, Month.FEBRUARY, 2);
+		new PaydayTransaction(paid, payrollDatabase).execute();
+		BackfillTransaction first = new BackfillTransaction(FROM, TO, payrollDatabase);
+		first.execute();
+		String once = payrollDatabase.findPaychecks("0").toString() + payrollDatabase.findPaychecks("1");
+
+		BackfillTransaction second = new BackfillTransaction(FROM, TO, payrollDatabase);
+		second.execute();
+		assertEquals(0, second.getPaychecks().size());
+		assertEquals(once, payrollDatabase.findPaychecks("0").toString() + payrollDatabase.findPaychecks("1"));
+		// 1 月 5 日到 3 月 30 日共 13 个周五
+		assertEquals(13, payrollDatabase.findPaychecks("0").size());
+	}
+
+	private static PayrollDatabase newDatabase() {
+		PayrollDatabase payrollDatabase = new ConcurrentPayrollDatabase();
+		for (int i = 0; i < 100; i++) {
+			String empId = String.valueOf(i);
+			Employee emp = new Employee(empId, "员工" + i, "上海");
+			emp.setPaymentMethod(new HoldMethod());
+			if (i % 2 == 0) {
+				emp.setClassification(new HourlyClassification(10));
+				emp.setSchedule(new WeeklySchedule());
+				payrollDatabase.addEmployee(empId, emp);
+				for (LocalDate date = FROM; !date.isAfter(TO); date = date.plusDays(1)) {
+					payrollDatabase.addTimeCard(empId, new TimeCard(date, 6 + (i + date.getDayOfMonth()) % 5));
+				}
+				UnionAffiliation af = new UnionAffiliation(empId, 5);
+				af.addServiceChanges(new ServiceChange(FROM.plusDays(i), 3));
+				emp.addAffiliations(af);
+			} else {
+				CommissionedClassification cc = new CommissionedClassification(1000, 0.1);
+				emp.setClassification(cc);
+				emp.setSchedule(new BiweeklySchedule());
+				payrollDatabase.addEmployee(empId, emp);
+				for (LocalDate date = FROM; !date.isAfter(TO); date = date.plusDays(3)) {
+					cc.addSalesReceipt(new SalesReceipt(date, 100 + i));
+				}
+			}
+		}
+		return payrollDatabase;
+	}
+}
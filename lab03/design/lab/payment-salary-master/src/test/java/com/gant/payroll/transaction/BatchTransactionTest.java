@@ -0,0 +1,187 @@
+package com.gant.payroll.transaction;
+
+import static org.junit.Assert.assertEquals;
+
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.gant.payroll.affiliation.UnionAffiliation;
+import com.gant.payroll.classification.CommissionedClassification;
+import com.gant.payroll.classification.HourlyClassification;
+import com.gant.payroll.classification.SalesReceipt;
+import com.gant.payroll.classification.TimeCard;
+import com.gant.payroll.db.PayrollDatabase;
+import com.gant.payroll.db.impl.ConcurrentPayrollDatabase;
+import com.gant.payroll.db.impl.PaymentDatabaseImpl;
+import com.gant.payroll.domain.Employee;
+import com.gant.payroll.domain.Paycheck;
+import com.gant.payroll.method.HoldMethod;
+import com.gant.payroll.schedule.BiweeklySchedule;
+import com.gant.payroll.schedule.WeeklySchedule;
+
+public class BatchTransactionTest {
+
+	static final LocalDate DATE = LocalDate.of(2018, Month.JULY, 1);
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * 批量导入与逐条执行的结果一致，没有员工的记录单独报错
+	 */
+	@Test
+	public void testSameAsOneByOne() {
+		PayrollDatabase oneByOne = newDatabase();
+		PayrollDatabase batched = newDatabase();
+		BatchTransaction batch = new BatchTransaction(batched);
+		int n = 0;
+		for (int i = 0; i < 31; i++) {
+			LocalDate date = DATE.plusDays(i);
+			for (Transaction t : new Transaction[] { new TimeCardTransaction("1", date, 6 + i % 5), new SalesReceiptTransaction("2", date, 100 + i),
+					new ServiceChangeTransaction("7", date, i % 3) }) {
+				batch.add(t);
+				setDatabase(t, oneByOne).execute();
+				n++;
+			}
+		}
+		TimeCardTransaction missing = new TimeCardTransaction("404", DATE, 8);
+		batch.add(missing);
+		batch.execute();
+
+		BatchResult result = batch.getResult();
+		System.out.println(result);
+		assertEquals(n, result.getSucceeded());
+		assertEquals(1, result.getFailures().size());
+		assertEquals(missing, result.getFailures().get(0).getTransaction());
+
+		LocalDate payDay = LocalDate.of(2018, Month.JULY, 20);
+		new PaydayTransaction(payDay, oneByOne).execute();
+		new PaydayTransaction(payDay, batched).execute();
+		assertEquals(oneByOne.findTimeCards("1").toString(), batched.findTimeCards("1").toString());
+		assertEquals(oneByOne.findSalesReceipts("2").toString(), batched.findSalesReceipts("2").toString());
+		assertEquals(oneByOne.findServiceChange("7").toString(), batched.findServiceChange("7").toString());
+		assertEquals(oneByOne.findPaychecks("1").toString(), batched.findPaychecks("1").toString());
+		assertEquals(oneByOne.findPaychecks("2").toString(), batched.findPaychecks("2").toString());
+	}
+
+	/**
+	 * 持久化模式下整批只落盘一次
+	 */
+	@Test
+	public void testJournaledBatch() throws Exception {
+		int n = 200_000;
+		PaymentDatabaseImpl payrollDatabase = newDatabase();
+		payrollDatabase.openJournal(folder.getRoot().toPath(), true);
+		BatchTransaction batch = new BatchTransaction(payrollDatabase);
+		for (int i = 0; i < n; i++) {
+			batch.add(new TimeCardTransaction("1", DATE.plusDays(i / 1000), 8));
+		}
+		long begin = System.nanoTime();
+		batch.execute();
+		long elapsed = System.nanoTime() - begin;
+		payrollDatabase.closeJournal();
+		assertEquals(n, batch.getResult().getSucceeded());
+		System.out.println("批量导入 " + n + " 张时间卡片耗时 " + elapsed / 1_000_000 + " ms, " + batch.getResult());
+
+		PaymentDatabaseImpl recovered = new ConcurrentPayrollDatabase();
+		recovered.openJournal(folder.getRoot().toPath(), true);
+		assertEquals(n, recovered.findTimeCards("1").size());
+		recovered.closeJournal();
+	}
+
+	/**
+	 * 某一组追加时数据库抛出异常：这一组记为失败，其它组照常写入
+	 */
+	@Test
+	public void testGroupFailure() {
+		PaymentDatabaseImpl payrollDatabase = new ConcurrentPayrollDatabase() {
+			@Override
+			public void addTimeCards(String empId, List<TimeCard> timeCards) {
+				if ("3".equals(empId)) {
+					throw new IllegalStateException("写入失败");
+				}
+				super.addTimeCards(empId, timeCards);
+			}
+		};
+		fill(payrollDatabase);
+		Employee broken = new Employee("3", "王五", "上海");
+		broken.setClassification(new HourlyClassification(10));
+		broken.setSchedule(new WeeklySchedule());
+		broken.setPaymentMethod(new HoldMethod());
+		payrollDatabase.addEmployee("3", broken);
+
+		BatchTransaction batch = new BatchTransaction(payrollDatabase);
+		batch.add(new TimeCardTransaction("3", DATE, 8)).add(new TimeCardTransaction("3", DATE.plusDays(1), 8));
+		batch.add(new TimeCardTransaction("1", DATE, 8)).add(new SalesReceiptTransaction("2", DATE, 100));
+		batch.execute();
+
+		BatchResult result = batch.getResult();
+		assertEquals(2, result.getSucceeded());
+		assertEquals(2, result.getFailures().size());
+		assertEquals("写入失败", result.getFailures().get(0).getCause().getMessage());
+		assertEquals(1, payrollDatabase.findTimeCards("1").size());
+		assertEquals(1, payrollDatabase.findSalesReceipts("2").size());
+	}
+
+	/**
+	 * 凭条写数据库失败时，销售员工的支付策略里也没有这些凭条，算薪结果与日志一致
+	 */
+	@Test
+	public void testReceiptFailureLeavesClassification() {
+		PaymentDatabaseImpl payrollDatabase = new ConcurrentPayrollDatabase() {
+			@Override
+			public void addSalesReceipts(String empId, List<SalesReceipt> salesReceipts) {
+				throw new IllegalStateException("写入失败");
+			}
+		};
+		fill(payrollDatabase);
+
+		BatchTransaction batch = new BatchTransaction(payrollDatabase);
+		batch.add(new SalesReceiptTransaction("2", DATE, 100)).add(new SalesReceiptTransaction("2", DATE.plusDays(1), 200));
+		batch.execute();
+
+		assertEquals(2, batch.getResult().getFailures().size());
+		Paycheck pc = new Paycheck(DATE.minusDays(1), DATE.plusDays(13));
+		payrollDatabase.findEmployee("2").calculatePaycheck(pc);
+		assertEquals(1000, pc.getGrossPay(), 0);
+	}
+
+	private static Transaction setDatabase(Transaction t, PayrollDatabase payrollDatabase) {
+		if (t instanceof TimeCardTransaction) {
+			((TimeCardTransaction) t).payrollDatabase = payrollDatabase;
+		} else if (t instanceof SalesReceiptTransaction) {
+			((SalesReceiptTransaction) t).payrollDatabase = payrollDatabase;
+		} else if (t instanceof ServiceChangeTransaction) {
+			((ServiceChangeTransaction) t).payrollDatabase = payrollDatabase;
+		}
+		return t;
+	}
+
+	private static PaymentDatabaseImpl newDatabase() {
+		return fill(new ConcurrentPayrollDatabase());
+	}
+
+	private static PaymentDatabaseImpl fill(PaymentDatabaseImpl payrollDatabase) {
+		Employee hourly = new Employee("1", "张三", "上海");
+		hourly.setClassification(new HourlyClassification(10));
+		hourly.setSchedule(new WeeklySchedule());
+		hourly.setPaymentMethod(new HoldMethod());
+		payrollDatabase.addEmployee("1", hourly);
+		UnionAffiliation af = new UnionAffiliation("7", 5);
+		hourly.addAffiliations(af);
+		payrollDatabase.addAffiliation("7", af);
+		payrollDatabase.addMember("7", hourly);
+
+		Employee commissioned = new Employee("2", "李四", "上海");
+		commissioned.setClassification(new CommissionedClassification(1000, 0.1));
+		commissioned.setSchedule(new BiweeklySchedule());
+		commissioned.setPaymentMethod(new HoldMethod());
+		payrollDatabase.addEmployee("2", commissioned);
+		return payrollDatabase;
+	}
+}
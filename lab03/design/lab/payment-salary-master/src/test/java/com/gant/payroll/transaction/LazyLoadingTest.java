@@ -0,0 +1,152 @@
+package com.gant.payroll.transaction;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+import com.gant.payroll.classification.CommissionedClassification;
+import com.gant.payroll.classification.HourlyClassification;
+import com.gant.payroll.classification.TimeCard;
+import com.gant.payroll.db.HistoryCache;
+import com.gant.payroll.db.PayrollDatabase;
+import com.gant.payroll.db.impl.ConcurrentPayrollDatabase;
+import com.gant.payroll.domain.Paycheck;
+
+public class LazyLoadingTest {
+
+	static final int EMPLOYEES = 200;
+	static final int DAYS = 3 * 365;
+	static final LocalDate PAYDAY = LocalDate.of(2018, Month.JULY, 20);
+
+	@Test
+	public void testSameAsEager() {
+		PayrollDatabase eager = newDatabase(false);
+		ConcurrentPayrollDatabase lazy = newDatabase(true);
+
+		HourlyClassification hc = (HourlyClassification) lazy.findEmployee("0").getClassification();
+		assertTrue(hc.isLazy());
+		assertNull(hc.getTimeCards());
+		assertTrue(((CommissionedClassification) lazy.findEmployee("1").getClassification()).isLazy());
+
+		for (LocalDate payDay = PAYDAY; payDay.isBefore(PAYDAY.plusDays(28)); payDay = payDay.plusDays(7)) {
+			new PaydayTransaction(payDay, eager).execute();
+			new PaydayTransaction(payDay, lazy).execute();
+		}
+		for (int i = 0; i < EMPLOYEES; i++) {
+			String empId = String.valueOf(i);
+			assertEquals(eager.findPaychecks(empId).toString(), lazy.findPaychecks(empId).toString());
+		}
+	}
+
+	@Test
+	public void testCacheHitAndInvalidate() {
+		ConcurrentPayrollDatabase lazy = newDatabase(true);
+		HistoryCache cache = lazy.getHistoryCache();
+		Paycheck first = calculate(lazy, "0");
+		long misses = cache.getMisses();
+		Paycheck again = calculate(lazy, "0");
+		assertEquals(first.getNetPayCents(), again.getNetPayCents());
+		assertEquals(misses, cache.getMisses());
+		assertTrue(cache.getHits() > 0);
+
+		// 本期新录入的卡片在失效后能算进去，每张卡片按 8 小时计
+		TimeCardTransaction t = new TimeCardTransaction("0", PAYDAY.minusDays(1), 2);
+		t.payrollDatabase = lazy;
+		t.execute();
+		Paycheck after = calculate(lazy, "0");
+		assertEquals(first.getGrossPayCents() + 8 * 10 * 100, after.getGrossPayCents());
+	}
+
+	/**
+	 * 一个员工加载明细时不挡住其他员工；加载期间失效过的结果只返回、不缓存
+	 */
+	@Test(timeout = 10_000)
+	public void testLoadOutsideLock() throws Exception {
+		CountDownLatch loading = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		ConcurrentPayrollDatabase payrollDatabase = new ConcurrentPayrollDatabase() {
+			@Override
+			public List<TimeCard> findTimeCards(String empId, LocalDate from, LocalDate to) {
+				List<TimeCard> result = super.findTimeCards(empId, from, to);
+				if (empId.equals("slow")) {
+					loading.countDown();
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+				return result;
+			}
+		};
+		payrollDatabase.addTimeCard("slow", new TimeCard(PAYDAY.minusDays(2), 8));
+		payrollDatabase.addTimeCard("fast", new TimeCard(PAYDAY.minusDays(2), 8));
+		HistoryCache cache = new HistoryCache(payrollDatabase);
+		long start = PAYDAY.minusDays(7).toEpochDay();
+		long end = PAYDAY.toEpochDay();
+
+		Thread slow = new Thread(() -> cache.findTimeCards("slow", start, end));
+		slow.start();
+		loading.await();
+		assertEquals(1, cache.findTimeCards("fast", start, end).size());
+
+		payrollDatabase.addTimeCard("slow", new TimeCard(PAYDAY.minusDays(1), 8));
+		cache.invalidateTimeCards("slow");
+		release.countDown();
+		slow.join();
+		assertEquals(2, cache.findTimeCards("slow", start, end).size());
+	}
+
+	private static Paycheck calculate(PayrollDatabase payrollDatabase, String empId) {
+		Paycheck pc = new Paycheck(PAYDAY.minusDays(7), PAYDAY);
+		payrollDatabase.findEmployee(empId).calculatePaycheck(pc);
+		return pc;
+	}
+
+	/**
+	 * 偶数号是小时工，奇数号是提成员工，每人都是工会会员，各带三年的明细
+	 */
+	private static ConcurrentPayrollDatabase newDatabase(boolean lazy) {
+		ConcurrentPayrollDatabase payrollDatabase = new ConcurrentPayrollDatabase();
+		if (lazy) {
+			payrollDatabase.enableLazyLoading(EMPLOYEES / 4);
+		}
+		LocalDate first = PAYDAY.minusDays(DAYS);
+		for (int i = 0; i < EMPLOYEES; i++) {
+			String empId = String.valueOf(i);
+			String memberId = "m" + i;
+			AddEmployeeTransaction add = i % 2 == 0 ? new AddHourlyEmployeeTransaction(empId, "员工" + i, "上海", 10)
+					: new AddCommissionedEmployeeTransaction(empId, "员工" + i, "上海", 1000, 0.1);
+			add.payrollDatabase = payrollDatabase;
+			add.execute();
+			AffiliationTransaction af = new AffiliationTransaction(empId, memberId, 5);
+			af.payrollDatabase = payrollDatabase;
+			af.execute();
+			for (int d = 0; d < DAYS + 28; d++) {
+				LocalDate date = first.plusDays(d);
+				if (i % 2 == 0) {
+					TimeCardTransaction t = new TimeCardTransaction(empId, date, 6 + (i + d) % 5);
+					t.payrollDatabase = payrollDatabase;
+					t.execute();
+				} else if (d % 3 == 0) {
+					SalesReceiptTransaction t = new SalesReceiptTransaction(empId, date, 100 + (i + d) % 13);
+					t.payrollDatabase = payrollDatabase;
+					t.execute();
+				}
+				if (d % 10 == 0) {
+					ServiceChangeTransaction t = new ServiceChangeTransaction(memberId, date, 3);
+					t.payrollDatabase = payrollDatabase;
+					t.execute();
+				}
+			}
+		}
+		return payrollDatabase;
+	}
+}
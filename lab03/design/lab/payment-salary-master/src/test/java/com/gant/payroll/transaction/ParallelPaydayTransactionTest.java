@@ -0,0 +1,75 @@
+package com.gant.payroll.transaction;
+
+import static org.junit.Assert.assertEquals;
+
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import com.gant.payroll.classification.CommissionedClassification;
+import com.gant.payroll.classification.HourlyClassification;
+import com.gant.payroll.classification.SalesReceipt;
+import com.gant.payroll.classification.TimeCard;
+import com.gant.payroll.db.PayrollDatabase;
+import com.gant.payroll.db.impl.ConcurrentPayrollDatabase;
+import com.gant.payroll.domain.Employee;
+import com.gant.payroll.domain.Paycheck;
+import com.gant.payroll.method.HoldMethod;
+import com.gant.payroll.schedule.WeeklySchedule;
+
+public class ParallelPaydayTransactionTest {
+
+	static final int EMPLOYEES = 50_000;
+	static final LocalDate PAYDAY = LocalDate.of(2018, Month.JULY, 20);
+
+	@Test
+	public void testSameAsSequential() {
+		PayrollDatabase sequential = newDatabase();
+		long begin = System.nanoTime();
+		new PaydayTransaction(PAYDAY, sequential).execute();
+		System.out.println("顺序计算: " + (System.nanoTime() - begin) / 1_000_000 + " ms");
+
+		for (int parallelism = 1; parallelism <= Math.max(4, Runtime.getRuntime().availableProcessors()); parallelism *= 2) {
+			PayrollDatabase parallel = newDatabase();
+			ForkJoinPool pool = new ForkJoinPool(parallelism);
+			begin = System.nanoTime();
+			new ParallelPaydayTransaction(PAYDAY, pool, parallel).execute();
+			System.out.println("并行计算 parallelism=" + parallelism + ": " + (System.nanoTime() - begin) / 1_000_000 + " ms");
+			pool.shutdown();
+
+			for (int i = 0; i < EMPLOYEES; i++) {
+				List<Paycheck> expected = sequential.findPaychecks(String.valueOf(i));
+				List<Paycheck> actual = parallel.findPaychecks(String.valueOf(i));
+				assertEquals(expected.toString(), actual.toString());
+			}
+		}
+	}
+
+	private static PayrollDatabase newDatabase() {
+		PayrollDatabase payrollDatabase = new ConcurrentPayrollDatabase();
+		for (int i = 0; i < EMPLOYEES; i++) {
+			String empId = String.valueOf(i);
+			Employee emp = new Employee(empId, "员工" + i, "上海");
+			emp.setSchedule(new WeeklySchedule());
+			emp.setPaymentMethod(new HoldMethod());
+			if (i % 2 == 0) {
+				emp.setClassification(new HourlyClassification(10 + i % 7));
+				payrollDatabase.addEmployee(empId, emp);
+				for (int d = 0; d < 5; d++) {
+					payrollDatabase.addTimeCard(empId, new TimeCard(PAYDAY.minusDays(d + 1), 6 + (i + d) % 5));
+				}
+			} else {
+				CommissionedClassification cc = new CommissionedClassification(1000, 0.1);
+				emp.setClassification(cc);
+				payrollDatabase.addEmployee(empId, emp);
+				SalesReceipt sr = new SalesReceipt(PAYDAY.minusDays(2), 100 + i % 13);
+				cc.addSalesReceipt(sr);
+				payrollDatabase.addSalesReceipt(empId, sr);
+			}
+		}
+		return payrollDatabase;
+	}
+}
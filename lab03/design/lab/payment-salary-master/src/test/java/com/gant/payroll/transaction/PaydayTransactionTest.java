@@ -1,5 +1,7 @@
 package com.gant.payroll.transaction;
 
+import static org.junit.Assert.assertEquals;
+
 import java.time.LocalDate;
 import java.time.Month;
 import java.util.List;
@@ -17,6 +19,8 @@ public class PaydayTransactionTest {
 
 	@Test
 	public void testPaydate() {
+		payrollDatabase.findAllEmpByInit();
+
 		PaydayTransaction paydayTransaction = new PaydayTransaction(LocalDate.of(2018, Month.JULY, 20));
 		paydayTransaction.execute();
 
@@ -31,4 +35,16 @@ public class PaydayTransactionTest {
 		}
 	}
 
+	@Test
+	public void testRepeatedPayday() {
+		payrollDatabase.findAllEmpByInit();
+		int timeCards = payrollDatabase.findTimeCards("1").size();
+
+		// 多次发薪不会重新初始化数据，时间卡片不会重复
+		new PaydayTransaction(LocalDate.of(2018, Month.JULY, 20)).execute();
+		payrollDatabase.findAllEmpByInit();
+		new PaydayTransaction(LocalDate.of(2018, Month.JULY, 20)).execute();
+		assertEquals(timeCards, payrollDatabase.findTimeCards("1").size());
+	}
+
 }
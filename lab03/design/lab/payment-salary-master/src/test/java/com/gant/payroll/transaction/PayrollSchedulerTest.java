@@ -0,0 +1,212 @@
+package com.gant.payroll.transaction;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.gant.payroll.classification.HourlyClassification;
+import com.gant.payroll.classification.SalariedClassification;
+import com.gant.payroll.db.PayrollDatabase;
+import com.gant.payroll.db.impl.ConcurrentPayrollDatabase;
+import com.gant.payroll.domain.Employee;
+import com.gant.payroll.domain.Paycheck;
+import com.gant.payroll.domain.PaycheckBatch;
+import com.gant.payroll.domain.PaymentSchedule;
+import com.gant.payroll.method.HoldMethod;
+import com.gant.payroll.schedule.BiweeklySchedule;
+import com.gant.payroll.schedule.MothlySchedule;
+import com.gant.payroll.schedule.WeeklySchedule;
+
+public class PayrollSchedulerTest {
+
+	static final LocalDate FROM = LocalDate.of(2018, Month.JANUARY, 1);
+	static final LocalDate TO = LocalDate.of(2020, Month.DECEMBER, 31);
+
+	/**
+	 * 逐天拨动时钟和一次拨到三年后，结果都与补算一致
+	 */
+	@Test
+	public void testSameAsBackfill() {
+		PayrollDatabase expected = newDatabase();
+		new BackfillTransaction(FROM, TO, expected).execute();
+
+		PayrollDatabase daily = newDatabase();
+		TestClock clock = new TestClock(FROM);
+		PayrollScheduler scheduler = new PayrollScheduler(clock, daily);
+		long begin = System.nanoTime();
+		for (LocalDate d = FROM; !d.isAfter(TO); d = d.plusDays(1)) {
+			clock.set(d);
+			scheduler.runDue();
+		}
+		System.out.println("模拟三年发薪耗时 " + (System.nanoTime() - begin) / 1_000_000 + " ms");
+
+		PayrollDatabase jump = newDatabase();
+		TestClock jumpClock = new TestClock(FROM);
+		PayrollScheduler jumpScheduler = new PayrollScheduler(jumpClock, jump);
+		jumpClock.set(TO);
+		jumpScheduler.runDue();
+
+		for (String empId : new String[] { "w", "b", "m" }) {
+			assertEquals(expected.findPaychecks(empId).toString(), daily.findPaychecks(empId).toString());
+			assertEquals(expected.findPaychecks(empId).toString(), jump.findPaychecks(empId).toString());
+		}
+		assertEquals(LocalDate.of(2021, 1, 1), scheduler.getNextPayDate("w"));
+	}
+
+	@Test
+	public void testChangeSchedule() {
+		PayrollDatabase payrollDatabase = newDatabase();
+		TestClock clock = new TestClock(LocalDate.of(2018, Month.JULY, 1));
+		PayrollScheduler scheduler = new PayrollScheduler(clock, payrollDatabase);
+		assertEquals(LocalDate.of(2018, Month.JULY, 6), scheduler.getNextPayDate("w"));
+
+		scheduler.changeSchedule("w", new MothlySchedule());
+		assertEquals(LocalDate.of(2018, Month.JULY, 31), scheduler.getNextPayDate("w"));
+
+		clock.set(LocalDate.of(2018, Month.AUGUST, 31));
+		scheduler.runDue();
+		List<Paycheck> paychecks = payrollDatabase.findPaychecks("w");
+		assertEquals(2, paychecks.size());
+		assertEquals(LocalDate.of(2018, Month.JULY, 31), paychecks.get(0).getPayPeriodEnd());
+		assertEquals(LocalDate.of(2018, Month.AUGUST, 31), paychecks.get(1).getPayPeriodEnd());
+	}
+
+	@Test
+	public void testDaemon() throws Exception {
+		PayrollDatabase payrollDatabase = newDatabase();
+		TestClock clock = new TestClock(LocalDate.of(2018, Month.JULY, 1));
+		PayrollScheduler scheduler = new PayrollScheduler(clock, payrollDatabase);
+		scheduler.start();
+		clock.set(LocalDate.of(2018, Month.JULY, 6));
+		scheduler.wakeUp();
+		for (int i = 0; i < 500 && payrollDatabase.findPaychecks("w") == null; i++) {
+			Thread.sleep(10);
+		}
+		scheduler.close();
+		assertEquals(1, payrollDatabase.findPaychecks("w").size());
+	}
+
+	/**
+	 * 保存失败时这一批员工留在队列里，没有支付；下次重新处理，只保存、支付一次
+	 */
+	@Test
+	public void testSaveFailure() {
+		AtomicInteger failures = new AtomicInteger(1);
+		PayrollDatabase payrollDatabase = failingDatabase(failures);
+		AtomicInteger payments = new AtomicInteger();
+		payrollDatabase.findEmployee("w").setPaymentMethod(pc -> payments.incrementAndGet());
+		TestClock clock = new TestClock(LocalDate.of(2018, Month.JULY, 1));
+		PayrollScheduler scheduler = new PayrollScheduler(clock, payrollDatabase);
+		clock.set(LocalDate.of(2018, Month.JULY, 6));
+		try {
+			scheduler.runDue();
+			fail();
+		} catch (IllegalStateException expected) {
+		}
+		assertEquals(0, payments.get());
+		assertEquals(LocalDate.of(2018, Month.JULY, 6), scheduler.getNextPayDate("w"));
+
+		scheduler.runDue();
+		assertEquals(1, payments.get());
+		assertEquals(1, payrollDatabase.findPaychecks("w").size());
+		assertEquals(LocalDate.of(2018, Month.JULY, 13), scheduler.getNextPayDate("w"));
+	}
+
+	/**
+	 * 后台线程遇到异常不退出，记下异常后重试
+	 */
+	@Test
+	public void testDaemonSurvivesFailure() throws Exception {
+		PayrollDatabase payrollDatabase = failingDatabase(new AtomicInteger(1));
+		TestClock clock = new TestClock(LocalDate.of(2018, Month.JULY, 1));
+		PayrollScheduler scheduler = new PayrollScheduler(clock, payrollDatabase);
+		scheduler.start();
+		clock.set(LocalDate.of(2018, Month.JULY, 6));
+		for (int i = 0; i < 500 && payrollDatabase.findPaychecks("w") == null; i++) {
+			scheduler.wakeUp();
+			Thread.sleep(10);
+		}
+		scheduler.close();
+		assertTrue(scheduler.getLastFailure() instanceof IllegalStateException);
+		assertEquals(1, payrollDatabase.findPaychecks("w").size());
+	}
+
+	/**
+	 * 前 failures 次保存支付记录时抛出异常
+	 */
+	private static PayrollDatabase failingDatabase(AtomicInteger failures) {
+		PayrollDatabase payrollDatabase = new ConcurrentPayrollDatabase() {
+			@Override
+			public void savePaychecks(PaycheckBatch paychecks) {
+				if (failures.getAndDecrement() > 0) {
+					throw new IllegalStateException("磁盘已满");
+				}
+				super.savePaychecks(paychecks);
+			}
+		};
+		fill(payrollDatabase);
+		return payrollDatabase;
+	}
+
+	private static PayrollDatabase newDatabase() {
+		PayrollDatabase payrollDatabase = new ConcurrentPayrollDatabase();
+		fill(payrollDatabase);
+		return payrollDatabase;
+	}
+
+	private static void fill(PayrollDatabase payrollDatabase) {
+		add(payrollDatabase, "w", new WeeklySchedule());
+		add(payrollDatabase, "b", new BiweeklySchedule());
+		add(payrollDatabase, "m", new MothlySchedule());
+	}
+
+	private static void add(PayrollDatabase payrollDatabase, String empId, PaymentSchedule schedule) {
+		Employee emp = new Employee(empId, "员工" + empId, "上海");
+		emp.setClassification(schedule instanceof MothlySchedule ? new SalariedClassification(3000) : new HourlyClassification(10));
+		emp.setSchedule(schedule);
+		emp.setPaymentMethod(new HoldMethod());
+		payrollDatabase.addEmployee(empId, emp);
+	}
+
+	/**
+	 * 可以随意拨动的时钟
+	 */
+	static class TestClock extends Clock {
+
+		private volatile Instant instant;
+
+		TestClock(LocalDate date) {
+			set(date);
+		}
+
+		void set(LocalDate date) {
+			this.instant = date.atStartOfDay(ZoneOffset.UTC).toInstant();
+		}
+
+		@Override
+		public ZoneId getZone() {
+			return ZoneOffset.UTC;
+		}
+
+		@Override
+		public Clock withZone(ZoneId zone) {
+			return this;
+		}
+
+		@Override
+		public Instant instant() {
+			return instant;
+		}
+	}
+}
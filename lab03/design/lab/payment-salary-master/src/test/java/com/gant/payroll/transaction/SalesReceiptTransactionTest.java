@@ -1,14 +1,19 @@
 package com.gant.payroll.transaction;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
 import java.time.LocalDate;
 import java.time.Month;
 import java.util.List;
 
 import org.junit.Test;
 
+import com.gant.payroll.classification.CommissionedClassification;
 import com.gant.payroll.classification.SalesReceipt;
 import com.gant.payroll.db.PayrollDatabase;
 import com.gant.payroll.db.impl.PaymentDatabaseImpl;
+import com.gant.payroll.domain.Paycheck;
 
 public class SalesReceiptTransactionTest {
 
@@ -33,4 +38,41 @@ public class SalesReceiptTransactionTest {
 		salesReceipts.forEach(it -> System.out.println(it));
 
 	}
+
+	@Test
+	public void testCalculatePaySoFar() {
+		CommissionedClassification cc = new CommissionedClassification(1000, 0.5);
+		cc.addSalesReceipt(new SalesReceipt(LocalDate.of(2018, Month.JULY, 19), 50));
+		cc.addSalesReceipt(new SalesReceipt(LocalDate.of(2018, Month.JULY, 10), 100));
+		cc.addSalesReceipt(new SalesReceipt(LocalDate.of(2018, Month.JULY, 12), 200));
+
+		LocalDate start = LocalDate.of(2018, Month.JULY, 6);
+		assertEquals((1000 + 150) * 100, cc.calculatePaySoFar(start, LocalDate.of(2018, Month.JULY, 12)));
+		assertEquals((1000 + 175) * 100, cc.calculatePay(new Paycheck(start, LocalDate.of(2018, Month.JULY, 20))));
+	}
+
+	/**
+	 * 一边录入乱序的凭条一边算薪：每次算出的提成都对应某个已录入的前缀，最后等于全部凭条之和
+	 */
+	@Test
+	public void testConcurrentAddAndCalculate() throws Exception {
+		CommissionedClassification cc = new CommissionedClassification(0, 1);
+		LocalDate start = LocalDate.of(2018, Month.JUNE, 30);
+		Paycheck paycheck = new Paycheck(start, start.plusDays(32));
+		int receipts = 20_000;
+		Thread writer = new Thread(() -> {
+			for (int i = 0; i < receipts; i++) {
+				cc.addSalesReceipt(new SalesReceipt(start.plusDays(1 + i * 7 % 31), 1));
+			}
+		});
+		writer.start();
+		long last = 0;
+		while (writer.isAlive()) {
+			long pay = cc.calculatePay(paycheck);
+			assertTrue(pay % 100 == 0 && pay >= last && pay <= receipts * 100L);
+			last = pay;
+		}
+		writer.join();
+		assertEquals(receipts * 100L, cc.calculatePay(paycheck));
+	}
 }
@@ -1,15 +1,25 @@
 package com.gant.payroll.transaction;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
 import java.time.LocalDate;
 import java.time.Month;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import org.junit.Test;
 
 import com.gant.payroll.affiliation.ServiceChange;
+import com.gant.payroll.affiliation.UnionAffiliation;
 import com.gant.payroll.db.PayrollDatabase;
+import com.gant.payroll.db.impl.ConcurrentPayrollDatabase;
 import com.gant.payroll.db.impl.PaymentDatabaseImpl;
+import com.gant.payroll.domain.Affiliation;
 import com.gant.payroll.domain.Employee;
+import com.gant.payroll.domain.Paycheck;
 
 public class ServiceChangeTransactionTest {
 
@@ -40,4 +50,81 @@ public class ServiceChangeTransactionTest {
 
 		System.out.println(payrollDatabase.findEmployee(empId));
 	}
+
+	/**
+	 * 全工会统一收费：一次给所有会员编号记同一笔服务费，每个会员只扣一次，其它会员不受影响；账期内没有周五，只扣服务费。
+	 * 大规模的耗时见 jmh 下的 UnionChargeBenchmark
+	 */
+	@Test
+	public void testUnionWideCharge() {
+		int members = 3;
+		LocalDate payday = LocalDate.of(2018, Month.JULY, 20);
+		PayrollDatabase payrollDatabase = new ConcurrentPayrollDatabase();
+		List<String> memberIds = new ArrayList<>(members);
+		for (int i = 0; i < members; i++) {
+			String empId = String.valueOf(i);
+			new AddHourlyEmployeeTransaction(empId, "员工" + i, "上海", 10, payrollDatabase).execute();
+			new AffiliationTransaction(empId, "u" + i, 5, payrollDatabase).execute();
+			memberIds.add("u" + i);
+		}
+		new AffiliationTransaction("0", "other", 1, payrollDatabase).execute();
+
+		assertEquals(members, payrollDatabase.applyServiceChanges(memberIds, Collections.singletonList(new ServiceChange(payday.minusDays(1), 12.5))));
+		for (String memberId : memberIds) {
+			assertEquals(1, payrollDatabase.findServiceChange(memberId).size());
+		}
+		assertEquals(null, payrollDatabase.findServiceChange("other"));
+		Paycheck pc = new Paycheck(payday.minusDays(7), payday);
+		for (int i = 0; i < members; i++) {
+			for (Affiliation affiliation : payrollDatabase.findEmployee(String.valueOf(i)).getAffiliations()) {
+				long expected = "other".equals(((UnionAffiliation) affiliation).getMemberId()) ? 0 : 1250;
+				assertEquals(expected, affiliation.calculateDeductions(pc));
+			}
+		}
+	}
+
+	/**
+	 * 同一个会员编号再次登记会费关系时替换原来的，原来的不再出现在索引里，也不再被记服务费
+	 */
+	@Test
+	public void testReaffiliationReplaces() {
+		LocalDate payday = LocalDate.of(2018, Month.JULY, 20);
+		UnionAffiliation first = new UnionAffiliation("m1", 5);
+		UnionAffiliation second = new UnionAffiliation("m1", 8);
+		payrollDatabase.addAffiliation("m1", first);
+		payrollDatabase.addAffiliation("m1", second);
+		assertSame(second, payrollDatabase.findUnionAffiliation("m1"));
+
+		assertTrue(payrollDatabase.applyServiceChanges("m1", Collections.singletonList(new ServiceChange(payday.minusDays(1), 12.5))));
+		Paycheck pc = new Paycheck(payday.minusDays(7), payday);
+		assertEquals(0, first.calculateDeductions(pc));
+		assertEquals(1250, second.calculateDeductions(pc));
+	}
+
+	/**
+	 * 懒加载模式下扣款从数据库的服务费记录算出，重复记录会多扣
+	 */
+	@Test
+	public void testLazyChargedOnce() {
+		LocalDate payday = LocalDate.of(2018, Month.JULY, 20);
+		ConcurrentPayrollDatabase payrollDatabase = new ConcurrentPayrollDatabase();
+		payrollDatabase.enableLazyLoading(16);
+		for (int i = 0; i < 3; i++) {
+			String empId = String.valueOf(i);
+			AddEmployeeTransaction addEmp = new AddHourlyEmployeeTransaction(empId, "员工" + i, "上海", 10);
+			addEmp.payrollDatabase = payrollDatabase;
+			addEmp.execute();
+		}
+		AffiliationTransaction af = new AffiliationTransaction("2", "union", 5);
+		af.payrollDatabase = payrollDatabase;
+		af.execute();
+		BatchTransaction batch = new BatchTransaction(payrollDatabase);
+		batch.add(new ServiceChangeTransaction("union", payday.minusDays(1), 12.5));
+		batch.add(new ServiceChangeTransaction("union", payday.minusDays(2), 7.5));
+		batch.execute();
+
+		assertEquals(2, payrollDatabase.findServiceChange("union").size());
+		Affiliation affiliation = payrollDatabase.findEmployee("2").getAffiliations().get(0);
+		assertEquals(1250 + 750, affiliation.calculateDeductions(new Paycheck(payday.minusDays(7), payday)));
+	}
 }
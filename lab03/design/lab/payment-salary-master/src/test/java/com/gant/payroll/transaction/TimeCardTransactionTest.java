@@ -1,14 +1,18 @@
 package com.gant.payroll.transaction;
 
+import static org.junit.Assert.assertEquals;
+
 import java.time.LocalDate;
 import java.time.Month;
 import java.util.List;
 
 import org.junit.Test;
 
+import com.gant.payroll.classification.HourlyClassification;
 import com.gant.payroll.classification.TimeCard;
 import com.gant.payroll.db.PayrollDatabase;
 import com.gant.payroll.db.impl.PaymentDatabaseImpl;
+import com.gant.payroll.domain.Paycheck;
 
 public class TimeCardTransactionTest {
 
@@ -32,4 +36,36 @@ public class TimeCardTransactionTest {
 		timeCards.forEach(it -> System.out.println(it));
 
 	}
+
+	@Test
+	public void testFindTimeCardsByRange() {
+		String empId = "41";
+		new AddHourlyEmployeeTransaction(empId, "赵六", "上海", 10).execute();
+
+		// 乱序录入，查询结果按日期有序
+		new TimeCardTransaction(empId, LocalDate.of(2018, Month.JULY, 20), 8).execute();
+		new TimeCardTransaction(empId, LocalDate.of(2018, Month.JULY, 12), 9).execute();
+		new TimeCardTransaction(empId, LocalDate.of(2018, Month.JULY, 16), 10).execute();
+		new TimeCardTransaction(empId, LocalDate.of(2018, Month.JULY, 25), 11).execute();
+
+		List<TimeCard> timeCards = payrollDatabase.findTimeCards(empId, LocalDate.of(2018, Month.JULY, 16), LocalDate.of(2018, Month.JULY, 20));
+		assertEquals(2, timeCards.size());
+		assertEquals(LocalDate.of(2018, Month.JULY, 16), timeCards.get(0).getDate());
+		assertEquals(LocalDate.of(2018, Month.JULY, 20), timeCards.get(1).getDate());
+		assertEquals(LocalDate.of(2018, Month.JULY, 12), payrollDatabase.findTimeCards(empId).get(0).getDate());
+	}
+
+	@Test
+	public void testCalculatePaySoFar() {
+		String empId = "42";
+		new AddHourlyEmployeeTransaction(empId, "赵六", "上海", 10).execute();
+		new TimeCardTransaction(empId, LocalDate.of(2018, Month.JULY, 16), 8).execute();
+		new TimeCardTransaction(empId, LocalDate.of(2018, Month.JULY, 18), 10).execute();
+		new TimeCardTransaction(empId, LocalDate.of(2018, Month.JULY, 17), 12).execute();
+
+		HourlyClassification hc = (HourlyClassification) payrollDatabase.findEmployee(empId).getClassification();
+		LocalDate start = LocalDate.of(2018, Month.JULY, 14);
+		assertEquals((80 + 80 + 60) * 100, hc.calculatePaySoFar(start, LocalDate.of(2018, Month.JULY, 17)));
+		assertEquals((80 + 80 + 60 + 80 + 30) * 100, hc.calculatePay(new Paycheck(start, LocalDate.of(2018, Month.JULY, 20))));
+	}
 }
@@ -0,0 +1,231 @@
+package com.gant.payroll.transaction;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.gant.payroll.classification.HourlyClassification;
+import com.gant.payroll.db.PayrollDatabase;
+import com.gant.payroll.db.impl.ConcurrentPayrollDatabase;
+import com.gant.payroll.db.impl.PaymentDatabaseImpl;
+import com.gant.payroll.domain.Employee;
+import com.gant.payroll.domain.Paycheck;
+import com.gant.payroll.domain.PaymentClassification;
+import com.gant.payroll.method.HoldMethod;
+import com.gant.payroll.schedule.WeeklySchedule;
+
+public class TransactionPipelineTest {
+
+	static final LocalDate DATE = LocalDate.of(2018, Month.JULY, 1);
+
+	/**
+	 * 多个生产者同时提交，每条都生效、每个 future 都完成。吞吐量见 jmh 下的 TransactionPipelineBenchmark
+	 */
+	@Test
+	public void testConcurrentProducers() throws Exception {
+		int employees = 64;
+		int producers = 4;
+		int perProducer = 5_000;
+		PayrollDatabase payrollDatabase = newDatabase(employees);
+		TransactionPipeline pipeline = new TransactionPipeline(payrollDatabase, 2, 64, 16);
+
+		List<Thread> threads = new ArrayList<>();
+		List<CompletableFuture<Transaction>> futures = Collections.synchronizedList(new ArrayList<>());
+		for (int p = 0; p < producers; p++) {
+			Thread thread = new Thread(() -> {
+				for (int i = 0; i < perProducer; i++) {
+					futures.add(pipeline.submit(new TimeCardTransaction(String.valueOf(i % employees), DATE.plusDays(i / 1000), 8, payrollDatabase)));
+				}
+			});
+			thread.start();
+			threads.add(thread);
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		pipeline.close();
+
+		int total = 0;
+		for (int i = 0; i < employees; i++) {
+			total += payrollDatabase.findTimeCards(String.valueOf(i)).size();
+		}
+		assertEquals(producers * perProducer, total);
+		assertEquals(producers * perProducer, futures.size());
+		for (CompletableFuture<Transaction> future : futures) {
+			assertTrue(future.isDone() && !future.isCompletedExceptionally());
+		}
+	}
+
+	@Test
+	public void testFailureAndBackpressure() throws Exception {
+		PayrollDatabase payrollDatabase = newDatabase(1);
+		// 只有 4 个槽位，提交速度快于消费时生产者会等待
+		TransactionPipeline pipeline = new TransactionPipeline(payrollDatabase, 1, 4, 2);
+		List<CompletableFuture<Transaction>> futures = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			futures.add(pipeline.submit(new TimeCardTransaction("0", DATE.plusDays(i), 8)));
+		}
+		CompletableFuture<Transaction> missing = pipeline.submit(new TimeCardTransaction("404", DATE, 8));
+		for (CompletableFuture<Transaction> future : futures) {
+			future.get();
+		}
+		try {
+			missing.get();
+			throw new AssertionError("没有员工的时间卡片应该失败");
+		} catch (ExecutionException e) {
+			System.out.println(e.getCause());
+		}
+		pipeline.close();
+		assertEquals(1000, payrollDatabase.findTimeCards("0").size());
+	}
+
+	/**
+	 * 新增员工、加入工会、服务费、时间卡片按提交顺序生效，即使分在多个分片上
+	 */
+	@Test
+	public void testOrderAcrossTypes() throws Exception {
+		PayrollDatabase payrollDatabase = new ConcurrentPayrollDatabase();
+		List<CompletableFuture<Transaction>> futures = new ArrayList<>();
+		try (TransactionPipeline pipeline = new TransactionPipeline(payrollDatabase, 4, 64, 16)) {
+			for (int i = 0; i < 200; i++) {
+				String empId = String.valueOf(i);
+				String memberId = "m" + i;
+				futures.add(pipeline.submit(new AddHourlyEmployeeTransaction(empId, "员工" + i, "上海", 10, payrollDatabase)));
+				futures.add(pipeline.submit(new TimeCardTransaction(empId, DATE, 8, payrollDatabase)));
+				futures.add(pipeline.submit(new AffiliationTransaction(empId, memberId, 5, payrollDatabase)));
+				futures.add(pipeline.submit(new ServiceChangeTransaction(memberId, DATE, 2, payrollDatabase)));
+			}
+			for (CompletableFuture<Transaction> future : futures) {
+				future.get();
+			}
+		}
+		for (int i = 0; i < 200; i++) {
+			assertEquals(1, payrollDatabase.findTimeCards(String.valueOf(i)).size());
+			assertEquals(1, payrollDatabase.findServiceChange("m" + i).size());
+		}
+	}
+
+	/**
+	 * 会员编号重新登记到另一个员工后，服务费跟着新员工的分片；加入工会失败时服务费按数据库里的会员分片
+	 */
+	@Test
+	public void testReaffiliationRouting() throws Exception {
+		PayrollDatabase payrollDatabase = newDatabase(2);
+		try (TransactionPipeline pipeline = new TransactionPipeline(payrollDatabase, 2, 64, 16)) {
+			pipeline.submit(new AffiliationTransaction("0", "m", 5, payrollDatabase)).get();
+			pipeline.submit(new AffiliationTransaction("1", "m", 8, payrollDatabase));
+			pipeline.submit(new ServiceChangeTransaction("m", DATE, 2, payrollDatabase)).get();
+			assertFailed(pipeline.submit(new AffiliationTransaction("404", "m", 1, payrollDatabase)));
+			pipeline.submit(new ServiceChangeTransaction("m", DATE.plusDays(1), 3, payrollDatabase)).get();
+		}
+		assertEquals(2, payrollDatabase.findServiceChange("m").size());
+		Paycheck pc = new Paycheck(DATE.minusDays(1), DATE.plusDays(2));
+		assertEquals(0, payrollDatabase.findEmployee("0").getAffiliations().get(0).calculateDeductions(pc));
+		assertEquals(500, payrollDatabase.findEmployee("1").getAffiliations().get(0).calculateDeductions(pc));
+	}
+
+	/**
+	 * 默认的单例数据库不是线程安全的，只能用一个分片
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testRejectSharedDatabase() {
+		new TransactionPipeline(new PaymentDatabaseImpl(), 2, 4, 2).close();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRejectUnkeyed() {
+		try (TransactionPipeline pipeline = new TransactionPipeline(newDatabase(1), 1, 4, 2)) {
+			pipeline.submit(new PaydayTransaction(DATE));
+		}
+	}
+
+	/**
+	 * 一边提交一边关闭：每个 submit 要么抛出已关闭，要么返回的 future 在 close 之后已经完成
+	 */
+	@Test
+	public void testCloseWhileSubmitting() throws Exception {
+		PayrollDatabase payrollDatabase = newDatabase(8);
+		TransactionPipeline pipeline = new TransactionPipeline(payrollDatabase, 2, 16, 4);
+		List<CompletableFuture<Transaction>> futures = Collections.synchronizedList(new ArrayList<>());
+		List<Thread> threads = new ArrayList<>();
+		for (int p = 0; p < 4; p++) {
+			Thread thread = new Thread(() -> {
+				for (int i = 0;; i++) {
+					try {
+						futures.add(pipeline.submit(new TimeCardTransaction(String.valueOf(i % 8), DATE, 8, payrollDatabase)));
+					} catch (IllegalStateException closed) {
+						return;
+					}
+				}
+			});
+			thread.start();
+			threads.add(thread);
+		}
+		Thread.sleep(50);
+		pipeline.close();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		synchronized (futures) {
+			for (CompletableFuture<Transaction> future : futures) {
+				assertTrue(future.isDone());
+			}
+		}
+	}
+
+	/**
+	 * 执行时抛出 Error，消费线程退出：这一批、排在后面的和之后提交到这个分片的事务都异常完成
+	 */
+	@Test
+	public void testConsumerDeath() throws Exception {
+		PayrollDatabase payrollDatabase = newDatabase(1);
+		try (TransactionPipeline pipeline = new TransactionPipeline(payrollDatabase, 1, 8, 1)) {
+			CompletableFuture<Transaction> fatal = pipeline.submit(new AddHourlyEmployeeTransaction("9", "坏数据", "上海", 10, payrollDatabase) {
+				@Override
+				public PaymentClassification getClassification() {
+					throw new Error("模拟的致命错误");
+				}
+			});
+			List<CompletableFuture<Transaction>> later = new ArrayList<>();
+			for (int i = 0; i < 20; i++) {
+				later.add(pipeline.submit(new TimeCardTransaction("0", DATE.plusDays(i), 8, payrollDatabase)));
+			}
+			assertFailed(fatal);
+			for (CompletableFuture<Transaction> future : later) {
+				future.handle((t, e) -> t).get(10, TimeUnit.SECONDS);
+			}
+			assertFailed(pipeline.submit(new TimeCardTransaction("0", DATE, 8, payrollDatabase)));
+		}
+	}
+
+	private static void assertFailed(CompletableFuture<Transaction> future) throws Exception {
+		try {
+			future.get(10, TimeUnit.SECONDS);
+			throw new AssertionError("应该异常完成");
+		} catch (ExecutionException expected) {
+		}
+	}
+
+	private static PayrollDatabase newDatabase(int employees) {
+		PayrollDatabase payrollDatabase = new ConcurrentPayrollDatabase();
+		for (int i = 0; i < employees; i++) {
+			String empId = String.valueOf(i);
+			Employee emp = new Employee(empId, "员工" + i, "上海");
+			emp.setClassification(new HourlyClassification(10));
+			emp.setSchedule(new WeeklySchedule());
+			emp.setPaymentMethod(new HoldMethod());
+			payrollDatabase.addEmployee(empId, emp);
+		}
+		return payrollDatabase;
+	}
+}
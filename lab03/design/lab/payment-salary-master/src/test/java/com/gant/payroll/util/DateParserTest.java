@@ -0,0 +1,69 @@
+package com.gant.payroll.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class DateParserTest {
+
+	@Test
+	public void testSameAsLocalDate() {
+		for (LocalDate d = LocalDate.of(1999, 1, 1); d.isBefore(LocalDate.of(2031, 1, 1)); d = d.plusDays(1)) {
+			String s = d.toString();
+			assertEquals(d.toEpochDay(), DateParser.ISO.parse(s));
+			byte[] bytes = ("x," + s + ",8").getBytes(StandardCharsets.US_ASCII);
+			assertEquals(d.toEpochDay(), DateParser.ISO.parse(bytes, 2, 10));
+			assertEquals(d.toEpochDay(), DateParser.ISO.parse(ByteBuffer.wrap(bytes), 2, 10));
+		}
+	}
+
+	@Test
+	@SuppressWarnings("deprecation")
+	public void testLayoutsAndErrors() {
+		DateParser parser = DateParser.of("yyyy-MM-dd", "yyyyMMdd", "dd.MM.yyyy", "MM/dd/yyyy");
+		long day = LocalDate.of(2018, 7, 20).toEpochDay();
+		assertEquals(day, parser.parse("2018-07-20"));
+		assertEquals(day, parser.parse("20180720"));
+		assertEquals(day, parser.parse("20.07.2018"));
+		assertEquals(day, parser.parse("07/20/2018"));
+		assertEquals(LocalDate.of(2018, 7, 20), parser.parseLocalDate("20180720"));
+
+		assertEquals(DateParser.INVALID_DATE, parser.parse("2018-02-29"));
+		assertEquals(DateParser.INVALID_DATE, parser.parse("2018-13-01"));
+		assertEquals(DateParser.INVALID_FORMAT, parser.parse("2018-7-20"));
+		assertEquals(DateParser.INVALID_FORMAT, parser.parse("2018/07/20"));
+		assertEquals(DateParser.INVALID_FORMAT, parser.parse(""));
+		assertNull(parser.parseLocalDate("abc"));
+		assertNull(DateUtil.parseDate("2018-02-30"));
+	}
+
+	@Test
+	public void testConcurrent() throws Exception {
+		AtomicInteger errors = new AtomicInteger();
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < 4; t++) {
+			Thread thread = new Thread(() -> {
+				for (int i = 0; i < 200_000; i++) {
+					LocalDate d = LocalDate.of(2000, 1, 1).plusDays(i % 10000);
+					if (DateParser.ISO.parse(d.toString()) != d.toEpochDay()) {
+						errors.incrementAndGet();
+					}
+				}
+			});
+			thread.start();
+			threads.add(thread);
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(0, errors.get());
+	}
+}
@@ -0,0 +1,50 @@
+package com.gant.payroll.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+
+import org.junit.Test;
+
+public class EpochDaysTest {
+
+	@Test
+	public void testSameAsLocalDate() {
+		for (LocalDate d = LocalDate.of(1899, 12, 1); d.isBefore(LocalDate.of(2101, 3, 1)); d = d.plusDays(1)) {
+			int day = EpochDays.of(d);
+			assertEquals(day, EpochDays.of(d.getYear(), d.getMonthValue(), d.getDayOfMonth()));
+			assertEquals(d.getDayOfWeek().getValue(), EpochDays.dayOfWeek(day));
+			assertEquals(d.getYear(), EpochDays.year(day));
+			assertEquals(d.getMonthValue(), EpochDays.month(day));
+			assertEquals(d.getDayOfMonth(), EpochDays.dayOfMonth(day));
+			assertEquals(d.getDayOfMonth() == d.lengthOfMonth(), EpochDays.isLastDayOfMonth(day));
+			assertEquals(d.withDayOfMonth(1).toEpochDay(), EpochDays.firstDayOfMonth(day));
+			assertEquals(d.withDayOfMonth(d.lengthOfMonth()).toEpochDay(), EpochDays.lastDayOfMonth(day));
+		}
+	}
+
+	@Test
+	public void testCountFridays() {
+		LocalDate base = LocalDate.of(2018, 7, 1);
+		for (int from = 0; from < 14; from++) {
+			for (int length = -2; length < 60; length++) {
+				LocalDate start = base.plusDays(from);
+				LocalDate end = start.plusDays(length);
+				int expected = 0;
+				for (LocalDate d = start.plusDays(1); d.isBefore(end); d = d.plusDays(1)) {
+					expected += d.getDayOfWeek() == DayOfWeek.FRIDAY ? 1 : 0;
+				}
+				assertEquals(start + " " + end, expected, DateUtil.betweenOnFriday(start, end));
+			}
+		}
+	}
+
+	@Test
+	public void testBiweeklyOffset() {
+		long anchor = LocalDate.of(2017, 7, 7).toEpochDay();
+		assertEquals(0, EpochDays.biweeklyOffset(anchor - 14, anchor));
+		assertEquals(13, EpochDays.biweeklyOffset(anchor - 1, anchor));
+		assertEquals(1, EpochDays.biweeklyOffset(anchor + 15, anchor));
+	}
+}
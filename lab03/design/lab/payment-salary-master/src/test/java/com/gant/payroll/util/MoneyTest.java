@@ -0,0 +1,108 @@
+package com.gant.payroll.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+
+import org.junit.Test;
+
+import com.gant.payroll.affiliation.ServiceChange;
+import com.gant.payroll.affiliation.UnionAffiliation;
+import com.gant.payroll.classification.CommissionedClassification;
+import com.gant.payroll.classification.HourlyClassification;
+import com.gant.payroll.classification.SalesReceipt;
+import com.gant.payroll.classification.TimeCard;
+import com.gant.payroll.domain.Paycheck;
+
+public class MoneyTest {
+
+	@Test
+	public void testOfAndFormat() {
+		assertEquals(1010, Money.of(10.1));
+		assertEquals(28, Money.of(0.285, RoundingMode.DOWN));
+		assertEquals(29, Money.of(0.285));
+		assertEquals(-29, Money.of(-0.285));
+		assertEquals(28, Money.of(0.285, RoundingMode.HALF_EVEN));
+		assertEquals("10.10", Money.format(1010));
+		assertEquals("-0.05", Money.format(-5));
+		assertEquals(10.1, Money.toDouble(1010), 0);
+	}
+
+	@Test
+	public void testRoundingModesMatchBigDecimal() {
+		RoundingMode[] modes = { RoundingMode.UP, RoundingMode.DOWN, RoundingMode.CEILING, RoundingMode.FLOOR, RoundingMode.HALF_UP,
+				RoundingMode.HALF_DOWN, RoundingMode.HALF_EVEN };
+		for (RoundingMode mode : modes) {
+			for (int tenths = -55; tenths <= 55; tenths++) {
+				BigDecimal value = BigDecimal.valueOf(tenths, 1);
+				long expected = value.setScale(0, mode).longValueExact();
+				assertEquals(mode + " " + value, expected, Money.round(value.doubleValue(), mode));
+				assertEquals(mode + " " + value, expected, Money.divide(tenths, 10, mode));
+				assertEquals(mode + " " + value, expected, Money.divide(-tenths, -10, mode));
+			}
+		}
+	}
+
+	@Test(expected = ArithmeticException.class)
+	public void testUnnecessary() {
+		Money.divide(5, 2, RoundingMode.UNNECESSARY);
+	}
+
+	@Test
+	public void testTimes() {
+		// 15.5 元/小时 × 8 小时
+		assertEquals(12400, Money.times(1550, 8));
+		// 0.1 + 0.2 这类误差不影响舍入
+		assertEquals(3, Money.times(10, 0.1 + 0.2));
+		assertEquals(2, Money.times(3, 0.5));
+		assertEquals(2, Money.times(3, 0.5, RoundingMode.HALF_UP));
+		assertEquals(1, Money.times(3, 0.5, RoundingMode.HALF_DOWN));
+	}
+
+	/**
+	 * 一百万张支付记录：金额 0.1 + 0.01 × (i % 9973) 元在 double 里都不精确，按分换算后的合计
+	 * 等于按整数推出来的精确值，与相加顺序无关
+	 */
+	@Test
+	public void testSumOfMillionPaychecks() {
+		int n = 1000000;
+		int cycle = 9973;
+		long forward = 0;
+		for (int i = 0; i < n; i++) {
+			forward += Money.of(0.01 * (i % cycle) + 0.1);
+		}
+		long backward = 0;
+		for (int i = n - 1; i >= 0; i--) {
+			backward += Money.of(0.01 * (i % cycle) + 0.1);
+		}
+		// 每张 10 分加 i % 9973 分：整轮的 0 + 1 + ... + 9972，再加最后不满一轮的部分
+		long full = n / cycle;
+		long rest = n % cycle;
+		long exact = 10L * n + full * cycle * (cycle - 1) / 2 + rest * (rest - 1) / 2;
+		assertEquals(exact, forward);
+		assertEquals(exact, backward);
+	}
+
+	@Test
+	public void testClassificationsPayInCents() {
+		Paycheck pc = new Paycheck(LocalDate.of(2018, 7, 1), LocalDate.of(2018, 7, 31));
+
+		HourlyClassification hc = new HourlyClassification(10.1);
+		hc.addTimeCards(new TimeCard(LocalDate.of(2018, 7, 2), 8.3));
+		// 8 × 10.1 + 0.3 × 1.5 × 10.1 = 85.345，只舍入一次
+		assertEquals(8535, hc.calculatePay(pc));
+
+		CommissionedClassification cc = new CommissionedClassification(0.1, 0.1);
+		for (int i = 0; i < 10; i++) {
+			cc.addSalesReceipt(new SalesReceipt(LocalDate.of(2018, 7, 2), 0.1));
+		}
+		assertEquals(10 + 10, cc.calculatePay(pc));
+
+		UnionAffiliation ua = new UnionAffiliation("m1", 0.1);
+		ua.addServiceChanges(new ServiceChange(LocalDate.of(2018, 7, 2), 0.2));
+		// 7 月 (1, 31) 之间有 4 个周五
+		assertEquals(4 * 10 + 20, ua.calculateDeductions(pc));
+	}
+}
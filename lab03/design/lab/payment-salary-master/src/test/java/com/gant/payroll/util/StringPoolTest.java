@@ -0,0 +1,25 @@
+package com.gant.payroll.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class StringPoolTest {
+
+	/**
+	 * 满了以后不再收新字符串，已经在池里的照样返回规范实例
+	 */
+	@Test
+	public void testCapacity() {
+		StringPool pool = new StringPool(2);
+		String a = pool.intern(new String("a"));
+		pool.intern(new String("b"));
+		String c = new String("c");
+		assertSame(c, pool.intern(c));
+		assertNotSame(pool.intern(new String("c")), c);
+		assertSame(a, pool.intern(new String("a")));
+		assertEquals(2, pool.size());
+	}
+}